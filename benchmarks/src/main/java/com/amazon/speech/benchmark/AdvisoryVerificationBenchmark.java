@@ -0,0 +1,134 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.benchmark;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.AdvisoryResponseVerification;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.SessionEndedRequest;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.lambda.LambdaSpeechletRequestHandler;
+import com.amazon.speech.ui.Image;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.StandardCard;
+
+/**
+ * Measures {@link SpeechletRequestHandler#handleSpeechletCall} for responses with a card holding
+ * images, with the advisory response verifiers checking every response before it is written, as
+ * by default, compared with checking 1% of the responses once written through an
+ * {@link AdvisoryResponseVerification}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdvisoryVerificationBenchmark {
+    private static final int CORPUS_SIZE = 256;
+
+    private final SpeechletV2 speechlet = new ImageCardSpeechlet();
+    private SpeechletRequestHandler requestHandler;
+    private SpeechletRequestHandler sampledRequestHandler;
+    private byte[][] requests;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        requestHandler =
+                new LambdaSpeechletRequestHandler(Collections.singleton(RequestCorpus.APPLICATION_ID));
+        sampledRequestHandler =
+                new LambdaSpeechletRequestHandler(Collections.singleton(RequestCorpus.APPLICATION_ID));
+        sampledRequestHandler.setAdvisoryResponseVerification(AdvisoryResponseVerification
+                .builder()
+                .withSampleRate(0.01)
+                .build());
+        List<byte[]> corpus = RequestCorpus.generate(RequestCorpus.RequestType.INTENT, CORPUS_SIZE);
+        requests = corpus.toArray(new byte[CORPUS_SIZE][]);
+    }
+
+    private byte[] next() {
+        byte[] request = requests[index];
+        index = (index + 1) % CORPUS_SIZE;
+        return request;
+    }
+
+    @Benchmark
+    public byte[] everyResponseVerified() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return requestHandler.handleSpeechletCall(speechlet, next());
+    }
+
+    @Benchmark
+    public byte[] sampledResponsesChecked() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return sampledRequestHandler.handleSpeechletCall(speechlet, next());
+    }
+
+    /**
+     * Answers every intent with a standard card holding a small and a large image.
+     */
+    private static final class ImageCardSpeechlet implements SpeechletV2 {
+        @Override
+        public void onSessionStarted(
+                SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+        }
+
+        @Override
+        public SpeechletResponse onLaunch(SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+            return onIntent(null);
+        }
+
+        @Override
+        public SpeechletResponse onIntent(SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+            PlainTextOutputSpeech outputSpeech = new PlainTextOutputSpeech();
+            outputSpeech.setText("Here is today's picture of the day.");
+            Image image = new Image();
+            image.setSmallImageUrl("https://images.example.com/picture-of-the-day/720x480.png");
+            image.setLargeImageUrl("https://images.example.com/picture-of-the-day/1200x800.png");
+            StandardCard card = new StandardCard();
+            card.setTitle("Picture of the Day");
+            card.setText("A view of the harbor at dawn.");
+            card.setImage(image);
+            return SpeechletResponse.newTellResponse(outputSpeech, card);
+        }
+
+        @Override
+        public void onSessionEnded(SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.benchmark;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SessionEndedRequest;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.interfaces.audioplayer.AudioPlayer;
+import com.amazon.speech.speechlet.interfaces.audioplayer.request.PlaybackFailedRequest;
+import com.amazon.speech.speechlet.interfaces.audioplayer.request.PlaybackFinishedRequest;
+import com.amazon.speech.speechlet.interfaces.audioplayer.request.PlaybackNearlyFinishedRequest;
+import com.amazon.speech.speechlet.interfaces.audioplayer.request.PlaybackStartedRequest;
+import com.amazon.speech.speechlet.interfaces.audioplayer.request.PlaybackStoppedRequest;
+import com.amazon.speech.speechlet.interfaces.playbackcontroller.PlaybackController;
+import com.amazon.speech.speechlet.interfaces.playbackcontroller.request.NextCommandIssuedRequest;
+import com.amazon.speech.speechlet.interfaces.playbackcontroller.request.PauseCommandIssuedRequest;
+import com.amazon.speech.speechlet.interfaces.playbackcontroller.request.PlayCommandIssuedRequest;
+import com.amazon.speech.speechlet.interfaces.playbackcontroller.request.PreviousCommandIssuedRequest;
+import com.amazon.speech.speechlet.interfaces.system.System;
+import com.amazon.speech.speechlet.interfaces.system.request.ExceptionEncounteredRequest;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.Reprompt;
+import com.amazon.speech.ui.SimpleCard;
+
+/**
+ * A speechlet that implements every interface the SDK dispatches to and builds small, realistic
+ * responses the way the sample skills do, so the benchmarks measure the SDK rather than skill
+ * logic.
+ */
+public class BenchmarkSpeechlet implements SpeechletV2, AudioPlayer, PlaybackController, System {
+    @Override
+    public void onSessionStarted(SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+    }
+
+    @Override
+    public SpeechletResponse onLaunch(SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+        return newAskResponse("Welcome to the benchmark skill, what is your favorite color?");
+    }
+
+    @Override
+    public SpeechletResponse onIntent(SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+        Intent intent = requestEnvelope.getRequest().getIntent();
+        Session session = requestEnvelope.getSession();
+        Slot color = intent.getSlot("Color");
+        if (color != null && color.getValue() != null) {
+            session.setAttribute("Color", color.getValue());
+        }
+        return newAskResponse("I now know that your favorite color is " + color.getValue()
+                + ". You can ask me your favorite color by saying, what's my favorite color?");
+    }
+
+    @Override
+    public void onSessionEnded(SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+    }
+
+    @Override
+    public SpeechletResponse onPlaybackFailed(
+            SpeechletRequestEnvelope<PlaybackFailedRequest> requestEnvelope) {
+        return null;
+    }
+
+    @Override
+    public SpeechletResponse onPlaybackFinished(
+            SpeechletRequestEnvelope<PlaybackFinishedRequest> requestEnvelope) {
+        return null;
+    }
+
+    @Override
+    public SpeechletResponse onPlaybackNearlyFinished(
+            SpeechletRequestEnvelope<PlaybackNearlyFinishedRequest> requestEnvelope) {
+        return null;
+    }
+
+    @Override
+    public SpeechletResponse onPlaybackStarted(
+            SpeechletRequestEnvelope<PlaybackStartedRequest> requestEnvelope) {
+        return null;
+    }
+
+    @Override
+    public SpeechletResponse onPlaybackStopped(
+            SpeechletRequestEnvelope<PlaybackStoppedRequest> requestEnvelope) {
+        return null;
+    }
+
+    @Override
+    public SpeechletResponse onNextCommandIssued(
+            SpeechletRequestEnvelope<NextCommandIssuedRequest> requestEnvelope) {
+        return newTellResponse("Skipping to the next track.");
+    }
+
+    @Override
+    public SpeechletResponse onPauseCommandIssued(
+            SpeechletRequestEnvelope<PauseCommandIssuedRequest> requestEnvelope) {
+        return newTellResponse("Paused.");
+    }
+
+    @Override
+    public SpeechletResponse onPlayCommandIssued(
+            SpeechletRequestEnvelope<PlayCommandIssuedRequest> requestEnvelope) {
+        return newTellResponse("Resuming playback.");
+    }
+
+    @Override
+    public SpeechletResponse onPreviousCommandIssued(
+            SpeechletRequestEnvelope<PreviousCommandIssuedRequest> requestEnvelope) {
+        return newTellResponse("Going back to the previous track.");
+    }
+
+    @Override
+    public void onExceptionEncountered(
+            SpeechletRequestEnvelope<ExceptionEncounteredRequest> requestEnvelope) {
+    }
+
+    private static SpeechletResponse newAskResponse(final String text) {
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText(text);
+        PlainTextOutputSpeech repromptSpeech = new PlainTextOutputSpeech();
+        repromptSpeech.setText("What is your favorite color?");
+        Reprompt reprompt = new Reprompt();
+        reprompt.setOutputSpeech(repromptSpeech);
+        SimpleCard card = new SimpleCard();
+        card.setTitle("Benchmark");
+        card.setContent(text);
+        return SpeechletResponse.newAskResponse(speech, reprompt, card);
+    }
+
+    private static SpeechletResponse newTellResponse(final String text) {
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText(text);
+        return SpeechletResponse.newTellResponse(speech);
+    }
+}
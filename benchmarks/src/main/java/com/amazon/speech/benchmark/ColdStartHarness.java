@@ -0,0 +1,171 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazon.speech.benchmark.RequestCorpus.RequestType;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerPrimer;
+import com.amazon.speech.speechlet.lambda.SpeechletRequestStreamHandler;
+
+/**
+ * Measures how much time priming moves out of the first invocation of a
+ * {@link SpeechletRequestStreamHandler}. Each run starts a fresh JVM, like a Lambda cold start,
+ * which constructs the handler and then handles a launch request followed by an intent request.
+ * Runs alternate between a handler constructed without a primer and one constructed with
+ * {@link SpeechletRequestHandlerPrimer}, and the medians are reported.
+ * <p>
+ * Options are passed as {@code name=value} arguments: {@code runs} (JVMs started per mode,
+ * default 10), {@code iterations} (priming iterations, default 3).
+ */
+public final class ColdStartHarness {
+    private static final String CHILD_ARGUMENT = "child";
+
+    private ColdStartHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && CHILD_ARGUMENT.equals(args[0])) {
+            runChild(Boolean.parseBoolean(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+
+        int runs = 10;
+        int iterations = 3;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            if ("runs".equals(option[0])) {
+                runs = Integer.parseInt(option[1]);
+            } else if ("iterations".equals(option[0])) {
+                iterations = Integer.parseInt(option[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        List<List<long[]>> results = Arrays.<List<long[]>>asList(new ArrayList<long[]>(),
+                new ArrayList<long[]>());
+        for (int i = 0; i < runs; i++) {
+            for (int primed = 0; primed < 2; primed++) {
+                results.get(primed).add(runJvm(primed == 1, iterations));
+            }
+        }
+
+        java.lang.System.out.printf("runs=%d iterations=%d, median times in ms%n", runs,
+                iterations);
+        java.lang.System.out.printf("%-7s %12s %12s %12s %14s%n", "mode", "constructor",
+                "first call", "second call", "constructor+1");
+        for (int primed = 0; primed < 2; primed++) {
+            List<long[]> modeResults = results.get(primed);
+            long constructor = median(modeResults, 0);
+            long first = median(modeResults, 1);
+            java.lang.System.out.printf("%-7s %12.1f %12.1f %12.1f %14.1f%n",
+                    primed == 1 ? "primed" : "cold", constructor / 1e6, first / 1e6,
+                    median(modeResults, 2) / 1e6, median(modeResults, 3) / 1e6);
+        }
+    }
+
+    private static long[] runJvm(boolean primed, int iterations) throws IOException, InterruptedException {
+        String javaCommand =
+                java.lang.System.getProperty("java.home") + File.separator + "bin" + File.separator
+                        + "java";
+        Process process =
+                new ProcessBuilder(javaCommand, "-cp", java.lang.System.getProperty("java.class.path"),
+                        ColdStartHarness.class.getName(), CHILD_ARGUMENT, Boolean.toString(primed),
+                        Integer.toString(iterations))
+                        .redirectErrorStream(true)
+                        .start();
+        String result = null;
+        try (BufferedReader reader =
+                new BufferedReader(new InputStreamReader(process.getInputStream(),
+                        StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("result ")) {
+                    result = line;
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Cold start run failed");
+        }
+
+        String[] fields = result.split(" ");
+        long[] times = new long[4];
+        for (int i = 0; i < 3; i++) {
+            times[i] = Long.parseLong(fields[i + 1]);
+        }
+        times[3] = times[0] + times[1];
+        return times;
+    }
+
+    private static long median(List<long[]> results, int index) {
+        long[] values = new long[results.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = results.get(i)[index];
+        }
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+    private static void runChild(boolean primed, int iterations) throws IOException {
+        byte[] launch = RequestCorpus.generate(RequestType.LAUNCH, 1).get(0);
+        byte[] intent = RequestCorpus.generate(RequestType.INTENT, 1).get(0);
+
+        long start = java.lang.System.nanoTime();
+        SpeechletRequestStreamHandler handler =
+                primed ? new PrimedStreamHandler(iterations) : new ColdStreamHandler();
+        long constructed = java.lang.System.nanoTime();
+        handler.handleRequest(new ByteArrayInputStream(launch), new ByteArrayOutputStream(), null);
+        long first = java.lang.System.nanoTime();
+        handler.handleRequest(new ByteArrayInputStream(intent), new ByteArrayOutputStream(), null);
+        long second = java.lang.System.nanoTime();
+
+        java.lang.System.out.println("result " + (constructed - start) + " "
+                + (first - constructed) + " " + (second - first));
+    }
+
+    /**
+     * A handler constructed without priming.
+     */
+    public static final class ColdStreamHandler extends SpeechletRequestStreamHandler {
+        public ColdStreamHandler() {
+            super(new BenchmarkSpeechlet(), Collections.singleton(RequestCorpus.APPLICATION_ID));
+        }
+    }
+
+    /**
+     * A handler constructed with a primer.
+     */
+    public static final class PrimedStreamHandler extends SpeechletRequestStreamHandler {
+        public PrimedStreamHandler(int iterations) {
+            super(new BenchmarkSpeechlet(), Collections.singleton(RequestCorpus.APPLICATION_ID),
+                    SpeechletRequestHandlerPrimer.builder().withIterations(iterations).build());
+        }
+    }
+}
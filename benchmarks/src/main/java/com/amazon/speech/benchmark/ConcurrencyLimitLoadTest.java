@@ -0,0 +1,280 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.benchmark;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.benchmark.RequestCorpus.RequestType;
+import com.amazon.speech.benchmark.ServletLoadTest.Result;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.SessionEndedRequest;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.SpeechletConcurrencyLimiter;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.servlet.SpeechletServlet;
+
+/**
+ * Load test of a {@link SpeechletServlet} in synchronous mode behind a speechlet whose downstream
+ * call slows down as more requests wait on it, like a shared backend past its capacity. The test
+ * runs once without a {@link SpeechletConcurrencyLimiter}, where every request waits longer the
+ * more clients there are, and once with a limiter, which sheds the requests beyond its limit.
+ *
+ * <p>
+ * Options are passed as {@code name=value} arguments: {@code threads} (container threads, default
+ * 128), {@code concurrency} (client connections, default 96), {@code latencyMillis} (latency of
+ * the downstream call within its capacity, default 20), {@code capacity} (concurrent calls the
+ * downstream serves at that latency, default 8), {@code latencyThresholdMillis} (latency threshold
+ * of the limiter, default 100), {@code seconds} (measurement duration per run, default 10).
+ * </p>
+ */
+public final class ConcurrencyLimitLoadTest {
+    private static final int CORPUS_SIZE = 256;
+
+    private final int threads;
+    private final int concurrency;
+    private final long latencyMillis;
+    private final int capacity;
+    private final int seconds;
+    private final byte[][] requests;
+    private final String[] signatures;
+
+    private ConcurrencyLimitLoadTest(int threads, int concurrency, long latencyMillis,
+            int capacity, int seconds) throws Exception {
+        this.threads = threads;
+        this.concurrency = concurrency;
+        this.latencyMillis = latencyMillis;
+        this.capacity = capacity;
+        this.seconds = seconds;
+
+        TestCertificateAuthority certificateAuthority = new TestCertificateAuthority();
+        certificateAuthority.installSigningCertificate();
+        List<byte[]> corpus = RequestCorpus.generate(RequestType.INTENT, CORPUS_SIZE);
+        requests = corpus.toArray(new byte[CORPUS_SIZE][]);
+        signatures = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            signatures[i] = certificateAuthority.sign(requests[i]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 128;
+        int concurrency = 96;
+        long latencyMillis = 20;
+        int capacity = 8;
+        long latencyThresholdMillis = 100;
+        int seconds = 10;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            if ("threads".equals(option[0])) {
+                threads = Integer.parseInt(option[1]);
+            } else if ("concurrency".equals(option[0])) {
+                concurrency = Integer.parseInt(option[1]);
+            } else if ("latencyMillis".equals(option[0])) {
+                latencyMillis = Long.parseLong(option[1]);
+            } else if ("capacity".equals(option[0])) {
+                capacity = Integer.parseInt(option[1]);
+            } else if ("latencyThresholdMillis".equals(option[0])) {
+                latencyThresholdMillis = Long.parseLong(option[1]);
+            } else if ("seconds".equals(option[0])) {
+                seconds = Integer.parseInt(option[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        java.lang.System.setProperty(Sdk.SUPPORTED_APPLICATION_IDS_SYSTEM_PROPERTY,
+                RequestCorpus.APPLICATION_ID);
+        ConcurrencyLimitLoadTest loadTest =
+                new ConcurrencyLimitLoadTest(threads, concurrency, latencyMillis, capacity,
+                        seconds);
+        java.lang.System.out.printf("threads=%d concurrency=%d latencyMillis=%d capacity=%d "
+                + "latencyThresholdMillis=%d seconds=%d%n", threads, concurrency, latencyMillis,
+                capacity, latencyThresholdMillis, seconds);
+        loadTest.run(null);
+        loadTest.run(SpeechletConcurrencyLimiter.builder()
+                .withLatencyThreshold(latencyThresholdMillis, TimeUnit.MILLISECONDS)
+                .build());
+    }
+
+    private void run(SpeechletConcurrencyLimiter limiter) throws Exception {
+        SpeechletServlet servlet = new SpeechletServlet();
+        SaturatingSpeechlet speechlet = new SaturatingSpeechlet(latencyMillis, capacity);
+        servlet.setSpeechlet(speechlet);
+        servlet.getSpeechletRequestHandler().setConcurrencyLimiter(limiter);
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(threads, threads);
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        connector.setPort(0);
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/");
+        context.addServlet(new ServletHolder(servlet), "/speechlet");
+        server.setHandler(context);
+        server.start();
+
+        try {
+            URL url = new URL("http://localhost:" + connector.getLocalPort() + "/speechlet");
+            // Warm up for a second before measuring
+            load(url, 1);
+            long admitted = (limiter != null) ? limiter.getAdmittedCount() : 0;
+            long rejected = (limiter != null) ? limiter.getRejectedCount() : 0;
+            speechlet.reset();
+            Result result = load(url, seconds);
+            Result downstream = speechlet.getResult();
+            if (limiter == null) {
+                print("no limit", result, result.completed, 0);
+            } else {
+                print("limit", result, limiter.getAdmittedCount() - admitted,
+                        limiter.getRejectedCount() - rejected);
+            }
+            java.lang.System.out.printf("          downstream p50 %5d ms  p99 %5d ms%s%n",
+                    downstream.percentile(0.50), downstream.percentile(0.99),
+                    (limiter != null) ? "  final limit " + limiter.getLimit() : "");
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void print(String limit, Result result, long admitted, long rejected) {
+        java.lang.System.out.printf("%-8s  %8.1f requests/s  %8.1f admitted/s  %8.1f rejected/s  "
+                + "%6d errors  p50 %5d ms  p99 %5d ms%n", limit,
+                result.completed / (double) seconds, admitted / (double) seconds,
+                rejected / (double) seconds, result.errors, result.percentile(0.50),
+                result.percentile(0.99));
+    }
+
+    /**
+     * Runs the clients for the provided duration.
+     *
+     * @return the results of all clients
+     */
+    private Result load(final URL url, int durationSeconds) throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch done = new CountDownLatch(concurrency);
+        final Result[] results = new Result[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            final int client = i;
+            results[client] = new Result();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int index = client;
+                    while (running.get()) {
+                        int request = index++ % CORPUS_SIZE;
+                        long start = java.lang.System.nanoTime();
+                        boolean success =
+                                ServletLoadTest.post(url, requests[request], signatures[request]);
+                        results[client].record(success, java.lang.System.nanoTime() - start);
+                    }
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        running.set(false);
+        done.await();
+
+        Result total = new Result();
+        for (Result result : results) {
+            total.add(result);
+        }
+        return total;
+    }
+
+    /**
+     * Waits on a simulated downstream call which serves up to its capacity of concurrent calls at
+     * the base latency, and slows down in proportion to the calls beyond it.
+     */
+    private static final class SaturatingSpeechlet implements SpeechletV2 {
+        private final SpeechletV2 delegate = new BenchmarkSpeechlet();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final long latencyMillis;
+        private Result result = new Result();
+        private final int capacity;
+
+        SaturatingSpeechlet(long latencyMillis, int capacity) {
+            this.latencyMillis = latencyMillis;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void onSessionStarted(
+                SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+            delegate.onSessionStarted(requestEnvelope);
+        }
+
+        @Override
+        public SpeechletResponse onLaunch(SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+            return delegate.onLaunch(requestEnvelope);
+        }
+
+        @Override
+        public SpeechletResponse onIntent(SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+            int calls = inFlight.incrementAndGet();
+            long start = java.lang.System.nanoTime();
+            try {
+                Thread.sleep(latencyMillis * Math.max(calls, capacity) / capacity);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            synchronized (this) {
+                result.record(true, java.lang.System.nanoTime() - start);
+            }
+            return delegate.onIntent(requestEnvelope);
+        }
+
+        /**
+         * Clears the latencies of the downstream calls recorded so far.
+         */
+        synchronized void reset() {
+            result = new Result();
+        }
+
+        /**
+         * Returns the latencies of the downstream calls since the last reset.
+         */
+        synchronized Result getResult() {
+            return result;
+        }
+
+        @Override
+        public void onSessionEnded(SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+            delegate.onSessionEnded(requestEnvelope);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.benchmark;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.ConstantSpeechletResponse;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.lambda.LambdaSpeechletRequestHandler;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.Reprompt;
+import com.amazon.speech.ui.SimpleCard;
+
+/**
+ * Measures a help response built for each request, as the sample skills do, compared with the
+ * same response declared once as a {@link ConstantSpeechletResponse}, end to end through
+ * {@link SpeechletRequestHandler#handleSpeechletCall} and for the serialization of the envelope
+ * alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstantResponseBenchmark {
+    private static final int CORPUS_SIZE = 256;
+    private static final String HELP_TEXT =
+            "You can say hello to me! You can also ask me for a fact about space, or say stop to"
+                    + " leave.";
+    private static final SpeechletResponse HELP_RESPONSE = ConstantSpeechletResponse
+            .of(newHelpResponse());
+
+    private final HelpSpeechlet builtSpeechlet = new HelpSpeechlet(false);
+    private final HelpSpeechlet constantSpeechlet = new HelpSpeechlet(true);
+    private SpeechletRequestHandler requestHandler;
+    private SpeechletResponseEnvelope builtResponseEnvelope;
+    private SpeechletResponseEnvelope constantResponseEnvelope;
+    private byte[][] requests;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        requestHandler =
+                new LambdaSpeechletRequestHandler(Collections.singleton(RequestCorpus.APPLICATION_ID));
+        List<byte[]> corpus = RequestCorpus.generate(RequestCorpus.RequestType.INTENT, CORPUS_SIZE);
+        requests = corpus.toArray(new byte[CORPUS_SIZE][]);
+        builtResponseEnvelope = new SpeechletResponseEnvelope();
+        builtResponseEnvelope.setVersion("1.0");
+        builtResponseEnvelope.setSessionAttributes(Collections.<String, Object> singletonMap(
+                "Color", "blue"));
+        constantResponseEnvelope = new SpeechletResponseEnvelope();
+        constantResponseEnvelope.setVersion("1.0");
+        constantResponseEnvelope.setResponse(HELP_RESPONSE);
+        constantResponseEnvelope.setSessionAttributes(builtResponseEnvelope
+                .getSessionAttributes());
+    }
+
+    /**
+     * Builds the help response the way {@code HelloWorldSpeechlet} does.
+     */
+    private static SpeechletResponse newHelpResponse() {
+        SimpleCard card = new SimpleCard();
+        card.setTitle("HelloWorld");
+        card.setContent(HELP_TEXT);
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText(HELP_TEXT);
+        Reprompt reprompt = new Reprompt();
+        reprompt.setOutputSpeech(speech);
+        return SpeechletResponse.newAskResponse(speech, reprompt, card);
+    }
+
+    private int next() {
+        int current = index;
+        index = (current + 1) % CORPUS_SIZE;
+        return current;
+    }
+
+    @Benchmark
+    public byte[] builtHandleSpeechletCall() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return requestHandler.handleSpeechletCall(builtSpeechlet, requests[next()]);
+    }
+
+    @Benchmark
+    public byte[] constantHandleSpeechletCall() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return requestHandler.handleSpeechletCall(constantSpeechlet, requests[next()]);
+    }
+
+    @Benchmark
+    public byte[] builtToJsonBytes() throws IOException {
+        builtResponseEnvelope.setResponse(newHelpResponse());
+        return builtResponseEnvelope.toJsonBytes();
+    }
+
+    @Benchmark
+    public byte[] constantToJsonBytes() throws IOException {
+        return constantResponseEnvelope.toJsonBytes();
+    }
+
+    /**
+     * Answers every intent with the help response, built for each request or constant.
+     */
+    private static final class HelpSpeechlet extends BenchmarkSpeechlet {
+        private final boolean constant;
+
+        HelpSpeechlet(final boolean constant) {
+            this.constant = constant;
+        }
+
+        @Override
+        public SpeechletResponse onIntent(SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+            return constant ? HELP_RESPONSE : newHelpResponse();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.verifier.ApplicationIdSpeechletRequestEnvelopeVerifier;
+import com.amazon.speech.speechlet.verifier.IoBoundSpeechletRequestEnvelopeVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
+
+/**
+ * Measures the latency of {@link SpeechletRequestHandler#handleSpeechletCall} with request
+ * verifiers waiting on a simulated remote call, such as a token introspection, run in turn on the
+ * calling thread compared with run concurrently on a verifier executor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelVerificationBenchmark {
+    private static final int CORPUS_SIZE = 256;
+
+    @Param({
+            "1", "2", "4"
+    })
+    public int ioBoundVerifiers;
+
+    @Param({
+            "5"
+    })
+    public long latencyMillis;
+
+    private final SpeechletV2 speechlet = new BenchmarkSpeechlet();
+    private SpeechletRequestHandler sequentialRequestHandler;
+    private SpeechletRequestHandler parallelRequestHandler;
+    private ExecutorService verifierExecutor;
+    private byte[][] requests;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        List<SpeechletRequestEnvelopeVerifier> verifiers =
+                new ArrayList<SpeechletRequestEnvelopeVerifier>();
+        verifiers.add(new ApplicationIdSpeechletRequestEnvelopeVerifier(Collections
+                .singleton(RequestCorpus.APPLICATION_ID)));
+        for (int i = 0; i < ioBoundVerifiers; i++) {
+            verifiers.add(new RemoteVerifier(latencyMillis));
+        }
+        sequentialRequestHandler = new SpeechletRequestHandler(verifiers);
+        parallelRequestHandler = new SpeechletRequestHandler(verifiers);
+        verifierExecutor = Executors.newCachedThreadPool();
+        parallelRequestHandler.setVerifierExecutor(verifierExecutor);
+
+        List<byte[]> corpus = RequestCorpus.generate(RequestCorpus.RequestType.INTENT, CORPUS_SIZE);
+        requests = corpus.toArray(new byte[CORPUS_SIZE][]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        verifierExecutor.shutdownNow();
+    }
+
+    private byte[] next() {
+        byte[] request = requests[index];
+        index = (index + 1) % CORPUS_SIZE;
+        return request;
+    }
+
+    @Benchmark
+    public byte[] sequentialVerification() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return sequentialRequestHandler.handleSpeechletCall(speechlet, next());
+    }
+
+    @Benchmark
+    public byte[] parallelVerification() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return parallelRequestHandler.handleSpeechletCall(speechlet, next());
+    }
+
+    /**
+     * Accepts every request after waiting on a simulated remote call.
+     */
+    private static final class RemoteVerifier implements IoBoundSpeechletRequestEnvelopeVerifier {
+        private final long latencyMillis;
+
+        RemoteVerifier(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public boolean verify(SpeechletRequestEnvelope<?> speechletRequestEnvelope) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.benchmark;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.verifier.ReplayProtectionSpeechletRequestVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestVerifierWrapper;
+import com.amazon.speech.speechlet.verifier.TimestampSpeechletRequestVerifier;
+
+/**
+ * Measures {@link ReplayProtectionSpeechletRequestVerifier} with four threads sharing one
+ * verifier, compared with the {@link TimestampSpeechletRequestVerifier} it extends.
+ * <p>
+ * Every fresh request must have a new ID, so each thread verifies a batch of requests generated
+ * before the iteration, against a verifier created for the iteration. Scores are the time to
+ * verify a batch of {@value #BATCH_SIZE} requests per thread. {@code replayedRequests} verifies
+ * requests that were all recorded before the run, each of which is rejected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = ReplayProtectionBenchmark.BATCH_SIZE)
+@Measurement(iterations = 10, batchSize = ReplayProtectionBenchmark.BATCH_SIZE)
+@Threads(ReplayProtectionBenchmark.THREADS)
+@Fork(1)
+public class ReplayProtectionBenchmark {
+    static final int BATCH_SIZE = 65536;
+    static final int THREADS = 4;
+    private static final int REPLAYED_REQUESTS = 1024;
+
+    private final SpeechletRequestVerifierWrapper timestampVerifier =
+            new SpeechletRequestVerifierWrapper(new TimestampSpeechletRequestVerifier(150,
+                    TimeUnit.SECONDS));
+    private ReplayProtectionSpeechletRequestVerifier verifier;
+    private ReplayProtectionSpeechletRequestVerifier replayVerifier;
+    private SpeechletRequestEnvelope<?>[] replayedRequests;
+
+    @Setup
+    public void setUp() {
+        // Recorded once, so the tolerance must cover the whole run
+        replayVerifier =
+                ReplayProtectionSpeechletRequestVerifier
+                        .builder()
+                        .withTolerance(1, TimeUnit.HOURS)
+                        .build();
+        replayedRequests = new SpeechletRequestEnvelope<?>[REPLAYED_REQUESTS];
+        for (int i = 0; i < REPLAYED_REQUESTS; i++) {
+            replayedRequests[i] = newRequest();
+            replayVerifier.verify(replayedRequests[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        // Sized so that the requests of one iteration fit in one 30 second slice
+        verifier =
+                ReplayProtectionSpeechletRequestVerifier
+                        .builder()
+                        .withExpectedRequestsPerHour(120L * THREADS * BATCH_SIZE)
+                        .build();
+    }
+
+    static SpeechletRequestEnvelope<IntentRequest> newRequest() {
+        return SpeechletRequestEnvelope
+                .<IntentRequest>builder()
+                .withRequest(IntentRequest
+                        .builder()
+                        .withRequestId("amzn1.echo-api.request." + UUID.randomUUID())
+                        .withTimestamp(new Date())
+                        .build())
+                .build();
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+        private final SpeechletRequestEnvelope<?>[] fresh =
+                new SpeechletRequestEnvelope<?>[BATCH_SIZE];
+        private int index;
+        private int replayedIndex;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                fresh[i] = newRequest();
+            }
+            index = 0;
+        }
+
+        private SpeechletRequestEnvelope<?> nextFresh() {
+            return fresh[index++];
+        }
+    }
+
+    @Benchmark
+    public boolean timestampOnly(Requests requests) {
+        return timestampVerifier.verify(requests.nextFresh());
+    }
+
+    @Benchmark
+    public boolean freshRequests(Requests requests) {
+        return verifier.verify(requests.nextFresh());
+    }
+
+    @Benchmark
+    public boolean replayedRequests(Requests requests) {
+        int i = requests.replayedIndex;
+        requests.replayedIndex = (i + 1) % REPLAYED_REQUESTS;
+        return replayVerifier.verify(replayedRequests[i]);
+    }
+}
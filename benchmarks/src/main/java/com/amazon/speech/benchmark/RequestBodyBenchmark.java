@@ -0,0 +1,100 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.benchmark.RequestCorpus.RequestType;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.SpeechletRequestBody;
+import com.amazon.speech.speechlet.SpeechletRequestBodyPool;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+
+/**
+ * Compares reading and deserializing a request body through {@code IOUtils.toByteArray}, which
+ * grows and then copies a new array for every request, with reading it into a pooled buffer of a
+ * {@link SpeechletRequestBodyPool} and deserializing it in place. The pooled read is measured
+ * with and without the {@code Content-Length} of the request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBodyBenchmark {
+    private static final int CORPUS_SIZE = 64;
+
+    private final SpeechletRequestBodyPool pool = SpeechletRequestBodyPool.builder().build();
+    private byte[][] requests;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        List<byte[]> corpus = RequestCorpus.generate(RequestType.MIXED, CORPUS_SIZE);
+        requests = corpus.toArray(new byte[CORPUS_SIZE][]);
+    }
+
+    private byte[] next() {
+        byte[] request = requests[index];
+        index = (index + 1) % CORPUS_SIZE;
+        return request;
+    }
+
+    @Benchmark
+    public SpeechletRequestEnvelope<?> toByteArray() throws IOException {
+        byte[] body = IOUtils.toByteArray(new ByteArrayInputStream(next()));
+        return SpeechletRequestEnvelope.fromJson(body);
+    }
+
+    @Benchmark
+    public SpeechletRequestEnvelope<?> pooledWithContentLength() throws IOException,
+            SpeechletRequestHandlerException {
+        byte[] request = next();
+        return readPooled(request, request.length);
+    }
+
+    @Benchmark
+    public SpeechletRequestEnvelope<?> pooledWithoutContentLength() throws IOException,
+            SpeechletRequestHandlerException {
+        return readPooled(next(), -1);
+    }
+
+    private SpeechletRequestEnvelope<?> readPooled(final byte[] request, final long contentLength)
+            throws IOException, SpeechletRequestHandlerException {
+        SpeechletRequestBody body = pool.acquire(contentLength);
+        try {
+            body.readFully(new ByteArrayInputStream(request));
+            return SpeechletRequestEnvelope.fromJson(body.getBuffer(), 0, body.getLength());
+        } finally {
+            body.release();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import com.amazon.speech.Sdk;
+
+/**
+ * Generates realistic, serialized speechlet requests of every request type the SDK dispatches.
+ * Payloads are shaped like the ones sent by the Alexa service, including session attributes and a
+ * {@code context} block, and are generated from a fixed seed so runs are comparable.
+ */
+public final class RequestCorpus {
+    /**
+     * The application ID used in every generated request.
+     */
+    public static final String APPLICATION_ID = "amzn1.ask.skill.8c7e2f4a-5b1d-4a9e-9f3c-benchmark";
+
+    private static final long SEED = 0x5eed1e55L;
+    private static final String[] LOCALES = new String[] {
+            "en-US", "en-GB", "de-DE"
+    };
+    private static final String[] INTENTS = new String[] {
+            "GetHoroscope", "AMAZON.HelpIntent", "AMAZON.StopIntent", "MyColorIsIntent"
+    };
+    private static final String[] COLORS = new String[] {
+            "red", "green", "blue", "purple", "orange"
+    };
+    private static final String[] PLAYBACK_EVENTS = new String[] {
+            "AudioPlayer.PlaybackStarted", "AudioPlayer.PlaybackNearlyFinished",
+            "AudioPlayer.PlaybackFinished", "AudioPlayer.PlaybackStopped"
+    };
+    private static final String[] CONTROLLER_EVENTS = new String[] {
+            "PlaybackController.NextCommandIssued", "PlaybackController.PauseCommandIssued",
+            "PlaybackController.PlayCommandIssued", "PlaybackController.PreviousCommandIssued"
+    };
+
+    /**
+     * The request types available in the corpus.
+     */
+    public enum RequestType {
+        LAUNCH,
+        INTENT,
+        SESSION_ENDED,
+        AUDIO_PLAYER,
+        PLAYBACK_CONTROLLER,
+        EXCEPTION_ENCOUNTERED,
+        /**
+         * An even mix of all the other request types.
+         */
+        MIXED
+    }
+
+    private RequestCorpus() {
+    }
+
+    /**
+     * Generates {@code size} serialized requests of the provided type, UTF-8 encoded.
+     *
+     * @param requestType
+     *            the type of request to generate
+     * @param size
+     *            the number of requests to generate
+     * @return the serialized requests
+     */
+    public static List<byte[]> generate(final RequestType requestType, final int size) {
+        Random random = new Random(SEED + requestType.ordinal());
+        RequestType[] concreteTypes = RequestType.values();
+        List<byte[]> corpus = new ArrayList<byte[]>(size);
+        for (int i = 0; i < size; i++) {
+            RequestType type = requestType;
+            if (type == RequestType.MIXED) {
+                type = concreteTypes[i % (concreteTypes.length - 1)];
+            }
+            corpus.add(toBytes(generate(type, random)));
+        }
+        return Collections.unmodifiableList(corpus);
+    }
+
+    private static String generate(final RequestType requestType, final Random random) {
+        String locale = LOCALES[random.nextInt(LOCALES.length)];
+        switch (requestType) {
+            case LAUNCH:
+                return envelope(session(true, random), systemContext(random),
+                        request("LaunchRequest", locale, "", random));
+            case INTENT:
+                String intentName = INTENTS[random.nextInt(INTENTS.length)];
+                String color = COLORS[random.nextInt(COLORS.length)];
+                return envelope(session(false, random), systemContext(random),
+                        request("IntentRequest", locale, ",\"intent\":{\"name\":\"" + intentName
+                                + "\",\"slots\":{\"Color\":{\"name\":\"Color\",\"value\":\""
+                                + color + "\"}}}", random));
+            case SESSION_ENDED:
+                return envelope(session(false, random), systemContext(random),
+                        request("SessionEndedRequest", locale,
+                                ",\"reason\":\"USER_INITIATED\"", random));
+            case AUDIO_PLAYER:
+                String token = "track-" + random.nextInt(10000);
+                long offset = random.nextInt(600000);
+                return envelope(null, audioPlayerContext(token, offset, random),
+                        request(PLAYBACK_EVENTS[random.nextInt(PLAYBACK_EVENTS.length)], locale,
+                                ",\"token\":\"" + token + "\",\"offsetInMilliseconds\":"
+                                        + offset, random));
+            case PLAYBACK_CONTROLLER:
+                return envelope(null,
+                        audioPlayerContext("track-" + random.nextInt(10000), 0, random),
+                        request(CONTROLLER_EVENTS[random.nextInt(CONTROLLER_EVENTS.length)],
+                                locale, "", random));
+            case EXCEPTION_ENCOUNTERED:
+                return envelope(null, systemContext(random), request(
+                        "System.ExceptionEncountered", locale,
+                        ",\"error\":{\"type\":\"INVALID_RESPONSE\",\"message\":\"The response "
+                                + "is invalid\"},\"cause\":{\"requestId\":\"" + requestId(random)
+                                + "\"}", random));
+            default:
+                throw new IllegalArgumentException("Unsupported request type " + requestType);
+        }
+    }
+
+    private static String envelope(final String session, final String context,
+            final String request) {
+        StringBuilder builder = new StringBuilder(1024);
+        builder.append("{\"version\":\"1.0\",");
+        if (session != null) {
+            builder.append("\"session\":").append(session).append(',');
+        }
+        builder.append("\"context\":").append(context).append(',');
+        builder.append("\"request\":").append(request).append('}');
+        return builder.toString();
+    }
+
+    private static String session(final boolean isNew, final Random random) {
+        StringBuilder attributes = new StringBuilder();
+        if (!isNew) {
+            attributes.append("\"Color\":\"").append(COLORS[random.nextInt(COLORS.length)])
+                    .append("\",\"history\":[");
+            int turns = 1 + random.nextInt(8);
+            for (int i = 0; i < turns; i++) {
+                if (i > 0) {
+                    attributes.append(',');
+                }
+                attributes.append("{\"turn\":").append(i).append(",\"intent\":\"")
+                        .append(INTENTS[random.nextInt(INTENTS.length)]).append("\"}");
+            }
+            attributes.append(']');
+        }
+
+        return "{\"new\":" + isNew + ",\"sessionId\":\"amzn1.echo-api.session." + uuid(random)
+                + "\",\"application\":{\"applicationId\":\"" + APPLICATION_ID
+                + "\"},\"attributes\":{" + attributes + "},\"user\":" + user(random) + "}";
+    }
+
+    private static String systemContext(final Random random) {
+        return "{\"System\":" + system(random) + "}";
+    }
+
+    private static String audioPlayerContext(final String token, final long offset,
+            final Random random) {
+        return "{\"AudioPlayer\":{\"token\":\"" + token + "\",\"offsetInMilliseconds\":" + offset
+                + ",\"playerActivity\":\"PLAYING\"},\"System\":" + system(random) + "}";
+    }
+
+    private static String system(final Random random) {
+        return "{\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"},\"user\":"
+                + user(random) + ",\"device\":{\"supportedInterfaces\":{\"AudioPlayer\":{}}}}";
+    }
+
+    private static String user(final Random random) {
+        return "{\"userId\":\"amzn1.ask.account." + uuid(random).toUpperCase(Locale.US) + "\"}";
+    }
+
+    private static String request(final String type, final String locale,
+            final String fields, final Random random) {
+        return "{\"type\":\"" + type + "\",\"requestId\":\"" + requestId(random)
+                + "\",\"timestamp\":\"" + timestamp() + "\",\"locale\":\"" + locale + "\""
+                + fields + "}";
+    }
+
+    private static String requestId(final Random random) {
+        return "amzn1.echo-api.request." + uuid(random);
+    }
+
+    private static String uuid(final Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private static String timestamp() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date());
+    }
+
+    private static byte[] toBytes(final String json) {
+        try {
+            return json.getBytes(Sdk.CHARACTER_ENCODING);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.benchmark;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.benchmark.RequestCorpus.RequestType;
+import com.amazon.speech.benchmark.ServletLoadTest.DelayedSpeechlet;
+import com.amazon.speech.benchmark.ServletLoadTest.Result;
+import com.amazon.speech.speechlet.SpeechletRouter;
+import com.amazon.speech.speechlet.servlet.SpeechletServlet;
+
+/**
+ * Load test of a {@link SpeechletServlet} hosting several skills through a
+ * {@link SpeechletRouter}, in synchronous mode. One skill waits on a slow simulated downstream
+ * call and the others on a fast one; half of the clients send requests to the slow skill and the
+ * other half spread theirs over the fast skills. The test runs once without a limit on concurrent
+ * requests, where the slow skill takes up the container threads, and once with a limit per skill.
+ *
+ * <p>
+ * Options are passed as {@code name=value} arguments: {@code threads} (container threads, default
+ * 16), {@code concurrency} (client connections, default 64), {@code skills} (default 8),
+ * {@code latencyMillis} (latency of the fast skills, default 20), {@code slowLatencyMillis}
+ * (latency of the slow skill, default 1000), {@code maxConcurrentRequests} (limit per skill,
+ * default 4), {@code seconds} (measurement duration per run, default 10).
+ * </p>
+ */
+public final class RouterLoadTest {
+    private static final int CORPUS_SIZE = 64;
+
+    private final int threads;
+    private final int concurrency;
+    private final long latencyMillis;
+    private final long slowLatencyMillis;
+    private final int seconds;
+    private final String[] applicationIds;
+    private final byte[][][] requests;
+    private final String[][] signatures;
+
+    private RouterLoadTest(int threads, int concurrency, int skills, long latencyMillis,
+            long slowLatencyMillis, int seconds) throws Exception {
+        this.threads = threads;
+        this.concurrency = concurrency;
+        this.latencyMillis = latencyMillis;
+        this.slowLatencyMillis = slowLatencyMillis;
+        this.seconds = seconds;
+
+        TestCertificateAuthority certificateAuthority = new TestCertificateAuthority();
+        certificateAuthority.installSigningCertificate();
+        List<byte[]> corpus = RequestCorpus.generate(RequestType.INTENT, CORPUS_SIZE);
+        applicationIds = new String[skills];
+        requests = new byte[skills][CORPUS_SIZE][];
+        signatures = new String[skills][CORPUS_SIZE];
+        for (int skill = 0; skill < skills; skill++) {
+            applicationIds[skill] = RequestCorpus.APPLICATION_ID + "-" + skill;
+            for (int i = 0; i < CORPUS_SIZE; i++) {
+                String request = new String(corpus.get(i), StandardCharsets.UTF_8);
+                requests[skill][i] =
+                        request.replace(RequestCorpus.APPLICATION_ID, applicationIds[skill])
+                                .getBytes(StandardCharsets.UTF_8);
+                signatures[skill][i] = certificateAuthority.sign(requests[skill][i]);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 16;
+        int concurrency = 64;
+        int skills = 8;
+        long latencyMillis = 20;
+        long slowLatencyMillis = 1000;
+        int maxConcurrentRequests = 4;
+        int seconds = 10;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            if ("threads".equals(option[0])) {
+                threads = Integer.parseInt(option[1]);
+            } else if ("concurrency".equals(option[0])) {
+                concurrency = Integer.parseInt(option[1]);
+            } else if ("skills".equals(option[0])) {
+                skills = Integer.parseInt(option[1]);
+            } else if ("latencyMillis".equals(option[0])) {
+                latencyMillis = Long.parseLong(option[1]);
+            } else if ("slowLatencyMillis".equals(option[0])) {
+                slowLatencyMillis = Long.parseLong(option[1]);
+            } else if ("maxConcurrentRequests".equals(option[0])) {
+                maxConcurrentRequests = Integer.parseInt(option[1]);
+            } else if ("seconds".equals(option[0])) {
+                seconds = Integer.parseInt(option[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+        if (skills < 2) {
+            throw new IllegalArgumentException("At least two skills are needed");
+        }
+
+        RouterLoadTest loadTest =
+                new RouterLoadTest(threads, concurrency, skills, latencyMillis,
+                        slowLatencyMillis, seconds);
+        java.lang.System.setProperty(Sdk.SUPPORTED_APPLICATION_IDS_SYSTEM_PROPERTY,
+                StringUtils.join(loadTest.applicationIds, ','));
+        java.lang.System.out.printf("threads=%d concurrency=%d skills=%d latencyMillis=%d "
+                + "slowLatencyMillis=%d seconds=%d%n", threads, concurrency, skills,
+                latencyMillis, slowLatencyMillis, seconds);
+        for (int limit : Arrays.asList(0, maxConcurrentRequests)) {
+            loadTest.run(limit);
+        }
+    }
+
+    private void run(int maxConcurrentRequests) throws Exception {
+        SpeechletRouter.Builder builder =
+                SpeechletRouter.builder().withMaxConcurrentRequests(maxConcurrentRequests);
+        for (int skill = 0; skill < applicationIds.length; skill++) {
+            builder.withRoute(applicationIds[skill], new DelayedSpeechlet(skill == 0
+                    ? slowLatencyMillis : latencyMillis));
+        }
+        SpeechletRouter router = builder.build();
+        SpeechletServlet servlet = new SpeechletServlet();
+        servlet.setSpeechletRouter(router);
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(threads, threads);
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        connector.setPort(0);
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/");
+        context.addServlet(new ServletHolder(servlet), "/skills");
+        server.setHandler(context);
+        server.start();
+
+        try {
+            URL url = new URL("http://localhost:" + connector.getLocalPort() + "/skills");
+            // Warm up for a second before measuring
+            load(url, 1);
+            Result[] results = load(url, seconds);
+            String limit =
+                    (maxConcurrentRequests > 0) ? "limit " + maxConcurrentRequests : "no limit";
+            print(limit, "slow", results[0], router.getRejectedRequestCount(applicationIds[0]));
+            print(limit, "fast", results[1], 0);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void print(String limit, String skills, Result result, long rejected) {
+        java.lang.System.out.printf(
+                "%-8s  %-4s  %8.1f requests/s  %6d errors (%d rejected)  p50 %5d ms  p99 %5d ms%n",
+                limit, skills, result.completed / (double) seconds, result.errors, rejected,
+                result.percentile(0.50), result.percentile(0.99));
+    }
+
+    /**
+     * Runs the clients for the provided duration.
+     *
+     * @return the results of the clients of the slow skill, then of the fast skills
+     */
+    private Result[] load(final URL url, int durationSeconds) throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch done = new CountDownLatch(concurrency);
+        final Result[] results = new Result[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            final int client = i;
+            results[client] = new Result();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int index = client;
+                    while (running.get()) {
+                        // Even clients call the slow skill, odd clients the fast skills in turn
+                        int skill =
+                                (client % 2 == 0) ? 0 : 1 + index % (applicationIds.length - 1);
+                        int request = index++ % CORPUS_SIZE;
+                        long start = java.lang.System.nanoTime();
+                        boolean success =
+                                ServletLoadTest.post(url, requests[skill][request],
+                                        signatures[skill][request]);
+                        results[client].record(success, java.lang.System.nanoTime() - start);
+                    }
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        running.set(false);
+        done.await();
+
+        Result slow = new Result();
+        Result fast = new Result();
+        for (int client = 0; client < concurrency; client++) {
+            (client % 2 == 0 ? slow : fast).add(results[client]);
+        }
+        return new Result[] {
+                slow, fast
+        };
+    }
+}
@@ -0,0 +1,365 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.benchmark.RequestCorpus.RequestType;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.AsyncSpeechletV2;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.SessionEndedRequest;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.SpeechletFuture;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.servlet.SpeechletServlet;
+
+/**
+ * Load test comparing the synchronous and asynchronous modes of {@link SpeechletServlet} at a
+ * fixed container thread count. The servlet runs in an embedded Jetty server configured like the
+ * samples {@code Launcher}, over plain HTTP. The speechlet waits on a simulated downstream call
+ * before answering: by blocking the thread in synchronous mode, and by completing a
+ * {@link SpeechletFuture} from a timer in asynchronous mode.
+ *
+ * <p>
+ * Options are passed as {@code name=value} arguments: {@code threads} (container threads, default
+ * 16), {@code concurrency} (client connections, default 128), {@code latencyMillis} (simulated
+ * downstream latency, default 100), {@code seconds} (measurement duration per mode, default 10).
+ * </p>
+ */
+public final class ServletLoadTest {
+    private static final int CORPUS_SIZE = 256;
+    private static final int ASYNC_EXECUTOR_THREADS = 4;
+
+    private final int threads;
+    private final int concurrency;
+    private final long latencyMillis;
+    private final int seconds;
+    private final byte[][] requests;
+    private final String[] signatures;
+
+    private ServletLoadTest(int threads, int concurrency, long latencyMillis, int seconds)
+            throws Exception {
+        this.threads = threads;
+        this.concurrency = concurrency;
+        this.latencyMillis = latencyMillis;
+        this.seconds = seconds;
+
+        TestCertificateAuthority certificateAuthority = new TestCertificateAuthority();
+        certificateAuthority.installSigningCertificate();
+        List<byte[]> corpus = RequestCorpus.generate(RequestType.INTENT, CORPUS_SIZE);
+        requests = corpus.toArray(new byte[CORPUS_SIZE][]);
+        signatures = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            signatures[i] = certificateAuthority.sign(requests[i]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 16;
+        int concurrency = 128;
+        long latencyMillis = 100;
+        int seconds = 10;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            if ("threads".equals(option[0])) {
+                threads = Integer.parseInt(option[1]);
+            } else if ("concurrency".equals(option[0])) {
+                concurrency = Integer.parseInt(option[1]);
+            } else if ("latencyMillis".equals(option[0])) {
+                latencyMillis = Long.parseLong(option[1]);
+            } else if ("seconds".equals(option[0])) {
+                seconds = Integer.parseInt(option[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        java.lang.System.setProperty(Sdk.SUPPORTED_APPLICATION_IDS_SYSTEM_PROPERTY,
+                RequestCorpus.APPLICATION_ID);
+        ServletLoadTest loadTest = new ServletLoadTest(threads, concurrency, latencyMillis, seconds);
+        java.lang.System.out.printf("threads=%d concurrency=%d latencyMillis=%d seconds=%d%n",
+                threads, concurrency, latencyMillis, seconds);
+        for (boolean async : Arrays.asList(false, true)) {
+            loadTest.run(async);
+        }
+    }
+
+    private void run(boolean async) throws Exception {
+        final ScheduledExecutorService downstream = Executors.newSingleThreadScheduledExecutor();
+        final ExecutorService asyncExecutor = Executors.newFixedThreadPool(ASYNC_EXECUTOR_THREADS);
+
+        SpeechletServlet servlet = new SpeechletServlet();
+        if (async) {
+            servlet.setSpeechlet(new DelayedAsyncSpeechlet(downstream, latencyMillis));
+            servlet.setAsyncExecutor(asyncExecutor);
+        } else {
+            servlet.setSpeechlet(new DelayedSpeechlet(latencyMillis));
+        }
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(threads, threads);
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        connector.setPort(0);
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/");
+        ServletHolder holder = new ServletHolder(servlet);
+        holder.setAsyncSupported(true);
+        context.addServlet(holder, "/speechlet");
+        server.setHandler(context);
+        server.start();
+
+        try {
+            URL url = new URL("http://localhost:" + connector.getLocalPort() + "/speechlet");
+            // Warm up for a second before measuring
+            load(url, 1);
+            Result result = load(url, seconds);
+            java.lang.System.out.printf(
+                    "%-5s  %8.1f requests/s  %6d errors  p50 %5d ms  p99 %5d ms%n",
+                    async ? "async" : "sync", result.completed / (double) seconds, result.errors,
+                    result.percentile(0.50), result.percentile(0.99));
+        } finally {
+            server.stop();
+            asyncExecutor.shutdownNow();
+            downstream.shutdownNow();
+        }
+    }
+
+    private Result load(final URL url, int durationSeconds) throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch done = new CountDownLatch(concurrency);
+        final Result[] results = new Result[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            final int client = i;
+            results[client] = new Result();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int index = client;
+                    while (running.get()) {
+                        int request = index++ % CORPUS_SIZE;
+                        long start = java.lang.System.nanoTime();
+                        boolean success = post(url, requests[request], signatures[request]);
+                        results[client].record(success, java.lang.System.nanoTime() - start);
+                    }
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        running.set(false);
+        done.await();
+
+        Result total = new Result();
+        for (Result result : results) {
+            total.add(result);
+        }
+        return total;
+    }
+
+    static boolean post(URL url, byte[] body, String signature) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty(Sdk.SIGNATURE_REQUEST_HEADER, signature);
+            connection.setRequestProperty(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER,
+                    TestCertificateAuthority.CERTIFICATE_CHAIN_URL);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            int status = connection.getResponseCode();
+            InputStream in =
+                    status == HttpURLConnection.HTTP_OK ? connection.getInputStream()
+                            : connection.getErrorStream();
+            if (in != null) {
+                try {
+                    drain(in);
+                } finally {
+                    in.close();
+                }
+            }
+            return status == HttpURLConnection.HTTP_OK;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Request counts and a latency histogram with one bucket per millisecond.
+     */
+    static final class Result {
+        private static final int MAX_MILLIS = 10000;
+
+        private final long[] histogram = new long[MAX_MILLIS + 1];
+        long completed;
+        long errors;
+
+        void record(boolean success, long nanos) {
+            if (success) {
+                completed++;
+                histogram[(int) Math.min(TimeUnit.NANOSECONDS.toMillis(nanos), MAX_MILLIS)]++;
+            } else {
+                errors++;
+            }
+        }
+
+        void add(Result other) {
+            completed += other.completed;
+            errors += other.errors;
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += other.histogram[i];
+            }
+        }
+
+        long percentile(double percentile) {
+            long target = (long) Math.ceil(completed * percentile);
+            long count = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                count += histogram[i];
+                if (count >= target && count > 0) {
+                    return i;
+                }
+            }
+            return MAX_MILLIS;
+        }
+    }
+
+    /**
+     * Blocks the calling thread for the simulated downstream call.
+     */
+    static final class DelayedSpeechlet implements SpeechletV2 {
+        private final SpeechletV2 delegate = new BenchmarkSpeechlet();
+        private final long latencyMillis;
+
+        DelayedSpeechlet(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public void onSessionStarted(
+                SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+            delegate.onSessionStarted(requestEnvelope);
+        }
+
+        @Override
+        public SpeechletResponse onLaunch(SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+            return delegate.onLaunch(requestEnvelope);
+        }
+
+        @Override
+        public SpeechletResponse onIntent(SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return delegate.onIntent(requestEnvelope);
+        }
+
+        @Override
+        public void onSessionEnded(SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+            delegate.onSessionEnded(requestEnvelope);
+        }
+    }
+
+    /**
+     * Completes the response from a timer after the simulated downstream call.
+     */
+    private static final class DelayedAsyncSpeechlet implements AsyncSpeechletV2 {
+        private final SpeechletV2 delegate = new BenchmarkSpeechlet();
+        private final ScheduledExecutorService downstream;
+        private final long latencyMillis;
+
+        private DelayedAsyncSpeechlet(ScheduledExecutorService downstream, long latencyMillis) {
+            this.downstream = downstream;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public SpeechletFuture<Void> onSessionStarted(
+                SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+            delegate.onSessionStarted(requestEnvelope);
+            return SpeechletFuture.completed(null);
+        }
+
+        @Override
+        public SpeechletFuture<SpeechletResponse> onLaunch(
+                SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+            return SpeechletFuture.completed(delegate.onLaunch(requestEnvelope));
+        }
+
+        @Override
+        public SpeechletFuture<SpeechletResponse> onIntent(
+                final SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+            final SpeechletFuture<SpeechletResponse> response =
+                    new SpeechletFuture<SpeechletResponse>();
+            downstream.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    response.complete(delegate.onIntent(requestEnvelope));
+                }
+            }, latencyMillis, TimeUnit.MILLISECONDS);
+            return response;
+        }
+
+        @Override
+        public SpeechletFuture<Void> onSessionEnded(
+                SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+            delegate.onSessionEnded(requestEnvelope);
+            return SpeechletFuture.completed(null);
+        }
+    }
+}
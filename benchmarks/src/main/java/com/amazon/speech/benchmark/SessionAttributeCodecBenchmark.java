@@ -0,0 +1,190 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.SessionAttributeCodec;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.verifier.ResponseSizeSpeechletResponseVerifier;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Measures the CPU time spent by {@link SessionAttributeCodec} to pack a large attribute into a
+ * response, and to unpack it from the next request, against the response bytes it saves.
+ * <p>
+ * The attribute is a list of events, like the one {@code HistoryBuffSpeechlet} pages through.
+ * Response sizes with and without packing, and their share of the 24 KB limit of
+ * {@link ResponseSizeSpeechletResponseVerifier}, are printed when each trial starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionAttributeCodecBenchmark {
+    private static final int RESPONSE_SIZE_LIMIT = 24 * 1024;
+    private static final String EVENTS_ATTRIBUTE = "text";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Param({
+            "20", "100", "400"
+    })
+    public int events;
+
+    @Param({
+            "1", "6"
+    })
+    public int compressionLevel;
+
+    private SessionAttributeCodec codec;
+    private SpeechletResponseEnvelope responseEnvelope;
+    private byte[] request;
+    private byte[] packedRequest;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec =
+                SessionAttributeCodec
+                        .builder()
+                        .withCompressionLevel(compressionLevel)
+                        .build();
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(EVENTS_ATTRIBUTE, generateEvents(events));
+        attributes.put("index", 3);
+
+        PlainTextOutputSpeech outputSpeech = new PlainTextOutputSpeech();
+        outputSpeech.setText("Here are three more events. Want to go deeper into history?");
+        SpeechletResponse response = new SpeechletResponse();
+        response.setOutputSpeech(outputSpeech);
+        response.setShouldEndSession(false);
+        responseEnvelope = new SpeechletResponseEnvelope();
+        responseEnvelope.setVersion(Sdk.VERSION);
+        responseEnvelope.setResponse(response);
+        responseEnvelope.setSessionAttributes(attributes);
+
+        Map<String, Object> packedAttributes = codec.encode(attributes);
+        request = withAttributes(attributes);
+        packedRequest = withAttributes(packedAttributes);
+
+        int size = responseEnvelope.toJsonBytes().length;
+        responseEnvelope.setSessionAttributes(packedAttributes);
+        int packedSize = responseEnvelope.toJsonBytes().length;
+        responseEnvelope.setSessionAttributes(attributes);
+        System.out.printf("%n%d events: response of %d bytes (%d%% of the limit), "
+                + "packed %d bytes (%d%% of the limit)%n", events, size, size * 100
+                / RESPONSE_SIZE_LIMIT, packedSize, packedSize * 100 / RESPONSE_SIZE_LIMIT);
+
+        List<?> unpacked =
+                SpeechletRequestEnvelope.fromJson(packedRequest).getSession().getAttribute(
+                        EVENTS_ATTRIBUTE, List.class);
+        if (!attributes.get(EVENTS_ATTRIBUTE).equals(unpacked)) {
+            throw new IllegalStateException("Unpacked attribute differs from the original");
+        }
+    }
+
+    /**
+     * Generates events of 15 to 25 words, drawn from a vocabulary where a few words are much more
+     * frequent than the others, as in natural text.
+     */
+    private static List<String> generateEvents(final int count) {
+        Random random = new Random(count);
+        String[] vocabulary = new String[512];
+        for (int i = 0; i < vocabulary.length; i++) {
+            char[] word = new char[3 + random.nextInt(8)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+            vocabulary[i] = new String(word);
+        }
+        List<String> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder event = new StringBuilder().append(1500 + random.nextInt(500));
+            int words = 15 + random.nextInt(11);
+            for (int j = 0; j < words; j++) {
+                double rank = random.nextDouble();
+                int word = (int) (vocabulary.length * rank * rank * rank);
+                event.append(' ').append(vocabulary[word]);
+            }
+            events.add(event.append('.').toString());
+        }
+        return events;
+    }
+
+    /**
+     * Returns an intent request of the corpus carrying the provided session attributes.
+     */
+    private static byte[] withAttributes(final Map<String, Object> attributes)
+            throws IOException {
+        byte[] request = RequestCorpus.generate(RequestCorpus.RequestType.INTENT, 1).get(0);
+        ObjectNode envelope = (ObjectNode) OBJECT_MAPPER.readTree(request);
+        ((ObjectNode) envelope.get("session")).set("attributes",
+                OBJECT_MAPPER.valueToTree(attributes));
+        return OBJECT_MAPPER.writeValueAsBytes(envelope);
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes() throws IOException {
+        return responseEnvelope.toJsonBytes();
+    }
+
+    @Benchmark
+    public byte[] packAndToJsonBytes() throws IOException {
+        Map<String, Object> attributes = responseEnvelope.getSessionAttributes();
+        responseEnvelope.setSessionAttributes(codec.encode(attributes));
+        try {
+            return responseEnvelope.toJsonBytes();
+        } finally {
+            responseEnvelope.setSessionAttributes(attributes);
+        }
+    }
+
+    @Benchmark
+    public Object fromJsonAndRead() throws IOException {
+        return SpeechletRequestEnvelope.fromJson(request).getSession().getAttribute(
+                EVENTS_ATTRIBUTE, List.class);
+    }
+
+    @Benchmark
+    public Object fromJsonAndUnpack() throws IOException {
+        return SpeechletRequestEnvelope.fromJson(packedRequest).getSession().getAttribute(
+                EVENTS_ATTRIBUTE, List.class);
+    }
+}
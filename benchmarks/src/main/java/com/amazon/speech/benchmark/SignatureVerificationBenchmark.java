@@ -0,0 +1,101 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.benchmark.RequestCorpus.RequestType;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerifier;
+
+/**
+ * Compares {@link SpeechletRequestSignatureVerifier#checkRequestSignature}, which reuses an
+ * initialized {@code Signature} engine per thread and decodes the header without intermediate
+ * copies, with the per-request setup it replaced: a new engine, a fresh {@code initVerify} and a
+ * Base64 decode of the header's bytes. Their correctness is covered by
+ * {@code SpeechletRequestSignatureVerifierTest} in the SDK.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureVerificationBenchmark {
+    private static final int CORPUS_SIZE = 64;
+
+    private X509Certificate signingCertificate;
+    private byte[][] requests;
+    private String[] signatures;
+    private int index;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        TestCertificateAuthority certificateAuthority = new TestCertificateAuthority();
+        certificateAuthority.installSigningCertificate();
+        signingCertificate = certificateAuthority.getSigningCertificate();
+
+        List<byte[]> corpus = RequestCorpus.generate(RequestType.MIXED, CORPUS_SIZE);
+        requests = corpus.toArray(new byte[CORPUS_SIZE][]);
+        signatures = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            signatures[i] = certificateAuthority.sign(requests[i]);
+        }
+    }
+
+    private boolean verifyWithPerRequestSetup(final byte[] request, final String signature)
+            throws GeneralSecurityException {
+        Signature engine = Signature.getInstance(Sdk.SIGNATURE_ALGORITHM);
+        engine.initVerify(signingCertificate.getPublicKey());
+        engine.update(request);
+        return engine.verify(Base64.decodeBase64(signature.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private int next() {
+        int current = index;
+        index = (current + 1) % CORPUS_SIZE;
+        return current;
+    }
+
+    @Benchmark
+    public boolean perRequestSetup() throws GeneralSecurityException {
+        int i = next();
+        return verifyWithPerRequestSetup(requests[i], signatures[i]);
+    }
+
+    @Benchmark
+    public void checkRequestSignature() {
+        int i = next();
+        SpeechletRequestSignatureVerifier.checkRequestSignature(requests[i], signatures[i],
+                TestCertificateAuthority.CERTIFICATE_CHAIN_URL);
+    }
+}
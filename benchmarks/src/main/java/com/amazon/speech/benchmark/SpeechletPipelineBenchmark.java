@@ -0,0 +1,251 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.benchmark.RequestCorpus.RequestType;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.AsyncSpeechletV2;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletFuture;
+import com.amazon.speech.speechlet.SpeechletInterceptor;
+import com.amazon.speech.speechlet.SpeechletRequestDispatcher;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponseCache;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.SpeechletV2ToAsyncSpeechletV2Adapter;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerifier;
+import com.amazon.speech.speechlet.lambda.LambdaSpeechletRequestHandler;
+import com.amazon.speech.speechlet.metrics.InMemorySpeechletMetricsListener;
+import com.amazon.speech.speechlet.verifier.CardSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.OutputSpeechSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.ResponseSizeSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletResponseVerifier;
+
+/**
+ * Measures each stage of the speechlet request pipeline on its own, and the whole pipeline end to
+ * end, for every request type in the {@link RequestCorpus}. Each invocation processes the next
+ * request of a pre-generated corpus so that no single payload is measured in isolation.
+ * <p>
+ * Throughput is reported in ops/ms and the sample time mode reports latency percentiles,
+ * including p99. Run through {@link BenchmarkRunner} to also get allocated bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({
+        Mode.Throughput, Mode.SampleTime
+})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpeechletPipelineBenchmark {
+    private static final int CORPUS_SIZE = 256;
+
+    @Param({
+            "LAUNCH", "INTENT", "SESSION_ENDED", "AUDIO_PLAYER", "PLAYBACK_CONTROLLER",
+            "EXCEPTION_ENCOUNTERED", "MIXED"
+    })
+    public RequestType requestType;
+
+    private final SpeechletV2 speechlet = new BenchmarkSpeechlet();
+    private final AsyncSpeechletV2 asyncSpeechlet =
+            new SpeechletV2ToAsyncSpeechletV2Adapter(speechlet);
+    private final List<SpeechletResponseVerifier> responseVerifiers = Arrays.<SpeechletResponseVerifier>asList(
+            new ResponseSizeSpeechletResponseVerifier(),
+            new OutputSpeechSpeechletResponseVerifier(), new CardSpeechletResponseVerifier());
+    private SpeechletRequestHandler requestHandler;
+    private SpeechletRequestHandler measuredRequestHandler;
+    private SpeechletRequestHandler streamingRequestHandler;
+    private SpeechletRequestHandler cachingRequestHandler;
+    private SpeechletRequestHandler interceptedRequestHandler;
+    private SpeechletRequestDispatcher dispatcher;
+    private final ByteArrayOutputStream responseSink = new ByteArrayOutputStream(64 * 1024);
+
+    private byte[][] requests;
+    private String[] signatures;
+    private SpeechletRequestEnvelope<?>[] requestEnvelopes;
+    private SpeechletResponseEnvelope[] responseEnvelopes;
+    private int index;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException, IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        TestCertificateAuthority certificateAuthority = new TestCertificateAuthority();
+        certificateAuthority.installSigningCertificate();
+        requestHandler =
+                new LambdaSpeechletRequestHandler(Collections.singleton(RequestCorpus.APPLICATION_ID));
+        measuredRequestHandler =
+                new LambdaSpeechletRequestHandler(Collections.singleton(RequestCorpus.APPLICATION_ID));
+        measuredRequestHandler.setMetricsListener(new InMemorySpeechletMetricsListener());
+        streamingRequestHandler =
+                new LambdaSpeechletRequestHandler(Collections.singleton(RequestCorpus.APPLICATION_ID));
+        cachingRequestHandler =
+                new LambdaSpeechletRequestHandler(Collections.singleton(RequestCorpus.APPLICATION_ID));
+        cachingRequestHandler.setResponseCache(SpeechletResponseCache.builder().build());
+        interceptedRequestHandler =
+                new LambdaSpeechletRequestHandler(Collections.singleton(RequestCorpus.APPLICATION_ID));
+        interceptedRequestHandler.setInterceptors(Arrays.<SpeechletInterceptor>asList(
+                new PassThroughInterceptor(), new PassThroughInterceptor()));
+        dispatcher = new SpeechletRequestDispatcher(speechlet);
+
+        List<byte[]> corpus = RequestCorpus.generate(requestType, CORPUS_SIZE);
+        requests = corpus.toArray(new byte[CORPUS_SIZE][]);
+        signatures = new String[CORPUS_SIZE];
+        requestEnvelopes = new SpeechletRequestEnvelope<?>[CORPUS_SIZE];
+        responseEnvelopes = new SpeechletResponseEnvelope[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            signatures[i] = certificateAuthority.sign(requests[i]);
+            requestEnvelopes[i] = SpeechletRequestEnvelope.fromJson(requests[i]);
+            responseEnvelopes[i] =
+                    dispatcher.dispatchSpeechletCall(requestEnvelopes[i],
+                            requestEnvelopes[i].getSession());
+        }
+    }
+
+    private int next() {
+        int current = index;
+        index = (current + 1) % CORPUS_SIZE;
+        return current;
+    }
+
+    @Benchmark
+    public void checkRequestSignature() {
+        int i = next();
+        SpeechletRequestSignatureVerifier.checkRequestSignature(requests[i], signatures[i],
+                TestCertificateAuthority.CERTIFICATE_CHAIN_URL);
+    }
+
+    @Benchmark
+    public SpeechletRequestEnvelope<?> fromJson() throws IOException {
+        return SpeechletRequestEnvelope.fromJson(requests[next()]);
+    }
+
+    @Benchmark
+    public SpeechletResponseEnvelope dispatchSpeechletCall() throws IOException,
+            SpeechletException, SpeechletRequestHandlerException {
+        SpeechletRequestEnvelope<?> requestEnvelope = requestEnvelopes[next()];
+        return dispatcher.dispatchSpeechletCall(requestEnvelope, requestEnvelope.getSession());
+    }
+
+    @Benchmark
+    public SpeechletResponseEnvelope createAndDispatchSpeechletCall() throws IOException,
+            SpeechletException, SpeechletRequestHandlerException {
+        SpeechletRequestEnvelope<?> requestEnvelope = requestEnvelopes[next()];
+        return new SpeechletRequestDispatcher(speechlet).dispatchSpeechletCall(requestEnvelope,
+                requestEnvelope.getSession());
+    }
+
+    @Benchmark
+    public boolean verifyResponse() {
+        int i = next();
+        boolean verified = true;
+        for (SpeechletResponseVerifier verifier : responseVerifiers) {
+            verified &= verifier.verify(responseEnvelopes[i], requestEnvelopes[i].getSession());
+        }
+        return verified;
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes() throws IOException {
+        return responseEnvelopes[next()].toJsonBytes();
+    }
+
+    @Benchmark
+    public byte[] handleSpeechletCall() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return requestHandler.handleSpeechletCall(speechlet, requests[next()]);
+    }
+
+    @Benchmark
+    public int streamedHandleSpeechletCall() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        responseSink.reset();
+        streamingRequestHandler.handleSpeechletCall(asyncSpeechlet, requests[next()],
+                responseSink, null);
+        return responseSink.size();
+    }
+
+    @Benchmark
+    public byte[] cachedHandleSpeechletCall() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return cachingRequestHandler.handleSpeechletCall(speechlet, requests[next()]);
+    }
+
+    @Benchmark
+    public byte[] interceptedHandleSpeechletCall() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return interceptedRequestHandler.handleSpeechletCall(speechlet, requests[next()]);
+    }
+
+    @Benchmark
+    public byte[] measuredHandleSpeechletCall() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        return measuredRequestHandler.handleSpeechletCall(speechlet, requests[next()]);
+    }
+
+    @Benchmark
+    public byte[] signedHandleSpeechletCall() throws IOException, SpeechletException,
+            SpeechletRequestHandlerException {
+        int i = next();
+        SpeechletRequestSignatureVerifier.checkRequestSignature(requests[i], signatures[i],
+                TestCertificateAuthority.CERTIFICATE_CHAIN_URL);
+        return requestHandler.handleSpeechletCall(speechlet, requests[i]);
+    }
+
+    /**
+     * Overrides every hook without doing anything, to measure the cost of the interceptor
+     * pipeline itself.
+     */
+    private static final class PassThroughInterceptor extends SpeechletInterceptor {
+        @Override
+        public void beforeParse(byte[] serializedSpeechletRequest, int length) {
+        }
+
+        @Override
+        public void afterParse(SpeechletRequestEnvelope<?> requestEnvelope) {
+        }
+
+        @Override
+        public SpeechletFuture<SpeechletResponseEnvelope> aroundDispatch(
+                SpeechletRequestEnvelope<?> requestEnvelope, Chain chain) {
+            return chain.proceed(requestEnvelope);
+        }
+
+        @Override
+        public void beforeWrite(SpeechletRequestEnvelope<?> requestEnvelope,
+                SpeechletResponseEnvelope responseEnvelope) {
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.benchmark;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Base64;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.speechlet.authentication.SigningCertificateCache;
+import com.amazon.speech.speechlet.authentication.SigningCertificateLoader;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerifier;
+
+/**
+ * A throwaway certificate authority generated in memory. It issues a signing certificate for
+ * {@link Sdk#ECHO_API_DOMAIN_NAME} and signs requests the way the Alexa service does, so request
+ * signature verification can be exercised without network access.
+ */
+public final class TestCertificateAuthority {
+    /**
+     * The certificate chain URL sent with requests signed by this authority. It passes the SDK's
+     * URL checks but is never fetched: the benchmarks load the signing certificate from memory.
+     */
+    public static final String CERTIFICATE_CHAIN_URL =
+            "https://s3.amazonaws.com/echo.api/echo-api-cert-benchmark.pem";
+
+    private static final String CERTIFICATE_SIGNATURE_ALGORITHM = "SHA256withRSA";
+    private static final int KEY_SIZE = 2048;
+
+    private final X509Certificate caCertificate;
+    private final X509Certificate signingCertificate;
+    private final KeyPair signingKeyPair;
+
+    /**
+     * Generates a new CA and signing certificate, both valid for a day.
+     *
+     * @throws GeneralSecurityException
+     *             if key or certificate generation fails
+     */
+    public TestCertificateAuthority() throws GeneralSecurityException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(Sdk.SIGNATURE_KEY_TYPE);
+        keyPairGenerator.initialize(KEY_SIZE);
+        KeyPair caKeyPair = keyPairGenerator.generateKeyPair();
+        signingKeyPair = keyPairGenerator.generateKeyPair();
+
+        Date notBefore = new Date(java.lang.System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+        Date notAfter = new Date(notBefore.getTime() + TimeUnit.DAYS.toMillis(1));
+        X500Name caName = new X500Name("CN=Alexa Skills Kit Benchmark CA");
+
+        try {
+            X509v3CertificateBuilder caBuilder =
+                    new JcaX509v3CertificateBuilder(caName, BigInteger.ONE, notBefore, notAfter,
+                            caName, caKeyPair.getPublic());
+            caBuilder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+            caCertificate = sign(caBuilder, caKeyPair);
+
+            X509v3CertificateBuilder signingBuilder =
+                    new JcaX509v3CertificateBuilder(caName, BigInteger.valueOf(2), notBefore,
+                            notAfter, new X500Name("CN=" + Sdk.ECHO_API_DOMAIN_NAME),
+                            signingKeyPair.getPublic());
+            signingBuilder.addExtension(Extension.subjectAlternativeName, false,
+                    new GeneralNames(new GeneralName(GeneralName.dNSName,
+                            Sdk.ECHO_API_DOMAIN_NAME)));
+            signingCertificate = sign(signingBuilder, caKeyPair);
+        } catch (CertIOException | OperatorCreationException ex) {
+            throw new GeneralSecurityException("Unable to generate test certificates", ex);
+        }
+    }
+
+    private static X509Certificate sign(final X509v3CertificateBuilder builder,
+            final KeyPair issuerKeyPair) throws OperatorCreationException,
+            GeneralSecurityException {
+        return new JcaX509CertificateConverter().getCertificate(builder
+                .build(new JcaContentSignerBuilder(CERTIFICATE_SIGNATURE_ALGORITHM)
+                        .build(issuerKeyPair.getPrivate())));
+    }
+
+    /**
+     * Returns the self-signed CA certificate.
+     *
+     * @return the CA certificate
+     */
+    public X509Certificate getCaCertificate() {
+        return caCertificate;
+    }
+
+    /**
+     * Returns the certificate used to sign requests.
+     *
+     * @return the signing certificate
+     */
+    public X509Certificate getSigningCertificate() {
+        return signingCertificate;
+    }
+
+    /**
+     * Returns a loader serving the signing certificate for {@link #CERTIFICATE_CHAIN_URL} from
+     * memory and rejecting any other URL.
+     *
+     * @return the certificate loader
+     */
+    public SigningCertificateLoader getCertificateLoader() {
+        return new SigningCertificateLoader() {
+            @Override
+            public X509Certificate load(final String signingCertificateChainUrl)
+                    throws CertificateException {
+                if (!CERTIFICATE_CHAIN_URL.equals(signingCertificateChainUrl)) {
+                    throw new CertificateException("Unknown certificate chain URL "
+                            + signingCertificateChainUrl);
+                }
+                return signingCertificate;
+            }
+        };
+    }
+
+    /**
+     * Replaces the certificate cache of {@link SpeechletRequestSignatureVerifier} with one loading
+     * certificates from {@link #getCertificateLoader()}, so that signature checks never try to
+     * download the chain.
+     */
+    public void installSigningCertificate() {
+        SpeechletRequestSignatureVerifier.setCertificateCache(SigningCertificateCache
+                .builder()
+                .withLoader(getCertificateLoader())
+                .build());
+    }
+
+    /**
+     * Signs a serialized request and returns the value of the {@link Sdk#SIGNATURE_REQUEST_HEADER}
+     * header.
+     *
+     * @param serializedSpeechletRequest
+     *            the request bytes
+     * @return the Base64 encoded signature
+     * @throws GeneralSecurityException
+     *             if signing fails
+     */
+    public String sign(final byte[] serializedSpeechletRequest) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(Sdk.SIGNATURE_ALGORITHM);
+        signature.initSign(signingKeyPair.getPrivate());
+        signature.update(serializedSpeechletRequest);
+        return Base64.encodeBase64String(signature.sign());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.json;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.speechlet.Context;
+import com.amazon.speech.speechlet.SupportedInterfaces;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Compares the streaming {@link Context} deserializers with the tree-based path they replaced.
+ * Run with {@code -prof gc} to report allocated bytes per operation next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextDeserializationBenchmark {
+    private static final String CONTEXT_JSON = "{"
+            + "\"AudioPlayer\":{"
+            + "\"token\":\"track-7f3c2a\","
+            + "\"offsetInMilliseconds\":183000,"
+            + "\"playerActivity\":\"PLAYING\"},"
+            + "\"System\":{"
+            + "\"application\":{\"applicationId\":\"amzn1.ask.skill.0f9a6d4e-2b1c-4e57-9c3d\"},"
+            + "\"user\":{\"userId\":\"amzn1.ask.account.AFP3ZWPOS2BGJR7OWJZ3DHPKMOMNWY4AY66FUR7ILBWANIHQN73QH\"},"
+            + "\"device\":{\"supportedInterfaces\":{\"AudioPlayer\":{}}}}}";
+
+    private static final String ENVELOPE_JSON = "{"
+            + "\"version\":\"1.0\","
+            + "\"context\":" + CONTEXT_JSON + ","
+            + "\"request\":{"
+            + "\"type\":\"AudioPlayer.PlaybackNearlyFinished\","
+            + "\"requestId\":\"amzn1.echo-api.request.4d7c5e1a-9b2f-4f0e-8a61\","
+            + "\"timestamp\":\"2016-09-01T18:34:12Z\","
+            + "\"locale\":\"en-US\","
+            + "\"token\":\"track-7f3c2a\","
+            + "\"offsetInMilliseconds\":183000}}";
+
+    private ObjectMapper streamingMapper;
+    private ObjectMapper treeMapper;
+    private byte[] contextBytes;
+    private byte[] envelopeBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        streamingMapper = newMapper();
+        streamingMapper.registerModule(new SpeechletRequestModule());
+
+        SimpleModule treeModule = new SimpleModule();
+        treeModule.addDeserializer(Context.class, new TreeContextDeserializer());
+        treeModule.addDeserializer(SupportedInterfaces.class,
+                new TreeSupportedInterfacesDeserializer());
+        treeMapper = newMapper();
+        treeMapper.registerModule(treeModule);
+
+        contextBytes = CONTEXT_JSON.getBytes(Sdk.CHARACTER_ENCODING);
+        envelopeBytes = ENVELOPE_JSON.getBytes(Sdk.CHARACTER_ENCODING);
+    }
+
+    @Benchmark
+    public Context streamingContext() throws IOException {
+        return streamingMapper.readValue(contextBytes, Context.class);
+    }
+
+    @Benchmark
+    public Context treeContext() throws IOException {
+        return treeMapper.readValue(contextBytes, Context.class);
+    }
+
+    @Benchmark
+    public SpeechletRequestEnvelope<?> streamingEnvelope() throws IOException {
+        return streamingMapper.readValue(envelopeBytes, SpeechletRequestEnvelope.class);
+    }
+
+    @Benchmark
+    public SpeechletRequestEnvelope<?> treeEnvelope() throws IOException {
+        return treeMapper.readValue(envelopeBytes, SpeechletRequestEnvelope.class);
+    }
+
+    /**
+     * Returns a mapper configured the same way as the one used by
+     * {@link SpeechletRequestEnvelope#fromJson(byte[])}.
+     */
+    private static ObjectMapper newMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL, true);
+        return mapper;
+    }
+}
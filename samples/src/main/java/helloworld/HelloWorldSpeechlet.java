@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazon.speech.slu.Intent;
+import com.amazon.speech.speechlet.ConstantSpeechletResponse;
 import com.amazon.speech.speechlet.IntentRequest;
 import com.amazon.speech.speechlet.LaunchRequest;
 import com.amazon.speech.speechlet.Session;
@@ -31,6 +32,14 @@ import com.amazon.speech.ui.SimpleCard;
 public class HelloWorldSpeechlet implements Speechlet {
     private static final Logger log = LoggerFactory.getLogger(HelloWorldSpeechlet.class);
 
+    /**
+     * The welcome and help responses never change, so they are serialized once.
+     */
+    private static final SpeechletResponse WELCOME_RESPONSE = ConstantSpeechletResponse
+            .of(newWelcomeResponse());
+    private static final SpeechletResponse HELP_RESPONSE = ConstantSpeechletResponse
+            .of(newHelpResponse());
+
     @Override
     public void onSessionStarted(final SessionStartedRequest request, final Session session)
             throws SpeechletException {
@@ -44,7 +53,7 @@ public class HelloWorldSpeechlet implements Speechlet {
             throws SpeechletException {
         log.info("onLaunch requestId={}, sessionId={}", request.getRequestId(),
                 session.getSessionId());
-        return getWelcomeResponse();
+        return WELCOME_RESPONSE;
     }
 
     @Override
@@ -59,7 +68,7 @@ public class HelloWorldSpeechlet implements Speechlet {
         if ("HelloWorldIntent".equals(intentName)) {
             return getHelloResponse();
         } else if ("AMAZON.HelpIntent".equals(intentName)) {
-            return getHelpResponse();
+            return HELP_RESPONSE;
         } else {
             throw new SpeechletException("Invalid Intent");
         }
@@ -78,7 +87,7 @@ public class HelloWorldSpeechlet implements Speechlet {
      *
      * @return SpeechletResponse spoken and visual response for the given intent
      */
-    private SpeechletResponse getWelcomeResponse() {
+    private static SpeechletResponse newWelcomeResponse() {
         String speechText = "Welcome to the Alexa Skills Kit, you can say hello";
 
         // Create the Simple card content.
@@ -122,7 +131,7 @@ public class HelloWorldSpeechlet implements Speechlet {
      *
      * @return SpeechletResponse spoken and visual response for the given intent
      */
-    private SpeechletResponse getHelpResponse() {
+    private static SpeechletResponse newHelpResponse() {
         String speechText = "You can say hello to me!";
 
         // Create the Simple card content.
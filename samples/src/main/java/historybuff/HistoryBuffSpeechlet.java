@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,6 +44,7 @@ import com.amazon.speech.ui.PlainTextOutputSpeech;
 import com.amazon.speech.ui.SsmlOutputSpeech;
 import com.amazon.speech.ui.Reprompt;
 import com.amazon.speech.ui.SimpleCard;
+import com.fasterxml.jackson.core.type.TypeReference;
 
 /**
  * This sample shows how to create a Lambda function for handling Alexa Skill requests that:
@@ -341,8 +343,9 @@ public class HistoryBuffSpeechlet implements Speechlet {
      */
     private SpeechletResponse handleNextEventRequest(Session session) {
         String cardTitle = "More events on this day in history";
-        ArrayList<String> events = (ArrayList<String>) session.getAttribute(SESSION_TEXT);
-        int index = (Integer) session.getAttribute(SESSION_INDEX);
+        List<String> events =
+                session.getAttribute(SESSION_TEXT, new TypeReference<List<String>>() {});
+        int index = session.getAttribute(SESSION_INDEX, Integer.class);
         String speechOutput = "";
         String cardOutput = "";
         if (events == null) {
@@ -0,0 +1,89 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.json;
+
+import java.io.IOException;
+
+import com.amazon.speech.speechlet.interfaces.audioplayer.AudioPlayerState;
+import com.amazon.speech.speechlet.interfaces.audioplayer.PlayerActivity;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+/**
+ * Reads an {@link AudioPlayerState} directly from the token stream, dispatching on field name.
+ */
+class AudioPlayerStateDeserializer extends StdDeserializer<AudioPlayerState> implements
+        ResolvableDeserializer {
+    private static final long serialVersionUID = -4668409631961717274L;
+
+    private JsonDeserializer<Object> playerActivityDeserializer;
+
+    AudioPlayerStateDeserializer() {
+        super(AudioPlayerState.class);
+    }
+
+    @Override
+    public void resolve(DeserializationContext context) throws JsonMappingException {
+        // Resolved through the context so READ_UNKNOWN_ENUM_VALUES_AS_NULL is honored
+        playerActivityDeserializer =
+                context.findRootValueDeserializer(context.getTypeFactory().constructType(
+                        PlayerActivity.class));
+    }
+
+    @Override
+    public AudioPlayerState deserialize(JsonParser parser, DeserializationContext context)
+            throws IOException {
+        AudioPlayerState.Builder audioPlayerStateBuilder = AudioPlayerState.builder();
+
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String fieldName = parser.getCurrentName();
+            token = parser.nextToken();
+
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            if ("offsetInMilliseconds".equals(fieldName)) {
+                Long offsetInMilliseconds = _parseLong(parser, context);
+                if (offsetInMilliseconds != null) {
+                    audioPlayerStateBuilder.withOffsetInMilliseconds(offsetInMilliseconds);
+                }
+            } else if ("token".equals(fieldName)) {
+                audioPlayerStateBuilder.withToken(_parseString(parser, context));
+            } else if ("playerActivity".equals(fieldName)) {
+                audioPlayerStateBuilder
+                        .withPlayerActivity((PlayerActivity) playerActivityDeserializer
+                                .deserialize(parser, context));
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (token != JsonToken.END_OBJECT) {
+            throw context.mappingException(AudioPlayerState.class, token);
+        }
+
+        return audioPlayerStateBuilder.build();
+    }
+}
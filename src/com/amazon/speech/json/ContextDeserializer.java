@@ -18,30 +18,64 @@ import java.io.IOException;
 import com.amazon.speech.speechlet.Context;
 import com.amazon.speech.speechlet.State;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 
-class ContextDeserializer extends StdDeserializer<Context> {
+/**
+ * Reads a {@link Context} in a single pass over the token stream. Each field is dispatched on its
+ * name to the deserializer of the matching {@link State}, so no intermediate tree is built.
+ */
+class ContextDeserializer extends StdDeserializer<Context> implements ResolvableDeserializer {
+    private JsonDeserializer<?>[] stateDeserializers;
+
     ContextDeserializer() {
         super(Context.class);
     }
 
+    @Override
+    public void resolve(DeserializationContext context) throws JsonMappingException {
+        SerializedInterface[] serializedInterfaces = SerializedInterface.values();
+        stateDeserializers = new JsonDeserializer<?>[serializedInterfaces.length];
+        for (SerializedInterface serializedInterface : serializedInterfaces) {
+            stateDeserializers[serializedInterface.ordinal()] =
+                    context.findRootValueDeserializer(context.getTypeFactory().constructType(
+                            serializedInterface.getStateClass()));
+        }
+    }
+
     @Override
     public Context deserialize(JsonParser parser, DeserializationContext context)
             throws IOException {
-        ObjectMapper underlyingMapper = ((ObjectMapper) parser.getCodec());
-        JsonNode messageNode = parser.readValueAsTree();
         Context.Builder contextBuilder = Context.builder();
 
-        for (SerializedInterface interfaceName : SerializedInterface.values()) {
-            if (messageNode.has(interfaceName.name())) {
-                State<?> state =
-                        underlyingMapper.convertValue(messageNode.get(interfaceName.name()),
-                                interfaceName.getStateClass());
-                contextBuilder.addState(state);
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            SerializedInterface serializedInterface =
+                    SerializedInterface.forName(parser.getCurrentName());
+            token = parser.nextToken();
+
+            if (serializedInterface == null || token == JsonToken.VALUE_NULL) {
+                // Forward compatibility: states of interfaces we don't know about are ignored
+                parser.skipChildren();
+                continue;
             }
+
+            State<?> state =
+                    (State<?>) stateDeserializers[serializedInterface.ordinal()].deserialize(
+                            parser, context);
+            contextBuilder.addState(state);
+        }
+
+        if (token != JsonToken.END_OBJECT) {
+            throw context.mappingException(Context.class, token);
         }
 
         return contextBuilder.build();
@@ -13,6 +13,9 @@
 
 package com.amazon.speech.json;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.amazon.speech.speechlet.Interface;
 import com.amazon.speech.speechlet.State;
 import com.amazon.speech.speechlet.interfaces.audioplayer.AudioPlayerInterface;
@@ -24,6 +27,14 @@ enum SerializedInterface {
     AudioPlayer(AudioPlayerInterface.class, AudioPlayerState.class),
     System(SystemInterface.class, SystemState.class);
 
+    private static final Map<String, SerializedInterface> BY_NAME =
+            new HashMap<String, SerializedInterface>();
+    static {
+        for (SerializedInterface serializedInterface : values()) {
+            BY_NAME.put(serializedInterface.name(), serializedInterface);
+        }
+    }
+
     private final Class<? extends Interface> interfaceClass;
     private final Class<? extends State> stateClass;
 
@@ -33,6 +44,19 @@ enum SerializedInterface {
         this.stateClass = stateClass;
     }
 
+    /**
+     * Returns the interface serialized under the provided JSON field name, or {@code null} if the
+     * name is not known to this version of the SDK. Unlike {@link #valueOf(String)}, this method
+     * does not throw for unknown names, which are expected as new interfaces are added.
+     *
+     * @param name
+     *            the JSON field name
+     * @return the matching interface, or {@code null}
+     */
+    static SerializedInterface forName(final String name) {
+        return BY_NAME.get(name);
+    }
+
     protected <T extends Interface> Class<T> getInterfaceClass() {
         return (Class<T>) interfaceClass;
     }
@@ -0,0 +1,199 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A {@link SpeechletResponseEnvelope} together with its JSON serialization. The envelope is
+ * serialized once, and the result is shared by the response verifiers, which can inspect its
+ * size, and the transport, which writes the bytes out.
+ * <p>
+ * The envelope must not be modified once it has been serialized, as the changes would not be
+ * reflected in the bytes.
+ * <p>
+ * An envelope serialized with {@link #serializeToThreadBuffer(SpeechletResponseEnvelope)} is
+ * written into a buffer reused by the calling thread instead of a new array. Its bytes are only
+ * valid until {@link #release()} is called, which must happen on the same thread.
+ */
+public final class SerializedSpeechletResponseEnvelope {
+    /**
+     * Initial size of the reused buffers, large enough for most responses.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+
+    /**
+     * Buffers grown beyond this size by an unusually large response are not kept for reuse.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Buffer of each thread, removed while in use so that a nested serialization gets its own.
+     * Only the array is kept, so that the thread does not hold on to classes of this SDK.
+     */
+    private static final ThreadLocal<byte[]> THREAD_BUFFER = new ThreadLocal<byte[]>();
+
+    private final SpeechletResponseEnvelope responseEnvelope;
+    private final byte[] json;
+    private final int size;
+    private final boolean threadBuffer;
+
+    /**
+     * Private constructor to return a new {@code SerializedSpeechletResponseEnvelope} from
+     * {@link #serialize(SpeechletResponseEnvelope)}.
+     *
+     * @param responseEnvelope
+     *            the envelope that was serialized
+     * @param json
+     *            the UTF-8 encoded JSON
+     */
+    private SerializedSpeechletResponseEnvelope(final SpeechletResponseEnvelope responseEnvelope,
+            final byte[] json) {
+        this.responseEnvelope = responseEnvelope;
+        this.json = json;
+        this.size = json.length;
+        this.threadBuffer = false;
+    }
+
+    /**
+     * Private constructor to return a new {@code SerializedSpeechletResponseEnvelope} from
+     * {@link #serializeToThreadBuffer(SpeechletResponseEnvelope)}.
+     *
+     * @param responseEnvelope
+     *            the envelope that was serialized
+     * @param buffer
+     *            the buffer holding the UTF-8 encoded JSON
+     */
+    private SerializedSpeechletResponseEnvelope(final SpeechletResponseEnvelope responseEnvelope,
+            final ResponseBuffer buffer) {
+        this.responseEnvelope = responseEnvelope;
+        this.json = buffer.array();
+        this.size = buffer.size();
+        this.threadBuffer = true;
+    }
+
+    /**
+     * Serializes the provided envelope.
+     *
+     * @param responseEnvelope
+     *            the envelope to serialize
+     * @return the serialized envelope
+     * @throws IOException
+     *             if serialization fails
+     */
+    public static SerializedSpeechletResponseEnvelope serialize(
+            final SpeechletResponseEnvelope responseEnvelope) throws IOException {
+        return new SerializedSpeechletResponseEnvelope(responseEnvelope,
+                responseEnvelope.toJsonBytes());
+    }
+
+    /**
+     * Serializes the provided envelope into a buffer reused by the calling thread, to avoid
+     * allocating an array for each response that is only written out. The result must be released
+     * with {@link #release()} on the same thread once its bytes have been written.
+     *
+     * @param responseEnvelope
+     *            the envelope to serialize
+     * @return the serialized envelope
+     * @throws IOException
+     *             if serialization fails
+     */
+    public static SerializedSpeechletResponseEnvelope serializeToThreadBuffer(
+            final SpeechletResponseEnvelope responseEnvelope) throws IOException {
+        byte[] array = THREAD_BUFFER.get();
+        if (array == null) {
+            array = new byte[INITIAL_BUFFER_SIZE];
+        } else {
+            THREAD_BUFFER.remove();
+        }
+
+        ResponseBuffer buffer = new ResponseBuffer(array);
+        try {
+            responseEnvelope.toJson(buffer);
+        } catch (IOException | RuntimeException e) {
+            THREAD_BUFFER.set(array);
+            throw e;
+        }
+        return new SerializedSpeechletResponseEnvelope(responseEnvelope, buffer);
+    }
+
+    /**
+     * Returns the envelope that was serialized.
+     *
+     * @return the response envelope
+     */
+    public SpeechletResponseEnvelope getResponseEnvelope() {
+        return responseEnvelope;
+    }
+
+    /**
+     * Returns the size of the serialized envelope in bytes.
+     *
+     * @return the size in bytes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the UTF-8 encoded JSON. The array is not copied and must not be modified, unless the
+     * envelope was serialized into a reused buffer, in which case a copy is returned.
+     *
+     * @return the JSON as bytes
+     */
+    public byte[] getJsonBytes() {
+        return threadBuffer ? Arrays.copyOf(json, size) : json;
+    }
+
+    /**
+     * Writes the UTF-8 encoded JSON to an {@code OutputStream}, in a single call to
+     * {@link OutputStream#write(byte[], int, int)}.
+     *
+     * @param out
+     *            the OutputStream to write to
+     * @throws IOException
+     *             if writing fails
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        out.write(json, 0, size);
+    }
+
+    /**
+     * Hands the buffer holding the JSON back to the current thread for reuse by the next
+     * serialization. Does nothing if the envelope was not serialized into a reused buffer.
+     */
+    public void release() {
+        if (threadBuffer && json.length <= MAX_RETAINED_BUFFER_SIZE) {
+            THREAD_BUFFER.set(json);
+        }
+    }
+
+    /**
+     * A {@code ByteArrayOutputStream} exposing its array, so that the JSON can be written out
+     * without copying it first.
+     */
+    private static final class ResponseBuffer extends ByteArrayOutputStream {
+        ResponseBuffer(final byte[] array) {
+            super(0);
+            buf = array;
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
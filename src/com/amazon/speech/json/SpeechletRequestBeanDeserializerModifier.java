@@ -15,6 +15,8 @@ package com.amazon.speech.json;
 
 import com.amazon.speech.speechlet.Context;
 import com.amazon.speech.speechlet.SupportedInterfaces;
+import com.amazon.speech.speechlet.interfaces.audioplayer.AudioPlayerState;
+import com.amazon.speech.speechlet.interfaces.system.SystemState;
 import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.DeserializationConfig;
 import com.fasterxml.jackson.databind.JsonDeserializer;
@@ -28,6 +30,10 @@ class SpeechletRequestBeanDeserializerModifier extends BeanDeserializerModifier
             return new ContextDeserializer();
         } else if (SupportedInterfaces.class.isAssignableFrom(beanDesc.getBeanClass())) {
             return new SupportedInterfacesDeserializer();
+        } else if (AudioPlayerState.class.isAssignableFrom(beanDesc.getBeanClass())) {
+            return new AudioPlayerStateDeserializer();
+        } else if (SystemState.class.isAssignableFrom(beanDesc.getBeanClass())) {
+            return new SystemStateDeserializer();
         } else {
             return deserializer;
         }
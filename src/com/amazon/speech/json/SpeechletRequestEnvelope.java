@@ -19,7 +19,9 @@ import java.io.InputStream;
 import com.amazon.speech.Sdk;
 import com.amazon.speech.speechlet.Context;
 import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletDeadline;
 import com.amazon.speech.speechlet.SpeechletRequest;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -57,6 +59,7 @@ public class SpeechletRequestEnvelope<T extends SpeechletRequest> {
     private final Session session;
     private final Context context;
     private final T request;
+    private final SpeechletDeadline deadline;
 
     /**
      * Returns a new builder instance used to construct a new {@code SpeechletRequestEnvelope}.
@@ -78,6 +81,7 @@ public class SpeechletRequestEnvelope<T extends SpeechletRequest> {
         session = builder.session;
         context = builder.context;
         request = builder.request;
+        deadline = builder.deadline;
     }
 
     /**
@@ -98,6 +102,7 @@ public class SpeechletRequestEnvelope<T extends SpeechletRequest> {
         this.session = session;
         this.context = context;
         this.request = request;
+        this.deadline = null;
     }
 
     // ---------
@@ -142,6 +147,17 @@ public class SpeechletRequestEnvelope<T extends SpeechletRequest> {
         return request;
     }
 
+    /**
+     * Returns the time left to answer the request, set by a handler with a
+     * {@link com.amazon.speech.speechlet.SpeechletDeadlinePolicy}.
+     *
+     * @return the deadline, or {@code null} if the request has none
+     */
+    @JsonIgnore
+    public SpeechletDeadline getDeadline() {
+        return deadline;
+    }
+
     // ---------------------
     // JSON deserialization
 
@@ -173,6 +189,25 @@ public class SpeechletRequestEnvelope<T extends SpeechletRequest> {
         return OBJECT_MAPPER.readValue(json, SpeechletRequestEnvelope.class);
     }
 
+    /**
+     * Read a {@code SpeechletRequestEnvelope} from a region of a byte array, such as a reused
+     * buffer. The bytes must be UTF-8 encoded.
+     *
+     * @param json
+     *            the bytes to read from
+     * @param offset
+     *            the index of the first byte to read
+     * @param length
+     *            the number of bytes to read
+     * @return the envelope read from the bytes
+     * @throws IOException
+     *             if deserialization fails
+     */
+    public static SpeechletRequestEnvelope<?> fromJson(final byte[] json, final int offset,
+            final int length) throws IOException {
+        return OBJECT_MAPPER.readValue(json, offset, length, SpeechletRequestEnvelope.class);
+    }
+
     /**
      * Read a {@code SpeechletRequestEnvelope} from a {@code String}.
      *
@@ -194,6 +229,7 @@ public class SpeechletRequestEnvelope<T extends SpeechletRequest> {
         private Session session;
         private Context context;
         private T request;
+        private SpeechletDeadline deadline;
 
         private Builder() {
         }
@@ -218,6 +254,11 @@ public class SpeechletRequestEnvelope<T extends SpeechletRequest> {
             return this;
         }
 
+        public Builder<T> withDeadline(final SpeechletDeadline deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
         public SpeechletRequestEnvelope<T> build() {
             return new SpeechletRequestEnvelope<T>(this);
         }
@@ -135,4 +135,19 @@ public class SpeechletResponseEnvelope {
     public String toJsonString() throws IOException {
         return OBJECT_MAPPER.writeValueAsString(this);
     }
+
+    /**
+     * Write a {@code SpeechletResponse} as a JSON {@code String}, as it is written into the
+     * {@code response} property of an envelope.
+     *
+     * @param response
+     *            the response to write
+     * @return the JSON as a String
+     * @throws IOException
+     *             if serialization fails
+     */
+    public static String responseToJsonString(final SpeechletResponse response)
+            throws IOException {
+        return OBJECT_MAPPER.writeValueAsString(response);
+    }
 }
@@ -18,30 +18,66 @@ import java.io.IOException;
 import com.amazon.speech.speechlet.Interface;
 import com.amazon.speech.speechlet.SupportedInterfaces;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 
-class SupportedInterfacesDeserializer extends StdDeserializer<SupportedInterfaces> {
+/**
+ * Reads {@link SupportedInterfaces} in a single pass over the token stream. Each field is
+ * dispatched on its name to the deserializer of the matching {@link Interface}, so no
+ * intermediate tree is built.
+ */
+class SupportedInterfacesDeserializer extends StdDeserializer<SupportedInterfaces> implements
+        ResolvableDeserializer {
+    private JsonDeserializer<?>[] interfaceDeserializers;
+
     SupportedInterfacesDeserializer() {
         super(SupportedInterfaces.class);
     }
 
+    @Override
+    public void resolve(DeserializationContext context) throws JsonMappingException {
+        SerializedInterface[] serializedInterfaces = SerializedInterface.values();
+        interfaceDeserializers = new JsonDeserializer<?>[serializedInterfaces.length];
+        for (SerializedInterface serializedInterface : serializedInterfaces) {
+            interfaceDeserializers[serializedInterface.ordinal()] =
+                    context.findRootValueDeserializer(context.getTypeFactory().constructType(
+                            serializedInterface.getInterfaceClass()));
+        }
+    }
+
     @Override
     public SupportedInterfaces deserialize(JsonParser parser, DeserializationContext context)
             throws IOException {
-        ObjectMapper underlyingMapper = ((ObjectMapper) parser.getCodec());
-        JsonNode messageNode = parser.readValueAsTree();
         SupportedInterfaces.Builder supportedInterfacesBuilder = SupportedInterfaces.builder();
 
-        for (SerializedInterface interfaceName : SerializedInterface.values()) {
-            if (messageNode.has(interfaceName.name())) {
-                Interface supportedInterface =
-                        underlyingMapper.convertValue(messageNode.get(interfaceName.name()),
-                                interfaceName.getInterfaceClass());
-                supportedInterfacesBuilder.addSupportedInterface(supportedInterface);
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            SerializedInterface serializedInterface =
+                    SerializedInterface.forName(parser.getCurrentName());
+            token = parser.nextToken();
+
+            if (serializedInterface == null || token == JsonToken.VALUE_NULL) {
+                // Forward compatibility: interfaces we don't know about are ignored
+                parser.skipChildren();
+                continue;
             }
+
+            Interface supportedInterface =
+                    (Interface) interfaceDeserializers[serializedInterface.ordinal()].deserialize(
+                            parser, context);
+            supportedInterfacesBuilder.addSupportedInterface(supportedInterface);
+        }
+
+        if (token != JsonToken.END_OBJECT) {
+            throw context.mappingException(SupportedInterfaces.class, token);
         }
 
         return supportedInterfacesBuilder.build();
@@ -0,0 +1,95 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.json;
+
+import java.io.IOException;
+
+import com.amazon.speech.speechlet.Application;
+import com.amazon.speech.speechlet.Device;
+import com.amazon.speech.speechlet.User;
+import com.amazon.speech.speechlet.interfaces.system.SystemState;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+/**
+ * Reads a {@link SystemState} directly from the token stream, dispatching on field name.
+ */
+class SystemStateDeserializer extends StdDeserializer<SystemState> implements
+        ResolvableDeserializer {
+    private static final long serialVersionUID = 7930985950810409339L;
+
+    private JsonDeserializer<Object> applicationDeserializer;
+    private JsonDeserializer<Object> userDeserializer;
+    private JsonDeserializer<Object> deviceDeserializer;
+
+    SystemStateDeserializer() {
+        super(SystemState.class);
+    }
+
+    @Override
+    public void resolve(DeserializationContext context) throws JsonMappingException {
+        applicationDeserializer =
+                context.findRootValueDeserializer(context.getTypeFactory().constructType(
+                        Application.class));
+        userDeserializer =
+                context.findRootValueDeserializer(context.getTypeFactory().constructType(
+                        User.class));
+        deviceDeserializer =
+                context.findRootValueDeserializer(context.getTypeFactory().constructType(
+                        Device.class));
+    }
+
+    @Override
+    public SystemState deserialize(JsonParser parser, DeserializationContext context)
+            throws IOException {
+        SystemState.Builder systemStateBuilder = SystemState.builder();
+
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String fieldName = parser.getCurrentName();
+            token = parser.nextToken();
+
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            if ("application".equals(fieldName)) {
+                systemStateBuilder.withApplication((Application) applicationDeserializer
+                        .deserialize(parser, context));
+            } else if ("user".equals(fieldName)) {
+                systemStateBuilder.withUser((User) userDeserializer.deserialize(parser, context));
+            } else if ("device".equals(fieldName)) {
+                systemStateBuilder.withDevice((Device) deviceDeserializer.deserialize(parser,
+                        context));
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (token != JsonToken.END_OBJECT) {
+            throw context.mappingException(SystemState.class, token);
+        }
+
+        return systemStateBuilder.build();
+    }
+}
@@ -0,0 +1,221 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.verifier.AdvisorySpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.ContentSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletResponseWarnings;
+
+/**
+ * <p>
+ * Takes the {@link AdvisorySpeechletResponseVerifier}s of a {@link SpeechletRequestHandler} off
+ * the path of each response. These verifiers, such as the card, output speech and response size
+ * verifiers set by default, never reject a response and only warn about it. Set it on a handler
+ * with
+ * {@link SpeechletRequestHandler#setAdvisoryResponseVerification(AdvisoryResponseVerification)}.
+ * </p>
+ *
+ * <ul>
+ * <li>Advisory verifiers check a sampled fraction of the responses, once the response is written,
+ * instead of every response before it is written.</li>
+ * <li>With an executor, they check responses on the executor instead of the thread handling the
+ * request. Responses the executor rejects are not checked.</li>
+ * <li>Their warnings are counted by {@link SpeechletResponseWarnings}, which only logs the first
+ * occurrence of each warning, instead of logged for each response.</li>
+ * <li>The other verifiers still verify every response before it is written.</li>
+ * </ul>
+ */
+public final class AdvisoryResponseVerification {
+    private static final Logger log = LoggerFactory.getLogger(AdvisoryResponseVerification.class);
+
+    private static final double DEFAULT_SAMPLE_RATE = 1.0;
+
+    private final double sampleRate;
+    private final Executor executor;
+    private final SpeechletResponseWarnings warnings = new SpeechletResponseWarnings();
+    private final AtomicLong checkedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private AdvisoryResponseVerification(final Builder builder) {
+        sampleRate = builder.sampleRate;
+        executor = builder.executor;
+    }
+
+    /**
+     * Checks a written response with the advisory verifiers among the provided ones, if it is
+     * sampled.
+     *
+     * @param verifiers
+     *            the response verifiers of the handler
+     * @param responseEnvelope
+     *            the response, which must not be modified once written
+     * @param responseSize
+     *            the size of the serialized response in bytes
+     * @param session
+     *            the session of the request
+     */
+    void check(final List<SpeechletResponseVerifier> verifiers,
+            final SpeechletResponseEnvelope responseEnvelope, final int responseSize,
+            final Session session) {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            skippedCount.incrementAndGet();
+            return;
+        }
+        if (executor == null) {
+            run(verifiers, responseEnvelope, responseSize, session);
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    AdvisoryResponseVerification.this.run(verifiers, responseEnvelope,
+                            responseSize, session);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private void run(final List<SpeechletResponseVerifier> verifiers,
+            final SpeechletResponseEnvelope responseEnvelope, final int responseSize,
+            final Session session) {
+        final ConstantSpeechletResponse constantResponse =
+                responseEnvelope.getResponse() instanceof ConstantSpeechletResponse
+                        ? (ConstantSpeechletResponse) responseEnvelope.getResponse() : null;
+        for (SpeechletResponseVerifier verifier : verifiers) {
+            if (!(verifier instanceof AdvisorySpeechletResponseVerifier)) {
+                continue;
+            }
+            // A constant response is checked only once by verifiers inspecting only its contents
+            boolean verifiedOnce =
+                    constantResponse != null
+                            && verifier instanceof ContentSpeechletResponseVerifier;
+            if (verifiedOnce && constantResponse.isVerifiedBy(verifier)) {
+                continue;
+            }
+            try {
+                ((AdvisorySpeechletResponseVerifier) verifier).check(responseEnvelope,
+                        responseSize, session, warnings);
+            } catch (RuntimeException e) {
+                log.warn("Advisory response verifier {} failed", verifier
+                        .getClass()
+                        .getSimpleName(), e);
+            }
+            if (verifiedOnce) {
+                constantResponse.setVerifiedBy(verifier);
+            }
+        }
+        checkedCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the warnings reported by the advisory verifiers.
+     *
+     * @return the warning counts
+     */
+    public SpeechletResponseWarnings getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Returns the number of responses checked by the advisory verifiers.
+     *
+     * @return the checked response count
+     */
+    public long getCheckedCount() {
+        return checkedCount.get();
+    }
+
+    /**
+     * Returns the number of responses left out of the sample.
+     *
+     * @return the skipped response count
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Returns the number of sampled responses the executor rejected.
+     *
+     * @return the dropped response count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Builder for {@link AdvisoryResponseVerification}.
+     */
+    public static final class Builder {
+        private double sampleRate = DEFAULT_SAMPLE_RATE;
+        private Executor executor;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the fraction of the responses checked by the advisory verifiers, between 0 and 1,
+         * 1 by default.
+         *
+         * @param sampleRate
+         *            the sample rate
+         * @return this builder
+         */
+        public Builder withSampleRate(final double sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Sets the executor on which the advisory verifiers check responses. By default, they
+         * check responses on the thread handling the request, once the response is written.
+         *
+         * @param executor
+         *            the executor, or {@code null} to check responses on the thread handling the
+         *            request
+         * @return this builder
+         */
+        public Builder withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public AdvisoryResponseVerification build() {
+            Validate.isTrue(sampleRate >= 0 && sampleRate <= 1,
+                    "Sample rate must be between 0 and 1");
+            return new AdvisoryResponseVerification(this);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+
+/**
+ * <p>
+ * An asynchronous variant of {@link SpeechletV2}. Each life-cycle method returns a
+ * {@link SpeechletFuture} instead of blocking the calling thread, which allows a skill waiting on
+ * downstream services to release the thread until the response is available.
+ * </p>
+ *
+ * <p>
+ * Exceptions may either be thrown directly or reported by failing the returned future; both are
+ * handled the same way. Existing {@link SpeechletV2} implementations can be used wherever an
+ * {@code AsyncSpeechletV2} is expected through {@link SpeechletV2ToAsyncSpeechletV2Adapter}.
+ * </p>
+ *
+ * @see SpeechletV2
+ */
+public interface AsyncSpeechletV2 {
+    /**
+     * Used to notify that a new session started as a result of a user interacting with the device.
+     * The request that started the session is dispatched once the returned future completes.
+     *
+     * @param requestEnvelope
+     *            the session started request envelope
+     * @return a future completed once the session is initialized
+     */
+    SpeechletFuture<Void> onSessionStarted(
+            SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope);
+
+    /**
+     * Entry point for handling a speech initiated request to start the skill without providing an
+     * {@code Intent}.
+     *
+     * @param requestEnvelope
+     *            the launch request envelope
+     * @return a future completed with the response, spoken and visual, to the request
+     * @see SpeechletV2#onLaunch(SpeechletRequestEnvelope)
+     */
+    SpeechletFuture<SpeechletResponse> onLaunch(
+            SpeechletRequestEnvelope<LaunchRequest> requestEnvelope);
+
+    /**
+     * Entry point for handling speech initiated requests.
+     *
+     * @param requestEnvelope
+     *            the intent request envelope to handle
+     * @return a future completed with the response, spoken and visual, to the request
+     * @see SpeechletV2#onIntent(SpeechletRequestEnvelope)
+     */
+    SpeechletFuture<SpeechletResponse> onIntent(
+            SpeechletRequestEnvelope<IntentRequest> requestEnvelope);
+
+    /**
+     * Callback used to notify that the session ended as a result of the user interacting, or not
+     * interacting with the device.
+     *
+     * @param requestEnvelope
+     *            the end of session request envelope
+     * @return a future completed once the session end is handled
+     * @see SpeechletV2#onSessionEnded(SpeechletRequestEnvelope)
+     */
+    SpeechletFuture<Void> onSessionEnded(
+            SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope);
+}
@@ -0,0 +1,160 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.verifier.ContentSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletResponseVerifier;
+import com.amazon.speech.ui.Card;
+import com.amazon.speech.ui.OutputSpeech;
+import com.amazon.speech.ui.Reprompt;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * <p>
+ * A {@link SpeechletResponse} that is the same for every request, such as the answer to a help or
+ * stop intent. Create it once, for instance in a static field, and return it from the speechlet as
+ * any other response:
+ * </p>
+ *
+ * <pre>
+ * private static final SpeechletResponse HELP_RESPONSE = ConstantSpeechletResponse
+ *         .of(SpeechletResponse.newAskResponse(speech, reprompt));
+ * </pre>
+ *
+ * <ul>
+ * <li>The response is serialized when it is created, and its JSON is copied into the envelope of
+ * each response as pre-encoded bytes. Only the version and session attributes of the envelope are
+ * serialized for each request.</li>
+ * <li>The {@link SpeechletRequestHandler} verifies it with each
+ * {@link ContentSpeechletResponseVerifier} the first time it is returned, and not again. Other
+ * verifiers, such as the response size verifier, which also counts the session attributes, still
+ * verify every response.</li>
+ * <li>Its setters throw an {@code UnsupportedOperationException}. The output speech, card,
+ * reprompt and directives it was created with must not be modified either, as the changes would
+ * not be reflected in its JSON.</li>
+ * </ul>
+ */
+@JsonSerialize(using = ConstantSpeechletResponse.Serializer.class)
+public final class ConstantSpeechletResponse extends SpeechletResponse {
+    private final SerializedString json;
+    private final Set<SpeechletResponseVerifier> verifiedBy = Collections
+            .newSetFromMap(new ConcurrentHashMap<SpeechletResponseVerifier, Boolean>());
+
+    private ConstantSpeechletResponse(final SpeechletResponse response) throws IOException {
+        super.setOutputSpeech(response.getOutputSpeech());
+        super.setCard(response.getCard());
+        super.setReprompt(response.getReprompt());
+        super.setShouldEndSession(response.getShouldEndSession());
+        if (response.getDirectives() != null) {
+            super.setDirectives(Collections.unmodifiableList(new ArrayList<>(response
+                    .getDirectives())));
+        }
+        json = new SerializedString(SpeechletResponseEnvelope.responseToJsonString(response));
+        // Encodes the JSON now rather than on the first request
+        json.asUnquotedUTF8();
+    }
+
+    /**
+     * Returns a constant response with the contents of the provided response, serialized once.
+     *
+     * @param response
+     *            the response to copy
+     * @return the constant response
+     * @throws IllegalArgumentException
+     *             if the response cannot be serialized
+     */
+    public static ConstantSpeechletResponse of(final SpeechletResponse response) {
+        Validate.notNull(response, "Response cannot be null");
+        if (response instanceof ConstantSpeechletResponse) {
+            return (ConstantSpeechletResponse) response;
+        }
+        try {
+            return new ConstantSpeechletResponse(response);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to serialize response", e);
+        }
+    }
+
+    /**
+     * Returns whether this response was already accepted by the provided verifier.
+     */
+    boolean isVerifiedBy(final SpeechletResponseVerifier verifier) {
+        return verifiedBy.contains(verifier);
+    }
+
+    /**
+     * Records that this response was accepted by the provided verifier.
+     */
+    void setVerifiedBy(final SpeechletResponseVerifier verifier) {
+        verifiedBy.add(verifier);
+    }
+
+    @Override
+    public void setOutputSpeech(final OutputSpeech outputSpeech) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public void setShouldEndSession(final boolean shouldEndSession) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public void setCard(final Card card) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public void setDirectives(final List<Directive> directives) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public void setReprompt(final Reprompt reprompt) {
+        throw unmodifiable();
+    }
+
+    private static UnsupportedOperationException unmodifiable() {
+        return new UnsupportedOperationException("A ConstantSpeechletResponse cannot be modified");
+    }
+
+    /**
+     * Writes the JSON of a constant response as it was serialized when the response was created.
+     */
+    static final class Serializer extends JsonSerializer<ConstantSpeechletResponse> {
+        @Override
+        public void serialize(final ConstantSpeechletResponse response,
+                final JsonGenerator generator, final SerializerProvider provider)
+                throws IOException {
+            // Writes the separator preceding the value, then the pre-encoded value itself
+            generator.writeRawValue("");
+            generator.writeRaw(response.json);
+        }
+    }
+}
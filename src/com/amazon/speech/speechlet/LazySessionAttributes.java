@@ -0,0 +1,516 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * The attributes of a {@link Session} deserialized from a request. Object and array values are
+ * kept as buffered JSON tokens and only decoded the first time they are read, either into the
+ * generic maps and lists of untyped deserialization or directly into the type requested with
+ * {@link Session#getAttribute(String, Class)}. Attributes packed by a {@link SessionAttributeCodec}
+ * are unpacked the same way, as are attributes restored from their JSON encoding with
+ * {@link #putEncoded(String, byte[])}. Values never read are written back to the response from
+ * their tokens, packed as they were received or from their JSON encoding, without being decoded
+ * and encoded again. {@link Session#setAttribute(String, Object)} and
+ * {@link Session#removeAttribute(String)} do not decode the value they replace or remove either,
+ * unlike {@link #put(String, Object)}, {@link #remove(Object)} and the {@code setValue} of the
+ * entries, which have to return it.
+ */
+@JsonSerialize(using = LazySessionAttributes.Serializer.class)
+final class LazySessionAttributes extends AbstractMap<String, Object> {
+    private static final Logger log = LoggerFactory.getLogger(LazySessionAttributes.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    /**
+     * Returns the attribute with the provided name, decoding it into the provided type if needed.
+     * A value of another type, for instance a generic map decoded by {@link #get(Object)}, is
+     * converted. The decoded or converted value replaces the attribute, so changes made to it
+     * are sent back with the response.
+     *
+     * @param name
+     *            the name of the attribute
+     * @param type
+     *            the type of the attribute
+     * @param <T>
+     *            the type of the attribute
+     * @return the value or {@code null}
+     * @throws IllegalArgumentException
+     *             if the value cannot be decoded into the provided type
+     */
+    <T> T get(final String name, final Class<T> type) {
+        Object value = values.get(name);
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        return get(name, value, OBJECT_MAPPER.constructType(type));
+    }
+
+    /**
+     * Returns the attribute with the provided name, decoding it into the provided generic type if
+     * needed, as {@link #get(String, Class)} does. A value already decoded is converted, since
+     * the type arguments of its class cannot be checked.
+     *
+     * @param name
+     *            the name of the attribute
+     * @param type
+     *            the type of the attribute
+     * @param <T>
+     *            the type of the attribute
+     * @return the value or {@code null}
+     * @throws IllegalArgumentException
+     *             if the value cannot be decoded into the provided type
+     */
+    <T> T get(final String name, final TypeReference<T> type) {
+        Object value = values.get(name);
+        if (value == null) {
+            return null;
+        }
+        return get(name, value, OBJECT_MAPPER.getTypeFactory().constructType(type));
+    }
+
+    private <T> T get(final String name, final Object value, final JavaType type) {
+        T typedValue;
+        if (value instanceof EncodedValue) {
+            try {
+                typedValue = ((EncodedValue) value).decode(type);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unable to decode session attribute " + name
+                        + " as " + type, e);
+            }
+        } else {
+            typedValue = OBJECT_MAPPER.convertValue(value, type);
+        }
+        values.put(name, typedValue);
+        return typedValue;
+    }
+
+    /**
+     * Converts a decoded attribute into the provided type.
+     */
+    static <T> T convert(final Object value, final Class<T> type) {
+        return OBJECT_MAPPER.convertValue(value, type);
+    }
+
+    /**
+     * Converts a decoded attribute into the provided generic type.
+     */
+    static <T> T convert(final Object value, final TypeReference<T> type) {
+        return OBJECT_MAPPER.convertValue(value, type);
+    }
+
+    /**
+     * Returns the attribute values, where values that were not decoded yet are kept encoded.
+     */
+    Map<String, Object> rawValues() {
+        return values;
+    }
+
+    /**
+     * Adds or replaces an attribute without decoding the value it replaces, unlike
+     * {@link #put(String, Object)} which has to return it.
+     */
+    void set(final String name, final Object value) {
+        values.put(name, value);
+    }
+
+    /**
+     * Removes an attribute without decoding its value, unlike {@link #remove(Object)} which has
+     * to return it.
+     */
+    void delete(final String name) {
+        values.remove(name);
+    }
+
+    /**
+     * Adds or replaces an attribute from its JSON encoding, which is only decoded when the
+     * attribute is read.
+     */
+    void putEncoded(final String name, final byte[] json) {
+        values.put(name, new EncodedValue(json));
+    }
+
+    /**
+     * Returns whether an attribute still holds the JSON encoding provided to
+     * {@link #putEncoded(String, byte[])}, that is it was neither set, removed nor read since.
+     */
+    boolean isEncoded(final String name) {
+        Object value = values.get(name);
+        return value instanceof EncodedValue && ((EncodedValue) value).json != null;
+    }
+
+    /**
+     * Decodes the JSON encoding of an attribute.
+     */
+    static Object decode(final byte[] json) throws IOException {
+        return OBJECT_MAPPER.readValue(json, Object.class);
+    }
+
+    /**
+     * Returns a copy of these attributes sharing the values that were not decoded yet.
+     */
+    LazySessionAttributes copy() {
+        LazySessionAttributes copy = new LazySessionAttributes();
+        copy.values.putAll(values);
+        return copy;
+    }
+
+    /**
+     * Returns whether a value of {@link #rawValues()} is an attribute still packed.
+     */
+    static boolean isPacked(final Object rawValue) {
+        return rawValue instanceof EncodedValue && ((EncodedValue) rawValue).packed != null;
+    }
+
+    /**
+     * Returns the JSON encoding of a value of {@link #rawValues()}, or of a decoded value.
+     */
+    static byte[] toJson(final Object rawValue) throws IOException {
+        if (!(rawValue instanceof EncodedValue)) {
+            return OBJECT_MAPPER.writeValueAsBytes(rawValue);
+        }
+        if (((EncodedValue) rawValue).json != null) {
+            return ((EncodedValue) rawValue).json;
+        }
+        ByteArrayOutputStream json = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(json)) {
+            ((EncodedValue) rawValue).serialize(generator);
+        }
+        return json.toByteArray();
+    }
+
+    @Override
+    public Object get(final Object name) {
+        Object value = values.get(name);
+        if (value instanceof EncodedValue) {
+            value = ((EncodedValue) value).decode();
+            values.put((String) name, value);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(final Object name) {
+        return values.containsKey(name);
+    }
+
+    @Override
+    public Object put(final String name, final Object value) {
+        Object previous = values.put(name, value);
+        return (previous instanceof EncodedValue) ? ((EncodedValue) previous).decode() : previous;
+    }
+
+    @Override
+    public Object remove(final Object name) {
+        Object previous = values.remove(name);
+        return (previous instanceof EncodedValue) ? ((EncodedValue) previous).decode() : previous;
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public void clear() {
+        values.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                final Iterator<Map.Entry<String, Object>> entries = values.entrySet().iterator();
+                return new Iterator<Map.Entry<String, Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        return new Entry(entries.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+        };
+    }
+
+    /**
+     * An entry of the attributes, whose value is only decoded when it is read, so that iterating
+     * over the names of the attributes does not decode them.
+     */
+    private static final class Entry implements Map.Entry<String, Object> {
+        private final Map.Entry<String, Object> entry;
+
+        private Entry(final Map.Entry<String, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public Object getValue() {
+            Object value = entry.getValue();
+            if (value instanceof EncodedValue) {
+                value = ((EncodedValue) value).decode();
+                entry.setValue(value);
+            }
+            return value;
+        }
+
+        @Override
+        public Object setValue(final Object value) {
+            Object previous = entry.setValue(value);
+            return (previous instanceof EncodedValue) ? ((EncodedValue) previous).decode()
+                    : previous;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> otherEntry = (Map.Entry<?, ?>) other;
+            Object value = getValue();
+            return getKey().equals(otherEntry.getKey())
+                    && (value == null ? otherEntry.getValue() == null : value.equals(otherEntry
+                            .getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /**
+     * An object or array attribute, a packed attribute or an attribute restored from its JSON
+     * encoding, that was not decoded yet.
+     */
+    private static final class EncodedValue {
+        private final TokenBuffer tokens;
+        private final String packed;
+        private final byte[] json;
+
+        private EncodedValue(final TokenBuffer tokens) {
+            this.tokens = tokens;
+            this.packed = null;
+            this.json = null;
+        }
+
+        private EncodedValue(final String packed) {
+            this.tokens = null;
+            this.packed = packed;
+            this.json = null;
+        }
+
+        private EncodedValue(final byte[] json) {
+            this.tokens = null;
+            this.packed = null;
+            this.json = json;
+        }
+
+        private void serialize(final JsonGenerator generator) throws IOException {
+            if (tokens != null) {
+                tokens.serialize(generator);
+            } else if (json != null) {
+                try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json)) {
+                    parser.nextToken();
+                    generator.copyCurrentStructure(parser);
+                }
+            } else {
+                generator.writeString(packed);
+            }
+        }
+
+        private Object decode() {
+            try {
+                if (tokens != null) {
+                    return OBJECT_MAPPER.readValue(tokens.asParser(OBJECT_MAPPER), Object.class);
+                }
+                if (json != null) {
+                    return OBJECT_MAPPER.readValue(json, Object.class);
+                }
+                return OBJECT_MAPPER.readValue(SessionAttributeCodec.unpack(packed),
+                        Object.class);
+            } catch (IOException e) {
+                if (packed != null) {
+                    return unpackFailed(e);
+                }
+                if (json != null) {
+                    throw new IllegalArgumentException(
+                            "Unable to decode restored session attribute", e);
+                }
+                // The tokens were read from a valid document
+                throw new IllegalStateException("Unable to decode buffered session attribute", e);
+            }
+        }
+
+        private <T> T decode(final JavaType type) throws IOException {
+            if (tokens != null) {
+                return OBJECT_MAPPER.readValue(tokens.asParser(OBJECT_MAPPER), type);
+            }
+            if (json != null) {
+                return OBJECT_MAPPER.readValue(json, type);
+            }
+            byte[] unpacked;
+            try {
+                unpacked = SessionAttributeCodec.unpack(packed);
+            } catch (IOException e) {
+                return OBJECT_MAPPER.convertValue(unpackFailed(e), type);
+            }
+            return OBJECT_MAPPER.readValue(unpacked, type);
+        }
+
+        /**
+         * Falls back to the string received, which only looked like a packed attribute.
+         */
+        private String unpackFailed(final IOException e) {
+            log.warn("Unable to unpack session attribute, reading it as a string: {}",
+                    e.getMessage());
+            return packed;
+        }
+    }
+
+    /**
+     * Reads the attributes of a session, buffering object and array values and reading scalar
+     * values as untyped deserialization does.
+     */
+    static final class Deserializer extends JsonDeserializer<Map<String, Object>> {
+        @Override
+        public Map<String, Object> deserialize(final JsonParser parser,
+                final DeserializationContext context) throws IOException {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                throw context.mappingException(Map.class);
+            }
+            LazySessionAttributes attributes = new LazySessionAttributes();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                Object value;
+                switch (token) {
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        TokenBuffer tokens = new TokenBuffer(parser);
+                        tokens.copyCurrentStructure(parser);
+                        value = new EncodedValue(tokens);
+                        break;
+                    case VALUE_STRING:
+                        String text = parser.getText();
+                        value =
+                                SessionAttributeCodec.isPacked(text) ? new EncodedValue(text)
+                                        : text;
+                        break;
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT:
+                        value = parser.getNumberValue();
+                        break;
+                    case VALUE_TRUE:
+                        value = Boolean.TRUE;
+                        break;
+                    case VALUE_FALSE:
+                        value = Boolean.FALSE;
+                        break;
+                    case VALUE_NULL:
+                        value = null;
+                        break;
+                    default:
+                        throw context.mappingException(Map.class, token);
+                }
+                attributes.values.put(name, value);
+            }
+            return attributes;
+        }
+
+        @Override
+        public Map<String, Object> getNullValue() {
+            return new LazySessionAttributes();
+        }
+    }
+
+    /**
+     * Writes the attributes of a session, copying the tokens of values that were not decoded and
+     * the strings of attributes still packed.
+     */
+    static final class Serializer extends JsonSerializer<LazySessionAttributes> {
+        @Override
+        public void serialize(final LazySessionAttributes attributes,
+                final JsonGenerator generator, final SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject();
+            for (Map.Entry<String, Object> attribute : attributes.values.entrySet()) {
+                generator.writeFieldName(attribute.getKey());
+                Object value = attribute.getValue();
+                if (value instanceof EncodedValue) {
+                    ((EncodedValue) value).serialize(generator);
+                } else {
+                    provider.defaultSerializeValue(value, generator);
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public boolean isEmpty(final LazySessionAttributes attributes) {
+            return attributes.isEmpty();
+        }
+    }
+}
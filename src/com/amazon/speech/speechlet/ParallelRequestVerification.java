@@ -0,0 +1,122 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.verifier.IoBoundSpeechletRequestEnvelopeVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
+
+/**
+ * The I/O-bound verifiers of a request running on the verifier executor of a
+ * {@link SpeechletRequestHandler}. Its result completes once every verifier accepted the request,
+ * or as soon as one rejects it, in which case the verifiers not started yet are skipped.
+ */
+final class ParallelRequestVerification {
+    private final SpeechletRequestEnvelope<?> requestEnvelope;
+    private final SpeechletFuture<Void> result = new SpeechletFuture<Void>();
+    private final AtomicInteger remaining;
+    private volatile boolean cancelled;
+
+    private ParallelRequestVerification(final SpeechletRequestEnvelope<?> requestEnvelope,
+            final int count) {
+        this.requestEnvelope = requestEnvelope;
+        this.remaining = new AtomicInteger(count);
+    }
+
+    /**
+     * Starts the I/O-bound verifiers among the provided ones on the executor. A verifier the
+     * executor rejects runs on the calling thread.
+     *
+     * @return the verification, or {@code null} if none of the verifiers is I/O-bound
+     */
+    static ParallelRequestVerification start(
+            final List<SpeechletRequestEnvelopeVerifier> verifiers,
+            final SpeechletRequestEnvelope<?> requestEnvelope, final Executor executor) {
+        List<SpeechletRequestEnvelopeVerifier> ioBoundVerifiers = null;
+        for (SpeechletRequestEnvelopeVerifier verifier : verifiers) {
+            if (verifier instanceof IoBoundSpeechletRequestEnvelopeVerifier) {
+                if (ioBoundVerifiers == null) {
+                    ioBoundVerifiers = new ArrayList<SpeechletRequestEnvelopeVerifier>(2);
+                }
+                ioBoundVerifiers.add(verifier);
+            }
+        }
+        if (ioBoundVerifiers == null) {
+            return null;
+        }
+
+        final ParallelRequestVerification verification =
+                new ParallelRequestVerification(requestEnvelope, ioBoundVerifiers.size());
+        for (final SpeechletRequestEnvelopeVerifier verifier : ioBoundVerifiers) {
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    verification.verify(verifier);
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        return verification;
+    }
+
+    /**
+     * Returns the future completed once every verifier accepted the request, or failed with the
+     * first rejection.
+     */
+    SpeechletFuture<Void> getResult() {
+        return result;
+    }
+
+    /**
+     * Skips the verifiers not started yet, once the request is rejected by another verifier.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void verify(final SpeechletRequestEnvelopeVerifier verifier) {
+        if (cancelled) {
+            return;
+        }
+        try {
+            if (!verifier.verify(requestEnvelope)) {
+                fail(SpeechletRequestHandler.newRequestVerificationFailure(
+                        requestEnvelope.getRequest(), verifier));
+                return;
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        if (remaining.decrementAndGet() == 0) {
+            result.complete(null);
+        }
+    }
+
+    private void fail(final Exception failure) {
+        cancelled = true;
+        result.completeExceptionally(failure);
+    }
+}
@@ -13,6 +13,7 @@
 
 package com.amazon.speech.speechlet;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +22,8 @@ import org.apache.commons.lang3.Validate;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 /**
  * <p>
@@ -56,6 +59,13 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * </p>
  *
  * <p>
+ * Attributes received with a request are only decoded when they are read, and can be read as a
+ * specific type with {@link #getAttribute(String, Class)}. Attributes that are not read are sent
+ * back with the response without being decoded. Attributes packed by a
+ * {@link SessionAttributeCodec} are unpacked the same way, when they are read.
+ * </p>
+ *
+ * <p>
  * If the {@code SpeechletV2} throws an exception, modifications to the attributes up to that point
  * are applied, even if the request was not processed successfully.
  * </p>
@@ -121,7 +131,9 @@ public class Session {
     private Session(@JsonProperty("new") final boolean isNew,
             @JsonProperty("sessionId") final String sessionId,
             @JsonProperty("application") final Application application,
-            @JsonProperty("attributes") final Map<String, Object> attributes,
+            @JsonProperty("attributes") @JsonDeserialize(
+                    using = LazySessionAttributes.Deserializer.class)
+            final Map<String, Object> attributes,
             @JsonProperty("user") final User user) {
         this.isNew = isNew;
         this.sessionId = sessionId;
@@ -197,6 +209,69 @@ public class Session {
         return attributes.get(name);
     }
 
+    /**
+     * Returns the attribute associated with the provided name as an instance of the provided type.
+     * Attributes of a session received with a request are decoded directly into that type the
+     * first time they are read, while a value already decoded into another type, such as the map
+     * returned by {@link #getAttribute(String)} for a JSON object, is converted. The returned value
+     * replaces the attribute, so changes made to it are sent back with the response.
+     *
+     * @param name
+     *            the name of the attribute to retrieve
+     * @param type
+     *            the type of the attribute, such as a class mapped to the JSON object it holds
+     * @param <T>
+     *            the type of the attribute
+     * @return the value or {@code null}
+     * @throws IllegalArgumentException
+     *             if the attribute cannot be decoded or converted into the provided type
+     */
+    public <T> T getAttribute(final String name, final Class<T> type) {
+        if (attributes instanceof LazySessionAttributes) {
+            return ((LazySessionAttributes) attributes).get(name, type);
+        }
+        Object value = attributes.get(name);
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        T typedValue = LazySessionAttributes.convert(value, type);
+        attributes.put(name, typedValue);
+        return typedValue;
+    }
+
+    /**
+     * Returns the attribute associated with the provided name as an instance of the provided
+     * generic type, such as a list of a given element type, as {@link #getAttribute(String, Class)}
+     * does. For example:
+     *
+     * <pre>
+     * List&lt;String&gt; events = session.getAttribute(&quot;events&quot;,
+     *         new TypeReference&lt;List&lt;String&gt;&gt;() {});
+     * </pre>
+     *
+     * @param name
+     *            the name of the attribute to retrieve
+     * @param type
+     *            the generic type of the attribute
+     * @param <T>
+     *            the type of the attribute
+     * @return the value or {@code null}
+     * @throws IllegalArgumentException
+     *             if the attribute cannot be decoded or converted into the provided type
+     */
+    public <T> T getAttribute(final String name, final TypeReference<T> type) {
+        if (attributes instanceof LazySessionAttributes) {
+            return ((LazySessionAttributes) attributes).get(name, type);
+        }
+        Object value = attributes.get(name);
+        if (value == null) {
+            return null;
+        }
+        T typedValue = LazySessionAttributes.convert(value, type);
+        attributes.put(name, typedValue);
+        return typedValue;
+    }
+
     /**
      * Add or modify the attribute with the provided name.
      *
@@ -206,6 +281,10 @@ public class Session {
      *            the new value for the attribute
      */
     public void setAttribute(final String name, final Object value) {
+        if (attributes instanceof LazySessionAttributes) {
+            ((LazySessionAttributes) attributes).set(name, value);
+            return;
+        }
         attributes.put(name, value);
     }
 
@@ -216,9 +295,53 @@ public class Session {
      *            the name of the attribute to remove
      */
     public void removeAttribute(final String name) {
+        if (attributes instanceof LazySessionAttributes) {
+            ((LazySessionAttributes) attributes).delete(name);
+            return;
+        }
         attributes.remove(name);
     }
 
+    /**
+     * Adds or modifies the attribute with the provided name from its JSON encoding. Like the
+     * attributes of a session received with a request, the attribute is only decoded when it is
+     * read, and is sent back with the response without being decoded if it is not.
+     *
+     * @param name
+     *            the name of the attribute to set
+     * @param json
+     *            the JSON encoding of the attribute
+     * @throws IllegalArgumentException
+     *             if the attributes of this session are decoded eagerly and the provided JSON
+     *             cannot be decoded
+     * @see #isEncodedAttribute(String)
+     */
+    public void setEncodedAttribute(final String name, final byte[] json) {
+        if (attributes instanceof LazySessionAttributes) {
+            ((LazySessionAttributes) attributes).putEncoded(name, json);
+            return;
+        }
+        try {
+            attributes.put(name, LazySessionAttributes.decode(json));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to decode session attribute " + name, e);
+        }
+    }
+
+    /**
+     * Returns whether the attribute with the provided name still holds the JSON encoding set with
+     * {@link #setEncodedAttribute(String, byte[])}, that is it was neither set, removed nor read
+     * since, so its value cannot have changed.
+     *
+     * @param name
+     *            the name of the attribute
+     * @return whether the attribute is still encoded
+     */
+    public boolean isEncodedAttribute(final String name) {
+        return attributes instanceof LazySessionAttributes
+                && ((LazySessionAttributes) attributes).isEncoded(name);
+    }
+
     /**
      * Returns the user associated with this session.
      *
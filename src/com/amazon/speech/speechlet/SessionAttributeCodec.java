@@ -0,0 +1,295 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.lang3.Validate;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+
+/**
+ * <p>
+ * Packs large session attributes into compact strings before they are sent back with the
+ * response, keeping skills that carry lists or long texts from turn to turn under the response
+ * size limit of the Alexa service. Set it on a handler with
+ * {@link SpeechletRequestHandler#setSessionAttributeCodec(SessionAttributeCodec)}.
+ * </p>
+ *
+ * <ul>
+ * <li>An attribute is packed when its JSON encoding is at least as large as the threshold, and only
+ * if packing makes it smaller. Smaller attributes, numbers and booleans are sent as they are.</li>
+ * <li>A packed attribute is the string {@value #PACKED_PREFIX} followed by the Base64 encoding of
+ * its JSON encoding compressed with raw DEFLATE, without header or checksum.</li>
+ * <li>Packed attributes are unpacked when they are read from a {@link Session}, whether or not a
+ * codec is set, so the attributes seen by the speechlet are the same with and without it. Packed
+ * attributes that are not read are sent back as they were received.</li>
+ * </ul>
+ *
+ * <p>
+ * Counters of the attributes packed and of the bytes saved are available for monitoring.
+ * </p>
+ */
+public final class SessionAttributeCodec {
+    /**
+     * The prefix of packed attribute values, which also identifies the version of the format.
+     */
+    public static final String PACKED_PREFIX = "~z1:";
+
+    private static final int DEFAULT_THRESHOLD = 512;
+    private static final int MAX_UNPACKED_SIZE = 1024 * 1024; // 1 MB
+    private static final Base64Variant BASE64 = Base64Variants.MIME_NO_LINEFEEDS;
+
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private final int threshold;
+    private final int compressionLevel;
+    private final ThreadLocal<Deflater> deflater = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(compressionLevel, true);
+        }
+    };
+    private final AtomicLong packedCount = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private SessionAttributeCodec(final Builder builder) {
+        threshold = builder.threshold;
+        compressionLevel = builder.compressionLevel;
+    }
+
+    /**
+     * Returns the attributes to send back with a response, with large attributes packed. The
+     * provided map is not modified.
+     *
+     * @param attributes
+     *            the session attributes of the response
+     * @return the provided attributes if none was packed, or a copy with the packed attributes
+     * @throws IOException
+     *             if an attribute cannot be encoded as JSON
+     */
+    public Map<String, Object> encode(final Map<String, Object> attributes) throws IOException {
+        if (attributes == null || attributes.isEmpty()) {
+            return attributes;
+        }
+        Map<String, Object> values =
+                (attributes instanceof LazySessionAttributes) ? ((LazySessionAttributes) attributes)
+                        .rawValues() : attributes;
+        Map<String, Object> encoded = null;
+        Map<String, Object> encodedValues = null;
+        for (Map.Entry<String, Object> attribute : values.entrySet()) {
+            Object value = attribute.getValue();
+            if (!isCandidate(value)) {
+                continue;
+            }
+            byte[] json = LazySessionAttributes.toJson(value);
+            if (json.length < threshold) {
+                continue;
+            }
+            String packed = pack(json);
+            // The packed value is written as a JSON string, with its quotes
+            int saved = json.length - (packed.length() + 2);
+            if (saved <= 0) {
+                continue;
+            }
+            if (encoded == null) {
+                if (attributes instanceof LazySessionAttributes) {
+                    LazySessionAttributes copy = ((LazySessionAttributes) attributes).copy();
+                    encoded = copy;
+                    encodedValues = copy.rawValues();
+                } else {
+                    encoded = new LinkedHashMap<>(attributes);
+                    encodedValues = encoded;
+                }
+            }
+            encodedValues.put(attribute.getKey(), packed);
+            packedCount.incrementAndGet();
+            savedBytes.addAndGet(saved);
+        }
+        return (encoded != null) ? encoded : attributes;
+    }
+
+    /**
+     * Returns whether an attribute may be large enough to be packed, without encoding it.
+     */
+    private boolean isCandidate(final Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean
+                || LazySessionAttributes.isPacked(value)) {
+            return false;
+        }
+        if (value instanceof String) {
+            // A character takes at most three bytes in UTF-8, and a string two more for its quotes
+            String string = (String) value;
+            return !isPacked(string) && string.length() * 3 + 2 >= threshold;
+        }
+        return true;
+    }
+
+    /**
+     * Compresses and encodes the JSON encoding of an attribute.
+     */
+    private String pack(final byte[] json) {
+        Deflater compressor = deflater.get();
+        compressor.reset();
+        compressor.setInput(json);
+        compressor.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 2 + 16);
+        byte[] buffer = new byte[Math.min(json.length + 16, 8192)];
+        while (!compressor.finished()) {
+            int length = compressor.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+        return PACKED_PREFIX + BASE64.encode(compressed.toByteArray());
+    }
+
+    /**
+     * Returns whether a string attribute is a packed attribute.
+     *
+     * @param value
+     *            the value of the attribute
+     * @return whether the value starts with {@value #PACKED_PREFIX}
+     */
+    public static boolean isPacked(final String value) {
+        return value.startsWith(PACKED_PREFIX);
+    }
+
+    /**
+     * Returns the JSON encoding of a packed attribute.
+     *
+     * @param packed
+     *            the packed attribute
+     * @return the JSON encoding of the attribute
+     * @throws IOException
+     *             if the value is not a valid packed attribute
+     */
+    static byte[] unpack(final String packed) throws IOException {
+        byte[] compressed;
+        try {
+            compressed = BASE64.decode(packed.substring(PACKED_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Packed session attribute is not valid Base64", e);
+        }
+        Inflater decompressor = INFLATER.get();
+        decompressor.reset();
+        decompressor.setInput(compressed);
+        ByteArrayOutputStream json = new ByteArrayOutputStream(compressed.length * 4);
+        byte[] buffer = new byte[Math.min(compressed.length * 4 + 64, 8192)];
+        try {
+            while (!decompressor.finished()) {
+                int length = decompressor.inflate(buffer);
+                if (length == 0 && (decompressor.needsInput() || decompressor.needsDictionary())) {
+                    throw new IOException("Packed session attribute is truncated");
+                }
+                json.write(buffer, 0, length);
+                if (json.size() > MAX_UNPACKED_SIZE) {
+                    throw new IOException("Packed session attribute exceeds "
+                            + MAX_UNPACKED_SIZE + " bytes");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Packed session attribute is not valid DEFLATE data", e);
+        }
+        return json.toByteArray();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Returns the number of attributes packed.
+     *
+     * @return the packed count
+     */
+    public long getPackedCount() {
+        return packedCount.get();
+    }
+
+    /**
+     * Returns the number of response bytes saved by packing attributes.
+     *
+     * @return the saved bytes
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    /**
+     * Builder for {@link SessionAttributeCodec}.
+     */
+    public static final class Builder {
+        private int threshold = DEFAULT_THRESHOLD;
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the size of the JSON encoding from which an attribute is packed, 512 bytes by
+         * default.
+         *
+         * @param threshold
+         *            the threshold in bytes
+         * @return this builder
+         */
+        public Builder withThreshold(final int threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the DEFLATE compression level, from 1 (fastest) to 9 (smallest). The default level
+         * of {@link Deflater} is used by default.
+         *
+         * @param compressionLevel
+         *            the compression level
+         * @return this builder
+         */
+        public Builder withCompressionLevel(final int compressionLevel) {
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        public SessionAttributeCodec build() {
+            Validate.isTrue(threshold > 0, "Threshold must be positive");
+            Validate.isTrue(compressionLevel == Deflater.DEFAULT_COMPRESSION
+                    || (compressionLevel >= Deflater.BEST_SPEED
+                    && compressionLevel <= Deflater.BEST_COMPRESSION),
+                    "Compression level must be between 1 and 9");
+            return new SessionAttributeCodec(this);
+        }
+    }
+}
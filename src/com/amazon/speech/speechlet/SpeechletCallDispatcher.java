@@ -0,0 +1,37 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+
+/**
+ * Dispatches a verified request to the speechlet handling it, on behalf of the
+ * {@link SpeechletRequestHandler}. Implemented by {@link SpeechletRequestDispatcher} for a single
+ * speechlet and by {@link SpeechletRouter} for several speechlets behind one endpoint.
+ */
+interface SpeechletCallDispatcher {
+    /**
+     * Dispatches the provided request without waiting for the speechlet to produce its response.
+     *
+     * @param requestEnvelope
+     *            the current request
+     * @param session
+     *            the session of the request
+     * @return a future completed with the response envelope
+     */
+    SpeechletFuture<SpeechletResponseEnvelope> dispatchSpeechletCallAsync(
+            SpeechletRequestEnvelope<?> requestEnvelope, Session session);
+}
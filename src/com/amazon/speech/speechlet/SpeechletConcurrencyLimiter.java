@@ -0,0 +1,296 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+
+/**
+ * <p>
+ * Limits how many requests the speechlet handles concurrently, adapting the limit to the observed
+ * latency of the speechlet. Set it on a handler with
+ * {@link SpeechletRequestHandler#setConcurrencyLimiter(SpeechletConcurrencyLimiter)}. A request
+ * arriving while the limit is reached is answered at once with a lightweight "try again later"
+ * response instead of waiting for a thread, so that a slow downstream service does not take up
+ * every thread of the container and the latency of all requests with it.
+ * </p>
+ *
+ * <ul>
+ * <li>The limit follows additive increase, multiplicative decrease (AIMD). Each request completed
+ * within the latency threshold, while at least half of the limit was in use, raises the limit by
+ * one over the course of a limit's worth of requests. A request completed above the threshold, or
+ * failing, lowers it by the backoff ratio, unless it started before the limit was last lowered:
+ * the requests in flight at that time were admitted under the previous limit.</li>
+ * <li>The limit stays between the minimum and maximum limits, and starts at the initial limit.</li>
+ * <li>Requests answered with the rejection response do not invoke the speechlet. Rejection
+ * responses are never kept by a {@link SpeechletResponseCache}, so a request sent again after
+ * being rejected can be admitted.</li>
+ * <li>A rejection response does not end the session by default. Even when it does, the attributes
+ * kept by a {@link com.amazon.speech.speechlet.session.SessionAttributeManager} are not removed,
+ * as the user did not choose to end the session.</li>
+ * </ul>
+ *
+ * <p>
+ * Counters of admitted and rejected requests, the current limit and the number of requests in
+ * flight are available for monitoring.
+ * </p>
+ */
+public final class SpeechletConcurrencyLimiter {
+    private static final int DEFAULT_INITIAL_LIMIT = 20;
+    private static final int DEFAULT_MINIMUM_LIMIT = 1;
+    private static final int DEFAULT_MAXIMUM_LIMIT = 1000;
+    private static final long DEFAULT_LATENCY_THRESHOLD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    private static final String DEFAULT_REJECTION_TEXT =
+            "Sorry, I'm a little busy right now. Please try again in a moment.";
+
+    private final int minimumLimit;
+    private final int maximumLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final SpeechletResponse rejectionResponse;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * The current limit, fractional so that it can grow by less than one request at a time. Only
+     * written while holding the lock of this limiter.
+     */
+    private volatile double limit;
+    private long lastDecreaseNanos;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private SpeechletConcurrencyLimiter(final Builder builder) {
+        minimumLimit = builder.minimumLimit;
+        maximumLimit = builder.maximumLimit;
+        latencyThresholdNanos = builder.latencyThresholdNanos;
+        backoffRatio = builder.backoffRatio;
+        limit = builder.initialLimit;
+        lastDecreaseNanos = System.nanoTime();
+        rejectionResponse =
+                (builder.rejectionResponse != null) ? builder.rejectionResponse
+                        : newDefaultRejectionResponse();
+    }
+
+    private static SpeechletResponse newDefaultRejectionResponse() {
+        PlainTextOutputSpeech outputSpeech = new PlainTextOutputSpeech();
+        outputSpeech.setText(DEFAULT_REJECTION_TEXT);
+        SpeechletResponse response = SpeechletResponse.newTellResponse(outputSpeech);
+        // The user is asked to try again, in the same session
+        response.setShouldEndSession(false);
+        return ConstantSpeechletResponse.of(response);
+    }
+
+    /**
+     * Admits a request if fewer requests than the limit are in flight. An admitted request must
+     * be completed with {@link #release(long, boolean)}.
+     *
+     * @return whether the request is admitted
+     */
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        admittedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Completes an admitted request and adapts the limit to its outcome.
+     *
+     * @param latencyNanos
+     *            the time the speechlet took to handle the request
+     * @param success
+     *            whether the speechlet handled the request successfully
+     */
+    void release(final long latencyNanos, final boolean success) {
+        int current = inFlight.getAndDecrement();
+        if (!success || latencyNanos > latencyThresholdNanos) {
+            long now = System.nanoTime();
+            synchronized (this) {
+                if (now - latencyNanos - lastDecreaseNanos >= 0) {
+                    limit = Math.max(minimumLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            }
+        } else if (current * 2 >= (int) limit) {
+            // Only probe for a higher limit while the current one is put to use
+            synchronized (this) {
+                limit = Math.min(maximumLimit, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    /**
+     * Returns the response sent to requests that are not admitted.
+     *
+     * @return the rejection response
+     */
+    public SpeechletResponse getRejectionResponse() {
+        return rejectionResponse;
+    }
+
+    /**
+     * Returns the current limit on concurrent requests.
+     *
+     * @return the current limit
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns the number of requests currently handled by the speechlet.
+     *
+     * @return the number of requests in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of requests admitted.
+     *
+     * @return the admitted count
+     */
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    /**
+     * Returns the number of requests answered with the rejection response.
+     *
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Builder for {@link SpeechletConcurrencyLimiter}.
+     */
+    public static final class Builder {
+        private int initialLimit = DEFAULT_INITIAL_LIMIT;
+        private int minimumLimit = DEFAULT_MINIMUM_LIMIT;
+        private int maximumLimit = DEFAULT_MAXIMUM_LIMIT;
+        private long latencyThresholdNanos = DEFAULT_LATENCY_THRESHOLD_NANOS;
+        private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+        private SpeechletResponse rejectionResponse;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the limit on concurrent requests before any request has completed, 20 by default.
+         *
+         * @param initialLimit
+         *            the initial limit
+         * @return this builder
+         */
+        public Builder withInitialLimit(final int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Sets the lowest limit on concurrent requests, 1 by default.
+         *
+         * @param minimumLimit
+         *            the minimum limit
+         * @return this builder
+         */
+        public Builder withMinimumLimit(final int minimumLimit) {
+            this.minimumLimit = minimumLimit;
+            return this;
+        }
+
+        /**
+         * Sets the highest limit on concurrent requests, 1000 by default.
+         *
+         * @param maximumLimit
+         *            the maximum limit
+         * @return this builder
+         */
+        public Builder withMaximumLimit(final int maximumLimit) {
+            this.maximumLimit = maximumLimit;
+            return this;
+        }
+
+        /**
+         * Sets the latency above which a request lowers the limit, 1 second by default.
+         *
+         * @param latencyThreshold
+         *            the latency threshold
+         * @param unit
+         *            the unit of the latency threshold
+         * @return this builder
+         */
+        public Builder withLatencyThreshold(final long latencyThreshold, final TimeUnit unit) {
+            this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+            return this;
+        }
+
+        /**
+         * Sets the ratio by which a slow or failed request lowers the limit, 0.9 by default.
+         *
+         * @param backoffRatio
+         *            the backoff ratio, between 0 and 1
+         * @return this builder
+         */
+        public Builder withBackoffRatio(final double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Sets the response sent to requests that are not admitted. By default, the user is told
+         * to try again in a moment and the session stays open.
+         *
+         * @param rejectionResponse
+         *            the rejection response
+         * @return this builder
+         */
+        public Builder withRejectionResponse(final SpeechletResponse rejectionResponse) {
+            this.rejectionResponse = rejectionResponse;
+            return this;
+        }
+
+        public SpeechletConcurrencyLimiter build() {
+            Validate.isTrue(minimumLimit > 0, "Minimum limit must be positive");
+            Validate.isTrue(maximumLimit >= minimumLimit,
+                    "Maximum limit must not be lower than the minimum limit");
+            Validate.isTrue(initialLimit >= minimumLimit && initialLimit <= maximumLimit,
+                    "Initial limit must be between the minimum and maximum limits");
+            Validate.isTrue(latencyThresholdNanos > 0, "Latency threshold must be positive");
+            Validate.isTrue(backoffRatio > 0 && backoffRatio < 1,
+                    "Backoff ratio must be between 0 and 1");
+            return new SpeechletConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time left to answer a request, available to speechlets from
+ * {@link com.amazon.speech.json.SpeechletRequestEnvelope#getDeadline()} when the handler has a
+ * {@link SpeechletDeadlinePolicy}. Calls made by the speechlet to other services can size their
+ * timeouts from {@link #getRemainingTime(TimeUnit)} instead of fixed values, so that the response
+ * still reaches the Alexa service in time when they are slow.
+ * <p>
+ * The deadline is measured with {@link System#nanoTime()} from the moment the request was
+ * received, so it is not affected by changes to the system clock while the request is handled.
+ */
+public final class SpeechletDeadline {
+    private final long deadlineNanos;
+
+    private SpeechletDeadline(final long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Returns a deadline expiring after the provided amount of time from now.
+     *
+     * @param remainingTime
+     *            the time left, zero or negative for an expired deadline
+     * @param unit
+     *            the unit of the time left
+     * @return the deadline
+     */
+    public static SpeechletDeadline after(final long remainingTime, final TimeUnit unit) {
+        return new SpeechletDeadline(System.nanoTime() + unit.toNanos(remainingTime));
+    }
+
+    /**
+     * Returns the time left before the deadline, or zero if it has expired.
+     *
+     * @param unit
+     *            the unit of the result
+     * @return the time left in the provided unit, rounded down
+     */
+    public long getRemainingTime(final TimeUnit unit) {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        return (remainingNanos > 0) ? unit.convert(remainingNanos, TimeUnit.NANOSECONDS) : 0L;
+    }
+
+    /**
+     * Returns the time left before the deadline in milliseconds, or zero if it has expired.
+     *
+     * @return the time left in milliseconds
+     */
+    public long getRemainingMillis() {
+        return getRemainingTime(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns whether the deadline has passed.
+     *
+     * @return whether the deadline has expired
+     */
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+}
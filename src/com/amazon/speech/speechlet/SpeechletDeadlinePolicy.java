@@ -0,0 +1,205 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+
+/**
+ * <p>
+ * Gives each request a {@link SpeechletDeadline}, computed from its timestamp and a time budget,
+ * and the response sent instead of the speechlet's when the budget is exhausted. Set it on a
+ * handler with {@link SpeechletRequestHandler#setDeadlinePolicy(SpeechletDeadlinePolicy)}.
+ * </p>
+ *
+ * <ul>
+ * <li>The deadline is the timestamp of the request plus the budget, 7 seconds by default, which
+ * leaves a margin within the time the Alexa service waits for a response.</li>
+ * <li>Request timestamps only have a precision of one second, and the clocks of the Alexa service
+ * and of this server can differ. The time elapsed since the timestamp is therefore reduced by the
+ * allowed clock skew, one second by default, so that a clock running slightly ahead does not eat
+ * into the budget. A request with a timestamp in the future gets the whole budget.</li>
+ * <li>A request whose deadline has already expired when it is received is answered with the
+ * fallback response without invoking the speechlet. A speechlet failing after the deadline, for
+ * instance because a downstream call timed out, is also answered with the fallback response
+ * instead of an error.</li>
+ * <li>Fallback responses are never kept by a {@link SpeechletResponseCache}, so a request sent
+ * again after being answered with the fallback response invokes the speechlet.</li>
+ * <li>A fallback response does not end the session by default. Even when it does, the attributes
+ * kept by a {@link com.amazon.speech.speechlet.session.SessionAttributeManager} are not removed,
+ * as the user did not choose to end the session.</li>
+ * </ul>
+ *
+ * <p>
+ * Counters of the requests answered with the fallback response are available for monitoring.
+ * </p>
+ */
+public final class SpeechletDeadlinePolicy {
+    private static final long DEFAULT_BUDGET_MILLIS = TimeUnit.SECONDS.toMillis(7);
+    private static final long DEFAULT_CLOCK_SKEW_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final String DEFAULT_FALLBACK_TEXT =
+            "Sorry, that took too long. Please try again.";
+
+    private final long budgetMillis;
+    private final long clockSkewMillis;
+    private final SpeechletResponse fallbackResponse;
+    private final AtomicLong expiredOnArrivalCount = new AtomicLong();
+    private final AtomicLong expiredOnFailureCount = new AtomicLong();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private SpeechletDeadlinePolicy(final Builder builder) {
+        budgetMillis = builder.budgetMillis;
+        clockSkewMillis = builder.clockSkewMillis;
+        fallbackResponse =
+                (builder.fallbackResponse != null) ? builder.fallbackResponse
+                        : newDefaultFallbackResponse();
+    }
+
+    private static SpeechletResponse newDefaultFallbackResponse() {
+        PlainTextOutputSpeech outputSpeech = new PlainTextOutputSpeech();
+        outputSpeech.setText(DEFAULT_FALLBACK_TEXT);
+        SpeechletResponse response = SpeechletResponse.newTellResponse(outputSpeech);
+        // The user is asked to try again, in the same session
+        response.setShouldEndSession(false);
+        return ConstantSpeechletResponse.of(response);
+    }
+
+    /**
+     * Returns the deadline of a request received now.
+     *
+     * @param request
+     *            the request
+     * @return the deadline of the request
+     */
+    public SpeechletDeadline newDeadline(final SpeechletRequest request) {
+        Date timestamp = request.getTimestamp();
+        long elapsedMillis = 0L;
+        if (timestamp != null) {
+            elapsedMillis =
+                    Math.max(0L, System.currentTimeMillis() - timestamp.getTime()
+                            - clockSkewMillis);
+        }
+        return SpeechletDeadline.after(budgetMillis - elapsedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the response sent when the budget of a request is exhausted.
+     *
+     * @return the fallback response
+     */
+    public SpeechletResponse getFallbackResponse() {
+        return fallbackResponse;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    /**
+     * Returns the number of requests answered with the fallback response because their deadline
+     * had expired when they were received.
+     *
+     * @return the number of requests expired on arrival
+     */
+    public long getExpiredOnArrivalCount() {
+        return expiredOnArrivalCount.get();
+    }
+
+    /**
+     * Returns the number of requests answered with the fallback response because the speechlet
+     * failed after their deadline.
+     *
+     * @return the number of requests that failed after their deadline
+     */
+    public long getExpiredOnFailureCount() {
+        return expiredOnFailureCount.get();
+    }
+
+    void recordExpiredOnArrival() {
+        expiredOnArrivalCount.incrementAndGet();
+    }
+
+    void recordExpiredOnFailure() {
+        expiredOnFailureCount.incrementAndGet();
+    }
+
+    /**
+     * Builder for {@link SpeechletDeadlinePolicy}.
+     */
+    public static final class Builder {
+        private long budgetMillis = DEFAULT_BUDGET_MILLIS;
+        private long clockSkewMillis = DEFAULT_CLOCK_SKEW_MILLIS;
+        private SpeechletResponse fallbackResponse;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the time allowed to answer a request from its timestamp, 7 seconds by default.
+         *
+         * @param budget
+         *            the time budget of a request
+         * @param unit
+         *            the unit of the budget
+         * @return this builder
+         */
+        public Builder withBudget(final long budget, final TimeUnit unit) {
+            this.budgetMillis = unit.toMillis(budget);
+            return this;
+        }
+
+        /**
+         * Sets by how much the time elapsed since the timestamp of a request is reduced to allow
+         * for clock differences and the precision of timestamps, 1 second by default.
+         *
+         * @param clockSkew
+         *            the allowed clock skew
+         * @param unit
+         *            the unit of the clock skew
+         * @return this builder
+         */
+        public Builder withClockSkew(final long clockSkew, final TimeUnit unit) {
+            this.clockSkewMillis = unit.toMillis(clockSkew);
+            return this;
+        }
+
+        /**
+         * Sets the response sent when the budget of a request is exhausted. By default, the user
+         * is told to try again and the session stays open.
+         *
+         * @param fallbackResponse
+         *            the fallback response
+         * @return this builder
+         */
+        public Builder withFallbackResponse(final SpeechletResponse fallbackResponse) {
+            this.fallbackResponse = fallbackResponse;
+            return this;
+        }
+
+        public SpeechletDeadlinePolicy build() {
+            Validate.isTrue(budgetMillis > 0, "Budget must be positive");
+            Validate.isTrue(clockSkewMillis >= 0, "Clock skew must not be negative");
+            return new SpeechletDeadlinePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The result of an asynchronous {@link AsyncSpeechletV2} call. A {@code SpeechletFuture} is
+ * completed once, either with a value using {@link #complete(Object)} or with a failure using
+ * {@link #completeExceptionally(Throwable)}. Callbacks registered with
+ * {@link #addCallback(Callback)} are invoked on the thread completing the future, or immediately on
+ * the registering thread if the future is already complete.
+ *
+ * @param <V>
+ *            the type of the value produced by the call
+ */
+public class SpeechletFuture<V> implements Future<V> {
+    private static final Logger log = LoggerFactory.getLogger(SpeechletFuture.class);
+
+    private static final SpeechletFuture<Object> COMPLETED_WITH_NULL =
+            new SpeechletFuture<Object>(State.SUCCEEDED, null, null);
+
+    private enum State {
+        PENDING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private State state;
+    private V value;
+    private Throwable failure;
+    private List<Callback<? super V>> callbacks;
+
+    /**
+     * Creates a pending future.
+     */
+    public SpeechletFuture() {
+        this(State.PENDING, null, null);
+    }
+
+    private SpeechletFuture(State state, V value, Throwable failure) {
+        this.state = state;
+        this.value = value;
+        this.failure = failure;
+    }
+
+    /**
+     * Returns a future already completed with the provided value.
+     *
+     * @param value
+     *            the value of the future
+     * @param <V>
+     *            the type of the value
+     * @return a completed future
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> SpeechletFuture<V> completed(V value) {
+        if (value == null) {
+            return (SpeechletFuture<V>) COMPLETED_WITH_NULL;
+        }
+        return new SpeechletFuture<V>(State.SUCCEEDED, value, null);
+    }
+
+    /**
+     * Returns a future already completed with the provided failure.
+     *
+     * @param failure
+     *            the cause of the failure
+     * @param <V>
+     *            the type of the value
+     * @return a failed future
+     */
+    public static <V> SpeechletFuture<V> failed(Throwable failure) {
+        if (failure == null) {
+            throw new IllegalArgumentException("Failure must not be null");
+        }
+        return new SpeechletFuture<V>(State.FAILED, null, failure);
+    }
+
+    /**
+     * Completes this future with the provided value, unless it is already complete.
+     *
+     * @param value
+     *            the value of the future
+     * @return whether this call completed the future
+     */
+    public boolean complete(V value) {
+        return transition(State.SUCCEEDED, value, null);
+    }
+
+    /**
+     * Completes this future with the provided failure, unless it is already complete.
+     *
+     * @param failure
+     *            the cause of the failure
+     * @return whether this call completed the future
+     */
+    public boolean completeExceptionally(Throwable failure) {
+        if (failure == null) {
+            throw new IllegalArgumentException("Failure must not be null");
+        }
+        return transition(State.FAILED, null, failure);
+    }
+
+    /**
+     * Registers a callback invoked once this future completes. Callbacks are invoked in
+     * registration order.
+     *
+     * @param callback
+     *            the callback to invoke
+     */
+    public void addCallback(Callback<? super V> callback) {
+        synchronized (this) {
+            if (state == State.PENDING) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList<Callback<? super V>>(2);
+                }
+                callbacks.add(callback);
+                return;
+            }
+        }
+        invoke(callback);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return transition(State.CANCELLED, null, new CancellationException());
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != State.PENDING;
+    }
+
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (state == State.PENDING) {
+            wait();
+        }
+        return getCompleted();
+    }
+
+    @Override
+    public synchronized V get(long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        long remainingNanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + remainingNanos;
+        while (state == State.PENDING) {
+            if (remainingNanos <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            remainingNanos = deadline - System.nanoTime();
+        }
+        return getCompleted();
+    }
+
+    private V getCompleted() throws ExecutionException {
+        switch (state) {
+            case SUCCEEDED:
+                return value;
+            case CANCELLED:
+                throw (CancellationException) failure;
+            default:
+                throw new ExecutionException(failure);
+        }
+    }
+
+    private boolean transition(State newState, V newValue, Throwable newFailure) {
+        final List<Callback<? super V>> pendingCallbacks;
+        synchronized (this) {
+            if (state != State.PENDING) {
+                return false;
+            }
+            state = newState;
+            value = newValue;
+            failure = newFailure;
+            pendingCallbacks = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+
+        if (pendingCallbacks != null) {
+            for (Callback<? super V> callback : pendingCallbacks) {
+                invoke(callback);
+            }
+        }
+        return true;
+    }
+
+    private void invoke(Callback<? super V> callback) {
+        try {
+            if (state == State.SUCCEEDED) {
+                callback.onSuccess(value);
+            } else {
+                callback.onFailure(failure);
+            }
+        } catch (RuntimeException e) {
+            log.error("Exception thrown by SpeechletFuture callback {}", callback, e);
+        }
+    }
+
+    /**
+     * Receives the outcome of a {@link SpeechletFuture}.
+     *
+     * @param <V>
+     *            the type of the value produced by the future
+     */
+    public interface Callback<V> {
+        /**
+         * Invoked when the future completes with a value.
+         *
+         * @param value
+         *            the value of the future
+         */
+        void onSuccess(V value);
+
+        /**
+         * Invoked when the future fails or is cancelled.
+         *
+         * @param failure
+         *            the cause of the failure, a {@link CancellationException} if the future was
+         *            cancelled
+         */
+        void onFailure(Throwable failure);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+
+/**
+ * <p>
+ * Hooks into the stages of the requests handled by a {@link SpeechletRequestHandler}, so that
+ * concerns such as caching, metrics, tracing, idempotency or rate limiting can be added to a
+ * handler without changing it. Set interceptors on a handler with
+ * {@link SpeechletRequestHandler#setInterceptors(java.util.List)}.
+ * </p>
+ *
+ * <p>
+ * Every hook does nothing by default; subclasses override those they need. The handler only
+ * invokes the hooks an interceptor overrides, and a handler without interceptors invokes none.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #beforeParse(byte[], int)} receives the serialized request before it is parsed.</li>
+ * <li>{@link #afterParse(SpeechletRequestEnvelope)} receives the request once it is parsed and
+ * verified.</li>
+ * <li>{@link #aroundDispatch(SpeechletRequestEnvelope, Chain)} wraps the invocation of the
+ * speechlet, and may answer the request without invoking it.</li>
+ * <li>{@link #beforeWrite(SpeechletRequestEnvelope, SpeechletResponseEnvelope)} receives the
+ * response before it is serialized and verified.</li>
+ * </ul>
+ *
+ * <p>
+ * The request hooks run in the order the interceptors were set, the first interceptor wrapping
+ * the others around the dispatch, and {@code beforeWrite} runs in the reverse order. Hooks are
+ * called from the threads handling requests, possibly concurrently.
+ * </p>
+ */
+public abstract class SpeechletInterceptor {
+    /**
+     * Invoked with the serialized request before it is parsed. The request must not be modified.
+     *
+     * @param serializedSpeechletRequest
+     *            the buffer holding the serialized request
+     * @param length
+     *            the length of the serialized request at the start of the buffer
+     * @throws SpeechletRequestHandlerException
+     *             to reject the request
+     */
+    public void beforeParse(final byte[] serializedSpeechletRequest, final int length)
+            throws SpeechletRequestHandlerException {
+    }
+
+    /**
+     * Invoked with the request once it is parsed and verified, before it is dispatched.
+     *
+     * @param requestEnvelope
+     *            the current request
+     * @throws SpeechletRequestHandlerException
+     *             to reject the request
+     */
+    public void afterParse(final SpeechletRequestEnvelope<?> requestEnvelope)
+            throws SpeechletRequestHandlerException {
+    }
+
+    /**
+     * Invoked in place of the dispatch of the request to the speechlet. Implementations proceed
+     * with the dispatch by calling {@link Chain#proceed(SpeechletRequestEnvelope)}, possibly with
+     * another request, or answer the request themselves by returning another future. By
+     * default, proceeds with the request as it is.
+     *
+     * @param requestEnvelope
+     *            the current request
+     * @param chain
+     *            the rest of the dispatch, through the next interceptors to the speechlet
+     * @return a future completed with the response envelope
+     */
+    public SpeechletFuture<SpeechletResponseEnvelope> aroundDispatch(
+            final SpeechletRequestEnvelope<?> requestEnvelope, final Chain chain) {
+        return chain.proceed(requestEnvelope);
+    }
+
+    /**
+     * Invoked with the response before it is serialized and verified, including the fallback and
+     * rejection responses sent without invoking the speechlet. Not invoked for responses answered
+     * from the {@link SpeechletResponseCache}, which are already serialized. The response may be
+     * modified.
+     *
+     * @param requestEnvelope
+     *            the current request
+     * @param responseEnvelope
+     *            the response to be sent
+     * @throws SpeechletRequestHandlerException
+     *             to fail the request instead of sending the response
+     */
+    public void beforeWrite(final SpeechletRequestEnvelope<?> requestEnvelope,
+            final SpeechletResponseEnvelope responseEnvelope)
+            throws SpeechletRequestHandlerException {
+    }
+
+    /**
+     * The rest of the dispatch of a request, from an interceptor on. Chains hold no state of the
+     * request, and are shared by the requests dispatched through them.
+     */
+    public interface Chain {
+        /**
+         * Dispatches the provided request through the next interceptors to the speechlet.
+         *
+         * @param requestEnvelope
+         *            the request to dispatch
+         * @return a future completed with the response envelope
+         */
+        SpeechletFuture<SpeechletResponseEnvelope> proceed(
+                SpeechletRequestEnvelope<?> requestEnvelope);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+
+/**
+ * The interceptors of a {@link SpeechletRequestHandler}, assembled once into one array per hook
+ * holding only the interceptors overriding it, so that handling a request only iterates over the
+ * hooks in use.
+ */
+final class SpeechletInterceptorPipeline {
+    private final List<SpeechletInterceptor> interceptors;
+    private final SpeechletInterceptor[] beforeParse;
+    private final SpeechletInterceptor[] afterParse;
+    private final SpeechletInterceptor[] aroundDispatch;
+    private final SpeechletInterceptor[] beforeWrite;
+
+    /**
+     * The last dispatcher wrapped, reused as long as requests go to the same dispatcher.
+     */
+    private volatile Chain wrapped;
+
+    private SpeechletInterceptorPipeline(final List<SpeechletInterceptor> interceptors) {
+        this.interceptors = interceptors;
+        beforeParse = select(interceptors, "beforeParse", byte[].class, int.class);
+        afterParse = select(interceptors, "afterParse", SpeechletRequestEnvelope.class);
+        aroundDispatch =
+                select(interceptors, "aroundDispatch", SpeechletRequestEnvelope.class,
+                        SpeechletInterceptor.Chain.class);
+        SpeechletInterceptor[] selected =
+                select(interceptors, "beforeWrite", SpeechletRequestEnvelope.class,
+                        SpeechletResponseEnvelope.class);
+        // Responses pass through the interceptors in the reverse order of requests
+        beforeWrite = new SpeechletInterceptor[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            beforeWrite[i] = selected[selected.length - 1 - i];
+        }
+    }
+
+    /**
+     * Assembles the provided interceptors.
+     *
+     * @param interceptors
+     *            the interceptors, in the order their request hooks run
+     * @return the pipeline, or {@code null} if there are no interceptors
+     */
+    static SpeechletInterceptorPipeline of(final List<SpeechletInterceptor> interceptors) {
+        if (interceptors == null || interceptors.isEmpty()) {
+            return null;
+        }
+        List<SpeechletInterceptor> copy = new ArrayList<SpeechletInterceptor>(interceptors);
+        for (SpeechletInterceptor interceptor : copy) {
+            if (interceptor == null) {
+                throw new IllegalArgumentException("Interceptors must not be null");
+            }
+        }
+        return new SpeechletInterceptorPipeline(Collections.unmodifiableList(copy));
+    }
+
+    /**
+     * Returns the interceptors, in the order their request hooks run.
+     */
+    List<SpeechletInterceptor> getInterceptors() {
+        return interceptors;
+    }
+
+    void beforeParse(final byte[] serializedSpeechletRequest, final int length)
+            throws SpeechletRequestHandlerException {
+        for (SpeechletInterceptor interceptor : beforeParse) {
+            interceptor.beforeParse(serializedSpeechletRequest, length);
+        }
+    }
+
+    void afterParse(final SpeechletRequestEnvelope<?> requestEnvelope)
+            throws SpeechletRequestHandlerException {
+        for (SpeechletInterceptor interceptor : afterParse) {
+            interceptor.afterParse(requestEnvelope);
+        }
+    }
+
+    /**
+     * Returns a dispatcher running the dispatch of each request through the interceptors, or the
+     * provided dispatcher if no interceptor wraps the dispatch. The chain of interceptors is built
+     * once for a given dispatcher, rather than for each request and at each interceptor.
+     */
+    SpeechletCallDispatcher wrap(final SpeechletCallDispatcher dispatcher) {
+        if (aroundDispatch.length == 0) {
+            return dispatcher;
+        }
+        Chain chain = wrapped;
+        if (chain == null || chain.dispatcher != dispatcher) {
+            chain = new Chain(null, null, dispatcher);
+            for (int i = aroundDispatch.length - 1; i >= 0; i--) {
+                chain = new Chain(aroundDispatch[i], chain, dispatcher);
+            }
+            wrapped = chain;
+        }
+        return chain;
+    }
+
+    void beforeWrite(final SpeechletRequestEnvelope<?> requestEnvelope,
+            final SpeechletResponseEnvelope responseEnvelope)
+            throws SpeechletRequestHandlerException {
+        for (SpeechletInterceptor interceptor : beforeWrite) {
+            interceptor.beforeWrite(requestEnvelope, responseEnvelope);
+        }
+    }
+
+    /**
+     * Returns the interceptors overriding the provided hook.
+     */
+    private static SpeechletInterceptor[] select(final List<SpeechletInterceptor> interceptors,
+            final String hook, final Class<?>... parameterTypes) {
+        List<SpeechletInterceptor> selected = new ArrayList<SpeechletInterceptor>();
+        for (SpeechletInterceptor interceptor : interceptors) {
+            try {
+                Class<?> declaringClass =
+                        interceptor.getClass().getMethod(hook, parameterTypes).getDeclaringClass();
+                if (declaringClass != SpeechletInterceptor.class) {
+                    selected.add(interceptor);
+                }
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Missing interceptor hook " + hook, e);
+            }
+        }
+        return selected.toArray(new SpeechletInterceptor[selected.size()]);
+    }
+
+    /**
+     * The dispatch of a request from the provided interceptor on, or straight to the dispatcher
+     * at the end of the chain.
+     */
+    private static final class Chain implements SpeechletInterceptor.Chain,
+            SpeechletCallDispatcher {
+        private final SpeechletInterceptor interceptor;
+        private final Chain next;
+        private final SpeechletCallDispatcher dispatcher;
+
+        Chain(final SpeechletInterceptor interceptor, final Chain next,
+                final SpeechletCallDispatcher dispatcher) {
+            this.interceptor = interceptor;
+            this.next = next;
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public SpeechletFuture<SpeechletResponseEnvelope> proceed(
+                final SpeechletRequestEnvelope<?> requestEnvelope) {
+            if (interceptor == null) {
+                return dispatcher.dispatchSpeechletCallAsync(requestEnvelope,
+                        requestEnvelope.getSession());
+            }
+            try {
+                SpeechletFuture<SpeechletResponseEnvelope> result =
+                        interceptor.aroundDispatch(requestEnvelope, next);
+                if (result == null) {
+                    throw new IllegalStateException("Interceptor "
+                            + interceptor.getClass().getSimpleName() + " returned no response");
+                }
+                return result;
+            } catch (RuntimeException e) {
+                return SpeechletFuture.failed(e);
+            }
+        }
+
+        @Override
+        public SpeechletFuture<SpeechletResponseEnvelope> dispatchSpeechletCallAsync(
+                final SpeechletRequestEnvelope<?> requestEnvelope, final Session session) {
+            return proceed(requestEnvelope);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * The body of a request read into a buffer of a {@link SpeechletRequestBodyPool}. The bytes are
+ * available in place with {@link #getBuffer()} and {@link #getLength()}, and the buffer is handed
+ * back to the pool with {@link #release()} once the body has been deserialized.
+ * <p>
+ * A request body is used by one thread at a time and must not be accessed after being released.
+ */
+public final class SpeechletRequestBody {
+    private final SpeechletRequestBodyPool pool;
+    private byte[] buffer;
+    private int length;
+
+    SpeechletRequestBody(final SpeechletRequestBodyPool pool, final byte[] buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads the next bytes available from the provided stream into the body, growing the buffer
+     * as needed up to the maximum body size of the pool. The read bytes start at
+     * {@code getLength()} before the call.
+     *
+     * @param in
+     *            the stream to read from
+     * @return the number of bytes read, or -1 at the end of the stream
+     * @throws IOException
+     *             if reading fails
+     * @throws SpeechletRequestHandlerException
+     *             if the body exceeds the maximum body size
+     */
+    public int read(final InputStream in) throws IOException, SpeechletRequestHandlerException {
+        if (length == buffer.length) {
+            int maxBodySize = pool.getMaxBodySize();
+            if (length >= maxBodySize) {
+                // Full, the body is only acceptable if it ends here
+                if (in.read() == -1) {
+                    return -1;
+                }
+                throw new SpeechletRequestHandlerException(String.format(
+                        "Request body exceeds the maximum size of %d bytes", maxBodySize));
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.min(2L * buffer.length, maxBodySize));
+        }
+
+        int read = in.read(buffer, length, buffer.length - length);
+        if (read > 0) {
+            length += read;
+        }
+        return read;
+    }
+
+    /**
+     * Reads the provided stream into the body until its end.
+     *
+     * @param in
+     *            the stream to read from
+     * @throws IOException
+     *             if reading fails
+     * @throws SpeechletRequestHandlerException
+     *             if the body exceeds the maximum body size
+     */
+    public void readFully(final InputStream in) throws IOException,
+            SpeechletRequestHandlerException {
+        while (read(in) != -1) {
+            // Keep reading
+        }
+    }
+
+    /**
+     * Returns the buffer holding the body, which starts at index 0. The array is not copied and
+     * must not be modified.
+     *
+     * @return the buffer
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the length of the body read so far.
+     *
+     * @return the length in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Hands the buffer back to the pool. Releasing a body more than once has no effect.
+     */
+    public void release() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+            length = 0;
+        }
+    }
+}
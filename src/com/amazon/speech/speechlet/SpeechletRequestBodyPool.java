@@ -0,0 +1,171 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <p>
+ * A bounded pool of reusable buffers that request bodies are read into, so that the servlet and
+ * AWS Lambda entry points do not grow and copy a new array for every request. A buffer is sized
+ * from the {@code Content-Length} of the request when it is known. The resulting
+ * {@link SpeechletRequestBody} is consumed in place by the signature check and the JSON parser.
+ * </p>
+ *
+ * <p>
+ * The pool enforces a maximum body size: a request that declares a larger {@code Content-Length}
+ * is rejected before any of its body is read, and a body that turns out to be larger is rejected
+ * as soon as the limit is crossed instead of being buffered in full.
+ * </p>
+ *
+ * <p>
+ * At most {@code maxPooledBuffers} buffers are kept. When the pool is empty a new buffer is
+ * allocated, and buffers that are not released, or that grew beyond the retained size, are left
+ * to the garbage collector.
+ * </p>
+ */
+public final class SpeechletRequestBodyPool {
+    /**
+     * Default maximum body size, well above the size of any request sent by the Alexa service.
+     */
+    public static final int DEFAULT_MAX_BODY_SIZE = 256 * 1024;
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    private static final int DEFAULT_MAX_POOLED_BUFFERS = 64;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private final int maxBodySize;
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> buffers;
+
+    private SpeechletRequestBodyPool(final Builder builder) {
+        this.maxBodySize = builder.maxBodySize;
+        this.bufferSize = Math.min(builder.bufferSize, builder.maxBodySize);
+        this.buffers = new ArrayBlockingQueue<byte[]>(builder.maxPooledBuffers);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the maximum size of a request body in bytes.
+     *
+     * @return the maximum body size
+     */
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Takes a buffer from the pool for a request body of the provided length.
+     *
+     * @param contentLength
+     *            the {@code Content-Length} of the request, or a negative value if it is unknown
+     * @return an empty request body to read into
+     * @throws SpeechletRequestHandlerException
+     *             if the content length exceeds the maximum body size
+     */
+    public SpeechletRequestBody acquire(final long contentLength)
+            throws SpeechletRequestHandlerException {
+        if (contentLength > maxBodySize) {
+            throw new SpeechletRequestHandlerException(String.format(
+                    "Request body of %d bytes exceeds the maximum size of %d bytes",
+                    contentLength, maxBodySize));
+        }
+
+        // One byte more than the content length, so that the end of the body is read in place
+        int size =
+                (contentLength >= 0) ? (int) Math.min(contentLength + 1, maxBodySize) : bufferSize;
+        byte[] buffer = buffers.poll();
+        if (buffer == null || buffer.length < size) {
+            if (buffer != null) {
+                buffers.offer(buffer);
+            }
+            buffer = new byte[Math.max(size, bufferSize)];
+        }
+        return new SpeechletRequestBody(this, buffer);
+    }
+
+    /**
+     * Returns the buffer of a released request body to the pool, unless it is full or the buffer
+     * grew beyond the retained size.
+     */
+    void release(final byte[] buffer) {
+        if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Builder used to construct a new {@code SpeechletRequestBodyPool}.
+     */
+    public static final class Builder {
+        private int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private int maxPooledBuffers = DEFAULT_MAX_POOLED_BUFFERS;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum size of a request body in bytes, {@value #DEFAULT_MAX_BODY_SIZE} by
+         * default.
+         *
+         * @param maxBodySize
+         *            the maximum body size
+         * @return this builder
+         */
+        public Builder withMaxBodySize(final int maxBodySize) {
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        /**
+         * Sets the initial size of a buffer for a request without a {@code Content-Length}, 8 KB
+         * by default.
+         *
+         * @param bufferSize
+         *            the initial buffer size
+         * @return this builder
+         */
+        public Builder withBufferSize(final int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets how many buffers the pool keeps for reuse, 64 by default.
+         *
+         * @param maxPooledBuffers
+         *            the number of pooled buffers
+         * @return this builder
+         */
+        public Builder withMaxPooledBuffers(final int maxPooledBuffers) {
+            this.maxPooledBuffers = maxPooledBuffers;
+            return this;
+        }
+
+        public SpeechletRequestBodyPool build() {
+            Validate.isTrue(maxBodySize > 0, "Maximum body size must be positive");
+            Validate.isTrue(bufferSize > 0, "Buffer size must be positive");
+            Validate.isTrue(maxPooledBuffers > 0, "Number of pooled buffers must be positive");
+            return new SpeechletRequestBodyPool(this);
+        }
+    }
+}
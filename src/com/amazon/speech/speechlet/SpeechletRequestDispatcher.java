@@ -14,7 +14,10 @@
 package com.amazon.speech.speechlet;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import com.amazon.speech.Sdk;
 import com.amazon.speech.json.SpeechletRequestEnvelope;
@@ -38,29 +41,97 @@ import com.amazon.speech.speechlet.interfaces.system.request.SystemRequest;
 
 /**
  * This class takes an incoming request from the Alexa service, executes that call on the
- * {@link SpeechletV2} and returns the resulting response.
+ * {@link SpeechletV2} or {@link AsyncSpeechletV2} and returns the resulting response. Calls are
+ * dispatched asynchronously with {@code dispatchSpeechletCallAsync}, or synchronously with
+ * {@code dispatchSpeechletCall}, which waits for the asynchronous result.
+ *
+ * <p>
+ * The routes from request types to the speechlet methods handling them are computed once, when the
+ * dispatcher is constructed, based on the interfaces implemented by the speechlet. Dispatching a
+ * request is then a single lookup on the class of the request. A dispatcher is therefore meant to
+ * be created once per speechlet and reused across requests. Request types introduced by new device
+ * interfaces can be handled by registering an additional route with
+ * {@link #registerRoute(Class, SpeechletRequestRoute)}.
+ * </p>
  */
-public class SpeechletRequestDispatcher {
-    private final SpeechletV2 speechlet;
+public class SpeechletRequestDispatcher implements SpeechletCallDispatcher {
+    private static final Route UNHANDLED_ROUTE = new UnhandledRoute(false);
+    private static final Route UNHANDLED_CORE_ROUTE = new UnhandledRoute(true);
 
-    public SpeechletRequestDispatcher(SpeechletV2 speechlet) {
+    private final AsyncSpeechletV2 speechlet;
+    private final Object speechletV2;
+    private final Object speechletWithInterfaces;
+    private volatile Map<Class<?>, Route> routes;
+
+    public SpeechletRequestDispatcher(AsyncSpeechletV2 speechlet) {
         this.speechlet = speechlet;
+        this.speechletV2 =
+                speechlet instanceof SpeechletV2ToAsyncSpeechletV2Adapter
+                        ? ((SpeechletV2ToAsyncSpeechletV2Adapter) speechlet).getSpeechlet()
+                        : speechlet;
+        this.speechletWithInterfaces =
+                speechletV2 instanceof SpeechletToSpeechletV2Adapter
+                        ? ((SpeechletToSpeechletV2Adapter) speechletV2).getSpeechlet()
+                        : speechletV2;
+        this.routes = buildRoutes();
+    }
+
+    public SpeechletRequestDispatcher(SpeechletV2 speechlet) {
+        this(new SpeechletV2ToAsyncSpeechletV2Adapter(speechlet));
     }
 
     public SpeechletRequestDispatcher(Speechlet speechlet) {
         this(new SpeechletToSpeechletV2Adapter(speechlet));
     }
 
+    /**
+     * Registers a route for the provided request type, replacing any route previously registered
+     * for that exact type. The route is also used for subclasses of the request type that do not
+     * have a more specific route. Responses produced by registered routes do not carry session
+     * attributes.
+     *
+     * @param requestType
+     *            the class of request handled by the route
+     * @param route
+     *            the route handling the request
+     * @param <T>
+     *            the type of request handled by the route
+     */
+    public synchronized <T extends SpeechletRequest> void registerRoute(Class<T> requestType,
+            SpeechletRequestRoute<T> route) {
+        if (requestType == null || route == null) {
+            throw new IllegalArgumentException("Request type and route must not be null");
+        }
+
+        Map<Class<?>, Route> updatedRoutes = new HashMap<>(routes);
+        updatedRoutes.put(requestType, new InterfaceRoute(route));
+        routes = updatedRoutes;
+    }
+
+    /**
+     * Returns whether this dispatcher was created for the provided speechlet. The speechlet may be
+     * the {@link AsyncSpeechletV2}, {@link SpeechletV2} or {@link Speechlet} wrapped by the
+     * dispatcher.
+     *
+     * @param speechlet
+     *            the speechlet to check
+     * @return whether this dispatcher dispatches calls to the provided speechlet
+     */
+    boolean isDispatchingTo(Object speechlet) {
+        return this.speechlet == speechlet || speechletV2 == speechlet
+                || speechletWithInterfaces == speechlet;
+    }
+
     /**
      * Processes the provided {@link SpeechletRequestEnvelope} and generates an appropriate response
-     * after dispatching the appropriate method calls on the {@link SpeechletV2} provided at
-     * construction time.
+     * after dispatching the appropriate method calls on the speechlet provided at construction
+     * time. This method blocks until the speechlet has produced its response.
      *
      * @param requestEnvelope
      *            the current request
      * @param session
      *            the session for the request
-     * @return {@link SpeechletResponseEnvelope} generated after invoking the {@link SpeechletV2}
+     * @return {@link SpeechletResponseEnvelope} generated after invoking the speechlet
      * @throws IOException
      *             may occur during request or response serialization
      * @throws SpeechletRequestHandlerException
@@ -71,11 +142,28 @@ public class SpeechletRequestDispatcher {
     public SpeechletResponseEnvelope dispatchSpeechletCall(
             SpeechletRequestEnvelope<?> requestEnvelope, Session session)
             throws IOException, SpeechletRequestHandlerException, SpeechletException {
-        SpeechletRequest speechletRequest = requestEnvelope.getRequest();
+        return await(dispatchSpeechletCallAsync(requestEnvelope, session));
+    }
 
-        // Prepare a response envelope
-        final SpeechletResponseEnvelope responseEnvelope = new SpeechletResponseEnvelope();
-        responseEnvelope.setVersion(Sdk.VERSION);
+    /**
+     * Processes the provided {@link SpeechletRequestEnvelope} and generates an appropriate response
+     * after dispatching the appropriate method calls on the speechlet provided at construction
+     * time. The returned future fails with the same exceptions
+     * {@link #dispatchSpeechletCall(SpeechletRequestEnvelope, Session)} throws.
+     *
+     * @param requestEnvelope
+     *            the current request
+     * @param session
+     *            the session for the request
+     * @return a future completed with the {@link SpeechletResponseEnvelope} generated after
+     *         invoking the speechlet
+     */
+    @Override
+    public SpeechletFuture<SpeechletResponseEnvelope> dispatchSpeechletCallAsync(
+            final SpeechletRequestEnvelope<?> requestEnvelope, final Session session) {
+        final SpeechletRequest speechletRequest = requestEnvelope.getRequest();
+        final SpeechletFuture<SpeechletResponseEnvelope> result =
+                new SpeechletFuture<SpeechletResponseEnvelope>();
 
         // If this is a new session, invoke the speechlet's onSessionStarted life-cycle method.
         if ((session != null) && session.isNew()) {
@@ -97,165 +185,380 @@ public class SpeechletRequestDispatcher {
                             .withRequest(sessionStartedRequest)
                             .withSession(session)
                             .withVersion(requestEnvelope.getVersion())
+                            .withDeadline(requestEnvelope.getDeadline())
                             .build();
+
+            SpeechletFuture<Void> sessionStarted;
             try {
-                speechlet.onSessionStarted(sessionStartedRequestEnvelope);
+                sessionStarted = speechlet.onSessionStarted(sessionStartedRequestEnvelope);
             } catch (RuntimeException e) {
-                // Doing this to preserve backwards compatibility if a Speechlet instead of a
-                // SpeechletV2 is used
-                if (e.getCause() instanceof SpeechletException) {
-                    throw (SpeechletException) e.getCause();
+                sessionStarted = SpeechletFuture.failed(e);
+            }
+            sessionStarted.addCallback(new SpeechletFuture.Callback<Void>() {
+                @Override
+                public void onSuccess(Void value) {
+                    dispatchToRoute(requestEnvelope, session, result);
                 }
 
-                throw e;
+                @Override
+                public void onFailure(Throwable failure) {
+                    result.completeExceptionally(unwrapSpeechletException(failure));
+                }
+            });
+        } else {
+            dispatchToRoute(requestEnvelope, session, result);
+        }
+
+        return result;
+    }
+
+    private void dispatchToRoute(final SpeechletRequestEnvelope<?> requestEnvelope,
+            final Session session, final SpeechletFuture<SpeechletResponseEnvelope> result) {
+        final SpeechletRequest speechletRequest = requestEnvelope.getRequest();
+        final Route route =
+                (speechletRequest != null) ? findRoute(speechletRequest.getClass()) : null;
+        if (route == null) {
+            String requestType =
+                    (speechletRequest != null) ? speechletRequest.getClass().getName() : null;
+            String message =
+                    String.format(
+                            "Unsupported request type %s. Consider updating your SDK version. "
+                                    + "Request envelope version %s, SDK version %s", requestType,
+                            requestEnvelope.getVersion(), Sdk.VERSION);
+            result.completeExceptionally(new SpeechletRequestHandlerException(message));
+            return;
+        }
+
+        SpeechletFuture<SpeechletResponse> speechletResponse;
+        try {
+            speechletResponse = route.handle(requestEnvelope);
+        } catch (RuntimeException e) {
+            speechletResponse = SpeechletFuture.failed(e);
+        }
+        speechletResponse.addCallback(new SpeechletFuture.Callback<SpeechletResponse>() {
+            @Override
+            public void onSuccess(SpeechletResponse speechletResponse) {
+                // Prepare a response envelope
+                final SpeechletResponseEnvelope responseEnvelope = new SpeechletResponseEnvelope();
+                responseEnvelope.setVersion(Sdk.VERSION);
+                responseEnvelope.setResponse(speechletResponse);
+
+                boolean saveSessionAttributes =
+                        route.saveSessionAttributes
+                                && ((speechletResponse == null) || !speechletResponse
+                                        .getShouldEndSession());
+                if (saveSessionAttributes && session != null) {
+                    responseEnvelope.setSessionAttributes(session.getAttributes());
+                }
+
+                result.complete(responseEnvelope);
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                result.completeExceptionally(route.coreRequest
+                        ? unwrapSpeechletException(failure) : failure);
             }
+        });
+    }
+
+    /**
+     * Doing this to preserve backwards compatibility if a Speechlet instead of a SpeechletV2 is
+     * used: the adapter wraps each {@link SpeechletException} in a {@code RuntimeException}.
+     *
+     * @param failure
+     *            the failure reported by the speechlet
+     * @return the wrapped {@link SpeechletException} if there is one, the failure otherwise
+     */
+    private static Throwable unwrapSpeechletException(Throwable failure) {
+        if (failure instanceof RuntimeException
+                && failure.getCause() instanceof SpeechletException) {
+            return failure.getCause();
         }
+        return failure;
+    }
 
-        Object speechletWithInterfaces = speechlet instanceof SpeechletToSpeechletV2Adapter ?
-                ((SpeechletToSpeechletV2Adapter) speechlet).getSpeechlet() : speechlet;
+    /**
+     * Waits for the provided future and rethrows its failure as thrown by a synchronous call.
+     *
+     * @param future
+     *            the future to wait for
+     * @param <V>
+     *            the type of the value of the future
+     * @return the value of the future
+     * @throws IOException
+     *             if the future failed with an {@code IOException}
+     * @throws SpeechletRequestHandlerException
+     *             if the future failed with a {@code SpeechletRequestHandlerException}
+     * @throws SpeechletException
+     *             if the future failed with a {@code SpeechletException} or a checked exception
+     *             not thrown by synchronous calls, or if the calling thread is interrupted
+     */
+    static <V> V await(SpeechletFuture<V> future) throws IOException,
+            SpeechletRequestHandlerException, SpeechletException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpeechletException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof SpeechletRequestHandlerException) {
+                throw (SpeechletRequestHandlerException) cause;
+            } else if (cause instanceof SpeechletException) {
+                throw (SpeechletException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SpeechletException(cause);
+        }
+    }
 
-        boolean saveSessionAttributes = false;
-        SpeechletResponse speechletResponse = null;
+    /**
+     * Looks up the route for the provided request class, falling back to the routes registered
+     * for its superclasses.
+     *
+     * @param requestClass
+     *            the class of the request to route
+     * @return the route, or {@code null} if the request type is not supported
+     */
+    private Route findRoute(Class<?> requestClass) {
+        final Map<Class<?>, Route> currentRoutes = routes;
+        for (Class<?> type = requestClass; type != null; type = type.getSuperclass()) {
+            Route route = currentRoutes.get(type);
+            if (route != null) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Computes the routes for the speechlet provided at construction time. Requests belonging to
+     * an interface the speechlet does not implement are accepted without invoking the speechlet.
+     *
+     * @return the routes keyed by request class
+     */
+    private Map<Class<?>, Route> buildRoutes() {
+        final Map<Class<?>, Route> routes = new HashMap<>();
 
         /** AudioPlayer **/
-        if (speechletRequest instanceof AudioPlayerRequest) {
-            if (speechletWithInterfaces instanceof AudioPlayer) {
-                AudioPlayer audioPlayerSpeechlet = (AudioPlayer) speechletWithInterfaces;
-                if (speechletRequest instanceof PlaybackFailedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<PlaybackFailedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<PlaybackFailedRequest>) requestEnvelope;
-                    speechletResponse = audioPlayerSpeechlet.onPlaybackFailed(typeSpecificRequestEnvelope);
-                } else if (speechletRequest instanceof PlaybackFinishedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<PlaybackFinishedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<PlaybackFinishedRequest>) requestEnvelope;
-                    speechletResponse =
-                            audioPlayerSpeechlet
-                                    .onPlaybackFinished(typeSpecificRequestEnvelope);
-                } else if (speechletRequest instanceof PlaybackNearlyFinishedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<PlaybackNearlyFinishedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<PlaybackNearlyFinishedRequest>) requestEnvelope;
-                    speechletResponse =
-                            audioPlayerSpeechlet
-                                    .onPlaybackNearlyFinished(typeSpecificRequestEnvelope);
-                } else if (speechletRequest instanceof PlaybackStartedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<PlaybackStartedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<PlaybackStartedRequest>) requestEnvelope;
-                    speechletResponse =
-                            audioPlayerSpeechlet
-                                    .onPlaybackStarted(typeSpecificRequestEnvelope);
-                } else if (speechletRequest instanceof PlaybackStoppedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<PlaybackStoppedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<PlaybackStoppedRequest>) requestEnvelope;
-                    speechletResponse =
-                            audioPlayerSpeechlet
-                                    .onPlaybackStopped(typeSpecificRequestEnvelope);
-                }
+        routes.put(AudioPlayerRequest.class, UNHANDLED_ROUTE);
+        if (speechletWithInterfaces instanceof AudioPlayer) {
+            final AudioPlayer audioPlayerSpeechlet = (AudioPlayer) speechletWithInterfaces;
+            routes.put(PlaybackFailedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<PlaybackFailedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<PlaybackFailedRequest> requestEnvelope) {
+                            return audioPlayerSpeechlet.onPlaybackFailed(requestEnvelope);
+                        }
+                    }));
+            routes.put(PlaybackFinishedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<PlaybackFinishedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<PlaybackFinishedRequest> requestEnvelope) {
+                            return audioPlayerSpeechlet.onPlaybackFinished(requestEnvelope);
+                        }
+                    }));
+            routes.put(PlaybackNearlyFinishedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<PlaybackNearlyFinishedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<PlaybackNearlyFinishedRequest> requestEnvelope) {
+                            return audioPlayerSpeechlet.onPlaybackNearlyFinished(requestEnvelope);
+                        }
+                    }));
+            routes.put(PlaybackStartedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<PlaybackStartedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<PlaybackStartedRequest> requestEnvelope) {
+                            return audioPlayerSpeechlet.onPlaybackStarted(requestEnvelope);
+                        }
+                    }));
+            routes.put(PlaybackStoppedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<PlaybackStoppedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<PlaybackStoppedRequest> requestEnvelope) {
+                            return audioPlayerSpeechlet.onPlaybackStopped(requestEnvelope);
+                        }
+                    }));
+        }
+
+        /** PlaybackController **/
+        routes.put(PlaybackControllerRequest.class, UNHANDLED_ROUTE);
+        if (speechletWithInterfaces instanceof PlaybackController) {
+            final PlaybackController playbackControllerSpeechlet =
+                    (PlaybackController) speechletWithInterfaces;
+            routes.put(NextCommandIssuedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<NextCommandIssuedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<NextCommandIssuedRequest> requestEnvelope) {
+                            return playbackControllerSpeechlet.onNextCommandIssued(requestEnvelope);
+                        }
+                    }));
+            routes.put(PreviousCommandIssuedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<PreviousCommandIssuedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<PreviousCommandIssuedRequest> requestEnvelope) {
+                            return playbackControllerSpeechlet
+                                    .onPreviousCommandIssued(requestEnvelope);
+                        }
+                    }));
+            routes.put(PauseCommandIssuedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<PauseCommandIssuedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<PauseCommandIssuedRequest> requestEnvelope) {
+                            return playbackControllerSpeechlet
+                                    .onPauseCommandIssued(requestEnvelope);
+                        }
+                    }));
+            routes.put(PlayCommandIssuedRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<PlayCommandIssuedRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<PlayCommandIssuedRequest> requestEnvelope) {
+                            return playbackControllerSpeechlet.onPlayCommandIssued(requestEnvelope);
+                        }
+                    }));
+        }
+
+        /** System **/
+        routes.put(SystemRequest.class, UNHANDLED_ROUTE);
+        if (speechletWithInterfaces instanceof System) {
+            final System systemSpeechlet = (System) speechletWithInterfaces;
+            routes.put(ExceptionEncounteredRequest.class, new InterfaceRoute(
+                    new SpeechletRequestRoute<ExceptionEncounteredRequest>() {
+                        @Override
+                        public SpeechletResponse onRequest(
+                                SpeechletRequestEnvelope<ExceptionEncounteredRequest> requestEnvelope) {
+                            systemSpeechlet.onExceptionEncountered(requestEnvelope);
+                            return null;
+                        }
+                    }));
+        }
+
+        /** SpeechletV2 **/
+        routes.put(CoreSpeechletRequest.class, UNHANDLED_CORE_ROUTE);
+        routes.put(SessionEndedRequest.class, new Route(true, false) {
+            @Override
+            @SuppressWarnings("unchecked")
+            SpeechletFuture<SpeechletResponse> handle(SpeechletRequestEnvelope<?> requestEnvelope) {
+                return withoutResponse(speechlet.onSessionEnded(
+                        (SpeechletRequestEnvelope<SessionEndedRequest>) requestEnvelope));
             }
-            /** PlaybackController **/
-        } else if (speechletRequest instanceof PlaybackControllerRequest) {
-            if (speechletWithInterfaces instanceof PlaybackController) {
-                PlaybackController playbackControllerSpeechlet = (PlaybackController) speechletWithInterfaces;
-                if (speechletRequest instanceof NextCommandIssuedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<NextCommandIssuedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<NextCommandIssuedRequest>) requestEnvelope;
-                    speechletResponse =
-                            playbackControllerSpeechlet
-                                    .onNextCommandIssued(typeSpecificRequestEnvelope);
-                } else if (speechletRequest instanceof PreviousCommandIssuedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<PreviousCommandIssuedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<PreviousCommandIssuedRequest>) requestEnvelope;
-                    speechletResponse =
-                            playbackControllerSpeechlet
-                                    .onPreviousCommandIssued(typeSpecificRequestEnvelope);
-                } else if (speechletRequest instanceof PauseCommandIssuedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<PauseCommandIssuedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<PauseCommandIssuedRequest>) requestEnvelope;
-                    speechletResponse =
-                            playbackControllerSpeechlet
-                                    .onPauseCommandIssued(typeSpecificRequestEnvelope);
-                } else if (speechletRequest instanceof PlayCommandIssuedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<PlayCommandIssuedRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<PlayCommandIssuedRequest>) requestEnvelope;
-                    speechletResponse =
-                            playbackControllerSpeechlet
-                                    .onPlayCommandIssued(typeSpecificRequestEnvelope);
-                }
+        });
+        routes.put(IntentRequest.class, new Route(true, true) {
+            @Override
+            @SuppressWarnings("unchecked")
+            SpeechletFuture<SpeechletResponse> handle(SpeechletRequestEnvelope<?> requestEnvelope) {
+                return speechlet.onIntent(
+                        (SpeechletRequestEnvelope<IntentRequest>) requestEnvelope);
             }
-            /** System **/
-        } else if (speechletRequest instanceof SystemRequest) {
-            if (speechletWithInterfaces instanceof System) {
-                System systemSpeechlet = (System) speechletWithInterfaces;
-                if (speechletRequest instanceof ExceptionEncounteredRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<ExceptionEncounteredRequest> typeSpecificRequestEnvelope =
-                            (SpeechletRequestEnvelope<ExceptionEncounteredRequest>) requestEnvelope;
-                    systemSpeechlet
-                            .onExceptionEncountered(typeSpecificRequestEnvelope);
-                }
+        });
+        routes.put(LaunchRequest.class, new Route(true, true) {
+            @Override
+            @SuppressWarnings("unchecked")
+            SpeechletFuture<SpeechletResponse> handle(SpeechletRequestEnvelope<?> requestEnvelope) {
+                return speechlet.onLaunch(
+                        (SpeechletRequestEnvelope<LaunchRequest>) requestEnvelope);
+            }
+        });
+
+        return routes;
+    }
+
+    /**
+     * Adapts a future completed without a response into one completed with a {@code null}
+     * response.
+     *
+     * @param future
+     *            the future to adapt
+     * @return a future completed with {@code null} once the provided future succeeds
+     */
+    private static SpeechletFuture<SpeechletResponse> withoutResponse(
+            SpeechletFuture<Void> future) {
+        final SpeechletFuture<SpeechletResponse> response =
+                new SpeechletFuture<SpeechletResponse>();
+        future.addCallback(new SpeechletFuture.Callback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                response.complete(null);
             }
-            /** SpeechletV2 **/
-        } else if (speechletRequest instanceof CoreSpeechletRequest) {
-            try {
-                if (speechletRequest instanceof SessionEndedRequest) {
-                    @SuppressWarnings("unchecked")
-                    SpeechletRequestEnvelope<SessionEndedRequest> parameterizedRequestEnvelope =
-                            (SpeechletRequestEnvelope<SessionEndedRequest>) requestEnvelope;
-                    speechlet.onSessionEnded(parameterizedRequestEnvelope);
-                } else {
-                    if (speechletRequest instanceof IntentRequest) {
-                        @SuppressWarnings("unchecked")
-                        SpeechletRequestEnvelope<IntentRequest> parameterizedRequestEnvelope =
-                                (SpeechletRequestEnvelope<IntentRequest>) requestEnvelope;
-                        speechletResponse = speechlet.onIntent(parameterizedRequestEnvelope);
-                    } else if (speechletRequest instanceof LaunchRequest) {
-                        @SuppressWarnings("unchecked")
-                        SpeechletRequestEnvelope<LaunchRequest> parameterizedRequestEnvelope =
-                                (SpeechletRequestEnvelope<LaunchRequest>) requestEnvelope;
-                        speechletResponse = speechlet.onLaunch(parameterizedRequestEnvelope);
-                    }
-
-                    if (speechletResponse != null) {
-                        saveSessionAttributes = !speechletResponse.getShouldEndSession();
-                    } else {
-                        saveSessionAttributes = true;
-                    }
-                }
-            } catch (RuntimeException e) {
-                // Doing this to preserve backwards compatibility if a Speechlet instead of a
-                // SpeechletV2 is used
-                if (e.getCause() instanceof SpeechletException) {
-                    throw (SpeechletException) e.getCause();
-                }
 
-                throw e;
+            @Override
+            public void onFailure(Throwable failure) {
+                response.completeExceptionally(failure);
             }
-            /** Exception **/
-        } else {
-            String requestType =
-                    (speechletRequest != null) ? speechletRequest.getClass().getName() : null;
-            String message =
-                    String.format(
-                            "Unsupported request type %s. Consider updating your SDK version. "
-                                    + "Request envelope version %s, SDK version %s", requestType,
-                            requestEnvelope.getVersion(), Sdk.VERSION);
-            throw new SpeechletRequestHandlerException(message);
+        });
+        return response;
+    }
+
+    /**
+     * A route along with how its request and response are treated by the dispatcher.
+     */
+    private abstract static class Route {
+        private final boolean coreRequest;
+        private final boolean saveSessionAttributes;
+
+        private Route(boolean coreRequest, boolean saveSessionAttributes) {
+            this.coreRequest = coreRequest;
+            this.saveSessionAttributes = saveSessionAttributes;
         }
 
-        responseEnvelope.setResponse(speechletResponse);
+        abstract SpeechletFuture<SpeechletResponse> handle(
+                SpeechletRequestEnvelope<?> requestEnvelope);
+    }
+
+    /**
+     * Accepts requests without invoking the speechlet.
+     */
+    private static final class UnhandledRoute extends Route {
+        private UnhandledRoute(boolean coreRequest) {
+            super(coreRequest, coreRequest);
+        }
 
-        if (saveSessionAttributes && session != null) {
-            responseEnvelope.setSessionAttributes(session.getAttributes());
+        @Override
+        SpeechletFuture<SpeechletResponse> handle(SpeechletRequestEnvelope<?> requestEnvelope) {
+            return SpeechletFuture.completed(null);
         }
+    }
 
-        return responseEnvelope;
+    /**
+     * Invokes a synchronous {@link SpeechletRequestRoute}.
+     */
+    private static final class InterfaceRoute extends Route {
+        private final SpeechletRequestRoute<?> route;
+
+        private InterfaceRoute(SpeechletRequestRoute<?> route) {
+            super(false, false);
+            this.route = route;
+        }
+
+        @Override
+        SpeechletFuture<SpeechletResponse> handle(SpeechletRequestEnvelope<?> requestEnvelope) {
+            @SuppressWarnings("unchecked")
+            SpeechletRequestRoute<SpeechletRequest> parameterizedRoute =
+                    (SpeechletRequestRoute<SpeechletRequest>) route;
+            @SuppressWarnings("unchecked")
+            SpeechletRequestEnvelope<SpeechletRequest> parameterizedRequestEnvelope =
+                    (SpeechletRequestEnvelope<SpeechletRequest>) requestEnvelope;
+            try {
+                return SpeechletFuture.completed(parameterizedRoute
+                        .onRequest(parameterizedRequestEnvelope));
+            } catch (SpeechletException e) {
+                return SpeechletFuture.failed(e);
+            }
+        }
     }
 }
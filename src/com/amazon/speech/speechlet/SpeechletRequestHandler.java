@@ -14,19 +14,38 @@
 package com.amazon.speech.speechlet;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.json.SerializedSpeechletResponseEnvelope;
 import com.amazon.speech.json.SpeechletRequestEnvelope;
 import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.metrics.SpeechletMetricsListener;
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics;
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics.Stage;
+import com.amazon.speech.speechlet.session.SessionAttributeManager;
+import com.amazon.speech.speechlet.verifier.AdvisorySpeechletResponseVerifier;
 import com.amazon.speech.speechlet.verifier.ApplicationIdSpeechletRequestVerifier;
 import com.amazon.speech.speechlet.verifier.ApplicationIdSpeechletRequestEnvelopeVerifier;
 import com.amazon.speech.speechlet.verifier.CardSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.ContentSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.IoBoundSpeechletRequestEnvelopeVerifier;
 import com.amazon.speech.speechlet.verifier.OutputSpeechSpeechletResponseVerifier;
 import com.amazon.speech.speechlet.verifier.ResponseSizeSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.SerializedSpeechletResponseVerifier;
 import com.amazon.speech.speechlet.verifier.SpeechletRequestVerifier;
 import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
 import com.amazon.speech.speechlet.verifier.SpeechletResponseVerifier;
@@ -37,12 +56,60 @@ import com.amazon.speech.speechlet.verifier.SpeechletResponseVerifier;
  * response bytes. This class can be hosted by a servlet (for instance, for a web server) or by AWS
  * Lambda. In either case, the logic is the same with different surrounding logic to handle the
  * generated output bytes.
+ *
+ * <p>
+ * The {@link SpeechletRequestDispatcher} for a speechlet is created on the first call and reused
+ * for subsequent calls with the same speechlet.
+ * </p>
+ *
+ * <p>
+ * An {@link AsyncSpeechletV2} can be invoked with {@code handleSpeechletCallAsync}, which returns
+ * without waiting for the response to be produced.
+ * </p>
+ *
+ * <p>
+ * The response can also be written straight to an {@code OutputStream} provided by the transport,
+ * in which case it is serialized into a buffer reused by the serializing thread instead of a new
+ * array for each request.
+ * </p>
+ *
+ * <p>
+ * The speechlets of several skills can share one handler through a {@link SpeechletRouter},
+ * which dispatches each request to the speechlet registered for its application ID.
+ * </p>
+ *
+ * <p>
+ * A {@link ConstantSpeechletResponse} returned by the speechlet is copied into the response as the
+ * JSON it was serialized to once, and verified once by verifiers only inspecting its contents.
+ * </p>
+ *
+ * <p>
+ * The optional stages of the pipeline, such as response caching, deadlines or load shedding, are
+ * configured with the setters of this class and are all disabled by default.
+ * </p>
+ *
+ * <p>
+ * The time spent in each stage of handling a request can be reported to a
+ * {@link SpeechletMetricsListener} set with {@link #setMetricsListener(SpeechletMetricsListener)}.
+ * </p>
  */
 @SuppressWarnings("deprecation")
 public class SpeechletRequestHandler {
+    private static final Logger log = LoggerFactory.getLogger(SpeechletRequestHandler.class);
+
     private final List<SpeechletRequestVerifier> requestVerifiers;
     private final List<SpeechletRequestEnvelopeVerifier> requestEnvelopeVerifiers;
     private final List<SpeechletResponseVerifier> responseVerifiers;
+    private volatile SpeechletRequestDispatcher dispatcher;
+    private volatile SpeechletMetricsListener metricsListener = SpeechletMetricsListener.NONE;
+    private volatile SpeechletResponseCache responseCache;
+    private volatile SessionAttributeManager sessionAttributeManager;
+    private volatile SessionAttributeCodec sessionAttributeCodec;
+    private volatile SpeechletDeadlinePolicy deadlinePolicy;
+    private volatile SpeechletConcurrencyLimiter concurrencyLimiter;
+    private volatile SpeechletInterceptorPipeline interceptorPipeline;
+    private volatile Executor verifierExecutor;
+    private volatile AdvisoryResponseVerification advisoryResponseVerification;
 
     @Deprecated
     public SpeechletRequestHandler(final List<SpeechletRequestVerifier> requestVerifiers,
@@ -52,9 +119,11 @@ public class SpeechletRequestHandler {
     }
 
     public SpeechletRequestHandler(final List<SpeechletRequestEnvelopeVerifier> requestEnvelopeVerifiers) {
-        this(requestEnvelopeVerifiers, Collections.<SpeechletRequestVerifier>emptyList(), Arrays.asList(
-                new ResponseSizeSpeechletResponseVerifier(),
-                new OutputSpeechSpeechletResponseVerifier(), new CardSpeechletResponseVerifier()));
+        this(requestEnvelopeVerifiers, Collections.<SpeechletRequestVerifier>emptyList(),
+                Arrays.<SpeechletResponseVerifier>asList(
+                        new ResponseSizeSpeechletResponseVerifier(),
+                        new OutputSpeechSpeechletResponseVerifier(),
+                        new CardSpeechletResponseVerifier()));
     }
 
     private SpeechletRequestHandler(
@@ -88,8 +157,14 @@ public class SpeechletRequestHandler {
     @Deprecated
     public byte[] handleSpeechletCall(Speechlet speechlet, byte[] serializedSpeechletRequest)
             throws IOException, SpeechletRequestHandlerException, SpeechletException {
-        return internalHandleSpeechletCall(new SpeechletToSpeechletV2Adapter(speechlet),
-                serializedSpeechletRequest);
+        SpeechletRequestDispatcher currentDispatcher = getDispatcher(speechlet);
+        if (currentDispatcher == null) {
+            currentDispatcher = new SpeechletRequestDispatcher(speechlet);
+            dispatcher = currentDispatcher;
+        }
+        return SpeechletRequestDispatcher.await(internalHandleSpeechletCall(currentDispatcher,
+                responseCache, serializedSpeechletRequest, serializedSpeechletRequest.length, null,
+                startRequestMetrics()));
     }
 
     /**
@@ -112,48 +187,1090 @@ public class SpeechletRequestHandler {
      */
     public byte[] handleSpeechletCall(SpeechletV2 speechlet, byte[] serializedSpeechletRequest)
             throws IOException, SpeechletRequestHandlerException, SpeechletException {
-        return internalHandleSpeechletCall(speechlet, serializedSpeechletRequest);
+        SpeechletRequestDispatcher currentDispatcher = getDispatcher(speechlet);
+        if (currentDispatcher == null) {
+            currentDispatcher = new SpeechletRequestDispatcher(speechlet);
+            dispatcher = currentDispatcher;
+        }
+        return SpeechletRequestDispatcher.await(internalHandleSpeechletCall(currentDispatcher,
+                responseCache, serializedSpeechletRequest, serializedSpeechletRequest.length, null,
+                startRequestMetrics()));
+    }
+
+    /**
+     * Processes the provided bytes as a request from the Alexa service and generates an appropriate
+     * response after dispatching the request to the appropriate method calls on the
+     * {@code AsyncSpeechletV2} provided at construction time. This method blocks until the
+     * {@code AsyncSpeechletV2} has produced its response.
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     * @param serializedSpeechletRequest
+     *            the request coming from Alexa service
+     * @return the response that should be returned to the Alexa service. This comes from the
+     *         appropriate method call in the configured {@code AsyncSpeechletV2}
+     * @throws IOException
+     *             may occur during request or response serialization
+     * @throws SpeechletRequestHandlerException
+     *             indicates a problem with the request or response
+     * @throws SpeechletException
+     *             indicates a problem from within the included {@code AsyncSpeechletV2}
+     */
+    public byte[] handleSpeechletCall(AsyncSpeechletV2 speechlet, byte[] serializedSpeechletRequest)
+            throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        return handleSpeechletCall(speechlet, serializedSpeechletRequest, startRequestMetrics());
     }
 
-    private byte[] internalHandleSpeechletCall(SpeechletV2 speechlet,
-            byte[] serializedSpeechletRequest) throws IOException,
+    /**
+     * Same as {@link #handleSpeechletCall(AsyncSpeechletV2, byte[])}, adding the handling of the
+     * request to measurements started by the caller, for instance to include reading the body.
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     * @param serializedSpeechletRequest
+     *            the request coming from Alexa service
+     * @param metrics
+     *            the measurements of the request from {@link #startRequestMetrics()}, completed
+     *            by this method; may be {@code null}
+     * @return the response that should be returned to the Alexa service
+     * @throws IOException
+     *             may occur during request or response serialization
+     * @throws SpeechletRequestHandlerException
+     *             indicates a problem with the request or response
+     * @throws SpeechletException
+     *             indicates a problem from within the included {@code AsyncSpeechletV2}
+     */
+    public byte[] handleSpeechletCall(AsyncSpeechletV2 speechlet,
+            byte[] serializedSpeechletRequest, SpeechletRequestMetrics metrics)
+            throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        return SpeechletRequestDispatcher.await(handleSpeechletCallAsync(speechlet,
+                serializedSpeechletRequest, metrics));
+    }
+
+    /**
+     * Processes the provided bytes as a request from the Alexa service and generates an appropriate
+     * response after dispatching the request to the appropriate method calls on the
+     * {@code AsyncSpeechletV2} provided at construction time, without waiting for the
+     * {@code AsyncSpeechletV2} to produce its response.
+     *
+     * <p>
+     * The returned future fails with an {@code IOException} if the request or response cannot be
+     * serialized, a {@code SpeechletRequestHandlerException} if the request or response is
+     * rejected, or with the failure reported by the {@code AsyncSpeechletV2}.
+     * </p>
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     * @param serializedSpeechletRequest
+     *            the request coming from Alexa service
+     * @return a future completed with the response that should be returned to the Alexa service
+     */
+    public SpeechletFuture<byte[]> handleSpeechletCallAsync(AsyncSpeechletV2 speechlet,
+            byte[] serializedSpeechletRequest) {
+        return handleSpeechletCallAsync(speechlet, serializedSpeechletRequest,
+                startRequestMetrics());
+    }
+
+    /**
+     * Same as {@link #handleSpeechletCallAsync(AsyncSpeechletV2, byte[])}, adding the handling of
+     * the request to measurements started by the caller, for instance to include reading the body.
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     * @param serializedSpeechletRequest
+     *            the request coming from Alexa service
+     * @param metrics
+     *            the measurements of the request from {@link #startRequestMetrics()}, completed
+     *            when the returned future completes; may be {@code null}
+     * @return a future completed with the response that should be returned to the Alexa service
+     */
+    public SpeechletFuture<byte[]> handleSpeechletCallAsync(AsyncSpeechletV2 speechlet,
+            byte[] serializedSpeechletRequest, SpeechletRequestMetrics metrics) {
+        return internalHandleSpeechletCall(getOrCreateDispatcher(speechlet), responseCache,
+                serializedSpeechletRequest, serializedSpeechletRequest.length, null, metrics);
+    }
+
+    /**
+     * Same as {@link #handleSpeechletCall(AsyncSpeechletV2, byte[], SpeechletRequestMetrics)},
+     * writing the response to the provided {@code OutputStream} instead of returning it.
+     *
+     * <p>
+     * The response is serialized into a buffer reused by the serializing thread and verified
+     * before anything is written, so a rejected response never reaches the stream. It is then
+     * written with a single call to {@link OutputStream#write(byte[], int, int)}, allowing the
+     * caller to set the length of the response from that call. The stream is not closed.
+     * </p>
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     * @param serializedSpeechletRequest
+     *            the request coming from Alexa service
+     * @param out
+     *            the stream the response should be written to
+     * @param metrics
+     *            the measurements of the request from {@link #startRequestMetrics()}, completed
+     *            by this method; may be {@code null}
+     * @throws IOException
+     *             may occur during request or response serialization, or while writing the
+     *             response
+     * @throws SpeechletRequestHandlerException
+     *             indicates a problem with the request or response
+     * @throws SpeechletException
+     *             indicates a problem from within the included {@code AsyncSpeechletV2}
+     */
+    public void handleSpeechletCall(AsyncSpeechletV2 speechlet,
+            byte[] serializedSpeechletRequest, OutputStream out, SpeechletRequestMetrics metrics)
+            throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        if (out == null) {
+            throw new IllegalArgumentException("OutputStream must not be null");
+        }
+        SpeechletRequestDispatcher.await(internalHandleSpeechletCall(
+                getOrCreateDispatcher(speechlet), responseCache, serializedSpeechletRequest,
+                serializedSpeechletRequest.length, out, metrics));
+    }
+
+    /**
+     * Same as
+     * {@link #handleSpeechletCall(AsyncSpeechletV2, byte[], OutputStream, SpeechletRequestMetrics)}
+     * , deserializing the request in place from a buffer of a {@link SpeechletRequestBodyPool}.
+     * The body is not released.
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     * @param requestBody
+     *            the request coming from Alexa service
+     * @param out
+     *            the stream the response should be written to
+     * @param metrics
+     *            the measurements of the request from {@link #startRequestMetrics()}, completed
+     *            by this method; may be {@code null}
+     * @throws IOException
+     *             may occur during request or response serialization, or while writing the
+     *             response
+     * @throws SpeechletRequestHandlerException
+     *             indicates a problem with the request or response
+     * @throws SpeechletException
+     *             indicates a problem from within the included {@code AsyncSpeechletV2}
+     */
+    public void handleSpeechletCall(AsyncSpeechletV2 speechlet, SpeechletRequestBody requestBody,
+            OutputStream out, SpeechletRequestMetrics metrics) throws IOException,
             SpeechletRequestHandlerException, SpeechletException {
+        if (out == null) {
+            throw new IllegalArgumentException("OutputStream must not be null");
+        }
+        SpeechletRequestDispatcher.await(internalHandleSpeechletCall(
+                getOrCreateDispatcher(speechlet), responseCache, requestBody.getBuffer(),
+                requestBody.getLength(), out, metrics));
+    }
+
+    /**
+     * Same as
+     * {@link #handleSpeechletCallAsync(AsyncSpeechletV2, byte[], SpeechletRequestMetrics)},
+     * deserializing the request in place from a buffer of a {@link SpeechletRequestBodyPool}. The
+     * request is deserialized before this method returns, so the body can be released as soon as
+     * it does.
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     * @param requestBody
+     *            the request coming from Alexa service
+     * @param metrics
+     *            the measurements of the request from {@link #startRequestMetrics()}, completed
+     *            when the returned future completes; may be {@code null}
+     * @return a future completed with the response that should be returned to the Alexa service
+     */
+    public SpeechletFuture<byte[]> handleSpeechletCallAsync(AsyncSpeechletV2 speechlet,
+            SpeechletRequestBody requestBody, SpeechletRequestMetrics metrics) {
+        return internalHandleSpeechletCall(getOrCreateDispatcher(speechlet), responseCache,
+                requestBody.getBuffer(), requestBody.getLength(), null, metrics);
+    }
+
+    /**
+     * Processes the provided bytes as a request from the Alexa service and dispatches it to the
+     * speechlet that the provided router registered for its application ID. This method blocks
+     * until the speechlet has produced its response.
+     *
+     * @param router
+     *            the router selecting the speechlet to be invoked
+     * @param serializedSpeechletRequest
+     *            the request coming from Alexa service
+     * @return the response that should be returned to the Alexa service
+     * @throws IOException
+     *             may occur during request or response serialization
+     * @throws SpeechletRequestHandlerException
+     *             indicates a problem with the request or response, including a request for an
+     *             application ID without a route
+     * @throws SpeechletException
+     *             indicates a problem from within the speechlet, or that it is handling its
+     *             maximum number of concurrent requests
+     */
+    public byte[] handleSpeechletCall(SpeechletRouter router, byte[] serializedSpeechletRequest)
+            throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        return SpeechletRequestDispatcher.await(internalHandleSpeechletCall(router,
+                responseCache, serializedSpeechletRequest, serializedSpeechletRequest.length, null,
+                startRequestMetrics()));
+    }
+
+    /**
+     * Same as
+     * {@link #handleSpeechletCall(AsyncSpeechletV2, SpeechletRequestBody, OutputStream, SpeechletRequestMetrics)}
+     * , dispatching the request to the speechlet that the provided router registered for its
+     * application ID.
+     *
+     * @param router
+     *            the router selecting the speechlet to be invoked
+     * @param requestBody
+     *            the request coming from Alexa service
+     * @param out
+     *            the stream the response should be written to
+     * @param metrics
+     *            the measurements of the request from {@link #startRequestMetrics()}, completed
+     *            by this method; may be {@code null}
+     * @throws IOException
+     *             may occur during request or response serialization, or while writing the
+     *             response
+     * @throws SpeechletRequestHandlerException
+     *             indicates a problem with the request or response, including a request for an
+     *             application ID without a route
+     * @throws SpeechletException
+     *             indicates a problem from within the speechlet, or that it is handling its
+     *             maximum number of concurrent requests
+     */
+    public void handleSpeechletCall(SpeechletRouter router, SpeechletRequestBody requestBody,
+            OutputStream out, SpeechletRequestMetrics metrics) throws IOException,
+            SpeechletRequestHandlerException, SpeechletException {
+        if (out == null) {
+            throw new IllegalArgumentException("OutputStream must not be null");
+        }
+        SpeechletRequestDispatcher.await(internalHandleSpeechletCall(router,
+                responseCache, requestBody.getBuffer(), requestBody.getLength(), out, metrics));
+    }
+
+    /**
+     * Same as
+     * {@link #handleSpeechletCallAsync(AsyncSpeechletV2, SpeechletRequestBody, SpeechletRequestMetrics)}
+     * , dispatching the request to the speechlet that the provided router registered for its
+     * application ID.
+     *
+     * @param router
+     *            the router selecting the speechlet to be invoked
+     * @param requestBody
+     *            the request coming from Alexa service
+     * @param metrics
+     *            the measurements of the request from {@link #startRequestMetrics()}, completed
+     *            when the returned future completes; may be {@code null}
+     * @return a future completed with the response that should be returned to the Alexa service
+     */
+    public SpeechletFuture<byte[]> handleSpeechletCallAsync(SpeechletRouter router,
+            SpeechletRequestBody requestBody, SpeechletRequestMetrics metrics) {
+        return internalHandleSpeechletCall(router, responseCache, requestBody.getBuffer(),
+                requestBody.getLength(), null, metrics);
+    }
+
+    /**
+     * Returns the listener receiving the measurements of each request.
+     *
+     * @return the metrics listener, {@link SpeechletMetricsListener#NONE} by default
+     */
+    public SpeechletMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the listener receiving the measurements of each request. With the default,
+     * {@link SpeechletMetricsListener#NONE}, requests are not measured.
+     *
+     * @param metricsListener
+     *            the metrics listener
+     */
+    public void setMetricsListener(SpeechletMetricsListener metricsListener) {
+        if (metricsListener == null) {
+            throw new IllegalArgumentException("Metrics listener must not be null");
+        }
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Returns the cache answering requests sent again by the Alexa service.
+     *
+     * @return the response cache, or {@code null} if responses are not cached
+     */
+    public SpeechletResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Sets the cache answering requests sent again by the Alexa service with the response of
+     * their first occurrence, keyed by request ID, instead of invoking the speechlet again.
+     * Responses are not cached by default.
+     *
+     * @param responseCache
+     *            the response cache, or {@code null} to stop caching responses
+     */
+    public void setResponseCache(SpeechletResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Returns the manager keeping large session attributes on the server.
+     *
+     * @return the session attribute manager, or {@code null} if every attribute is sent back with
+     *         the response
+     */
+    public SessionAttributeManager getSessionAttributeManager() {
+        return sessionAttributeManager;
+    }
+
+    /**
+     * Sets the manager keeping large session attributes on the server instead of sending them
+     * back with every response. By default, every attribute is sent back with the response.
+     *
+     * @param sessionAttributeManager
+     *            the session attribute manager, or {@code null} to send every attribute back
+     */
+    public void setSessionAttributeManager(SessionAttributeManager sessionAttributeManager) {
+        this.sessionAttributeManager = sessionAttributeManager;
+    }
+
+    /**
+     * Returns the codec packing large session attributes into the response.
+     *
+     * @return the session attribute codec, or {@code null} if attributes are sent back as they are
+     */
+    public SessionAttributeCodec getSessionAttributeCodec() {
+        return sessionAttributeCodec;
+    }
+
+    /**
+     * Sets the codec packing large session attributes into the response, after those kept on the
+     * server by the session attribute manager, if any, are removed from it. Packed attributes are
+     * unpacked when read whether or not a codec is set. By default, attributes are sent back as
+     * they are.
+     *
+     * @param sessionAttributeCodec
+     *            the session attribute codec, or {@code null} to send attributes back as they are
+     */
+    public void setSessionAttributeCodec(SessionAttributeCodec sessionAttributeCodec) {
+        this.sessionAttributeCodec = sessionAttributeCodec;
+    }
+
+    /**
+     * Returns the policy giving each request a deadline.
+     *
+     * @return the deadline policy, or {@code null} if requests have no deadline
+     */
+    public SpeechletDeadlinePolicy getDeadlinePolicy() {
+        return deadlinePolicy;
+    }
+
+    /**
+     * Sets the policy giving each request a deadline, which speechlets read from
+     * {@link SpeechletRequestEnvelope#getDeadline()}, and answering requests whose deadline has
+     * expired with a fallback response. By default, requests have no deadline.
+     *
+     * @param deadlinePolicy
+     *            the deadline policy, or {@code null} to stop giving requests a deadline
+     */
+    public void setDeadlinePolicy(SpeechletDeadlinePolicy deadlinePolicy) {
+        this.deadlinePolicy = deadlinePolicy;
+    }
+
+    /**
+     * Returns the limiter of the requests the speechlet handles concurrently.
+     *
+     * @return the concurrency limiter, or {@code null} if concurrent requests are not limited
+     */
+    public SpeechletConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Sets the limiter of the requests the speechlet handles concurrently, which answers requests
+     * beyond its limit with a rejection response instead of dispatching them. By default,
+     * concurrent requests are not limited.
+     *
+     * @param concurrencyLimiter
+     *            the concurrency limiter, or {@code null} to stop limiting concurrent requests
+     */
+    public void setConcurrencyLimiter(SpeechletConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Returns the interceptors hooking into the stages of each request.
+     *
+     * @return the interceptors, in the order their request hooks run, or an empty list
+     */
+    public List<SpeechletInterceptor> getInterceptors() {
+        SpeechletInterceptorPipeline pipeline = interceptorPipeline;
+        return (pipeline != null) ? pipeline.getInterceptors() : Collections
+                .<SpeechletInterceptor>emptyList();
+    }
+
+    /**
+     * Sets the interceptors hooking into the stages of each request, replacing any set before.
+     * Their request hooks run in the order of the list and their response hooks in the reverse
+     * order. There are no interceptors by default.
+     *
+     * @param interceptors
+     *            the interceptors, or {@code null} or an empty list to remove them
+     */
+    public void setInterceptors(List<SpeechletInterceptor> interceptors) {
+        this.interceptorPipeline = SpeechletInterceptorPipeline.of(interceptors);
+    }
+
+    /**
+     * Returns the executor running the I/O-bound request verifiers.
+     *
+     * @return the verifier executor, or {@code null} if every verifier runs on the thread handling
+     *         the request
+     */
+    public Executor getVerifierExecutor() {
+        return verifierExecutor;
+    }
+
+    /**
+     * Sets the executor running the {@link IoBoundSpeechletRequestEnvelopeVerifier}s, concurrently
+     * with each other and with the other verifiers. The request is dispatched once they all
+     * accepted it, from the thread of the last one to complete, and fails as soon as one rejects
+     * it. By default, every verifier runs in turn on the thread handling the request.
+     *
+     * @param verifierExecutor
+     *            the verifier executor, or {@code null} to run every verifier on the thread
+     *            handling the request
+     */
+    public void setVerifierExecutor(Executor verifierExecutor) {
+        this.verifierExecutor = verifierExecutor;
+    }
 
-        final SpeechletRequestEnvelope<?> requestEnvelope =
-                SpeechletRequestEnvelope.fromJson(serializedSpeechletRequest);
+    /**
+     * Returns the way advisory response verifiers check responses.
+     *
+     * @return the advisory response verification, or {@code null} if advisory verifiers verify
+     *         every response before it is written
+     */
+    public AdvisoryResponseVerification getAdvisoryResponseVerification() {
+        return advisoryResponseVerification;
+    }
+
+    /**
+     * Sets the way the {@link AdvisorySpeechletResponseVerifier}s, which never reject a response,
+     * check responses: on a sample of them, once they are written, possibly on another thread,
+     * counting their warnings instead of logging each of them. By default, advisory verifiers
+     * verify every response before it is written, like the other verifiers.
+     *
+     * @param advisoryResponseVerification
+     *            the advisory response verification, or {@code null} to verify every response
+     *            before it is written
+     */
+    public void setAdvisoryResponseVerification(
+            AdvisoryResponseVerification advisoryResponseVerification) {
+        this.advisoryResponseVerification = advisoryResponseVerification;
+    }
+
+    /**
+     * Starts measuring a request, for callers that perform stages of its handling, such as reading
+     * the body, before passing it to this handler.
+     *
+     * @return the measurements of the request, or {@code null} if no metrics listener is set
+     */
+    public SpeechletRequestMetrics startRequestMetrics() {
+        return SpeechletRequestMetrics.start(metricsListener);
+    }
+
+    /**
+     * Creates the dispatcher of the provided speechlet ahead of its first request.
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     */
+    void prepareDispatcher(AsyncSpeechletV2 speechlet) {
+        if (getDispatcher(speechlet) == null) {
+            dispatcher = new SpeechletRequestDispatcher(speechlet);
+        }
+    }
+
+    /**
+     * Handles a synthetic request without measuring it or consulting the response cache, whose
+     * entries would otherwise be shared by requests with the same ID.
+     *
+     * @param speechlet
+     *            the speechlet to be invoked
+     * @param serializedSpeechletRequest
+     *            the synthetic request
+     * @return the response
+     */
+    byte[] handlePrimingCall(AsyncSpeechletV2 speechlet, byte[] serializedSpeechletRequest)
+            throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        return SpeechletRequestDispatcher.await(internalHandleSpeechletCall(
+                getOrCreateDispatcher(speechlet), null, serializedSpeechletRequest,
+                serializedSpeechletRequest.length, null, null));
+    }
+
+    private SpeechletRequestDispatcher getOrCreateDispatcher(AsyncSpeechletV2 speechlet) {
+        SpeechletRequestDispatcher currentDispatcher = getDispatcher(speechlet);
+        if (currentDispatcher == null) {
+            currentDispatcher = new SpeechletRequestDispatcher(speechlet);
+            dispatcher = currentDispatcher;
+        }
+        return currentDispatcher;
+    }
+
+    private SpeechletRequestDispatcher getDispatcher(Object speechlet) {
+        SpeechletRequestDispatcher currentDispatcher = dispatcher;
+        if (currentDispatcher != null && currentDispatcher.isDispatchingTo(speechlet)) {
+            return currentDispatcher;
+        }
+        return null;
+    }
+
+    private SpeechletFuture<byte[]> internalHandleSpeechletCall(
+            SpeechletCallDispatcher dispatcher, SpeechletResponseCache cache,
+            byte[] serializedSpeechletRequest, int length, OutputStream out,
+            SpeechletRequestMetrics metrics) {
+        final SpeechletInterceptorPipeline pipeline = interceptorPipeline;
+        if (pipeline != null) {
+            try {
+                pipeline.beforeParse(serializedSpeechletRequest, length);
+            } catch (SpeechletRequestHandlerException | RuntimeException e) {
+                return completeMetrics(SpeechletFuture.<byte[]>failed(e), metrics);
+            }
+        }
+        final long stageStart = (metrics != null) ? System.nanoTime() : 0L;
+        SpeechletRequestEnvelope<?> requestEnvelope = null;
+        IOException failure = null;
+        try {
+            requestEnvelope =
+                    SpeechletRequestEnvelope.fromJson(serializedSpeechletRequest, 0, length);
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (metrics != null) {
+            metrics.recordStage(Stage.DESERIALIZATION, stageStart);
+            metrics.setRequestSize(length);
+        }
+        if (failure != null) {
+            return completeMetrics(SpeechletFuture.<byte[]>failed(failure), metrics);
+        }
+        return completeMetrics(
+                internalHandleSpeechletCall(dispatcher, cache, requestEnvelope, out, metrics),
+                metrics);
+    }
+
+    private SpeechletFuture<byte[]> internalHandleSpeechletCall(
+            final SpeechletCallDispatcher dispatcher, final SpeechletResponseCache cache,
+            final SpeechletRequestEnvelope<?> requestEnvelope, final OutputStream out,
+            final SpeechletRequestMetrics metrics) {
+        long stageStart = 0L;
+        if (metrics != null) {
+            metrics.setRequest(requestEnvelope.getRequest());
+            stageStart = System.nanoTime();
+        }
+        ParallelRequestVerification pendingVerification = null;
+        try {
+            pendingVerification = verifyRequest(requestEnvelope);
+        } catch (SpeechletRequestHandlerException e) {
+            return SpeechletFuture.failed(e);
+        } finally {
+            if (metrics != null && pendingVerification == null) {
+                stageStart = metrics.recordStage(Stage.REQUEST_VERIFICATION, stageStart);
+            }
+        }
+        if (pendingVerification == null) {
+            return handleVerifiedSpeechletCall(dispatcher, cache, requestEnvelope, out, metrics,
+                    stageStart);
+        }
+
+        // Go on once the I/O-bound verifiers accepted the request, on the thread of the last one
+        final long verificationStart = stageStart;
+        final SpeechletFuture<byte[]> result = new SpeechletFuture<byte[]>();
+        pendingVerification.getResult().addCallback(new SpeechletFuture.Callback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                long dispatchStart = 0L;
+                if (metrics != null) {
+                    dispatchStart = metrics.recordStage(Stage.REQUEST_VERIFICATION,
+                            verificationStart);
+                }
+                SpeechletFuture<byte[]> response;
+                try {
+                    response = handleVerifiedSpeechletCall(dispatcher, cache, requestEnvelope,
+                            out, metrics, dispatchStart);
+                } catch (RuntimeException e) {
+                    response = SpeechletFuture.failed(e);
+                }
+                response.addCallback(new SpeechletFuture.Callback<byte[]>() {
+                    @Override
+                    public void onSuccess(byte[] value) {
+                        result.complete(value);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable failure) {
+                        result.completeExceptionally(failure);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                if (metrics != null) {
+                    metrics.recordStage(Stage.REQUEST_VERIFICATION, verificationStart);
+                }
+                result.completeExceptionally(failure);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Handles a request accepted by every verifier.
+     */
+    private SpeechletFuture<byte[]> handleVerifiedSpeechletCall(
+            SpeechletCallDispatcher dispatcher, final SpeechletResponseCache cache,
+            SpeechletRequestEnvelope<?> requestEnvelope, final OutputStream out,
+            final SpeechletRequestMetrics metrics, final long stageStart) {
+
+        // Give the request its deadline, which the speechlet reads from the envelope
+        final SpeechletDeadlinePolicy policy = deadlinePolicy;
+        if (policy != null) {
+            requestEnvelope = withDeadline(requestEnvelope, policy);
+        }
+        final SpeechletDeadline deadline = requestEnvelope.getDeadline();
+        final SpeechletRequestEnvelope<?> currentRequestEnvelope = requestEnvelope;
+        final SpeechletInterceptorPipeline pipeline = interceptorPipeline;
+        if (pipeline != null) {
+            try {
+                pipeline.afterParse(requestEnvelope);
+            } catch (SpeechletRequestHandlerException | RuntimeException e) {
+                return SpeechletFuture.failed(e);
+            }
+        }
 
         final SpeechletRequest request = requestEnvelope.getRequest();
         final Session session = requestEnvelope.getSession();
+        final SpeechletFuture<byte[]> result = new SpeechletFuture<byte[]>();
+        final long dispatchStart = stageStart;
 
-        // Verify request
-        for (SpeechletRequestVerifier verifier : requestVerifiers) {
-            if (!verifier.verify(request, session)) {
-                String message =
-                        String.format("Could not validate SpeechletRequest %s using verifier %s, "
-                                + "rejecting request", request != null ? request.getRequestId()
-                                : "null", verifier.getClass().getSimpleName());
-                throw new SpeechletRequestHandlerException(message);
+        // Answer a request sent again from the response of its first occurrence
+        final String requestId = (cache != null) ? request.getRequestId() : null;
+        final SpeechletFuture<byte[]> pending =
+                (requestId != null) ? new SpeechletFuture<byte[]>() : null;
+        if (pending != null) {
+            SpeechletFuture<byte[]> cachedResponse = cache.lookup(requestId, pending);
+            if (cachedResponse != null) {
+                return respondFromCache(cachedResponse, cache.getInFlightTimeoutMillis(), out,
+                        metrics);
             }
         }
 
-        for (SpeechletRequestEnvelopeVerifier verifier : requestEnvelopeVerifiers) {
-            if (!verifier.verify(requestEnvelope)) {
-                String message =
-                        String.format("Could not validate SpeechletRequest %s using verifier %s, "
-                                + "rejecting request", request != null ? request.getRequestId()
-                                : "null", verifier.getClass().getSimpleName());
-                throw new SpeechletRequestHandlerException(message);
+        // Load the attributes of the session kept on the server
+        final SessionAttributeManager attributeManager = sessionAttributeManager;
+        Map<String, byte[]> restoredAttributes = null;
+        if (attributeManager != null) {
+            try {
+                restoredAttributes = attributeManager.restore(session);
+            } catch (IOException | RuntimeException e) {
+                if (pending != null) {
+                    cache.remove(requestId, pending);
+                    pending.completeExceptionally(e);
+                }
+                return SpeechletFuture.failed(e);
             }
         }
+        final Map<String, byte[]> storedAttributes = restoredAttributes;
+        final SessionAttributeCodec attributeCodec = sessionAttributeCodec;
+
+        if (pipeline != null) {
+            dispatcher = pipeline.wrap(dispatcher);
+        }
+
+        // Answer right away if the deadline has already passed or the speechlet is already
+        // handling as many requests as it can
+        final SpeechletConcurrencyLimiter limiter = concurrencyLimiter;
+        final SpeechletResponse immediateResponse;
+        if (deadline != null && deadline.isExpired()) {
+            policy.recordExpiredOnArrival();
+            immediateResponse = policy.getFallbackResponse();
+        } else if (limiter != null && !limiter.tryAcquire()) {
+            immediateResponse = limiter.getRejectionResponse();
+        } else {
+            immediateResponse = null;
+        }
+
+        final SpeechletFuture.Callback<SpeechletResponseEnvelope> callback =
+                new SpeechletFuture.Callback<SpeechletResponseEnvelope>() {
+                    @Override
+                    public void onSuccess(SpeechletResponseEnvelope responseEnvelope) {
+                        if (metrics != null) {
+                            metrics.recordStage(Stage.DISPATCH, dispatchStart);
+                        }
+                        respond(responseEnvelope, immediateResponse == null);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable failure) {
+                        if (metrics != null) {
+                            metrics.recordStage(Stage.DISPATCH, dispatchStart);
+                        }
+                        // Answering with an error now would only make the user wait longer
+                        if (deadline != null && deadline.isExpired()) {
+                            log.warn("Speechlet failed after the deadline of request {}, "
+                                    + "answering with the fallback response: {}",
+                                    request.getRequestId(), failure.toString());
+                            policy.recordExpiredOnFailure();
+                            respond(newResponseEnvelope(policy.getFallbackResponse(), session),
+                                    false);
+                            return;
+                        }
+                        fail(failure);
+                    }
+
+                    /**
+                     * Writes the response, caching it unless it was produced without the
+                     * speechlet, such as a fallback or rejection response.
+                     */
+                    private void respond(SpeechletResponseEnvelope responseEnvelope,
+                            boolean cacheable) {
+                        try {
+                            if (pipeline != null) {
+                                pipeline.beforeWrite(currentRequestEnvelope, responseEnvelope);
+                            }
+                            if (attributeManager != null) {
+                                // A response produced without the speechlet only ends the
+                                // session for the stored attributes if the user ended it
+                                attributeManager.save(session, storedAttributes,
+                                        responseEnvelope,
+                                        cacheable ? isSessionEnded(request, responseEnvelope)
+                                                : request instanceof SessionEndedRequest);
+                            }
+                            if (attributeCodec != null) {
+                                responseEnvelope.setSessionAttributes(attributeCodec
+                                        .encode(responseEnvelope.getSessionAttributes()));
+                            }
+                            if (pending == null) {
+                                result.complete(serializeResponse(responseEnvelope, request,
+                                        session, out, metrics));
+                                return;
+                            }
+                            // The cache keeps the response, so it cannot use the thread buffer
+                            byte[] response =
+                                    serializeResponse(responseEnvelope, request, session, null,
+                                            metrics);
+                            if (cacheable) {
+                                cache.put(requestId, pending, response);
+                            } else {
+                                // Requests waiting for this one share the response, but the
+                                // request is handled again if sent again
+                                cache.remove(requestId, pending);
+                            }
+                            pending.complete(response);
+                            result.complete(writeResponse(response, out));
+                        } catch (IOException | SpeechletRequestHandlerException
+                                | RuntimeException e) {
+                            fail(e);
+                        } catch (Error e) {
+                            fail(e);
+                            throw e;
+                        }
+                    }
 
-        // Dispatch request to Speechlet
-        SpeechletRequestDispatcher dispatcher = new SpeechletRequestDispatcher(speechlet);
-        SpeechletResponseEnvelope responseEnvelope =
-                dispatcher.dispatchSpeechletCall(requestEnvelope, session);
+                    private void fail(Throwable failure) {
+                        // Failures are not cached, the request is handled again if sent again
+                        if (pending != null) {
+                            cache.remove(requestId, pending);
+                            pending.completeExceptionally(failure);
+                        }
+                        result.completeExceptionally(failure);
+                    }
+                };
 
-        // Verify response
+        // Dispatch request to Speechlet, unless it was answered right away
+        try {
+            if (immediateResponse != null) {
+                callback.onSuccess(newResponseEnvelope(immediateResponse, session));
+            } else if (limiter != null) {
+                dispatchLimited(dispatcher, requestEnvelope, session, limiter).addCallback(
+                        callback);
+            } else {
+                dispatcher.dispatchSpeechletCallAsync(requestEnvelope, session).addCallback(
+                        callback);
+            }
+        } catch (Throwable t) {
+            // Requests coalesced with this one must not wait for a response that never comes
+            if (pending != null) {
+                cache.remove(requestId, pending);
+                pending.completeExceptionally(t);
+            }
+            throw t;
+        }
+
+        return result;
+    }
+
+    /**
+     * Dispatches a request admitted by the concurrency limiter, releasing it once the speechlet
+     * has handled it.
+     */
+    private static SpeechletFuture<SpeechletResponseEnvelope> dispatchLimited(
+            SpeechletCallDispatcher dispatcher, SpeechletRequestEnvelope<?> requestEnvelope,
+            Session session, final SpeechletConcurrencyLimiter limiter) {
+        final long start = System.nanoTime();
+        SpeechletFuture<SpeechletResponseEnvelope> result = null;
+        try {
+            result = dispatcher.dispatchSpeechletCallAsync(requestEnvelope, session);
+        } finally {
+            // Released whatever the dispatch threw, a lost permit would lower the limit for good
+            if (result == null) {
+                limiter.release(System.nanoTime() - start, false);
+            }
+        }
+        result.addCallback(new SpeechletFuture.Callback<SpeechletResponseEnvelope>() {
+            @Override
+            public void onSuccess(SpeechletResponseEnvelope value) {
+                limiter.release(System.nanoTime() - start, true);
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                limiter.release(System.nanoTime() - start, false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns a copy of the provided envelope with the deadline of its request.
+     */
+    private static SpeechletRequestEnvelope<?> withDeadline(
+            SpeechletRequestEnvelope<?> requestEnvelope, SpeechletDeadlinePolicy policy) {
+        return SpeechletRequestEnvelope
+                .<SpeechletRequest>builder()
+                .withVersion(requestEnvelope.getVersion())
+                .withSession(requestEnvelope.getSession())
+                .withContext(requestEnvelope.getContext())
+                .withRequest(requestEnvelope.getRequest())
+                .withDeadline(policy.newDeadline(requestEnvelope.getRequest()))
+                .build();
+    }
+
+    /**
+     * Returns the envelope of a response sent without invoking the speechlet, keeping the session
+     * attributes unless the response ends the session.
+     */
+    private static SpeechletResponseEnvelope newResponseEnvelope(SpeechletResponse response,
+            Session session) {
+        SpeechletResponseEnvelope responseEnvelope = new SpeechletResponseEnvelope();
+        responseEnvelope.setVersion(Sdk.VERSION);
+        responseEnvelope.setResponse(response);
+        if (session != null && !response.getShouldEndSession()) {
+            responseEnvelope.setSessionAttributes(session.getAttributes());
+        }
+        return responseEnvelope;
+    }
+
+    /**
+     * Returns whether the session ends with the provided response.
+     */
+    private static boolean isSessionEnded(SpeechletRequest request,
+            SpeechletResponseEnvelope responseEnvelope) {
+        return request instanceof SessionEndedRequest
+                || (responseEnvelope.getResponse() != null && responseEnvelope
+                        .getResponse()
+                        .getShouldEndSession());
+    }
+
+    /**
+     * Answers a request with the cached or in-flight response of a previous request with the same
+     * ID, writing it to {@code out} if provided. Callers blocking on the result of an in-flight
+     * response give up after the provided timeout.
+     */
+    private static SpeechletFuture<byte[]> respondFromCache(
+            SpeechletFuture<byte[]> cachedResponse, long inFlightTimeoutMillis,
+            final OutputStream out, final SpeechletRequestMetrics metrics) {
+        final SpeechletFuture<byte[]> result =
+                cachedResponse.isDone() ? new SpeechletFuture<byte[]>() : new CoalescedResponse(
+                        inFlightTimeoutMillis);
+        cachedResponse.addCallback(new SpeechletFuture.Callback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] response) {
+                if (metrics != null) {
+                    metrics.setResponseSize(response.length);
+                }
+                try {
+                    result.complete(writeResponse(response, out));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                result.completeExceptionally(failure);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Writes a serialized response to {@code out} if provided.
+     *
+     * @return the serialized response, or {@code null} if it was written to {@code out}
+     */
+    private static byte[] writeResponse(byte[] response, OutputStream out) throws IOException {
+        if (out == null) {
+            return response;
+        }
+        out.write(response, 0, response.length);
+        return null;
+    }
+
+    /**
+     * Completes the provided measurements, if any, once the result of a request is available.
+     */
+    private static SpeechletFuture<byte[]> completeMetrics(SpeechletFuture<byte[]> result,
+            final SpeechletRequestMetrics metrics) {
+        if (metrics != null) {
+            result.addCallback(new SpeechletFuture.Callback<byte[]>() {
+                @Override
+                public void onSuccess(byte[] value) {
+                    metrics.complete(null);
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    metrics.complete(failure);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Runs the request verifiers, starting the I/O-bound ones on the verifier executor, if any,
+     * before running the others on the calling thread.
+     *
+     * @return the verification by the I/O-bound verifiers still running, or {@code null} if every
+     *         verifier already accepted the request
+     */
+    private ParallelRequestVerification verifyRequest(SpeechletRequestEnvelope<?> requestEnvelope)
+            throws SpeechletRequestHandlerException {
+        final SpeechletRequest request = requestEnvelope.getRequest();
+        final Session session = requestEnvelope.getSession();
+        final Executor executor = verifierExecutor;
+        final ParallelRequestVerification pendingVerification =
+                (executor != null) ? ParallelRequestVerification.start(
+                        requestEnvelopeVerifiers, requestEnvelope, executor) : null;
+
+        // Verify request
+        try {
+            for (SpeechletRequestVerifier verifier : requestVerifiers) {
+                if (!verifier.verify(request, session)) {
+                    throw newRequestVerificationFailure(request, verifier);
+                }
+            }
+
+            for (SpeechletRequestEnvelopeVerifier verifier : requestEnvelopeVerifiers) {
+                if (pendingVerification != null
+                        && verifier instanceof IoBoundSpeechletRequestEnvelopeVerifier) {
+                    continue;
+                }
+                if (!verifier.verify(requestEnvelope)) {
+                    throw newRequestVerificationFailure(request, verifier);
+                }
+            }
+        } catch (SpeechletRequestHandlerException | RuntimeException e) {
+            if (pendingVerification != null) {
+                pendingVerification.cancel();
+            }
+            throw e;
+        }
+        return pendingVerification;
+    }
+
+    /**
+     * Returns the failure of a request rejected by the provided verifier.
+     */
+    static SpeechletRequestHandlerException newRequestVerificationFailure(
+            SpeechletRequest request, Object verifier) {
+        String message =
+                String.format("Could not validate SpeechletRequest %s using verifier %s, "
+                        + "rejecting request", request != null ? request.getRequestId() : "null",
+                        verifier.getClass().getSimpleName());
+        return new SpeechletRequestHandlerException(message);
+    }
+
+    /**
+     * Serializes and verifies the response, then writes it to {@code out} if provided.
+     *
+     * @return the serialized response, or {@code null} if it was written to {@code out}
+     */
+    private byte[] serializeResponse(SpeechletResponseEnvelope responseEnvelope,
+            SpeechletRequest request, Session session, OutputStream out,
+            SpeechletRequestMetrics metrics) throws IOException, SpeechletRequestHandlerException {
+        long stageStart = (metrics != null) ? System.nanoTime() : 0L;
+
+        // Serialize the response once, verifiers inspecting its size share the result
+        final SerializedSpeechletResponseEnvelope serializedResponseEnvelope =
+                (out != null) ? SerializedSpeechletResponseEnvelope
+                        .serializeToThreadBuffer(responseEnvelope)
+                        : SerializedSpeechletResponseEnvelope.serialize(responseEnvelope);
+        final AdvisoryResponseVerification advisoryVerification = advisoryResponseVerification;
+        try {
+            if (metrics != null) {
+                stageStart = metrics.recordStage(Stage.SERIALIZATION, stageStart);
+                metrics.setResponseSize(serializedResponseEnvelope.getSize());
+            }
+            verifyResponse(serializedResponseEnvelope, request, session,
+                    advisoryVerification != null);
+            if (metrics != null) {
+                metrics.recordStage(Stage.RESPONSE_VERIFICATION, stageStart);
+            }
+
+            byte[] response = null;
+            if (out == null) {
+                response = serializedResponseEnvelope.getJsonBytes();
+            } else {
+                serializedResponseEnvelope.writeTo(out);
+            }
+            if (advisoryVerification != null) {
+                advisoryVerification.check(responseVerifiers, responseEnvelope,
+                        serializedResponseEnvelope.getSize(), session);
+            }
+            return response;
+        } finally {
+            serializedResponseEnvelope.release();
+        }
+    }
+
+    /**
+     * Runs the response verifiers, except the advisory ones if they check responses once written.
+     */
+    private void verifyResponse(SerializedSpeechletResponseEnvelope serializedResponseEnvelope,
+            SpeechletRequest request, Session session, boolean skipAdvisoryVerifiers)
+            throws SpeechletRequestHandlerException {
+        final SpeechletResponseEnvelope responseEnvelope =
+                serializedResponseEnvelope.getResponseEnvelope();
+        final ConstantSpeechletResponse constantResponse =
+                responseEnvelope.getResponse() instanceof ConstantSpeechletResponse
+                        ? (ConstantSpeechletResponse) responseEnvelope.getResponse() : null;
         for (SpeechletResponseVerifier verifier : responseVerifiers) {
-            if (!verifier.verify(responseEnvelope, session)) {
+            if (skipAdvisoryVerifiers && verifier instanceof AdvisorySpeechletResponseVerifier) {
+                continue;
+            }
+            // A constant response is verified only once by verifiers inspecting only its contents
+            boolean verifiedOnce =
+                    constantResponse != null
+                            && verifier instanceof ContentSpeechletResponseVerifier;
+            if (verifiedOnce && constantResponse.isVerifiedBy(verifier)) {
+                continue;
+            }
+            boolean verified =
+                    verifier instanceof SerializedSpeechletResponseVerifier
+                            ? ((SerializedSpeechletResponseVerifier) verifier).verify(
+                                    serializedResponseEnvelope, session)
+                            : verifier.verify(responseEnvelope, session);
+            if (!verified) {
                 String message =
                         String.format("Could not validate SpeechletResponse %s using verifier %s, "
                                 + "rejecting response", request.getRequestId(), verifier
@@ -161,9 +1278,10 @@ public class SpeechletRequestHandler {
                                 .getSimpleName());
                 throw new SpeechletRequestHandlerException(message);
             }
+            if (verifiedOnce) {
+                constantResponse.setVerifiedBy(verifier);
+            }
         }
-
-        return responseEnvelope.toJsonBytes();
     }
 
     private void addApplicationIdSpeechletRequestEnvelopeVerifierIfNecessary() {
@@ -177,4 +1295,27 @@ public class SpeechletRequestHandler {
             }
         }
     }
+
+    /**
+     * The response of a request waiting for an in-flight request with the same ID. Blocking on it
+     * gives up after the in-flight timeout of the cache, in case the in-flight request never
+     * completes.
+     */
+    private static final class CoalescedResponse extends SpeechletFuture<byte[]> {
+        private final long timeoutMillis;
+
+        private CoalescedResponse(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public byte[] get() throws InterruptedException, ExecutionException {
+            try {
+                return get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new ExecutionException(new SpeechletException(
+                        "Timed out waiting for the in-flight request with the same ID", e));
+            }
+        }
+    }
 }
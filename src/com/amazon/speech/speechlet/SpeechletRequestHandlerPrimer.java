@@ -0,0 +1,337 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.io.UnsupportedEncodingException;
+import java.security.KeyStore;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.TrustManagerFactory;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerifier;
+import com.amazon.speech.speechlet.interfaces.audioplayer.AudioItem;
+import com.amazon.speech.speechlet.interfaces.audioplayer.PlayBehavior;
+import com.amazon.speech.speechlet.interfaces.audioplayer.Stream;
+import com.amazon.speech.speechlet.interfaces.audioplayer.directive.PlayDirective;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.Reprompt;
+import com.amazon.speech.ui.SimpleCard;
+import com.amazon.speech.ui.SsmlOutputSpeech;
+
+/**
+ * <p>
+ * Pays the one-time costs of handling a first request ahead of time, for instance while an AWS
+ * Lambda function initializes rather than during the first utterance of a user. Priming runs a
+ * synthetic request of every request type through a {@link SpeechletRequestHandler}, which loads
+ * the request classes, builds the Jackson deserializers and serializers of the request and
+ * response envelopes, and runs the verifiers and the dispatcher a few times. The synthetic
+ * requests are answered by an internal speechlet: the speechlet of the skill is never invoked,
+ * but its dispatcher is created.
+ * </p>
+ *
+ * <p>
+ * Optionally, signature verification is primed as well: the security providers and the default
+ * trust store are loaded and, when a certificate chain URL is configured, the signing certificate
+ * is retrieved into the cache of {@link SpeechletRequestSignatureVerifier}.
+ * </p>
+ *
+ * <p>
+ * Priming never fails: problems are logged and the remaining steps still run.
+ * </p>
+ */
+public final class SpeechletRequestHandlerPrimer {
+    private static final Logger log = LoggerFactory.getLogger(SpeechletRequestHandlerPrimer.class);
+
+    private static final int DEFAULT_ITERATIONS = 3;
+    private static final String PRIMING_APPLICATION_ID = "amzn1.ask.skill.priming";
+    private static final String PRIMING_REQUEST_ID = "amzn1.echo-api.request.priming";
+    private static final AsyncSpeechletV2 PRIMING_SPEECHLET = new PrimingSpeechlet();
+
+    private final int iterations;
+    private final boolean signatureVerificationPrimed;
+    private final String signingCertificateChainUrl;
+
+    private SpeechletRequestHandlerPrimer(final Builder builder) {
+        this.iterations = builder.iterations;
+        this.signatureVerificationPrimed =
+                builder.signatureVerificationPrimed || (builder.signingCertificateChainUrl != null);
+        this.signingCertificateChainUrl = builder.signingCertificateChainUrl;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Primes the provided handler for the provided speechlet. Synthetic requests are not reported
+     * to the metrics listener of the handler.
+     *
+     * @param handler
+     *            the handler that will handle the requests of the skill
+     * @param speechlet
+     *            the speechlet of the skill, which is not invoked
+     * @param applicationId
+     *            an application ID accepted by the verifiers of the handler, or null to use a
+     *            placeholder, in which case requests may be rejected before being dispatched
+     * @return the time spent priming, in nanoseconds
+     */
+    public long prime(final SpeechletRequestHandler handler, final AsyncSpeechletV2 speechlet,
+            final String applicationId) {
+        long start = System.nanoTime();
+        List<byte[]> requests = primingRequests(applicationId);
+        for (int i = 0; i < iterations; i++) {
+            for (byte[] request : requests) {
+                try {
+                    handler.handlePrimingCall(PRIMING_SPEECHLET, request);
+                } catch (Exception ex) {
+                    log.debug("Priming request was not handled", ex);
+                }
+            }
+        }
+        handler.prepareDispatcher(speechlet);
+
+        if (signatureVerificationPrimed) {
+            primeSignatureVerification();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        log.info("Primed speechlet request handling in {} ms",
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return elapsed;
+    }
+
+    private void primeSignatureVerification() {
+        try {
+            Signature.getInstance(Sdk.SIGNATURE_ALGORITHM);
+            CertificateFactory.getInstance(Sdk.SIGNATURE_CERTIFICATE_TYPE);
+            TrustManagerFactory
+                    .getInstance(TrustManagerFactory.getDefaultAlgorithm())
+                    .init((KeyStore) null);
+        } catch (Exception ex) {
+            log.warn("Unable to prime the security providers", ex);
+        }
+
+        if (signingCertificateChainUrl != null) {
+            try {
+                /*
+                 * An empty body with an empty signature never verifies, but checking it retrieves
+                 * the certificate into the cache and initializes a signature engine for its key
+                 */
+                SpeechletRequestSignatureVerifier.checkRequestSignature(new byte[0], "",
+                        signingCertificateChainUrl);
+            } catch (SecurityException ex) {
+                if (ex.getCause() != null) {
+                    log.warn("Unable to retrieve the signing certificate at {}",
+                            signingCertificateChainUrl, ex);
+                }
+            }
+        }
+    }
+
+    private static List<byte[]> primingRequests(final String applicationId) {
+        String application =
+                "{\"applicationId\":\""
+                        + (applicationId != null ? applicationId : PRIMING_APPLICATION_ID) + "\"}";
+        String user = "{\"userId\":\"amzn1.ask.account.PRIMING\",\"accessToken\":\"priming\"}";
+        String newSession =
+                "{\"new\":true,\"sessionId\":\"amzn1.echo-api.session.priming\",\"application\":"
+                        + application + ",\"attributes\":{},\"user\":" + user + "}";
+        String session =
+                "{\"new\":false,\"sessionId\":\"amzn1.echo-api.session.priming\",\"application\":"
+                        + application + ",\"attributes\":{\"count\":1,\"name\":\"priming\","
+                        + "\"history\":[{\"turn\":0}]},\"user\":" + user + "}";
+        String system =
+                "\"System\":{\"application\":" + application + ",\"user\":" + user
+                        + ",\"device\":{\"supportedInterfaces\":{\"AudioPlayer\":{}}}}";
+        String context = "{" + system + "}";
+        String audioPlayerContext =
+                "{\"AudioPlayer\":{\"token\":\"priming\",\"offsetInMilliseconds\":1000,"
+                        + "\"playerActivity\":\"PLAYING\"}," + system + "}";
+        String playback = ",\"token\":\"priming\",\"offsetInMilliseconds\":1000";
+
+        return Arrays.asList(
+                envelope(newSession, context, request("LaunchRequest", "")),
+                envelope(session, context, request("IntentRequest",
+                        ",\"intent\":{\"name\":\"PrimingIntent\",\"slots\":{\"Slot\":"
+                                + "{\"name\":\"Slot\",\"value\":\"priming\"}}}")),
+                envelope(session, context, request("SessionEndedRequest",
+                        ",\"reason\":\"ERROR\",\"error\":{\"type\":\"INVALID_RESPONSE\","
+                                + "\"message\":\"priming\"}")),
+                envelope(null, audioPlayerContext,
+                        request("AudioPlayer.PlaybackStarted", playback)),
+                envelope(null, audioPlayerContext,
+                        request("AudioPlayer.PlaybackNearlyFinished", playback)),
+                envelope(null, audioPlayerContext,
+                        request("AudioPlayer.PlaybackFinished", playback)),
+                envelope(null, audioPlayerContext,
+                        request("AudioPlayer.PlaybackStopped", playback)),
+                envelope(null, audioPlayerContext, request("AudioPlayer.PlaybackFailed",
+                        ",\"token\":\"priming\",\"error\":{\"type\":\"MEDIA_ERROR_UNKNOWN\","
+                                + "\"message\":\"priming\"},\"currentPlaybackState\":{\"token\":"
+                                + "\"priming\",\"offsetInMilliseconds\":1000,"
+                                + "\"playerActivity\":\"PLAYING\"}")),
+                envelope(null, audioPlayerContext,
+                        request("PlaybackController.PlayCommandIssued", "")),
+                envelope(null, audioPlayerContext,
+                        request("PlaybackController.PauseCommandIssued", "")),
+                envelope(null, audioPlayerContext,
+                        request("PlaybackController.NextCommandIssued", "")),
+                envelope(null, audioPlayerContext,
+                        request("PlaybackController.PreviousCommandIssued", "")),
+                envelope(null, context, request("System.ExceptionEncountered",
+                        ",\"error\":{\"type\":\"INVALID_RESPONSE\",\"message\":\"priming\"},"
+                                + "\"cause\":{\"requestId\":\"" + PRIMING_REQUEST_ID + "\"}")));
+    }
+
+    private static byte[] envelope(final String session, final String context,
+            final String request) {
+        String json =
+                "{\"version\":\"1.0\"," + (session != null ? "\"session\":" + session + "," : "")
+                        + "\"context\":" + context + ",\"request\":" + request + "}";
+        try {
+            return json.getBytes(Sdk.CHARACTER_ENCODING);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String request(final String type, final String fields) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return "{\"type\":\"" + type + "\",\"requestId\":\"" + PRIMING_REQUEST_ID
+                + "\",\"timestamp\":\"" + format.format(new Date()) + "\",\"locale\":\"en-US\""
+                + fields + "}";
+    }
+
+    /**
+     * Answers the synthetic requests with responses using the common parts of the response model.
+     */
+    private static final class PrimingSpeechlet implements AsyncSpeechletV2 {
+        @Override
+        public SpeechletFuture<Void> onSessionStarted(
+                final SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+            return SpeechletFuture.completed(null);
+        }
+
+        @Override
+        public SpeechletFuture<SpeechletResponse> onLaunch(
+                final SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+            SsmlOutputSpeech outputSpeech = new SsmlOutputSpeech();
+            outputSpeech.setSsml("<speak>priming</speak>");
+            Reprompt reprompt = new Reprompt();
+            reprompt.setOutputSpeech(outputSpeech);
+            return SpeechletFuture.completed(SpeechletResponse.newAskResponse(outputSpeech,
+                    reprompt));
+        }
+
+        @Override
+        public SpeechletFuture<SpeechletResponse> onIntent(
+                final SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+            PlainTextOutputSpeech outputSpeech = new PlainTextOutputSpeech();
+            outputSpeech.setText("priming");
+            SimpleCard card = new SimpleCard();
+            card.setTitle("priming");
+            card.setContent("priming");
+
+            Stream stream = new Stream();
+            stream.setToken("priming");
+            stream.setUrl("https://priming.invalid/priming.mp3");
+            AudioItem audioItem = new AudioItem();
+            audioItem.setStream(stream);
+            PlayDirective directive = new PlayDirective();
+            directive.setPlayBehavior(PlayBehavior.REPLACE_ALL);
+            directive.setAudioItem(audioItem);
+
+            SpeechletResponse response = SpeechletResponse.newTellResponse(outputSpeech, card);
+            response.setDirectives(Arrays.<Directive>asList(directive));
+            return SpeechletFuture.completed(response);
+        }
+
+        @Override
+        public SpeechletFuture<Void> onSessionEnded(
+                final SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+            return SpeechletFuture.completed(null);
+        }
+    }
+
+    /**
+     * Builder used to construct a new {@code SpeechletRequestHandlerPrimer}.
+     */
+    public static final class Builder {
+        private int iterations = DEFAULT_ITERATIONS;
+        private boolean signatureVerificationPrimed;
+        private String signingCertificateChainUrl;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets how many times each synthetic request is handled, 3 by default.
+         *
+         * @param iterations
+         *            the number of iterations
+         * @return this builder
+         */
+        public Builder withIterations(final int iterations) {
+            this.iterations = iterations;
+            return this;
+        }
+
+        /**
+         * Sets whether the security providers and trust store used by signature verification
+         * are loaded, which is off by default.
+         *
+         * @param signatureVerificationPrimed
+         *            whether to prime signature verification
+         * @return this builder
+         */
+        public Builder withSignatureVerificationPrimed(final boolean signatureVerificationPrimed) {
+            this.signatureVerificationPrimed = signatureVerificationPrimed;
+            return this;
+        }
+
+        /**
+         * Sets a certificate chain URL whose signing certificate is retrieved into the cache
+         * while priming. Setting it primes signature verification.
+         *
+         * @param signingCertificateChainUrl
+         *            the certificate chain URL
+         * @return this builder
+         */
+        public Builder withSigningCertificateChainUrl(final String signingCertificateChainUrl) {
+            this.signingCertificateChainUrl = signingCertificateChainUrl;
+            return this;
+        }
+
+        public SpeechletRequestHandlerPrimer build() {
+            Validate.isTrue(iterations >= 0, "Iterations must not be negative");
+            return new SpeechletRequestHandlerPrimer(this);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+
+/**
+ * Handles one type of {@link SpeechletRequest} on behalf of a {@link SpeechletRequestDispatcher}.
+ * Routes are registered against a request class with
+ * {@link SpeechletRequestDispatcher#registerRoute(Class, SpeechletRequestRoute)}, which allows
+ * request types added by new device interfaces to be dispatched without changing the dispatcher.
+ *
+ * @param <T>
+ *            the type of request handled by this route
+ */
+public interface SpeechletRequestRoute<T extends SpeechletRequest> {
+    /**
+     * Handles the provided request envelope.
+     *
+     * @param requestEnvelope
+     *            the request envelope to handle
+     * @return the response to return to the Alexa service, may be {@code null}
+     * @throws SpeechletException
+     *             indicates a problem handling the request
+     */
+    SpeechletResponse onRequest(SpeechletRequestEnvelope<T> requestEnvelope)
+            throws SpeechletException;
+}
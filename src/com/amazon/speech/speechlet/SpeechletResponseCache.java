@@ -0,0 +1,367 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <p>
+ * A bounded cache of serialized responses keyed by request ID, used by
+ * {@link SpeechletRequestHandler} to answer a request that the Alexa service sends again, for
+ * instance after a timeout, without invoking the speechlet a second time.
+ * </p>
+ *
+ * <ul>
+ * <li>Responses are cached once they are serialized and verified. Requests that fail, and
+ * requests answered without invoking the speechlet with a fallback or rejection response, are
+ * not cached, so sending them again invokes the speechlet again.</li>
+ * <li>Responses expire after the configured time to live, which defaults to the timestamp
+ * tolerance of the Alexa service: a request sent again after that is rejected anyway.</li>
+ * <li>With in-flight coalescing enabled, a request arriving while another request with the same
+ * ID is still being handled waits for its response instead of invoking the speechlet, and shares
+ * its failure if it fails. An in-flight response is forgotten after the in-flight timeout, ten
+ * seconds by default, and requests waiting for it give up then, so that a request that never
+ * completes does not block its retries.</li>
+ * <li>Once the cache holds more than its maximum number of responses, the oldest ones are evicted.
+ * Request IDs are only ever seen again shortly after they were first handled, so the oldest entry
+ * is also the least likely to be needed and is found without scanning the cache.</li>
+ * </ul>
+ *
+ * <p>
+ * A {@link com.amazon.speech.speechlet.verifier.ReplayProtectionSpeechletRequestVerifier} rejects
+ * requests sent again before they reach the cache, unless it is built with this cache as its
+ * response cache.
+ * </p>
+ *
+ * <p>
+ * Hit, miss and eviction counters are available for monitoring.
+ * </p>
+ */
+public final class SpeechletResponseCache {
+    private static final int DEFAULT_MAXIMUM_SIZE = 1024;
+    private static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.SECONDS.toMillis(150);
+    private static final long DEFAULT_IN_FLIGHT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger insertionOrderSize = new AtomicInteger();
+    private final int maximumSize;
+    private final long timeToLiveMillis;
+    private final boolean inFlightCoalescing;
+    private final long inFlightTimeoutMillis;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private SpeechletResponseCache(final Builder builder) {
+        maximumSize = builder.maximumSize;
+        timeToLiveMillis = builder.timeToLiveMillis;
+        inFlightCoalescing = builder.inFlightCoalescing;
+        inFlightTimeoutMillis = builder.inFlightTimeoutMillis;
+    }
+
+    /**
+     * Returns the cached or in-flight response for the provided request ID. On a miss with
+     * in-flight coalescing enabled, the provided future is registered as the in-flight response
+     * of the request ID, and must be passed to {@link #put(String, SpeechletFuture, byte[])} or
+     * {@link #remove(String, SpeechletFuture)} once the request is handled.
+     *
+     * @param requestId
+     *            the ID of the request
+     * @param pending
+     *            the future completed with the response of the request if it is handled by the
+     *            caller
+     * @return the cached or in-flight response, or {@code null} if the caller should handle the
+     *         request
+     */
+    SpeechletFuture<byte[]> lookup(final String requestId, final SpeechletFuture<byte[]> pending) {
+        while (true) {
+            Entry entry = entries.get(requestId);
+            if (entry != null) {
+                if (entry.isExpired()) {
+                    entries.remove(requestId, entry);
+                    continue;
+                }
+                if (entry.response.isDone()) {
+                    hitCount.incrementAndGet();
+                } else {
+                    coalescedCount.incrementAndGet();
+                }
+                return entry.response;
+            }
+            if (!inFlightCoalescing) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            Entry newEntry = new Entry(requestId, pending);
+            newEntry.expiresMillis = System.currentTimeMillis() + inFlightTimeoutMillis;
+            if (entries.putIfAbsent(requestId, newEntry) == null) {
+                missCount.incrementAndGet();
+                append(newEntry);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Caches the response of a request handled after a miss.
+     *
+     * @param requestId
+     *            the ID of the request
+     * @param pending
+     *            the future passed to {@link #lookup(String, SpeechletFuture)}, completed by the
+     *            caller afterwards
+     * @param response
+     *            the serialized response, which must not be modified afterwards
+     */
+    void put(final String requestId, final SpeechletFuture<byte[]> pending, final byte[] response) {
+        if (inFlightCoalescing) {
+            Entry entry = entries.get(requestId);
+            if (entry != null && entry.response == pending) {
+                entry.expiresMillis = System.currentTimeMillis() + timeToLiveMillis;
+            }
+            return;
+        }
+        Entry entry = new Entry(requestId, SpeechletFuture.completed(response));
+        entry.expiresMillis = System.currentTimeMillis() + timeToLiveMillis;
+        entries.put(requestId, entry);
+        append(entry);
+    }
+
+    /**
+     * Forgets the in-flight response of a request that failed or whose response must not be
+     * cached, so that it is handled again if it is sent again.
+     *
+     * @param requestId
+     *            the ID of the request
+     * @param pending
+     *            the future passed to {@link #lookup(String, SpeechletFuture)}
+     */
+    void remove(final String requestId, final SpeechletFuture<byte[]> pending) {
+        Entry entry = entries.get(requestId);
+        if (entry != null && entry.response == pending) {
+            entries.remove(requestId, entry);
+        }
+    }
+
+    private void append(final Entry entry) {
+        insertionOrder.add(entry);
+        if (insertionOrderSize.incrementAndGet() <= maximumSize) {
+            return;
+        }
+        // Every cached entry was appended once, so trimming the queue bounds the cache
+        while (insertionOrderSize.get() > maximumSize) {
+            Entry oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            insertionOrderSize.decrementAndGet();
+            if (entries.remove(oldest.requestId, oldest) && !oldest.isExpired()) {
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns whether a response is cached or in flight for the provided request ID, without
+     * counting a hit or a miss.
+     *
+     * @param requestId
+     *            the ID of the request
+     * @return {@code true} if a request with this ID would be answered from the cache
+     */
+    public boolean contains(final String requestId) {
+        Entry entry = entries.get(requestId);
+        return entry != null && !entry.isExpired();
+    }
+
+    /**
+     * Removes every response from the cache. Counters are not reset.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of responses currently cached, including in-flight ones.
+     *
+     * @return the number of cached responses
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns whether requests arriving while a request with the same ID is handled wait for its
+     * response.
+     *
+     * @return {@code true} if in-flight coalescing is enabled
+     */
+    public boolean isInFlightCoalescing() {
+        return inFlightCoalescing;
+    }
+
+    /**
+     * Returns how long a request waits for an in-flight request with the same ID before giving
+     * up, and how long an in-flight response is kept if it does not complete.
+     *
+     * @return the in-flight timeout in milliseconds
+     */
+    public long getInFlightTimeoutMillis() {
+        return inFlightTimeoutMillis;
+    }
+
+    /**
+     * Returns the number of requests answered with a cached response.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of requests that were handled because no response was cached for their
+     * ID.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of requests that waited for the response of an in-flight request with
+     * the same ID.
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Returns the number of responses evicted before they expired because the cache exceeded its
+     * maximum size.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * A cached or in-flight response for one request ID.
+     */
+    private static final class Entry {
+        private final String requestId;
+        private final SpeechletFuture<byte[]> response;
+        private volatile long expiresMillis;
+
+        private Entry(final String requestId, final SpeechletFuture<byte[]> response) {
+            this.requestId = requestId;
+            this.response = response;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresMillis;
+        }
+    }
+
+    public static final class Builder {
+        private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+        private long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+        private boolean inFlightCoalescing;
+        private long inFlightTimeoutMillis = DEFAULT_IN_FLIGHT_TIMEOUT_MILLIS;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of responses cached, 1024 by default.
+         *
+         * @param maximumSize
+         *            the maximum number of cached responses
+         * @return this builder
+         */
+        public Builder withMaximumSize(final int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets how long a response is cached after it was produced, 150 seconds by default.
+         *
+         * @param timeToLive
+         *            the time to live of cached responses
+         * @param unit
+         *            the unit of the time to live
+         * @return this builder
+         */
+        public Builder withTimeToLive(final long timeToLive, final TimeUnit unit) {
+            this.timeToLiveMillis = unit.toMillis(timeToLive);
+            return this;
+        }
+
+        /**
+         * Sets whether a request arriving while a request with the same ID is handled waits for
+         * its response instead of invoking the speechlet, disabled by default.
+         *
+         * @param inFlightCoalescing
+         *            whether in-flight requests are coalesced
+         * @return this builder
+         */
+        public Builder withInFlightCoalescing(final boolean inFlightCoalescing) {
+            this.inFlightCoalescing = inFlightCoalescing;
+            return this;
+        }
+
+        /**
+         * Sets how long a request waits for an in-flight request with the same ID, and how long an
+         * in-flight response that does not complete is kept, 10 seconds by default, a little over
+         * the time the Alexa service waits for a response.
+         *
+         * @param inFlightTimeout
+         *            the in-flight timeout
+         * @param unit
+         *            the unit of the in-flight timeout
+         * @return this builder
+         */
+        public Builder withInFlightTimeout(final long inFlightTimeout, final TimeUnit unit) {
+            this.inFlightTimeoutMillis = unit.toMillis(inFlightTimeout);
+            return this;
+        }
+
+        public SpeechletResponseCache build() {
+            Validate.isTrue(maximumSize > 0, "Maximum size must be positive");
+            Validate.isTrue(timeToLiveMillis > 0, "Time to live must be positive");
+            Validate.isTrue(inFlightTimeoutMillis > 0, "In-flight timeout must be positive");
+            return new SpeechletResponseCache(this);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.verifier.ApplicationIdSpeechletRequestEnvelopeVerifier;
+
+/**
+ * <p>
+ * Hosts the speechlets of several skills behind a single endpoint. Requests go through one
+ * {@link SpeechletRequestHandler}, which parses and verifies them once for all skills, and are
+ * then routed to the speechlet registered for their application ID. The application ID is read
+ * like {@link ApplicationIdSpeechletRequestEnvelopeVerifier} does, from the session or from the
+ * {@code SystemState} of the context, and the route is found with a single hash lookup. Requests
+ * for an application ID without a route are rejected with a
+ * {@link SpeechletRequestHandlerException}.
+ * </p>
+ *
+ * <p>
+ * Each route can limit how many requests its speechlet handles concurrently, so that one slow
+ * skill cannot take up all the threads or connections of the endpoint. Requests beyond the limit
+ * are rejected right away with a {@link SpeechletException} instead of waiting.
+ * </p>
+ *
+ * <p>
+ * Each speechlet gets its own {@link SpeechletRequestDispatcher}, created once when the router is
+ * built. A router is served by {@code SpeechletServlet#setSpeechletRouter}, or passed directly to
+ * the {@code handleSpeechletCall} methods of {@link SpeechletRequestHandler} taking a router.
+ * </p>
+ */
+public final class SpeechletRouter implements SpeechletCallDispatcher {
+    private final Map<String, Route> routes;
+
+    private SpeechletRouter(final Builder builder) {
+        this.routes = Collections.unmodifiableMap(new HashMap<String, Route>(builder.routes));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the application IDs that have a route.
+     *
+     * @return the routed application IDs
+     */
+    public Set<String> getApplicationIds() {
+        return routes.keySet();
+    }
+
+    /**
+     * Returns how many requests of the provided application ID are being handled.
+     *
+     * @param applicationId
+     *            the application ID of a route
+     * @return the number of requests in progress, or -1 if the application ID has no route
+     */
+    public int getActiveRequestCount(String applicationId) {
+        Route route = routes.get(applicationId);
+        return (route != null) ? route.activeRequests.get() : -1;
+    }
+
+    /**
+     * Returns how many requests of the provided application ID were rejected because its
+     * speechlet was handling its maximum number of concurrent requests.
+     *
+     * @param applicationId
+     *            the application ID of a route
+     * @return the number of rejected requests, or -1 if the application ID has no route
+     */
+    public long getRejectedRequestCount(String applicationId) {
+        Route route = routes.get(applicationId);
+        return (route != null) ? route.rejectedRequests.get() : -1;
+    }
+
+    /**
+     * Dispatches the provided request to the speechlet registered for its application ID.
+     *
+     * @param requestEnvelope
+     *            the current request
+     * @param session
+     *            the session of the request
+     * @return a future completed with the response envelope
+     */
+    @Override
+    public SpeechletFuture<SpeechletResponseEnvelope> dispatchSpeechletCallAsync(
+            SpeechletRequestEnvelope<?> requestEnvelope, Session session) {
+        String applicationId =
+                ApplicationIdSpeechletRequestEnvelopeVerifier.getApplicationId(requestEnvelope);
+        Route route = (applicationId != null) ? routes.get(applicationId) : null;
+        if (route == null) {
+            return SpeechletFuture.failed(new SpeechletRequestHandlerException(String.format(
+                    "No speechlet is registered for application ID %s, rejecting request",
+                    applicationId)));
+        }
+        return route.dispatch(requestEnvelope, session);
+    }
+
+    /**
+     * The speechlet of an application ID and the limit on its concurrent requests.
+     */
+    private static final class Route {
+        private final String applicationId;
+        private final SpeechletRequestDispatcher dispatcher;
+        private final Semaphore permits;
+        private final int maxConcurrentRequests;
+        private final AtomicInteger activeRequests = new AtomicInteger();
+        private final AtomicLong rejectedRequests = new AtomicLong();
+
+        Route(final String applicationId, final AsyncSpeechletV2 speechlet,
+                final int maxConcurrentRequests) {
+            this.applicationId = applicationId;
+            this.dispatcher = new SpeechletRequestDispatcher(speechlet);
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            this.permits =
+                    (maxConcurrentRequests > 0) ? new Semaphore(maxConcurrentRequests) : null;
+        }
+
+        SpeechletFuture<SpeechletResponseEnvelope> dispatch(
+                final SpeechletRequestEnvelope<?> requestEnvelope, final Session session) {
+            if (permits != null && !permits.tryAcquire()) {
+                rejectedRequests.incrementAndGet();
+                return SpeechletFuture.failed(new SpeechletException(String.format(
+                        "Speechlet of application ID %s is handling its maximum of %d "
+                                + "concurrent requests, rejecting request", applicationId,
+                        maxConcurrentRequests)));
+            }
+
+            activeRequests.incrementAndGet();
+            SpeechletFuture<SpeechletResponseEnvelope> result = null;
+            try {
+                result = dispatcher.dispatchSpeechletCallAsync(requestEnvelope, session);
+            } finally {
+                // Released whatever the dispatch threw, a lost permit lowers the limit for good
+                if (result == null) {
+                    release();
+                }
+            }
+            result.addCallback(new SpeechletFuture.Callback<SpeechletResponseEnvelope>() {
+                @Override
+                public void onSuccess(SpeechletResponseEnvelope value) {
+                    release();
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    release();
+                }
+            });
+            return result;
+        }
+
+        private void release() {
+            activeRequests.decrementAndGet();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Builder used to construct a new {@code SpeechletRouter}.
+     */
+    public static final class Builder {
+        private final Map<String, Route> routes = new HashMap<String, Route>();
+        private int maxConcurrentRequests;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets how many requests each speechlet may handle concurrently, for routes added after
+         * this call. Zero, the default, does not limit concurrent requests.
+         *
+         * @param maxConcurrentRequests
+         *            the maximum number of concurrent requests per speechlet
+         * @return this builder
+         */
+        public Builder withMaxConcurrentRequests(final int maxConcurrentRequests) {
+            Validate.isTrue(maxConcurrentRequests >= 0,
+                    "Maximum concurrent requests must not be negative");
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Routes the requests of the provided application ID to a {@code SpeechletV2}.
+         *
+         * @param applicationId
+         *            the application ID of the skill
+         * @param speechlet
+         *            the speechlet handling its requests
+         * @return this builder
+         */
+        public Builder withRoute(final String applicationId, final SpeechletV2 speechlet) {
+            Validate.notNull(speechlet, "Speechlet must not be null");
+            return withRoute(applicationId, new SpeechletV2ToAsyncSpeechletV2Adapter(speechlet),
+                    maxConcurrentRequests);
+        }
+
+        /**
+         * Routes the requests of the provided application ID to an {@code AsyncSpeechletV2}.
+         *
+         * @param applicationId
+         *            the application ID of the skill
+         * @param speechlet
+         *            the speechlet handling its requests
+         * @return this builder
+         */
+        public Builder withRoute(final String applicationId, final AsyncSpeechletV2 speechlet) {
+            return withRoute(applicationId, speechlet, maxConcurrentRequests);
+        }
+
+        /**
+         * Routes the requests of the provided application ID to an {@code AsyncSpeechletV2},
+         * with its own limit on concurrent requests.
+         *
+         * @param applicationId
+         *            the application ID of the skill
+         * @param speechlet
+         *            the speechlet handling its requests
+         * @param maxConcurrentRequests
+         *            the maximum number of concurrent requests, zero for no limit
+         * @return this builder
+         */
+        public Builder withRoute(final String applicationId, final AsyncSpeechletV2 speechlet,
+                final int maxConcurrentRequests) {
+            Validate.notBlank(applicationId, "Application ID must not be blank");
+            Validate.notNull(speechlet, "Speechlet must not be null");
+            Validate.isTrue(maxConcurrentRequests >= 0,
+                    "Maximum concurrent requests must not be negative");
+            Validate.isTrue(!routes.containsKey(applicationId),
+                    "Application ID %s already has a route", applicationId);
+            routes.put(applicationId, new Route(applicationId, speechlet, maxConcurrentRequests));
+            return this;
+        }
+
+        public SpeechletRouter build() {
+            Validate.isTrue(!routes.isEmpty(), "At least one route must be added");
+            return new SpeechletRouter(this);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+
+/**
+ * This class is intended for internal use only.
+ *
+ * It adapts a {@link SpeechletV2} into an {@link AsyncSpeechletV2}. Each call is executed on the
+ * calling thread and returns an already completed {@link SpeechletFuture}.
+ */
+public class SpeechletV2ToAsyncSpeechletV2Adapter implements AsyncSpeechletV2 {
+    private final SpeechletV2 speechlet;
+
+    public SpeechletV2ToAsyncSpeechletV2Adapter(SpeechletV2 speechlet) {
+        this.speechlet = speechlet;
+    }
+
+    @Override
+    public SpeechletFuture<Void> onSessionStarted(
+            SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+        try {
+            speechlet.onSessionStarted(requestEnvelope);
+            return SpeechletFuture.completed(null);
+        } catch (RuntimeException e) {
+            return SpeechletFuture.failed(e);
+        }
+    }
+
+    @Override
+    public SpeechletFuture<SpeechletResponse> onLaunch(
+            SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+        try {
+            return SpeechletFuture.completed(speechlet.onLaunch(requestEnvelope));
+        } catch (RuntimeException e) {
+            return SpeechletFuture.failed(e);
+        }
+    }
+
+    @Override
+    public SpeechletFuture<SpeechletResponse> onIntent(
+            SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+        try {
+            return SpeechletFuture.completed(speechlet.onIntent(requestEnvelope));
+        } catch (RuntimeException e) {
+            return SpeechletFuture.failed(e);
+        }
+    }
+
+    @Override
+    public SpeechletFuture<Void> onSessionEnded(
+            SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+        try {
+            speechlet.onSessionEnded(requestEnvelope);
+            return SpeechletFuture.completed(null);
+        } catch (RuntimeException e) {
+            return SpeechletFuture.failed(e);
+        }
+    }
+
+    public SpeechletV2 getSpeechlet() {
+        return speechlet;
+    }
+}
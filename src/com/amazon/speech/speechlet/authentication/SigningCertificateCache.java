@@ -0,0 +1,439 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet.authentication;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A bounded cache of signing certificates keyed by certificate chain URL, used by
+ * {@link SpeechletRequestSignatureVerifier}.
+ * </p>
+ *
+ * <ul>
+ * <li>Concurrent requests missing the same URL share a single retrieval of the chain.</li>
+ * <li>Certificates are retrieved again once they are within the configured refresh window of
+ * their expiry date. The request triggering the refresh performs it while other requests keep
+ * using the cached certificate, which is used until it expires if the refresh fails.</li>
+ * <li>URLs whose chain could not be retrieved or validated are remembered for a short time, during
+ * which requests using them fail without another retrieval. Refreshes of a URL are spaced by the
+ * same duration.</li>
+ * <li>Once the cache holds more than its maximum number of URLs, the least recently used ones are
+ * evicted. URLs that failed are held apart, up to the same maximum number, so requests using
+ * invalid URLs cannot evict the certificates in use.</li>
+ * </ul>
+ *
+ * <p>
+ * Hit, miss and retrieval counters are available for monitoring.
+ * </p>
+ */
+public final class SigningCertificateCache {
+    private static final Logger log = LoggerFactory.getLogger(SigningCertificateCache.class);
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 64;
+    private static final long DEFAULT_REFRESH_BEFORE_EXPIRY_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long DEFAULT_NEGATIVE_CACHE_DURATION_MILLIS =
+            TimeUnit.SECONDS.toMillis(30);
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry> failures = new ConcurrentHashMap<>();
+    private final SigningCertificateLoader loader;
+    private final int maximumSize;
+    private final long refreshBeforeExpiryMillis;
+    private final long negativeCacheDurationMillis;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong negativeHitCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong totalLoadTimeNanos = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private SigningCertificateCache(final Builder builder) {
+        loader = builder.loader;
+        maximumSize = builder.maximumSize;
+        refreshBeforeExpiryMillis = builder.refreshBeforeExpiryMillis;
+        negativeCacheDurationMillis = builder.negativeCacheDurationMillis;
+    }
+
+    /**
+     * Returns the signing certificate for the provided certificate chain URL, retrieving it if it
+     * is not cached yet. The returned certificate is valid at the current time.
+     *
+     * @param signingCertificateChainUrl
+     *            the certificate chain URL provided in the request header
+     * @return the signing certificate
+     * @throws CertificateException
+     *             if the certificate chain cannot be retrieved or is invalid, including when it
+     *             failed to be retrieved or validated recently
+     */
+    public X509Certificate getCertificate(final String signingCertificateChainUrl)
+            throws CertificateException {
+        while (true) {
+            boolean loaded = false;
+            Entry entry = entries.get(signingCertificateChainUrl);
+            if (entry == null) {
+                entry = failures.get(signingCertificateChainUrl);
+            }
+            if (entry == null) {
+                Entry newEntry = new Entry(signingCertificateChainUrl);
+                entry = entries.putIfAbsent(signingCertificateChainUrl, newEntry);
+                if (entry == null) {
+                    missCount.incrementAndGet();
+                    newEntry.load.run();
+                    entry = newEntry;
+                    loaded = true;
+                } else {
+                    hitCount.incrementAndGet();
+                }
+            } else {
+                hitCount.incrementAndGet();
+            }
+
+            entry.lastAccessMillis = System.currentTimeMillis();
+            X509Certificate certificate;
+            try {
+                certificate = entry.get();
+                if (loaded) {
+                    // Only evicts once the retrieval succeeded, a failing URL never takes the
+                    // place of a certificate
+                    evictIfNecessary(entries);
+                }
+            } catch (CertificateException | RuntimeException ex) {
+                if (loaded) {
+                    // Moved to the failures before leaving the entries, so it is never missing
+                    failures.put(signingCertificateChainUrl, entry);
+                    entries.remove(signingCertificateChainUrl, entry);
+                    evictIfNecessary(failures);
+                    throw ex;
+                }
+                if (entry.isNegativeCacheExpired()) {
+                    entries.remove(signingCertificateChainUrl, entry);
+                    failures.remove(signingCertificateChainUrl, entry);
+                    continue;
+                }
+                negativeHitCount.incrementAndGet();
+                throw ex;
+            }
+
+            long now = System.currentTimeMillis();
+            long notAfter = certificate.getNotAfter().getTime();
+            if (now > notAfter) {
+                // The certificate expired without being refreshed, retrieve it again
+                entries.remove(signingCertificateChainUrl, entry);
+                continue;
+            }
+
+            if (now >= notAfter - refreshBeforeExpiryMillis && now >= entry.nextRefreshMillis
+                    && entry.refreshing.compareAndSet(false, true)) {
+                refresh(signingCertificateChainUrl, entry);
+            }
+
+            // check the before/after dates on the certificate are still valid for the present time
+            certificate.checkValidity();
+            return certificate;
+        }
+    }
+
+    /**
+     * Retrieves the certificate chain again on the calling thread, replacing the cached entry if
+     * the retrieval succeeds.
+     *
+     * @param signingCertificateChainUrl
+     *            the certificate chain URL to refresh
+     * @param entry
+     *            the cached entry for the URL
+     */
+    private void refresh(final String signingCertificateChainUrl, final Entry entry) {
+        Entry refreshedEntry = new Entry(signingCertificateChainUrl);
+        refreshedEntry.load.run();
+        try {
+            refreshedEntry.get();
+            refreshedEntry.lastAccessMillis = entry.lastAccessMillis;
+            entries.replace(signingCertificateChainUrl, entry, refreshedEntry);
+        } catch (CertificateException | RuntimeException ex) {
+            log.warn("Unable to refresh the certificate at URL {}, using the cached certificate "
+                    + "until it expires", signingCertificateChainUrl, ex);
+            entry.nextRefreshMillis = System.currentTimeMillis() + negativeCacheDurationMillis;
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void evictIfNecessary(final ConcurrentMap<String, Entry> urls) {
+        while (urls.size() > maximumSize) {
+            Map.Entry<String, Entry> leastRecentlyUsed = null;
+            for (Map.Entry<String, Entry> candidate : urls.entrySet()) {
+                if (leastRecentlyUsed == null
+                        || candidate.getValue().lastAccessMillis < leastRecentlyUsed
+                                .getValue().lastAccessMillis) {
+                    leastRecentlyUsed = candidate;
+                }
+            }
+            if (leastRecentlyUsed != null
+                    && urls.remove(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue())) {
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes every certificate from the cache. Counters are not reset.
+     */
+    public void clear() {
+        entries.clear();
+        failures.clear();
+    }
+
+    /**
+     * Returns the number of certificate chain URLs currently cached, including those that failed
+     * to be retrieved or validated.
+     *
+     * @return the number of cached URLs
+     */
+    public int size() {
+        return entries.size() + failures.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a cached or in-flight entry for their URL.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups that started a retrieval for their URL.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of lookups that failed because their URL recently failed to be retrieved
+     * or validated.
+     *
+     * @return the number of negative cache hits
+     */
+    public long getNegativeHitCount() {
+        return negativeHitCount.get();
+    }
+
+    /**
+     * Returns the number of certificate chain retrievals, including refreshes.
+     *
+     * @return the number of retrievals
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Returns the number of certificate chain retrievals that failed or returned an invalid chain.
+     *
+     * @return the number of failed retrievals
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount.get();
+    }
+
+    /**
+     * Returns the total time spent retrieving and validating certificate chains.
+     *
+     * @param unit
+     *            the unit of the returned time
+     * @return the total retrieval time
+     */
+    public long getTotalLoadTime(final TimeUnit unit) {
+        return unit.convert(totalLoadTimeNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of URLs evicted because the cache exceeded its maximum size.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * A cached or in-flight retrieval for one URL.
+     */
+    private final class Entry {
+        private final FutureTask<X509Certificate> load;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+        private volatile long loadedMillis;
+        private volatile long nextRefreshMillis;
+
+        private Entry(final String signingCertificateChainUrl) {
+            load = new FutureTask<>(new Callable<X509Certificate>() {
+                @Override
+                public X509Certificate call() throws CertificateException {
+                    loadCount.incrementAndGet();
+                    long start = System.nanoTime();
+                    try {
+                        return loader.load(signingCertificateChainUrl);
+                    } catch (CertificateException | RuntimeException ex) {
+                        loadFailureCount.incrementAndGet();
+                        throw ex;
+                    } finally {
+                        totalLoadTimeNanos.addAndGet(System.nanoTime() - start);
+                        loadedMillis = System.currentTimeMillis();
+                        // a certificate retrieved within its refresh window is not refreshed
+                        // right away
+                        nextRefreshMillis = loadedMillis + negativeCacheDurationMillis;
+                    }
+                }
+            });
+        }
+
+        private X509Certificate get() throws CertificateException {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return load.get();
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof CertificateException) {
+                    throw (CertificateException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CertificateException(cause);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private boolean isNegativeCacheExpired() {
+            return System.currentTimeMillis() - loadedMillis >= negativeCacheDurationMillis;
+        }
+    }
+
+    public static final class Builder {
+        private SigningCertificateLoader loader = new SigningCertificateLoader() {
+            @Override
+            public X509Certificate load(final String signingCertificateChainUrl)
+                    throws CertificateException {
+                return SpeechletRequestSignatureVerifier
+                        .retrieveAndVerifyCertificateChain(signingCertificateChainUrl);
+            }
+        };
+        private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+        private long refreshBeforeExpiryMillis = DEFAULT_REFRESH_BEFORE_EXPIRY_MILLIS;
+        private long negativeCacheDurationMillis = DEFAULT_NEGATIVE_CACHE_DURATION_MILLIS;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the loader retrieving certificates missing from the cache. Defaults to
+         * {@link SpeechletRequestSignatureVerifier#retrieveAndVerifyCertificateChain(String)}.
+         *
+         * @param loader
+         *            the certificate loader
+         * @return this builder
+         */
+        public Builder withLoader(final SigningCertificateLoader loader) {
+            this.loader = loader;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of certificate chain URLs cached, 64 by default. URLs that failed
+         * to be retrieved or validated are limited to the same number, separately.
+         *
+         * @param maximumSize
+         *            the maximum number of cached URLs
+         * @return this builder
+         */
+        public Builder withMaximumSize(final int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets how long before their expiry date certificates are retrieved again, one hour by
+         * default.
+         *
+         * @param refreshBeforeExpiry
+         *            the refresh window
+         * @param unit
+         *            the unit of the refresh window
+         * @return this builder
+         */
+        public Builder withRefreshBeforeExpiry(final long refreshBeforeExpiry, final TimeUnit unit) {
+            this.refreshBeforeExpiryMillis = unit.toMillis(refreshBeforeExpiry);
+            return this;
+        }
+
+        /**
+         * Sets how long a URL that failed to be retrieved or validated is remembered, 30 seconds by
+         * default. This is also the minimum time between two refreshes of a URL.
+         *
+         * @param negativeCacheDuration
+         *            the negative cache duration
+         * @param unit
+         *            the unit of the negative cache duration
+         * @return this builder
+         */
+        public Builder withNegativeCacheDuration(final long negativeCacheDuration,
+                final TimeUnit unit) {
+            this.negativeCacheDurationMillis = unit.toMillis(negativeCacheDuration);
+            return this;
+        }
+
+        public SigningCertificateCache build() {
+            Validate.notNull(loader, "Certificate loader must be defined");
+            Validate.isTrue(maximumSize > 0, "Maximum size must be positive");
+            Validate.isTrue(refreshBeforeExpiryMillis >= 0, "Refresh window must not be negative");
+            Validate.isTrue(negativeCacheDurationMillis >= 0,
+                    "Negative cache duration must not be negative");
+            return new SigningCertificateCache(this);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet.authentication;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+/**
+ * Retrieves and validates the signing certificate found at a certificate chain URL. Used by
+ * {@link SigningCertificateCache} when a certificate is missing from the cache or due for a
+ * refresh.
+ *
+ * @see SpeechletRequestSignatureVerifier#retrieveAndVerifyCertificateChain(String)
+ */
+public interface SigningCertificateLoader {
+    /**
+     * Retrieves the certificate chain at the provided URL and returns its signing certificate, if
+     * the chain is valid.
+     *
+     * @param signingCertificateChainUrl
+     *            the URL to retrieve the certificate chain from
+     * @return the signing certificate
+     * @throws CertificateException
+     *             if the certificate chain cannot be retrieved or is invalid
+     */
+    X509Certificate load(String signingCertificateChainUrl) throws CertificateException;
+}
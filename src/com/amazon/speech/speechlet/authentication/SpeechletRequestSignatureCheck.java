@@ -0,0 +1,101 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.authentication;
+
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * Verifies the signature of a speechlet request incrementally, as the bytes of its body become
+ * available. Obtained from
+ * {@link SpeechletRequestSignatureVerifier#startRequestSignatureCheck(String, String)}, which
+ * retrieves the signing certificate up front, so verification only costs the final signature
+ * operation once the last byte has been read.
+ * <p>
+ * Bytes are passed to {@link #update(byte[], int, int)} as they are read into the request body
+ * buffer, which must not be parsed before {@link #verify()} returned. Instances are not thread
+ * safe, but may be handed from one thread to another.
+ */
+public final class SpeechletRequestSignatureCheck {
+    private static final String VERIFICATION_FAILED_MESSAGE =
+            "Failed to verify the signature/certificate for the provided speechlet request";
+
+    private final PublicKey publicKey;
+    private final byte[] signatureBytes;
+    private Signature signature;
+
+    SpeechletRequestSignatureCheck(final PublicKey publicKey, final byte[] signatureBytes,
+            final Signature signature) {
+        this.publicKey = publicKey;
+        this.signatureBytes = signatureBytes;
+        this.signature = signature;
+    }
+
+    /**
+     * Adds bytes of the request body to the check.
+     *
+     * @param bytes
+     *            the buffer holding the bytes
+     * @param offset
+     *            the offset of the first byte in the buffer
+     * @param length
+     *            the number of bytes
+     * @throws IllegalStateException
+     *             if the check is already complete
+     */
+    public void update(final byte[] bytes, final int offset, final int length) {
+        Signature currentSignature = getSignature();
+        try {
+            currentSignature.update(bytes, offset, length);
+        } catch (SignatureException ex) {
+            signature = null;
+            throw new SecurityException(VERIFICATION_FAILED_MESSAGE, ex);
+        }
+    }
+
+    /**
+     * Completes the check once every byte of the request body has been added.
+     *
+     * @throws SecurityException
+     *             if the signature does not match the bytes of the request body
+     * @throws IllegalStateException
+     *             if the check is already complete
+     */
+    public void verify() {
+        Signature currentSignature = getSignature();
+        signature = null;
+
+        boolean verified;
+        try {
+            verified = currentSignature.verify(signatureBytes);
+        } catch (SignatureException | RuntimeException ex) {
+            throw new SecurityException(VERIFICATION_FAILED_MESSAGE, ex);
+        }
+
+        // verify reset the engine, so the next request can use it as is
+        SpeechletRequestSignatureVerifier.releaseSignature(publicKey, currentSignature);
+        if (!verified) {
+            throw new SecurityException(VERIFICATION_FAILED_MESSAGE);
+        }
+    }
+
+    private Signature getSignature() {
+        if (signature == null) {
+            throw new IllegalStateException("The signature check is already complete");
+        }
+        return signature;
+    }
+}
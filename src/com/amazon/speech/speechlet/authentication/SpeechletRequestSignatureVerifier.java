@@ -23,34 +23,58 @@ import java.security.InvalidKeyException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
 import java.security.Signature;
-import java.security.SignatureException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
 
-import org.apache.commons.codec.binary.Base64;
-
 import com.amazon.speech.Sdk;
 
 /**
- * Provides a utility method to verify the signature of a speechlet request.
+ * Provides a utility method to verify the signature of a speechlet request. Signing certificates
+ * are kept in a {@link SigningCertificateCache}, which can be replaced with
+ * {@link #setCertificateCache(SigningCertificateCache)}.
  */
 public final class SpeechletRequestSignatureVerifier {
-    private static final Map<String, X509Certificate> CERTIFICATE_CACHE = new ConcurrentHashMap<>();
+    private static volatile SigningCertificateCache certificateCache = SigningCertificateCache
+            .builder()
+            .build();
     private static final Integer DOMAIN_NAME_SUBJECT_ALTERNATIVE_NAME_ENTRY = 2;
     private static final String VALID_SIGNING_CERT_CHAIN_PROTOCOL = "https";
     private static final String VALID_SIGNING_CERT_CHAIN_URL_HOST_NAME = "s3.amazonaws.com";
     private static final String VALID_SIGNING_CERT_CHAING_URL_PATH_PREFIX = "/echo.api/";
     private static final int UNSPECIFIED_SIGNING_CERT_CHAIN_URL_PORT_VALUE = -1;
+    private static final byte[] BASE64_DECODE_TABLE = new byte[128];
+
+    /**
+     * The last public key each thread verified a signature with and its {@code Signature} engine,
+     * already initialized for that key. Only JDK types are stored, so the thread-local values of
+     * pooled container threads do not keep the SDK's class loader alive.
+     */
+    private static final ThreadLocal<Map.Entry<PublicKey, Signature>> INITIALIZED_SIGNATURE =
+            new ThreadLocal<>();
+
+    static {
+        Arrays.fill(BASE64_DECODE_TABLE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+        }
+        BASE64_DECODE_TABLE['+'] = 62;
+        BASE64_DECODE_TABLE['/'] = 63;
+        BASE64_DECODE_TABLE['-'] = 62;
+        BASE64_DECODE_TABLE['_'] = 63;
+    }
 
     private SpeechletRequestSignatureVerifier() {
     }
@@ -68,44 +92,149 @@ public final class SpeechletRequestSignatureVerifier {
      */
     public static void checkRequestSignature(final byte[] serializedSpeechletRequest,
             final String baseEncoded64Signature, final String signingCertificateChainUrl) {
+        SpeechletRequestSignatureCheck check =
+                startRequestSignatureCheck(baseEncoded64Signature, signingCertificateChainUrl);
+        check.update(serializedSpeechletRequest, 0, serializedSpeechletRequest.length);
+        check.verify();
+    }
+
+    /**
+     * Verifies the certificate authenticity using the configured TrustStore and starts checking
+     * the signature of a speechlet request whose body has not been read yet. The bytes of the
+     * body are then added to the returned check as they arrive.
+     *
+     * @param baseEncoded64Signature
+     *            the signature for provided in the request header
+     * @param signingCertificateChainUrl
+     *            the certificate chain URL provided in the request header
+     * @return the check to add the request body to
+     * @throws SecurityException
+     *             if the signature or certificate is missing or invalid
+     */
+    public static SpeechletRequestSignatureCheck startRequestSignatureCheck(
+            final String baseEncoded64Signature, final String signingCertificateChainUrl) {
         if ((baseEncoded64Signature == null) || (signingCertificateChainUrl == null)) {
             throw new SecurityException(
                     "Missing signature/certificate for the provided speechlet request");
         }
 
         try {
-            X509Certificate signingCertificate;
-            if (CERTIFICATE_CACHE.containsKey(signingCertificateChainUrl)) {
-                signingCertificate = CERTIFICATE_CACHE.get(signingCertificateChainUrl);
-                /*
-                 * check the before/after dates on the certificate are still valid for the present
-                 * time
-                 */
-                signingCertificate.checkValidity();
-            } else {
-                signingCertificate = retrieveAndVerifyCertificateChain(signingCertificateChainUrl);
-
-                // if certificate is valid, then add it to the cache
-                CERTIFICATE_CACHE.put(signingCertificateChainUrl, signingCertificate);
-            }
-
-            // verify that the request was signed by the provided certificate
-            Signature signature = Signature.getInstance(Sdk.SIGNATURE_ALGORITHM);
-            signature.initVerify(signingCertificate.getPublicKey());
-            signature.update(serializedSpeechletRequest);
-            if (!signature.verify(Base64.decodeBase64(baseEncoded64Signature
-                    .getBytes(Sdk.CHARACTER_ENCODING)))) {
+            X509Certificate signingCertificate =
+                    certificateCache.getCertificate(signingCertificateChainUrl);
+            byte[] signatureBytes = decodeBase64(baseEncoded64Signature);
+            if (signatureBytes == null) {
                 throw new SecurityException(
                         "Failed to verify the signature/certificate for the provided speechlet request");
             }
-        } catch (CertificateException | SignatureException | NoSuchAlgorithmException
-                | InvalidKeyException | IOException ex) {
+
+            // verify that the request was signed by the provided certificate
+            PublicKey publicKey = signingCertificate.getPublicKey();
+            return new SpeechletRequestSignatureCheck(publicKey, signatureBytes,
+                    acquireSignature(publicKey));
+        } catch (CertificateException | NoSuchAlgorithmException | InvalidKeyException ex) {
             throw new SecurityException(
                     "Failed to verify the signature/certificate for the provided speechlet request",
                     ex);
         }
     }
 
+    /**
+     * Takes the {@code Signature} engine of the calling thread, which is only initialized again
+     * when the public key changes. The engine belongs to the caller until it is handed back with
+     * {@link #releaseSignature(PublicKey, Signature)}, possibly from another thread; an engine
+     * that threw is never handed back because its state is then unspecified.
+     */
+    private static Signature acquireSignature(final PublicKey publicKey)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        Map.Entry<PublicKey, Signature> initializedSignature = INITIALIZED_SIGNATURE.get();
+        INITIALIZED_SIGNATURE.remove();
+        if ((initializedSignature != null) && (initializedSignature.getKey() == publicKey)) {
+            return initializedSignature.getValue();
+        }
+
+        Signature signature =
+                (initializedSignature != null) ? initializedSignature.getValue() : Signature
+                        .getInstance(Sdk.SIGNATURE_ALGORITHM);
+        signature.initVerify(publicKey);
+        return signature;
+    }
+
+    /**
+     * Makes an engine initialized for the provided key, and ready to verify, the engine of the
+     * calling thread.
+     */
+    static void releaseSignature(final PublicKey publicKey, final Signature signature) {
+        INITIALIZED_SIGNATURE.set(new AbstractMap.SimpleImmutableEntry<>(publicKey, signature));
+    }
+
+    /**
+     * Decodes a Base64 signature header straight from its characters. Whitespace is skipped and
+     * decoding stops at the first padding character.
+     *
+     * @param encoded
+     *            the Base64 encoded value, using either the standard or the URL safe alphabet
+     * @return the decoded bytes, or {@code null} if the value contains other characters or has an
+     *         impossible length
+     */
+    static byte[] decodeBase64(final String encoded) {
+        int length = encoded.length();
+        int significantCharacters = 0;
+        for (int i = 0; i < length; i++) {
+            char c = encoded.charAt(i);
+            if (c == '=') {
+                break;
+            } else if ((c < BASE64_DECODE_TABLE.length) && (BASE64_DECODE_TABLE[c] >= 0)) {
+                significantCharacters++;
+            } else if (!Character.isWhitespace(c)) {
+                return null;
+            }
+        }
+        if (significantCharacters % 4 == 1) {
+            return null;
+        }
+
+        byte[] decoded = new byte[significantCharacters * 3 / 4];
+        int position = 0;
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; position < decoded.length; i++) {
+            char c = encoded.charAt(i);
+            if ((c >= BASE64_DECODE_TABLE.length) || (BASE64_DECODE_TABLE[c] < 0)) {
+                continue;
+            }
+            bits = (bits << 6) | BASE64_DECODE_TABLE[c];
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                decoded[position++] = (byte) (bits >> bitCount);
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns the cache of signing certificates used to verify request signatures.
+     *
+     * @return the certificate cache
+     */
+    public static SigningCertificateCache getCertificateCache() {
+        return certificateCache;
+    }
+
+    /**
+     * Replaces the cache of signing certificates used to verify request signatures, for instance
+     * to change its size or how certificates are retrieved.
+     *
+     * @param certificateCache
+     *            the certificate cache to use
+     */
+    public static void setCertificateCache(final SigningCertificateCache certificateCache) {
+        if (certificateCache == null) {
+            throw new IllegalArgumentException("Certificate cache must not be null");
+        }
+        SpeechletRequestSignatureVerifier.certificateCache = certificateCache;
+    }
+
     /**
      * Retrieves the certificate from the specified URL and confirms that the certificate is valid.
      *
@@ -171,6 +300,10 @@ public final class SpeechletRequestSignatureVerifier {
 
     private static boolean subjectAlernativeNameListContainsEchoSdkDomainName(
             final Collection<List<?>> subjectAlternativeNameEntries) {
+        // null when the certificate has no subject alternative name extension
+        if (subjectAlternativeNameEntries == null) {
+            return false;
+        }
         for (List<?> entry : subjectAlternativeNameEntries) {
             // first ensure that the subject alternative entry is in the expected form
             if (entry.get(0) instanceof Integer && entry.get(1) instanceof String) {
@@ -18,14 +18,20 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Set;
 
-import org.apache.commons.io.IOUtils;
-
+import com.amazon.speech.speechlet.AsyncSpeechletV2;
 import com.amazon.speech.speechlet.Speechlet;
 import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequestBody;
+import com.amazon.speech.speechlet.SpeechletRequestBodyPool;
 import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerPrimer;
 import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
 import com.amazon.speech.speechlet.SpeechletToSpeechletV2Adapter;
 import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.SpeechletV2ToAsyncSpeechletV2Adapter;
+import com.amazon.speech.speechlet.metrics.SpeechletMetricsListener;
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics;
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics.Stage;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
 
@@ -43,12 +49,23 @@ import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
  * super constructor from your new constructor.
  *
  * <p>
+ * Passing a {@link SpeechletRequestHandlerPrimer} to the super constructor moves one-time setup
+ * costs from the first invocation into the initialization of the function.
+ *
+ * <p>
+ * Request bodies are read into reused buffers of a {@link SpeechletRequestBodyPool}, which also
+ * rejects bodies larger than its maximum size.
+ *
+ * <p>
  * When configuring your Lambda function in the AWS Lambda console, specify your new class as the
  * <strong>Handler</strong>.
  */
 public abstract class SpeechletRequestStreamHandler implements RequestStreamHandler {
-    private final SpeechletV2 speechlet;
+    private final AsyncSpeechletV2 speechlet;
     private final SpeechletRequestHandler speechletRequestHandler;
+    private volatile SpeechletRequestBodyPool requestBodyPool = SpeechletRequestBodyPool
+            .builder()
+            .build();
 
     /**
      * When extending this class, use a zero argument constructor and pass the appropriate
@@ -61,8 +78,70 @@ public abstract class SpeechletRequestStreamHandler implements RequestStreamHand
      *            requests are intended for your service
      */
     public SpeechletRequestStreamHandler(SpeechletV2 speechlet, Set<String> supportedApplicationIds) {
+        this(new SpeechletV2ToAsyncSpeechletV2Adapter(speechlet), supportedApplicationIds);
+    }
+
+    /**
+     * When extending this class, use a zero argument constructor and pass the appropriate
+     * {@code AsyncSpeechletV2} and {@code Set} of supported {@code ApplicationId}s to this method.
+     * Each invocation waits for the {@code AsyncSpeechletV2} to produce its response.
+     *
+     * @param speechlet
+     *            the {@code AsyncSpeechletV2} that handles the requests
+     * @param supportedApplicationIds
+     *            a {@code Set} of supported {@code ApplicationId}s used to validate that the
+     *            requests are intended for your service
+     */
+    public SpeechletRequestStreamHandler(AsyncSpeechletV2 speechlet,
+            Set<String> supportedApplicationIds) {
+        this(speechlet, supportedApplicationIds, null);
+    }
+
+    /**
+     * When extending this class, use a zero argument constructor and pass the appropriate
+     * {@code SpeechletV2}, {@code Set} of supported {@code ApplicationId}s and primer to this
+     * method. The primer runs synthetic requests through the request handling before this
+     * constructor returns, so that the first invocation of the function does not pay for class
+     * loading and serializer setup. The {@code SpeechletV2} is not invoked while priming.
+     *
+     * @param speechlet
+     *            the {@code SpeechletV2} that handles the requests
+     * @param supportedApplicationIds
+     *            a {@code Set} of supported {@code ApplicationId}s used to validate that the
+     *            requests are intended for your service
+     * @param primer
+     *            the primer to run, or null to skip priming
+     */
+    public SpeechletRequestStreamHandler(SpeechletV2 speechlet,
+            Set<String> supportedApplicationIds, SpeechletRequestHandlerPrimer primer) {
+        this(new SpeechletV2ToAsyncSpeechletV2Adapter(speechlet), supportedApplicationIds, primer);
+    }
+
+    /**
+     * When extending this class, use a zero argument constructor and pass the appropriate
+     * {@code AsyncSpeechletV2}, {@code Set} of supported {@code ApplicationId}s and primer to this
+     * method.
+     *
+     * @param speechlet
+     *            the {@code AsyncSpeechletV2} that handles the requests
+     * @param supportedApplicationIds
+     *            a {@code Set} of supported {@code ApplicationId}s used to validate that the
+     *            requests are intended for your service
+     * @param primer
+     *            the primer to run, or null to skip priming
+     * @see #SpeechletRequestStreamHandler(SpeechletV2, Set, SpeechletRequestHandlerPrimer)
+     */
+    public SpeechletRequestStreamHandler(AsyncSpeechletV2 speechlet,
+            Set<String> supportedApplicationIds, SpeechletRequestHandlerPrimer primer) {
         this.speechlet = speechlet;
         this.speechletRequestHandler = new LambdaSpeechletRequestHandler(supportedApplicationIds);
+        if (primer != null) {
+            String applicationId =
+                    supportedApplicationIds.isEmpty() ? null : supportedApplicationIds
+                            .iterator()
+                            .next();
+            primer.prime(speechletRequestHandler, speechlet, applicationId);
+        }
     }
 
     public SpeechletRequestStreamHandler(Speechlet speechlet, Set<String> supportedApplicationIds) {
@@ -82,16 +161,79 @@ public abstract class SpeechletRequestStreamHandler implements RequestStreamHand
     @Override
     public final void handleRequest(InputStream input, OutputStream output, Context context)
             throws IOException {
-        byte[] serializedSpeechletRequest = IOUtils.toByteArray(input);
-        byte[] outputBytes;
+        SpeechletRequestMetrics metrics = speechletRequestHandler.startRequestMetrics();
+        long stageStart = (metrics != null) ? System.nanoTime() : 0L;
+        SpeechletRequestBody requestBody = null;
         try {
-            outputBytes =
-                    speechletRequestHandler.handleSpeechletCall(speechlet,
-                            serializedSpeechletRequest);
+            requestBody = requestBodyPool.acquire(-1);
+            requestBody.readFully(input);
+            if (metrics != null) {
+                metrics.recordStage(Stage.BODY_READ, stageStart);
+            }
+
+            speechletRequestHandler.handleSpeechletCall(speechlet, requestBody, output, metrics);
         } catch (SpeechletRequestHandlerException | SpeechletException ex) {
+            if (metrics != null) {
+                metrics.complete(ex);
+            }
             throw new RuntimeException(ex);
+        } finally {
+            if (requestBody != null) {
+                requestBody.release();
+            }
         }
+    }
+
+    /**
+     * Returns the pool of buffers request bodies are read into.
+     *
+     * @return the request body pool
+     */
+    public SpeechletRequestBodyPool getRequestBodyPool() {
+        return requestBodyPool;
+    }
 
-        output.write(outputBytes);
+    /**
+     * Sets the pool of buffers request bodies are read into, for instance to change the maximum
+     * body size from the constructor of the subclass.
+     *
+     * @param requestBodyPool
+     *            the request body pool
+     */
+    public void setRequestBodyPool(SpeechletRequestBodyPool requestBodyPool) {
+        if (requestBodyPool == null) {
+            throw new IllegalArgumentException("Request body pool must not be null");
+        }
+        this.requestBodyPool = requestBodyPool;
+    }
+
+    /**
+     * Returns the listener receiving the measurements of each invocation.
+     *
+     * @return the metrics listener, {@link SpeechletMetricsListener#NONE} by default
+     */
+    public SpeechletMetricsListener getMetricsListener() {
+        return speechletRequestHandler.getMetricsListener();
+    }
+
+    /**
+     * Sets the listener receiving the measurements of each invocation, for instance from the
+     * constructor of the subclass.
+     *
+     * @param metricsListener
+     *            the metrics listener, {@link SpeechletMetricsListener#NONE} to stop measuring
+     */
+    public void setMetricsListener(SpeechletMetricsListener metricsListener) {
+        speechletRequestHandler.setMetricsListener(metricsListener);
+    }
+
+    /**
+     * Returns the handler processing the invocations of this function, whose setters configure
+     * the optional stages of its pipeline, for instance from the constructor of the subclass.
+     *
+     * @return the speechlet request handler
+     */
+    public SpeechletRequestHandler getSpeechletRequestHandler() {
+        return speechletRequestHandler;
     }
 }
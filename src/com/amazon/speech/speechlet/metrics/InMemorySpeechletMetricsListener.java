@@ -0,0 +1,148 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics.Stage;
+
+/**
+ * A {@link SpeechletMetricsListener} aggregating the measurements of all requests in memory:
+ * a {@link Histogram} of the time spent in each stage, of the total time per request type and per
+ * intent, and of the request and response sizes. Times are recorded in nanoseconds and sizes in
+ * bytes.
+ */
+public class InMemorySpeechletMetricsListener implements SpeechletMetricsListener {
+    private final Map<Stage, Histogram> stageHistograms;
+    private final Histogram totalHistogram = new Histogram();
+    private final Histogram requestSizeHistogram = new Histogram();
+    private final Histogram responseSizeHistogram = new Histogram();
+    private final ConcurrentMap<String, Histogram> requestTypeHistograms =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> intentHistograms = new ConcurrentHashMap<>();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    public InMemorySpeechletMetricsListener() {
+        Map<Stage, Histogram> histograms = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new Histogram());
+        }
+        stageHistograms = Collections.unmodifiableMap(histograms);
+    }
+
+    @Override
+    public void onRequestCompleted(final SpeechletRequestMetrics metrics) {
+        for (Map.Entry<Stage, Histogram> entry : stageHistograms.entrySet()) {
+            entry.getValue().record(metrics.getStageNanos(entry.getKey()));
+        }
+        totalHistogram.record(metrics.getTotalNanos());
+        requestSizeHistogram.record(metrics.getRequestSize());
+        responseSizeHistogram.record(metrics.getResponseSize());
+        if (metrics.getRequestType() != null) {
+            getOrCreate(requestTypeHistograms, metrics.getRequestType()).record(
+                    metrics.getTotalNanos());
+        }
+        if (metrics.getIntentName() != null) {
+            getOrCreate(intentHistograms, metrics.getIntentName()).record(metrics.getTotalNanos());
+        }
+        if (!metrics.isSuccessful()) {
+            failureCount.incrementAndGet();
+        }
+    }
+
+    private static Histogram getOrCreate(final ConcurrentMap<String, Histogram> histograms,
+            final String key) {
+        Histogram histogram = histograms.get(key);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram();
+            histogram = histograms.putIfAbsent(key, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the time spent in the provided stage by the requests that went through it.
+     *
+     * @param stage
+     *            the stage
+     * @return the histogram of the stage, in nanoseconds
+     */
+    public Histogram getStageHistogram(final Stage stage) {
+        return stageHistograms.get(stage);
+    }
+
+    /**
+     * Returns the total time of all requests.
+     *
+     * @return the histogram of the total time, in nanoseconds
+     */
+    public Histogram getTotalHistogram() {
+        return totalHistogram;
+    }
+
+    /**
+     * Returns the total time of the requests of each type.
+     *
+     * @return the histograms by request type, in nanoseconds
+     * @see SpeechletRequestMetrics#getRequestType()
+     */
+    public Map<String, Histogram> getRequestTypeHistograms() {
+        return Collections.unmodifiableMap(requestTypeHistograms);
+    }
+
+    /**
+     * Returns the total time of the requests for each intent.
+     *
+     * @return the histograms by intent name, in nanoseconds
+     */
+    public Map<String, Histogram> getIntentHistograms() {
+        return Collections.unmodifiableMap(intentHistograms);
+    }
+
+    /**
+     * Returns the size of the request bodies.
+     *
+     * @return the histogram of request sizes, in bytes
+     */
+    public Histogram getRequestSizeHistogram() {
+        return requestSizeHistogram;
+    }
+
+    /**
+     * Returns the size of the response bodies.
+     *
+     * @return the histogram of response sizes, in bytes
+     */
+    public Histogram getResponseSizeHistogram() {
+        return responseSizeHistogram;
+    }
+
+    /**
+     * Returns the number of requests that failed.
+     *
+     * @return the number of failed requests
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+}
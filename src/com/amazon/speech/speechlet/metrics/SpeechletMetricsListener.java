@@ -0,0 +1,42 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.metrics;
+
+/**
+ * Receives the measurements of each request handled by a
+ * {@link com.amazon.speech.speechlet.SpeechletRequestHandler}. Implementations are called from the
+ * threads completing requests, possibly concurrently, and should return quickly.
+ *
+ * @see InMemorySpeechletMetricsListener
+ */
+public interface SpeechletMetricsListener {
+    /**
+     * A listener ignoring all metrics. Requests handled with this listener are not measured at
+     * all, so that metrics cost nothing when they are not used.
+     */
+    SpeechletMetricsListener NONE = new SpeechletMetricsListener() {
+        @Override
+        public void onRequestCompleted(final SpeechletRequestMetrics metrics) {
+        }
+    };
+
+    /**
+     * Invoked once per request, when its response is produced or when it fails.
+     *
+     * @param metrics
+     *            the measurements of the request
+     */
+    void onRequestCompleted(SpeechletRequestMetrics metrics);
+}
@@ -0,0 +1,254 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.SpeechletRequest;
+
+/**
+ * The measurements of a single request: the time spent in each {@link Stage} of its handling, the
+ * size of the request and response bodies, and what was requested.
+ * <p>
+ * Instances are created with {@link #start(SpeechletMetricsListener)}, which returns
+ * {@code null} when metrics are disabled so that callers skip timing altogether. The stages of a
+ * request may be recorded from different threads, one after the other; instances are not safe for
+ * concurrent use.
+ */
+public final class SpeechletRequestMetrics {
+    /**
+     * The stages of handling a request.
+     */
+    public enum Stage {
+        /**
+         * Reading the request body. When signatures are checked, the servlet adds each chunk of
+         * the body to the signature as it is read, so hashing the body is part of this stage
+         * rather than of {@link #SIGNATURE_CHECK}.
+         */
+        BODY_READ,
+
+        /**
+         * Retrieving the signing certificate and verifying the signature of the request, recorded
+         * once for both, apart from hashing the body, which is part of {@link #BODY_READ}.
+         */
+        SIGNATURE_CHECK,
+
+        /**
+         * Deserializing the request envelope.
+         */
+        DESERIALIZATION,
+
+        /**
+         * Running the request envelope verifiers.
+         */
+        REQUEST_VERIFICATION,
+
+        /**
+         * Dispatching the request to the speechlet until its response is available.
+         */
+        DISPATCH,
+
+        /**
+         * Serializing the response envelope.
+         */
+        SERIALIZATION,
+
+        /**
+         * Running the response verifiers.
+         */
+        RESPONSE_VERIFICATION
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final SpeechletMetricsListener listener;
+    private final long startNanos;
+    private final long[] stageNanos = new long[STAGES.length];
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private long totalNanos = -1;
+    private int requestSize = -1;
+    private int responseSize = -1;
+    private String requestType;
+    private String intentName;
+    private Throwable failure;
+
+    private SpeechletRequestMetrics(final SpeechletMetricsListener listener) {
+        this.listener = listener;
+        this.startNanos = System.nanoTime();
+        Arrays.fill(stageNanos, -1);
+    }
+
+    /**
+     * Starts measuring a request.
+     *
+     * @param listener
+     *            the listener to report the measurements to once the request completes
+     * @return the measurements of the request, or {@code null} if the listener is
+     *         {@link SpeechletMetricsListener#NONE} or {@code null}
+     */
+    public static SpeechletRequestMetrics start(final SpeechletMetricsListener listener) {
+        if ((listener == null) || (listener == SpeechletMetricsListener.NONE)) {
+            return null;
+        }
+        return new SpeechletRequestMetrics(listener);
+    }
+
+    /**
+     * Adds the time elapsed since {@code stageStartNanos} to the provided stage.
+     *
+     * @param stage
+     *            the stage that ended
+     * @param stageStartNanos
+     *            the value of {@link System#nanoTime()} when the stage started
+     * @return the current value of {@link System#nanoTime()}, which is the start of the next stage
+     */
+    public long recordStage(final Stage stage, final long stageStartNanos) {
+        long now = System.nanoTime();
+        int index = stage.ordinal();
+        stageNanos[index] = Math.max(stageNanos[index], 0) + (now - stageStartNanos);
+        return now;
+    }
+
+    /**
+     * Records the size of the request body.
+     *
+     * @param requestSize
+     *            the size in bytes
+     */
+    public void setRequestSize(final int requestSize) {
+        this.requestSize = requestSize;
+    }
+
+    /**
+     * Records the size of the response body.
+     *
+     * @param responseSize
+     *            the size in bytes
+     */
+    public void setResponseSize(final int responseSize) {
+        this.responseSize = responseSize;
+    }
+
+    /**
+     * Records the type of the request, and the name of the intent for an {@code IntentRequest}.
+     *
+     * @param request
+     *            the deserialized request
+     */
+    public void setRequest(final SpeechletRequest request) {
+        if (request == null) {
+            return;
+        }
+        requestType = request.getClass().getSimpleName();
+        if (request instanceof IntentRequest) {
+            Intent intent = ((IntentRequest) request).getIntent();
+            intentName = (intent != null) ? intent.getName() : null;
+        }
+    }
+
+    /**
+     * Ends the measurements and reports them to the listener. Only the first call has an effect,
+     * later ones are ignored.
+     *
+     * @param failure
+     *            the reason the request failed, or {@code null} if a response was produced
+     */
+    public void complete(final Throwable failure) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        this.totalNanos = System.nanoTime() - startNanos;
+        this.failure = failure;
+        listener.onRequestCompleted(this);
+    }
+
+    /**
+     * Returns the time spent in the provided stage.
+     *
+     * @param stage
+     *            the stage
+     * @return the time in nanoseconds, or -1 if the stage was not measured for this request
+     */
+    public long getStageNanos(final Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * Returns the time from the start of the measurements until the request completed.
+     *
+     * @return the time in nanoseconds, or -1 if the request is not complete
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns the size of the request body.
+     *
+     * @return the size in bytes, or -1 if unknown
+     */
+    public int getRequestSize() {
+        return requestSize;
+    }
+
+    /**
+     * Returns the size of the response body.
+     *
+     * @return the size in bytes, or -1 if no response was produced
+     */
+    public int getResponseSize() {
+        return responseSize;
+    }
+
+    /**
+     * Returns the type of the request, the simple name of its class such as
+     * {@code IntentRequest}.
+     *
+     * @return the request type, or {@code null} if the request could not be deserialized
+     */
+    public String getRequestType() {
+        return requestType;
+    }
+
+    /**
+     * Returns the name of the intent of an {@code IntentRequest}.
+     *
+     * @return the intent name, or {@code null} for other requests
+     */
+    public String getIntentName() {
+        return intentName;
+    }
+
+    /**
+     * Returns the reason the request failed.
+     *
+     * @return the failure, or {@code null} if a response was produced
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns whether a response was produced for the request.
+     *
+     * @return true if the request completed without failure
+     */
+    public boolean isSuccessful() {
+        return completed.get() && (failure == null);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet.servlet;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.speechlet.SpeechletFuture;
+import com.amazon.speech.speechlet.SpeechletRequestBody;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureCheck;
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics;
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics.Stage;
+
+/**
+ * Processes a single request of a {@link SpeechletServlet} running in asynchronous mode. The
+ * request body is read with a {@link ReadListener}, verification and dispatch run on the executor
+ * configured on the servlet, and the response is written with a {@link WriteListener}. No container
+ * thread is held while the speechlet produces its response.
+ * <p>
+ * The signature check starts, and looks up the signing certificate, when the request starts; body
+ * bytes are added to it as they arrive so that only the final signature operation remains once
+ * the body is complete. The body is still deserialized after that, since parsing it as it arrives
+ * would need a non-blocking JSON parser. It is read into a buffer of the request body pool of the
+ * servlet, which is released once the body has been deserialized, or when the request fails or
+ * times out before that.
+ */
+final class AsyncSpeechletServletCall implements ReadListener, WriteListener, AsyncListener {
+    private static final Logger log = LoggerFactory.getLogger(AsyncSpeechletServletCall.class);
+
+    private final SpeechletServlet servlet;
+    private final Executor executor;
+    private final AsyncContext asyncContext;
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+    private final ServletInputStream input;
+    private SpeechletRequestBody body;
+    /**
+     * Set by whichever of the dispatch or a failure takes the body first, which then releases it.
+     */
+    private final AtomicBoolean bodyTaken = new AtomicBoolean();
+    private final AtomicBoolean responding = new AtomicBoolean();
+
+    private final SpeechletRequestMetrics metrics;
+    private long stageStart;
+    private long signatureLookupNanos;
+    private SpeechletRequestSignatureCheck signatureCheck;
+
+    private ServletOutputStream output;
+    private byte[] outputBytes;
+
+    private AsyncSpeechletServletCall(SpeechletServlet servlet, Executor executor,
+            AsyncContext asyncContext, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        this.servlet = servlet;
+        this.executor = executor;
+        this.asyncContext = asyncContext;
+        this.request = request;
+        this.response = response;
+        this.input = request.getInputStream();
+        this.metrics = servlet.startRequestMetrics();
+        this.stageStart = (metrics != null) ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Puts the provided request into asynchronous mode and starts reading its body.
+     *
+     * @param servlet
+     *            the servlet handling the request
+     * @param executor
+     *            the executor running verification and dispatch
+     * @param timeoutMillis
+     *            the time allowed to produce the response, in milliseconds
+     * @param request
+     *            the request to process
+     * @param response
+     *            the response to the request
+     * @throws IOException
+     *             if the request body cannot be read
+     */
+    static void start(SpeechletServlet servlet, Executor executor, long timeoutMillis,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(timeoutMillis);
+
+        AsyncSpeechletServletCall call =
+                new AsyncSpeechletServletCall(servlet, executor, asyncContext, request, response);
+        asyncContext.addListener(call);
+        try {
+            call.signatureCheck =
+                    servlet.startRequestSignatureCheck(
+                            request.getHeader(Sdk.SIGNATURE_REQUEST_HEADER),
+                            request.getHeader(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER));
+        } catch (SecurityException ex) {
+            // Rejected before reading the body
+            call.fail(HttpServletResponse.SC_BAD_REQUEST, ex);
+            return;
+        }
+        if (call.metrics != null) {
+            // Recorded with the final signature operation, once the body is read
+            long now = System.nanoTime();
+            call.signatureLookupNanos = now - call.stageStart;
+            call.stageStart = now;
+        }
+        try {
+            // Rejects an oversized body before reading it
+            call.body = servlet.getRequestBodyPool().acquire(
+                    SpeechletServlet.getRequestContentLength(request));
+        } catch (SpeechletRequestHandlerException ex) {
+            call.fail(HttpServletResponse.SC_BAD_REQUEST, ex);
+            return;
+        }
+        call.input.setReadListener(call);
+    }
+
+    @Override
+    public void onDataAvailable() throws IOException {
+        int read;
+        try {
+            // A failed request has released the body, which may already hold another request
+            while (!bodyTaken.get() && input.isReady() && (read = body.read(input)) != -1) {
+                if (signatureCheck != null) {
+                    signatureCheck.update(body.getBuffer(), body.getLength() - read, read);
+                }
+            }
+        } catch (SpeechletRequestHandlerException ex) {
+            // Stops reading a body that exceeds the maximum size
+            fail(HttpServletResponse.SC_BAD_REQUEST, ex);
+        }
+    }
+
+    @Override
+    public void onAllDataRead() {
+        if (responding.get()) {
+            // The body was rejected while it was read
+            return;
+        }
+        if (metrics != null) {
+            metrics.recordStage(Stage.BODY_READ, stageStart);
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ex);
+        }
+    }
+
+    private void dispatch() {
+        if (!bodyTaken.compareAndSet(false, true)) {
+            // The request timed out or failed, and released the body
+            return;
+        }
+        SpeechletFuture<byte[]> outputBytes;
+        try {
+            outputBytes =
+                    servlet.handleSpeechletCallAsync(body, signatureCheck, signatureLookupNanos,
+                            metrics);
+        } catch (RuntimeException ex) {
+            outputBytes = SpeechletFuture.failed(ex);
+        } finally {
+            body.release();
+        }
+
+        outputBytes.addCallback(new SpeechletFuture.Callback<byte[]>() {
+            @Override
+            public void onSuccess(byte[] value) {
+                respond(value);
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                boolean badRequest =
+                        failure instanceof SpeechletRequestHandlerException
+                                || failure instanceof SecurityException;
+                fail(badRequest ? HttpServletResponse.SC_BAD_REQUEST
+                        : HttpServletResponse.SC_INTERNAL_SERVER_ERROR, failure);
+            }
+        });
+    }
+
+    private void respond(byte[] bytes) {
+        if (!responding.compareAndSet(false, true)) {
+            // The request already timed out or failed
+            return;
+        }
+
+        // Send back the response
+        response.setContentType("application/json");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLength(bytes.length);
+        try {
+            outputBytes = bytes;
+            output = response.getOutputStream();
+            output.setWriteListener(this);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Exception occurred writing the response", ex);
+            asyncContext.complete();
+        }
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        if (outputBytes != null) {
+            byte[] bytes = outputBytes;
+            outputBytes = null;
+            output.write(bytes);
+        }
+
+        if (output.isReady()) {
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * Invoked by the container when reading the request or writing the response fails.
+     *
+     * @param t
+     *            the failure
+     */
+    @Override
+    public void onError(Throwable t) {
+        if (!fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, t)) {
+            log.error("Exception occurred writing the response", t);
+            asyncContext.complete();
+        }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE, new TimeoutException(String.format(
+                "Request timed out after %d ms", asyncContext.getTimeout())));
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, event.getThrowable());
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    /**
+     * Sends an error response and completes the request, unless a response is already being sent.
+     * The request body is released, unless it was dispatched.
+     *
+     * @param statusCode
+     *            the status code to return
+     * @param failure
+     *            the cause of the error
+     * @return whether the error response was sent
+     */
+    private boolean fail(int statusCode, Throwable failure) {
+        if (!responding.compareAndSet(false, true)) {
+            return false;
+        }
+
+        if (body != null && bodyTaken.compareAndSet(false, true)) {
+            // Not dispatched, so the body goes back to the pool here
+            body.release();
+        }
+        if (metrics != null) {
+            metrics.complete(failure);
+        }
+        log.error("Exception occurred in doPost, returning status code {}", statusCode, failure);
+        try {
+            response.sendError(statusCode, failure != null ? failure.getMessage() : null);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Exception occurred sending status code {}", statusCode, ex);
+        }
+        asyncContext.complete();
+        return true;
+    }
+}
@@ -18,18 +18,31 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazon.speech.Sdk;
+import com.amazon.speech.speechlet.AsyncSpeechletV2;
 import com.amazon.speech.speechlet.Speechlet;
+import com.amazon.speech.speechlet.SpeechletFuture;
+import com.amazon.speech.speechlet.SpeechletRequestBody;
+import com.amazon.speech.speechlet.SpeechletRequestBodyPool;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
 import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletRouter;
 import com.amazon.speech.speechlet.SpeechletToSpeechletV2Adapter;
 import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.speechlet.SpeechletV2ToAsyncSpeechletV2Adapter;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureCheck;
 import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerifier;
+import com.amazon.speech.speechlet.metrics.SpeechletMetricsListener;
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics;
+import com.amazon.speech.speechlet.metrics.SpeechletRequestMetrics.Stage;
 
 /**
  * <p>
@@ -41,6 +54,32 @@ import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerif
  * invocation of the right method of the provided {@code SpeechletV2} . It also handles sending back
  * modified session attributes, user attributes and authentication tokens when needed and handles
  * exception cases.
+ * </p>
+ * <p>
+ * The request body is read into a pooled buffer, see
+ * {@link #setRequestBodyPool(SpeechletRequestBodyPool)}, while its signature is computed over the
+ * same bytes, and the request is only deserialized and dispatched once the signature has been
+ * verified.
+ * </p>
+ * <p>
+ * Several skills can be hosted behind one servlet by setting a {@link SpeechletRouter} with
+ * {@link #setSpeechletRouter(SpeechletRouter)} instead of a speechlet.
+ * </p>
+ * <p>
+ * An {@code AsyncSpeechletV2} can be used instead of a {@code SpeechletV2}; {@code Speechlet} and
+ * {@code SpeechletV2} implementations are adapted into one.
+ * </p>
+ * <p>
+ * By default each request is handled on the container thread that received it. Setting an
+ * executor with {@link #setAsyncExecutor(Executor)} enables the asynchronous mode, in which the
+ * body is read and the response written with non-blocking I/O, verification and dispatch run on
+ * the executor, and the container thread is released while the speechlet produces its response.
+ * The servlet must be registered with asynchronous support enabled for this mode to be used,
+ * and the asynchronous mode requires a Servlet 3.1 container; the synchronous mode only requires
+ * Servlet 3.0.
+ * Requests not completed within the timeout set with {@link #setAsyncTimeout(long, TimeUnit)} are
+ * answered with status code 503.
+ * </p>
  *
  * @see SpeechletV2
  * @see #setSpeechlet(SpeechletV2)
@@ -49,9 +88,19 @@ public class SpeechletServlet extends HttpServlet {
     private static final Logger log = LoggerFactory.getLogger(SpeechletServlet.class);
     private static final long serialVersionUID = 3257254794185762002L;
 
-    private transient SpeechletV2 speechlet;
+    /**
+     * The default time allowed to produce a response in asynchronous mode. The Alexa service waits
+     * 8 seconds for a response.
+     */
+    private static final long DEFAULT_ASYNC_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(8);
+
+    private transient AsyncSpeechletV2 speechlet;
+    private transient SpeechletRouter speechletRouter;
     private transient ServletSpeechletRequestHandler speechletRequestHandler;
     private final boolean disableRequestSignatureCheck;
+    private transient Executor asyncExecutor;
+    private volatile long asyncTimeoutMillis = DEFAULT_ASYNC_TIMEOUT_MILLIS;
+    private transient volatile SpeechletRequestBodyPool requestBodyPool;
 
     public SpeechletServlet() {
         // An invalid value or null will turn signature checking on.
@@ -59,6 +108,7 @@ public class SpeechletServlet extends HttpServlet {
                 Boolean.parseBoolean(System
                         .getProperty(Sdk.DISABLE_REQUEST_SIGNATURE_CHECK_SYSTEM_PROPERTY));
         speechletRequestHandler = new ServletSpeechletRequestHandler();
+        requestBodyPool = SpeechletRequestBodyPool.builder().build();
     }
 
     /**
@@ -75,42 +125,283 @@ public class SpeechletServlet extends HttpServlet {
     @Override
     protected void doPost(final HttpServletRequest request, final HttpServletResponse response)
             throws IOException {
-        byte[] serializedSpeechletRequest = IOUtils.toByteArray(request.getInputStream());
-        byte[] outputBytes = null;
+        final Executor executor = asyncExecutor;
+        if (executor != null) {
+            if (request.isAsyncSupported()) {
+                AsyncSpeechletServletCall.start(this, executor, asyncTimeoutMillis, request,
+                        response);
+                return;
+            }
+            log.warn("Asynchronous support is not enabled for this servlet, "
+                    + "handling the request synchronously");
+        }
+
+        SpeechletRequestMetrics metrics = speechletRequestHandler.startRequestMetrics();
+        SpeechletRequestBody requestBody = null;
 
         try {
-            if (disableRequestSignatureCheck) {
-                log.warn("Warning: Speechlet request signature verification has been disabled!");
-            } else {
-                // Verify the authenticity of the request by checking the provided signature &
-                // certificate.
-                SpeechletRequestSignatureVerifier.checkRequestSignature(serializedSpeechletRequest,
-                        request.getHeader(Sdk.SIGNATURE_REQUEST_HEADER),
-                        request.getHeader(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER));
+            long signatureCheckStart = (metrics != null) ? System.nanoTime() : 0L;
+            SpeechletRequestSignatureCheck signatureCheck =
+                    startRequestSignatureCheck(request.getHeader(Sdk.SIGNATURE_REQUEST_HEADER),
+                            request.getHeader(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER));
+            long stageStart = (metrics != null) ? System.nanoTime() : 0L;
+            long signatureLookupNanos = stageStart - signatureCheckStart;
+
+            // Rejects an oversized body before reading it
+            requestBody = requestBodyPool.acquire(getRequestContentLength(request));
+            readRequestBody(request.getInputStream(), requestBody, signatureCheck);
+            if (metrics != null) {
+                stageStart = metrics.recordStage(Stage.BODY_READ, stageStart);
+            }
+            if (signatureCheck != null) {
+                signatureCheck.verify();
+            }
+            if (metrics != null) {
+                // Recorded once, for both the certificate lookup and the final signature operation
+                metrics.recordStage(Stage.SIGNATURE_CHECK, stageStart - signatureLookupNanos);
             }
 
-            outputBytes =
-                    speechletRequestHandler.handleSpeechletCall(speechlet,
-                            serializedSpeechletRequest);
+            // Generate JSON and send it back straight to the response
+            OutputStream out = new ResponseOutputStream(response);
+            SpeechletRouter router = speechletRouter;
+            if (router != null) {
+                speechletRequestHandler.handleSpeechletCall(router, requestBody, out, metrics);
+            } else {
+                speechletRequestHandler.handleSpeechletCall(speechlet, requestBody, out, metrics);
+            }
         } catch (SpeechletRequestHandlerException | SecurityException ex) {
+            if (metrics != null) {
+                metrics.complete(ex);
+            }
             int statusCode = HttpServletResponse.SC_BAD_REQUEST;
             log.error("Exception occurred in doPost, returning status code {}", statusCode, ex);
             response.sendError(statusCode, ex.getMessage());
-            return;
         } catch (Exception ex) {
+            if (metrics != null) {
+                metrics.complete(ex);
+            }
+            if (response.isCommitted()) {
+                log.error("Exception occurred in doPost while writing the response", ex);
+                return;
+            }
             int statusCode = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
             log.error("Exception occurred in doPost, returning status code {}", statusCode, ex);
             response.sendError(statusCode, ex.getMessage());
-            return;
+        } finally {
+            if (requestBody != null) {
+                requestBody.release();
+            }
+        }
+    }
+
+    /**
+     * Reads the request body into a pooled buffer, adding every chunk to the signature check as it
+     * arrives so that only the final signature operation remains once the body is complete.
+     *
+     * @param in
+     *            the request body
+     * @param requestBody
+     *            the buffer to read the body into
+     * @param signatureCheck
+     *            the signature check of the request, or null if signature checking is disabled
+     * @throws IOException
+     *             if the body cannot be read
+     * @throws SpeechletRequestHandlerException
+     *             if the body exceeds the maximum body size
+     */
+    private static void readRequestBody(final InputStream in,
+            final SpeechletRequestBody requestBody,
+            final SpeechletRequestSignatureCheck signatureCheck) throws IOException,
+            SpeechletRequestHandlerException {
+        int read;
+        while ((read = requestBody.read(in)) != -1) {
+            if (signatureCheck != null) {
+                signatureCheck.update(requestBody.getBuffer(), requestBody.getLength() - read,
+                        read);
+            }
+        }
+    }
+
+    /**
+     * Returns the declared length of a request body, or -1 if it is unknown. Only uses Servlet 3.0
+     * methods, so that the synchronous mode runs in Servlet 3.0 containers; a length over
+     * {@code Integer.MAX_VALUE} is read from the {@code Content-Length} header.
+     *
+     * @param request
+     *            the request
+     * @return the length of the request body in bytes, or -1 if it is unknown
+     */
+    static long getRequestContentLength(final HttpServletRequest request) {
+        int contentLength = request.getContentLength();
+        if (contentLength >= 0) {
+            return contentLength;
+        }
+        String header = request.getHeader("Content-Length");
+        if (header != null) {
+            try {
+                return Long.parseLong(header.trim());
+            } catch (NumberFormatException ex) {
+                // Treated as unknown, the body size is still enforced while reading it
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Completes the signature check of a request whose body was read, then dispatches it to the
+     * speechlet without waiting for the response. Used by the asynchronous mode.
+     *
+     * @param requestBody
+     *            the request body, deserialized before this method returns
+     * @param signatureCheck
+     *            the signature check the body was added to, or null if signature checking is
+     *            disabled
+     * @param signatureLookupNanos
+     *            the time spent starting the signature check, recorded with the time spent
+     *            completing it
+     * @param metrics
+     *            the measurements of the request, or null if metrics are disabled
+     * @return a future completed with the response body
+     */
+    SpeechletFuture<byte[]> handleSpeechletCallAsync(SpeechletRequestBody requestBody,
+            SpeechletRequestSignatureCheck signatureCheck, long signatureLookupNanos,
+            SpeechletRequestMetrics metrics) {
+        long stageStart = (metrics != null) ? System.nanoTime() : 0L;
+        try {
+            if (signatureCheck != null) {
+                signatureCheck.verify();
+            }
+        } catch (SecurityException ex) {
+            return SpeechletFuture.failed(ex);
+        } finally {
+            if (metrics != null) {
+                metrics.recordStage(Stage.SIGNATURE_CHECK, stageStart - signatureLookupNanos);
+            }
         }
 
-        // Generate JSON and send back the response
-        response.setContentType("application/json");
-        response.setStatus(HttpServletResponse.SC_OK);
-        try (final OutputStream out = response.getOutputStream()) {
-            response.setContentLength(outputBytes.length);
-            out.write(outputBytes);
+        SpeechletRouter router = speechletRouter;
+        if (router != null) {
+            return speechletRequestHandler.handleSpeechletCallAsync(router, requestBody, metrics);
         }
+        return speechletRequestHandler.handleSpeechletCallAsync(speechlet, requestBody, metrics);
+    }
+
+    /**
+     * Starts measuring a request handled in asynchronous mode.
+     *
+     * @return the measurements of the request, or null if metrics are disabled
+     */
+    SpeechletRequestMetrics startRequestMetrics() {
+        return speechletRequestHandler.startRequestMetrics();
+    }
+
+    /**
+     * Returns the listener receiving the measurements of each request.
+     *
+     * @return the metrics listener, {@link SpeechletMetricsListener#NONE} by default
+     */
+    public SpeechletMetricsListener getMetricsListener() {
+        return speechletRequestHandler.getMetricsListener();
+    }
+
+    /**
+     * Sets the listener receiving the measurements of each request, such as an
+     * {@link com.amazon.speech.speechlet.metrics.InMemorySpeechletMetricsListener}.
+     *
+     * @param metricsListener
+     *            the metrics listener, {@link SpeechletMetricsListener#NONE} to stop measuring
+     */
+    public void setMetricsListener(final SpeechletMetricsListener metricsListener) {
+        speechletRequestHandler.setMetricsListener(metricsListener);
+    }
+
+    /**
+     * Returns the handler processing the requests of this servlet, whose setters configure the
+     * optional stages of its pipeline, such as response caching or load shedding.
+     *
+     * @return the speechlet request handler
+     */
+    public SpeechletRequestHandler getSpeechletRequestHandler() {
+        return speechletRequestHandler;
+    }
+
+    /**
+     * Starts checking the signature of a request before its body is read.
+     *
+     * @param signature
+     *            the value of the signature header
+     * @param certificateChainUrl
+     *            the value of the certificate chain URL header
+     * @return the signature check to add the body to, or null if signature checking is disabled
+     * @throws SecurityException
+     *             if the signature or certificate is missing or invalid
+     */
+    SpeechletRequestSignatureCheck startRequestSignatureCheck(String signature,
+            String certificateChainUrl) {
+        if (disableRequestSignatureCheck) {
+            log.warn("Warning: Speechlet request signature verification has been disabled!");
+            return null;
+        }
+
+        // Verify the authenticity of the request by checking the provided signature &
+        // certificate.
+        return SpeechletRequestSignatureVerifier.startRequestSignatureCheck(signature,
+                certificateChainUrl);
+    }
+
+    /**
+     * Returns the pool of buffers request bodies are read into.
+     *
+     * @return the request body pool
+     */
+    public SpeechletRequestBodyPool getRequestBodyPool() {
+        return requestBodyPool;
+    }
+
+    /**
+     * Sets the pool of buffers request bodies are read into. Requests with a body larger than the
+     * maximum body size of the pool are rejected with status code 400.
+     *
+     * @param requestBodyPool
+     *            the request body pool
+     */
+    public void setRequestBodyPool(final SpeechletRequestBodyPool requestBodyPool) {
+        if (requestBodyPool == null) {
+            throw new IllegalArgumentException("Request body pool must not be null");
+        }
+        this.requestBodyPool = requestBodyPool;
+    }
+
+    /**
+     * Returns the executor used in asynchronous mode.
+     *
+     * @return the executor used in asynchronous mode, or null if the mode is disabled
+     */
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * Sets the executor running request verification and dispatch, enabling the asynchronous mode.
+     * Passing null disables the asynchronous mode.
+     *
+     * @param asyncExecutor
+     *            the executor to use in asynchronous mode
+     */
+    public void setAsyncExecutor(final Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Sets the time allowed to produce a response in asynchronous mode, 8 seconds by default.
+     *
+     * @param timeout
+     *            the timeout, zero or less for no timeout
+     * @param unit
+     *            the unit of the timeout
+     */
+    public void setAsyncTimeout(final long timeout, final TimeUnit unit) {
+        this.asyncTimeoutMillis = unit.toMillis(timeout);
     }
 
     /**
@@ -119,8 +410,9 @@ public class SpeechletServlet extends HttpServlet {
      * @return the {@code Speechlet} associated with this servlet, or null if there is not one
      */
     public Speechlet getSpeechlet() {
-        if (speechlet instanceof SpeechletToSpeechletV2Adapter) {
-            return ((SpeechletToSpeechletV2Adapter) speechlet).getSpeechlet();
+        SpeechletV2 speechletV2 = getSpeechletV2();
+        if (speechletV2 instanceof SpeechletToSpeechletV2Adapter) {
+            return ((SpeechletToSpeechletV2Adapter) speechletV2).getSpeechlet();
         }
 
         return null;
@@ -129,9 +421,23 @@ public class SpeechletServlet extends HttpServlet {
     /**
      * Returns the {@code SpeechletV2} object that this servlet uses.
      *
-     * @return the {@code SpeechletV2} object that this servlet uses.
+     * @return the {@code SpeechletV2} object that this servlet uses, or null if there is not one
      */
     public SpeechletV2 getSpeechletV2() {
+        if (speechlet instanceof SpeechletV2ToAsyncSpeechletV2Adapter) {
+            return ((SpeechletV2ToAsyncSpeechletV2Adapter) speechlet).getSpeechlet();
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the {@code AsyncSpeechletV2} object that this servlet uses.
+     *
+     * @return the {@code AsyncSpeechletV2} object that this servlet uses. A {@code Speechlet} or
+     *         {@code SpeechletV2} is returned wrapped in an adapter.
+     */
+    public AsyncSpeechletV2 getAsyncSpeechletV2() {
         return speechlet;
     }
 
@@ -142,7 +448,7 @@ public class SpeechletServlet extends HttpServlet {
      *            the {@code Speechlet} to associate with this servlet
      */
     public void setSpeechlet(final Speechlet speechlet) {
-        this.speechlet = new SpeechletToSpeechletV2Adapter(speechlet);
+        setSpeechlet(new SpeechletToSpeechletV2Adapter(speechlet));
     }
 
     /**
@@ -152,6 +458,73 @@ public class SpeechletServlet extends HttpServlet {
      *            the {@code SpeechletV2} to associate with this servlet
      */
     public void setSpeechlet(final SpeechletV2 speechlet) {
+        this.speechlet = new SpeechletV2ToAsyncSpeechletV2Adapter(speechlet);
+    }
+
+    /**
+     * Sets the {@code AsyncSpeechletV2} object that this servlet uses.
+     *
+     * @param speechlet
+     *            the {@code AsyncSpeechletV2} to associate with this servlet
+     */
+    public void setSpeechlet(final AsyncSpeechletV2 speechlet) {
         this.speechlet = speechlet;
     }
+
+    /**
+     * Returns the router used to host several skills behind this servlet.
+     *
+     * @return the router, or null if requests are handled by a single speechlet
+     */
+    public SpeechletRouter getSpeechletRouter() {
+        return speechletRouter;
+    }
+
+    /**
+     * Sets a router dispatching each request to the speechlet registered for its application ID,
+     * which takes precedence over the speechlet of this servlet. Requests for an application ID
+     * without a route are answered with status code 400.
+     * <p>
+     * Requests are still verified by the application ID verifier of this servlet, so the
+     * {@link Sdk#SUPPORTED_APPLICATION_IDS_SYSTEM_PROPERTY} system property must either list the
+     * application IDs of all routes or be left unset.
+     *
+     * @param speechletRouter
+     *            the router, or null to handle requests with the speechlet of this servlet
+     */
+    public void setSpeechletRouter(final SpeechletRouter speechletRouter) {
+        this.speechletRouter = speechletRouter;
+    }
+
+    /**
+     * Writes the response body to the servlet response. The handler writes the verified response
+     * in a single call, which sets the status, content type and length of the response before
+     * the body is written.
+     */
+    private static final class ResponseOutputStream extends OutputStream {
+        private final HttpServletResponse response;
+        private OutputStream out;
+
+        ResponseOutputStream(final HttpServletResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {
+                (byte) b
+            }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out == null) {
+                response.setContentType("application/json");
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentLength(len);
+                out = response.getOutputStream();
+            }
+            out.write(b, off, len);
+        }
+    }
 }
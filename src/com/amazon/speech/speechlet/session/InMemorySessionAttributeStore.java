@@ -0,0 +1,177 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet.session;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A {@link SessionAttributeStore} keeping attributes in memory, for services running on a single
+ * host or routing every request of a session to the same host.
+ * <p>
+ * Sessions ending without a {@code SessionEndedRequest}, for instance when the service was not
+ * reachable, are removed once they were not accessed for the configured time to idle. Once more
+ * sessions than the configured maximum are stored, the least recently used ones are evicted.
+ */
+public final class InMemorySessionAttributeStore implements SessionAttributeStore {
+    private static final int DEFAULT_MAXIMUM_SESSIONS = 10000;
+    private static final long DEFAULT_TIME_TO_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final Map<String, Entry> entries;
+    private final long timeToIdleMillis;
+    private long evictionCount;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private InMemorySessionAttributeStore(final Builder builder) {
+        final int maximumSessions = builder.maximumSessions;
+        timeToIdleMillis = builder.timeToIdleMillis;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                if (size() > maximumSessions) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Map<String, byte[]> load(final String sessionId) {
+        synchronized (entries) {
+            Entry entry = entries.get(sessionId);
+            if (entry == null) {
+                return Collections.emptyMap();
+            }
+            long now = System.currentTimeMillis();
+            if (now - entry.lastAccessMillis >= timeToIdleMillis) {
+                entries.remove(sessionId);
+                return Collections.emptyMap();
+            }
+            entry.lastAccessMillis = now;
+            return new HashMap<>(entry.attributes);
+        }
+    }
+
+    @Override
+    public void save(final String sessionId, final Map<String, byte[]> changedAttributes) {
+        synchronized (entries) {
+            Entry entry = entries.get(sessionId);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(sessionId, entry);
+            }
+            entry.lastAccessMillis = System.currentTimeMillis();
+            for (Map.Entry<String, byte[]> attribute : changedAttributes.entrySet()) {
+                if (attribute.getValue() != null) {
+                    entry.attributes.put(attribute.getKey(), attribute.getValue());
+                } else {
+                    entry.attributes.remove(attribute.getKey());
+                }
+            }
+            if (entry.attributes.isEmpty()) {
+                entries.remove(sessionId);
+            }
+        }
+    }
+
+    @Override
+    public void remove(final String sessionId) {
+        synchronized (entries) {
+            entries.remove(sessionId);
+        }
+    }
+
+    /**
+     * Returns the number of sessions currently stored.
+     *
+     * @return the number of stored sessions
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of sessions evicted because the store exceeded its maximum size.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        synchronized (entries) {
+            return evictionCount;
+        }
+    }
+
+    /**
+     * The attributes of one session.
+     */
+    private static final class Entry {
+        private final Map<String, byte[]> attributes = new HashMap<>();
+        private long lastAccessMillis;
+    }
+
+    public static final class Builder {
+        private int maximumSessions = DEFAULT_MAXIMUM_SESSIONS;
+        private long timeToIdleMillis = DEFAULT_TIME_TO_IDLE_MILLIS;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of sessions stored, 10,000 by default.
+         *
+         * @param maximumSessions
+         *            the maximum number of stored sessions
+         * @return this builder
+         */
+        public Builder withMaximumSessions(final int maximumSessions) {
+            this.maximumSessions = maximumSessions;
+            return this;
+        }
+
+        /**
+         * Sets how long the attributes of a session are kept after it was last accessed, 30
+         * minutes by default.
+         *
+         * @param timeToIdle
+         *            the time to idle of stored sessions
+         * @param unit
+         *            the unit of the time to idle
+         * @return this builder
+         */
+        public Builder withTimeToIdle(final long timeToIdle, final TimeUnit unit) {
+            this.timeToIdleMillis = unit.toMillis(timeToIdle);
+            return this;
+        }
+
+        public InMemorySessionAttributeStore build() {
+            Validate.isTrue(maximumSessions > 0, "Maximum sessions must be positive");
+            Validate.isTrue(timeToIdleMillis > 0, "Time to idle must be positive");
+            return new InMemorySessionAttributeStore(this);
+        }
+    }
+}
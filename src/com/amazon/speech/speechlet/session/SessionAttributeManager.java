@@ -0,0 +1,247 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet.session;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.Session;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keeps the large attributes of a session in a {@link SessionAttributeStore} instead of sending
+ * them back with every response, which makes both the responses and the following requests of
+ * the session grow with its state.
+ *
+ * <p>
+ * When a response is produced, attributes whose JSON encoding is larger than the inline threshold
+ * are moved to the store, and only the attributes that changed since the request are written.
+ * The other attributes are sent back with the response as usual, along with a compact handle
+ * recording that the session has stored attributes. When the next request of the session
+ * carries the handle, its stored attributes are loaded back into the {@link Session} before the
+ * speechlet is invoked, so speechlets see all their attributes whether they are stored or not.
+ * The stored attributes are removed when the session ends.
+ * </p>
+ *
+ * <p>
+ * Loaded attributes are only decoded when the speechlet reads them. Those it neither sets,
+ * removes nor reads are left in the store as they are, without being decoded, encoded again or
+ * written.
+ * </p>
+ *
+ * <p>
+ * Sessions whose attributes all stay under the threshold never access the store. A store that
+ * evicts attributes, such as an {@link InMemorySessionAttributeStore} once full, makes them
+ * missing from their session, which is logged as a warning when the session is restored.
+ * </p>
+ *
+ * @see com.amazon.speech.speechlet.SpeechletRequestHandler#setSessionAttributeManager(SessionAttributeManager)
+ */
+public final class SessionAttributeManager {
+    private static final Logger log = LoggerFactory.getLogger(SessionAttributeManager.class);
+
+    /**
+     * The name of the attribute sent back instead of the stored attributes, holding their number.
+     */
+    public static final String HANDLE_ATTRIBUTE = "_storedAttributes";
+
+    private static final int DEFAULT_INLINE_THRESHOLD = 256;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static {
+        OBJECT_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    }
+
+    private final SessionAttributeStore store;
+    private final int inlineThreshold;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private SessionAttributeManager(final Builder builder) {
+        store = (builder.store != null) ? builder.store : InMemorySessionAttributeStore
+                .builder()
+                .build();
+        inlineThreshold = builder.inlineThreshold;
+    }
+
+    /**
+     * Loads the stored attributes of the session of a request into the session, unless the
+     * request carries an attribute of the same name. The attributes are set with
+     * {@link Session#setEncodedAttribute(String, byte[])}, and are only decoded when read.
+     *
+     * @param session
+     *            the session of the request, may be {@code null}
+     * @return the stored attributes as loaded, to pass to
+     *         {@link #save(Session, Map, SpeechletResponseEnvelope, boolean)}, or {@code null} if
+     *         the session has no stored attributes
+     * @throws IOException
+     *             if the attributes cannot be loaded
+     */
+    public Map<String, byte[]> restore(final Session session) throws IOException {
+        Object handle = (session != null) ? session.getAttributes().remove(HANDLE_ATTRIBUTE) : null;
+        if (handle == null) {
+            return null;
+        }
+        Map<String, byte[]> storedAttributes = store.load(session.getSessionId());
+        if (handle instanceof Number && storedAttributes.size() < ((Number) handle).intValue()) {
+            log.warn("Only {} of the {} stored attributes of session {} were loaded, the others "
+                    + "are missing from the store", storedAttributes.size(), handle,
+                    session.getSessionId());
+        }
+        for (Map.Entry<String, byte[]> storedAttribute : storedAttributes.entrySet()) {
+            if (!session.getAttributes().containsKey(storedAttribute.getKey())) {
+                session.setEncodedAttribute(storedAttribute.getKey(), storedAttribute.getValue());
+            }
+        }
+        return storedAttributes;
+    }
+
+    /**
+     * Moves the large attributes of a response to the store, writing those that changed since
+     * {@link #restore(Session)}, or removes the stored attributes of a session that ended. Only
+     * the attributes the speechlet set or read are encoded to find out whether they changed. When
+     * the response carries the attributes of the session, which are not used once the response is
+     * produced, the stored attributes are removed from them in place.
+     *
+     * @param session
+     *            the session of the request, may be {@code null}
+     * @param storedAttributes
+     *            the value returned by {@link #restore(Session)}
+     * @param responseEnvelope
+     *            the response, whose session attributes are replaced by those sent back
+     * @param sessionEnded
+     *            whether the session ended with this request
+     * @throws IOException
+     *             if the attributes cannot be encoded or written
+     */
+    public void save(final Session session, final Map<String, byte[]> storedAttributes,
+            final SpeechletResponseEnvelope responseEnvelope, final boolean sessionEnded)
+            throws IOException {
+        if (session == null) {
+            return;
+        }
+        if (sessionEnded) {
+            if (storedAttributes != null) {
+                store.remove(session.getSessionId());
+            }
+            return;
+        }
+        Map<String, Object> attributes = responseEnvelope.getSessionAttributes();
+        if (attributes == null) {
+            return;
+        }
+
+        boolean sessionAttributes = (attributes == session.getAttributes());
+        Map<String, byte[]> changedAttributes = new HashMap<>();
+        Set<String> storedNames = new HashSet<>();
+        for (String name : attributes.keySet()) {
+            // Loaded attributes the speechlet did not use are still stored as they are
+            if (sessionAttributes && session.isEncodedAttribute(name)) {
+                storedNames.add(name);
+                continue;
+            }
+            Object value = attributes.get(name);
+            if (isInline(value)) {
+                continue;
+            }
+            byte[] json = OBJECT_MAPPER.writeValueAsBytes(value);
+            if (json.length <= inlineThreshold) {
+                continue;
+            }
+            storedNames.add(name);
+            byte[] storedJson = (storedAttributes != null) ? storedAttributes.get(name) : null;
+            if (!Arrays.equals(json, storedJson)) {
+                changedAttributes.put(name, json);
+            }
+        }
+
+        if (storedAttributes != null) {
+            // Attributes that were removed or became small enough to be sent back
+            for (String name : storedAttributes.keySet()) {
+                if (!storedNames.contains(name)) {
+                    changedAttributes.put(name, null);
+                }
+            }
+        }
+        if (!changedAttributes.isEmpty()) {
+            store.save(session.getSessionId(), changedAttributes);
+        }
+        if (!storedNames.isEmpty()) {
+            Map<String, Object> inlineAttributes =
+                    sessionAttributes ? attributes : new HashMap<>(attributes);
+            inlineAttributes.keySet().removeAll(storedNames);
+            inlineAttributes.put(HANDLE_ATTRIBUTE, storedNames.size());
+            responseEnvelope.setSessionAttributes(inlineAttributes);
+        }
+    }
+
+    /**
+     * Returns whether the value is known to be small enough to be sent back without encoding it.
+     */
+    private boolean isInline(final Object value) {
+        return value == null || value instanceof Number || value instanceof Boolean
+                || (value instanceof String && ((String) value).length() * 6 < inlineThreshold);
+    }
+
+    public static final class Builder {
+        private SessionAttributeStore store;
+        private int inlineThreshold = DEFAULT_INLINE_THRESHOLD;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the store keeping the large attributes, an {@link InMemorySessionAttributeStore}
+         * with its default settings by default.
+         *
+         * @param store
+         *            the session attribute store
+         * @return this builder
+         */
+        public Builder withStore(final SessionAttributeStore store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * Sets the size of the JSON encoding of an attribute above which it is stored instead of
+         * being sent back with the response, 256 bytes by default.
+         *
+         * @param inlineThreshold
+         *            the inline threshold in bytes
+         * @return this builder
+         */
+        public Builder withInlineThreshold(final int inlineThreshold) {
+            this.inlineThreshold = inlineThreshold;
+            return this;
+        }
+
+        public SessionAttributeManager build() {
+            Validate.isTrue(inlineThreshold >= 0, "Inline threshold must not be negative");
+            return new SessionAttributeManager(this);
+        }
+    }
+}
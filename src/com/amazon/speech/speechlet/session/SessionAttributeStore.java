@@ -0,0 +1,63 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet.session;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A backend keeping the session attributes that a {@link SessionAttributeManager} does not send
+ * back with the response. Attribute values are stored as the UTF-8 JSON encoding of the value.
+ * <p>
+ * Implementations must be thread-safe. Requests of one session are sent one at a time by the
+ * Alexa service, so calls for the same session ID are not expected to overlap.
+ *
+ * @see InMemorySessionAttributeStore
+ */
+public interface SessionAttributeStore {
+    /**
+     * Returns the attributes stored for the provided session.
+     *
+     * @param sessionId
+     *            the ID of the session
+     * @return the JSON encoded attributes by name, empty if none are stored
+     * @throws IOException
+     *             if the attributes cannot be retrieved
+     */
+    Map<String, byte[]> load(String sessionId) throws IOException;
+
+    /**
+     * Writes the attributes of the provided session that changed since they were loaded,
+     * leaving the other stored attributes of the session unchanged.
+     *
+     * @param sessionId
+     *            the ID of the session
+     * @param changedAttributes
+     *            the JSON encoded attributes by name, with a {@code null} value for each attribute
+     *            to remove
+     * @throws IOException
+     *             if the attributes cannot be written
+     */
+    void save(String sessionId, Map<String, byte[]> changedAttributes) throws IOException;
+
+    /**
+     * Removes every attribute stored for the provided session, once it ended.
+     *
+     * @param sessionId
+     *            the ID of the session
+     * @throws IOException
+     *             if the attributes cannot be removed
+     */
+    void remove(String sessionId) throws IOException;
+}
@@ -0,0 +1,45 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.verifier;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.Session;
+
+/**
+ * A {@link SpeechletResponseVerifier} that never rejects a response, and only warns about
+ * problems the Alexa service would reject it for. When the
+ * {@link com.amazon.speech.speechlet.SpeechletRequestHandler} has an
+ * {@link com.amazon.speech.speechlet.AdvisoryResponseVerification}, it runs such verifiers on a
+ * sample of the responses, possibly after the response is written, through
+ * {@link #check(SpeechletResponseEnvelope, int, Session, SpeechletResponseWarnings)}, which counts
+ * the warnings instead of logging each of them.
+ */
+public interface AdvisorySpeechletResponseVerifier extends SpeechletResponseVerifier {
+    /**
+     * Checks the provided response, reporting each problem found to the provided warnings instead
+     * of logging it.
+     *
+     * @param responseEnvelope
+     *            the response to check
+     * @param responseSize
+     *            the size of the serialized response in bytes
+     * @param session
+     *            the session of the request
+     * @param warnings
+     *            the warnings to report problems to
+     */
+    void check(SpeechletResponseEnvelope responseEnvelope, int responseSize, Session session,
+            SpeechletResponseWarnings warnings);
+}
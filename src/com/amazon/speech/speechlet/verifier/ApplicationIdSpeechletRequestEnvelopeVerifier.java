@@ -66,6 +66,19 @@ public class ApplicationIdSpeechletRequestEnvelopeVerifier implements SpeechletR
             return true;
         }
 
+        String applicationId = getApplicationId(requestEnvelope);
+        return applicationId != null && supportedApplicationIds.contains(applicationId);
+    }
+
+    /**
+     * Returns the application ID of the provided request, taken from its {@link Session} or, for
+     * requests without one, from the {@link SystemState} of its {@link Context}.
+     *
+     * @param requestEnvelope
+     *            the request to read the application ID from
+     * @return the application ID, or null if the request does not carry one
+     */
+    public static String getApplicationId(SpeechletRequestEnvelope<?> requestEnvelope) {
         Session session = requestEnvelope.getSession();
 
         boolean applicationIdIsMissingFromSession = session == null || session.getApplication() == null
@@ -76,21 +89,20 @@ public class ApplicationIdSpeechletRequestEnvelopeVerifier implements SpeechletR
              * Note: we are still looking at the Session and not just the Context because some
              * clients may not yet be sending Context.
              */
-            return supportedApplicationIds.contains(session.getApplication().getApplicationId());
+            return session.getApplication().getApplicationId();
         }
 
         Context context = requestEnvelope.getContext();
         if (context == null) {
-            return false;
+            return null;
         }
 
         SystemState systemState = context.getState(SystemInterface.class, SystemInterface.STATE_TYPE);
 
-        if (systemState == null || systemState.getApplication() == null
-                || systemState.getApplication().getApplicationId() == null) {
-            return false;
+        if (systemState == null || systemState.getApplication() == null) {
+            return null;
         }
 
-        return supportedApplicationIds.contains(systemState.getApplication().getApplicationId());
+        return systemState.getApplication().getApplicationId();
     }
 }
@@ -36,7 +36,28 @@ import com.amazon.speech.ui.StandardCard;
  * Note: This verifier currently does not not enforce response checks and always returns true. The
  * primary purpose of this verifier is to log a warning in the app developer's runtime.
  */
-public class CardSpeechletResponseVerifier implements SpeechletResponseVerifier {
+public class CardSpeechletResponseVerifier implements ContentSpeechletResponseVerifier,
+        AdvisorySpeechletResponseVerifier {
+    /**
+     * Warning reported when the card exceeds {@value #MAX_CARD_SIZE} characters.
+     */
+    public static final String CARD_SIZE_EXCEEDED = "CardSizeExceeded";
+
+    /**
+     * Warning reported when an image URL exceeds {@value #MAX_URL_LENGTH} characters.
+     */
+    public static final String IMAGE_URL_LENGTH_EXCEEDED = "ImageUrlLengthExceeded";
+
+    /**
+     * Warning reported when an image URL does not use HTTPS.
+     */
+    public static final String IMAGE_URL_NOT_HTTPS = "ImageUrlNotHttps";
+
+    /**
+     * Warning reported when an image URL is malformed.
+     */
+    public static final String IMAGE_URL_MALFORMED = "ImageUrlMalformed";
+
     private static final Logger log = LoggerFactory.getLogger(CardSpeechletResponseVerifier.class);
 
     private static final int MAX_CARD_SIZE = 8000;
@@ -45,45 +66,63 @@ public class CardSpeechletResponseVerifier implements SpeechletResponseVerifier
 
     @Override
     public boolean verify(SpeechletResponseEnvelope responseEnvelope, Session session) {
+        verifyCard(responseEnvelope, null);
+
+        // We are currently not enforcing response checks. Always return true.
+        return true;
+    }
+
+    @Override
+    public void check(SpeechletResponseEnvelope responseEnvelope, int responseSize,
+            Session session, SpeechletResponseWarnings warnings) {
+        verifyCard(responseEnvelope, warnings);
+    }
+
+    /**
+     * Verifies the card of the response, reporting problems to the provided warnings, or logging
+     * them if {@code null}.
+     */
+    private void verifyCard(SpeechletResponseEnvelope responseEnvelope,
+            SpeechletResponseWarnings warnings) {
         if (responseEnvelope == null || responseEnvelope.getResponse() == null) {
-            return true;
+            return;
         }
 
         Card card = responseEnvelope.getResponse().getCard();
         if (card instanceof SimpleCard) {
             SimpleCard simpleCard = (SimpleCard) card;
-            verifyCardSize(simpleCard.getTitle(), simpleCard.getContent());
+            verifyCardSize(warnings, simpleCard.getTitle(), simpleCard.getContent());
         } else if (card instanceof StandardCard) {
             StandardCard standardCard = (StandardCard) card;
             Image image = standardCard.getImage();
             if (image != null) {
-                verifyCardSize(standardCard.getTitle(), standardCard.getText(),
+                verifyCardSize(warnings, standardCard.getTitle(), standardCard.getText(),
                         image.getSmallImageUrl(), image.getLargeImageUrl());
             } else {
-                verifyCardSize(standardCard.getTitle(), standardCard.getText());
+                verifyCardSize(warnings, standardCard.getTitle(), standardCard.getText());
             }
-            verifyImageAttributes(standardCard);
+            verifyImageAttributes(standardCard, warnings);
         }
-
-        // We are currently not enforcing response checks. Always return true.
-        return true;
     }
 
     /**
      * Checks the length of the card elements and it logs a warning if the card size exceeds
      * {@value #MAX_CARD_SIZE} characters.
      *
+     * @param warnings
+     *            the warnings to report to, or {@code null} to log them
      * @param cardElements
      *            the elements of the card
      */
-    private void verifyCardSize(String... cardElements) {
+    private void verifyCardSize(SpeechletResponseWarnings warnings, String... cardElements) {
         int cardSize = 0;
         for (String element : cardElements) {
             cardSize += StringUtils.length(element);
         }
         if (cardSize > MAX_CARD_SIZE) {
-            log.warn("Card with size {} exceeds the maximum allowed size of {} and will be "
-                    + "rejected by the Alexa service", cardSize, MAX_CARD_SIZE);
+            warn(warnings, CARD_SIZE_EXCEEDED, "Card with size {} exceeds the maximum allowed "
+                    + "size of {} and will be rejected by the Alexa service", cardSize,
+                    MAX_CARD_SIZE);
         }
     }
 
@@ -93,13 +132,15 @@ public class CardSpeechletResponseVerifier implements SpeechletResponseVerifier
      *
      * @param card
      *            the card containing the image bundle to be checked
+     * @param warnings
+     *            the warnings to report to, or {@code null} to log them
      */
-    private void verifyImageAttributes(StandardCard card) {
+    private void verifyImageAttributes(StandardCard card, SpeechletResponseWarnings warnings) {
         Image image = card.getImage();
 
         if (image != null) {
-            verifyImageUrl("smallImageUrl", image.getSmallImageUrl());
-            verifyImageUrl("largeImageUrl", image.getLargeImageUrl());
+            verifyImageUrl("smallImageUrl", image.getSmallImageUrl(), warnings);
+            verifyImageUrl("largeImageUrl", image.getLargeImageUrl(), warnings);
         }
     }
 
@@ -110,11 +151,14 @@ public class CardSpeechletResponseVerifier implements SpeechletResponseVerifier
      *            the type of the image URL that is being verified
      * @param imageUrl
      *            the image URL to be checked
+     * @param warnings
+     *            the warnings to report to, or {@code null} to log them
      */
-    private void verifyImageUrl(String imageUrlType, String imageUrl) {
+    private void verifyImageUrl(String imageUrlType, String imageUrl,
+            SpeechletResponseWarnings warnings) {
         if (imageUrl != null) {
-            verifyLengthImageUrl(imageUrlType, imageUrl);
-            verifyProtocolImageUrl(imageUrlType, imageUrl);
+            verifyLengthImageUrl(imageUrlType, imageUrl, warnings);
+            verifyProtocolImageUrl(imageUrlType, imageUrl, warnings);
         }
     }
 
@@ -126,12 +170,16 @@ public class CardSpeechletResponseVerifier implements SpeechletResponseVerifier
      *            the type of the image URL that is being verified
      * @param imageUrl
      *            the URL to be checked
+     * @param warnings
+     *            the warnings to report to, or {@code null} to log them
      */
-    private void verifyLengthImageUrl(String imageUrlType, String imageUrl) {
+    private void verifyLengthImageUrl(String imageUrlType, String imageUrl,
+            SpeechletResponseWarnings warnings) {
         int length = imageUrl.length();
         if (MAX_URL_LENGTH < length) {
-            log.warn("The length of {} exceeds the maximum allowed of "
-                    + "{} for the image of the card of type StandardCard.", imageUrlType, length);
+            warn(warnings, IMAGE_URL_LENGTH_EXCEEDED, "The length of {} exceeds the maximum "
+                    + "allowed of {} for the image of the card of type StandardCard.",
+                    imageUrlType, length);
         }
     }
 
@@ -143,18 +191,34 @@ public class CardSpeechletResponseVerifier implements SpeechletResponseVerifier
      *            the type of the image URL that is being verified
      * @param imageUrl
      *            the URL to be checked
+     * @param warnings
+     *            the warnings to report to, or {@code null} to log them
      */
-    private void verifyProtocolImageUrl(String imageType, String imageUrl) {
+    private void verifyProtocolImageUrl(String imageType, String imageUrl,
+            SpeechletResponseWarnings warnings) {
         try {
             URL url = new URL(imageUrl);
             String protocol = url.getProtocol();
             if (!VALID_IMAGE_PROTOCOL.equals(protocol)) {
-                log.warn("{} with value {} is invalid for the image of the card of type "
-                        + "StandardCard since HTTPS is required", imageType, imageUrl);
+                warn(warnings, IMAGE_URL_NOT_HTTPS, "{} with value {} is invalid for the image "
+                        + "of the card of type StandardCard since HTTPS is required", imageType,
+                        imageUrl);
             }
         } catch (MalformedURLException e) {
-            log.warn("{} with value {} is malformed for the image of the card of type "
-                    + "StandardCard", imageType, imageUrl);
+            warn(warnings, IMAGE_URL_MALFORMED, "{} with value {} is malformed for the image of "
+                    + "the card of type StandardCard", imageType, imageUrl);
+        }
+    }
+
+    /**
+     * Reports a warning to the provided warnings, or logs it if {@code null}.
+     */
+    private static void warn(SpeechletResponseWarnings warnings, String warning, String format,
+            Object... arguments) {
+        if (warnings != null) {
+            warnings.add(warning, format, arguments);
+        } else {
+            log.warn(format, arguments);
         }
     }
 }
@@ -0,0 +1,26 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.verifier;
+
+/**
+ * A {@link SpeechletResponseVerifier} whose result only depends on the
+ * {@link com.amazon.speech.speechlet.SpeechletResponse} of the envelope, and not on its session
+ * attributes or on the {@link com.amazon.speech.speechlet.Session}. The
+ * {@link com.amazon.speech.speechlet.SpeechletRequestHandler} verifies a
+ * {@link com.amazon.speech.speechlet.ConstantSpeechletResponse} with such a verifier only once,
+ * instead of once per request.
+ */
+public interface ContentSpeechletResponseVerifier extends SpeechletResponseVerifier {
+}
@@ -0,0 +1,26 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.verifier;
+
+/**
+ * A {@link SpeechletRequestEnvelopeVerifier} that waits on I/O, such as a token introspection or
+ * an account linking check against a remote service. When the
+ * {@link com.amazon.speech.speechlet.SpeechletRequestHandler} has a verifier executor, it runs
+ * such verifiers on the executor, concurrently with each other and with the other verifiers, and
+ * waits for them before dispatching the request. The other verifiers are expected to be cheap
+ * and run on the thread handling the request.
+ */
+public interface IoBoundSpeechletRequestEnvelopeVerifier extends SpeechletRequestEnvelopeVerifier {
+}
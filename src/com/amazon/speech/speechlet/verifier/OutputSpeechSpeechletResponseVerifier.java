@@ -32,7 +32,13 @@ import com.amazon.speech.ui.SsmlOutputSpeech;
  * Note: This verifier currently does not not enforce response checks and always returns true. The
  * primary purpose of this verifier is to log a warning in the app developer's runtime.
  */
-public class OutputSpeechSpeechletResponseVerifier implements SpeechletResponseVerifier {
+public class OutputSpeechSpeechletResponseVerifier implements ContentSpeechletResponseVerifier,
+        AdvisorySpeechletResponseVerifier {
+    /**
+     * Warning reported when the output speech exceeds {@value #MAX_SPEECH_SIZE} characters.
+     */
+    public static final String OUTPUT_SPEECH_SIZE_EXCEEDED = "OutputSpeechSizeExceeded";
+
     private static final Logger log = LoggerFactory
             .getLogger(OutputSpeechSpeechletResponseVerifier.class);
 
@@ -40,8 +46,26 @@ public class OutputSpeechSpeechletResponseVerifier implements SpeechletResponseV
 
     @Override
     public boolean verify(SpeechletResponseEnvelope responseEnvelope, Session session) {
+        verifyOutputSpeech(responseEnvelope, null);
+
+        // We are currently not enforcing response checks. Always return true.
+        return true;
+    }
+
+    @Override
+    public void check(SpeechletResponseEnvelope responseEnvelope, int responseSize,
+            Session session, SpeechletResponseWarnings warnings) {
+        verifyOutputSpeech(responseEnvelope, warnings);
+    }
+
+    /**
+     * Verifies the size of the output speech of the response, reporting a problem to the provided
+     * warnings, or logging it if {@code null}.
+     */
+    private void verifyOutputSpeech(SpeechletResponseEnvelope responseEnvelope,
+            SpeechletResponseWarnings warnings) {
         if (responseEnvelope == null || responseEnvelope.getResponse() == null) {
-            return true;
+            return;
         }
 
         OutputSpeech outputSpeech = responseEnvelope.getResponse().getOutputSpeech();
@@ -54,13 +78,15 @@ public class OutputSpeechSpeechletResponseVerifier implements SpeechletResponseV
 
         int speechContentLength = StringUtils.length(speechContent);
         if (speechContentLength > MAX_SPEECH_SIZE) {
-            log
-                    .warn("OutputSpeech with size {} exceeds the maximum allowed size of {} and "
-                            + "will be rejected by the Alexa service", speechContentLength,
-                            MAX_SPEECH_SIZE);
+            String format =
+                    "OutputSpeech with size {} exceeds the maximum allowed size of {} and "
+                            + "will be rejected by the Alexa service";
+            if (warnings != null) {
+                warnings.add(OUTPUT_SPEECH_SIZE_EXCEEDED, format, speechContentLength,
+                        MAX_SPEECH_SIZE);
+            } else {
+                log.warn(format, speechContentLength, MAX_SPEECH_SIZE);
+            }
         }
-
-        // We are currently not enforcing response checks. Always return true.
-        return true;
     }
 }
@@ -0,0 +1,333 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+package com.amazon.speech.speechlet.verifier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.SpeechletRequest;
+import com.amazon.speech.speechlet.SpeechletResponseCache;
+
+/**
+ * Verifies that requests are fresh and were not received before.
+ * <p>
+ * A {@link TimestampSpeechletRequestVerifier} alone lets a properly signed request be replayed
+ * as many times as desired while its timestamp is within the tolerance. This verifier checks the
+ * timestamp the same way, then rejects any request whose ID was already seen with the same
+ * timestamp. IDs are remembered for exactly as long as their timestamp is accepted: once it falls
+ * outside the tolerance, the request is rejected by the timestamp check anyway.
+ * <p>
+ * Request IDs are recorded in a ring of hash sets, each holding the requests whose timestamp
+ * falls in one slice of the tolerance window. A replayed request carries the signed timestamp of
+ * the original, so only the set of that slice is consulted. Sets whose slice left the window are
+ * replaced by the next slice, so memory use does not grow with the number of requests. Each set
+ * stores 32-bit fingerprints of the IDs in an open-addressed table updated with compare-and-set
+ * operations, so concurrent requests never block each other and two concurrent copies of a
+ * request cannot both be accepted.
+ * <p>
+ * With the default tolerance of 150 seconds, the ring holds 12 slices of 30 seconds. Sized for
+ * 1,000,000 requests per hour, each slice has 16,384 slots of 4 bytes, for 768 KB in total.
+ * Memory grows linearly with the expected number of requests per hour. A new request is rejected
+ * as a replay only if its fingerprint matches one of the few requests stored next to its slot,
+ * which happens with a probability below one in a billion at the expected rate. When a slice is
+ * full, for instance during a burst well above the expected rate, further requests of that slice
+ * are accepted without being recorded and counted by {@link #getOverflowCount()}.
+ * <p>
+ * Requests sent again by the Alexa service with the same ID and timestamp, for instance after a
+ * timeout, are rejected as well, so they never reach a {@link SpeechletResponseCache}. When the
+ * verifier is built with the response cache of the handler, see
+ * {@link Builder#withResponseCache(SpeechletResponseCache)}, a request whose response is cached,
+ * or still being produced with in-flight coalescing, is let through instead, and the handler
+ * answers it from the cache without invoking the speechlet again.
+ *
+ * @see TimestampSpeechletRequestVerifier
+ */
+public class ReplayProtectionSpeechletRequestVerifier implements SpeechletRequestEnvelopeVerifier {
+    private static final Logger log = LoggerFactory
+            .getLogger(ReplayProtectionSpeechletRequestVerifier.class);
+
+    private static final long DEFAULT_TOLERANCE_MILLIS = TimeUnit.SECONDS.toMillis(150);
+    private static final int DEFAULT_SLICES_PER_TOLERANCE = 5;
+    private static final long DEFAULT_EXPECTED_REQUESTS_PER_HOUR = 1000000L;
+    private static final int MINIMUM_SLICE_CAPACITY = 64;
+    private static final int MAXIMUM_PROBES = 64;
+
+    private final TimestampSpeechletRequestVerifier timestampVerifier;
+    private final long sliceMillis;
+    private final int sliceCapacity;
+    private final AtomicReferenceArray<Slice> slices;
+    private final SpeechletResponseCache responseCache;
+
+    private final AtomicLong replayCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private ReplayProtectionSpeechletRequestVerifier(final Builder builder) {
+        timestampVerifier =
+                new TimestampSpeechletRequestVerifier(builder.toleranceMillis,
+                        TimeUnit.MILLISECONDS);
+        sliceMillis = Math.max(1L, (builder.toleranceMillis + builder.slicesPerTolerance - 1)
+                / builder.slicesPerTolerance);
+        // Accepted timestamps span twice the tolerance, plus one slice each side for rounding
+        slices = new AtomicReferenceArray<>(2 * builder.slicesPerTolerance + 2);
+        double requestsPerSlice =
+                builder.expectedRequestsPerHour * (double) sliceMillis / TimeUnit.HOURS.toMillis(1);
+        sliceCapacity = capacityFor(requestsPerSlice);
+        responseCache = builder.responseCache;
+    }
+
+    /**
+     * Returns the smallest power of two keeping the table at most three quarters full with the
+     * provided number of requests.
+     */
+    private static int capacityFor(final double requests) {
+        long required = (long) Math.ceil(requests * 4 / 3);
+        int capacity = MINIMUM_SLICE_CAPACITY;
+        while (capacity < required && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns true if the timestamp of the request is within the tolerance and its ID was not seen
+     * with the same timestamp before, recording it as seen, or was seen but its response is in the
+     * response cache. This method returns false if the request, its timestamp or its ID is
+     * {@code null}.
+     *
+     * @param requestEnvelope
+     *            the speechlet request envelope to verify
+     * @return true if the request is fresh and was not received before, false otherwise
+     */
+    @Override
+    public boolean verify(final SpeechletRequestEnvelope<?> requestEnvelope) {
+        final SpeechletRequest request = requestEnvelope.getRequest();
+        if (!timestampVerifier.verify(request, requestEnvelope.getSession())) {
+            return false;
+        }
+        final String requestId = request.getRequestId();
+        if (requestId == null) {
+            return false;
+        }
+
+        final long timestamp = request.getTimestamp().getTime();
+        final Slice slice = getSlice(timestamp / sliceMillis);
+        if (slice == null) {
+            log.warn("Request with id {} and timestamp {} is older than the replay protection "
+                    + "window, the clock may have moved backwards", requestId, timestamp);
+            return false;
+        }
+
+        switch (slice.add(hash(requestId, timestamp))) {
+            case ADDED:
+                return true;
+            case FULL:
+                overflowCount.incrementAndGet();
+                return true;
+            default:
+                if (responseCache != null && responseCache.contains(requestId)) {
+                    log.debug("Request with id {} was already received, letting it through to "
+                            + "the response cache", requestId);
+                    return true;
+                }
+                replayCount.incrementAndGet();
+                log.warn("Request with id {} and timestamp {} was already received, rejecting "
+                        + "replayed request", requestId, timestamp);
+                return false;
+        }
+    }
+
+    /**
+     * Returns the slice of the ring for the provided epoch, replacing the slice of an older epoch.
+     *
+     * @return the slice, or {@code null} if its place is taken by a more recent epoch
+     */
+    private Slice getSlice(final long epoch) {
+        final int index = (int) (epoch % slices.length());
+        while (true) {
+            Slice slice = slices.get(index);
+            if (slice != null && slice.epoch == epoch) {
+                return slice;
+            }
+            if (slice != null && slice.epoch > epoch) {
+                return null;
+            }
+            Slice newSlice = new Slice(epoch, sliceCapacity);
+            if (slices.compareAndSet(index, slice, newSlice)) {
+                return newSlice;
+            }
+        }
+    }
+
+    /**
+     * Hashes the request ID and timestamp with 64-bit FNV-1a, followed by the MurmurHash3
+     * finalizer to spread the bits used for the slot and the fingerprint.
+     */
+    private static long hash(final String requestId, final long timestamp) {
+        long hash = 0xcbf29ce484222325L ^ timestamp;
+        for (int i = 0; i < requestId.length(); i++) {
+            hash = (hash ^ requestId.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Returns the number of requests rejected because they were already received.
+     *
+     * @return the number of replayed requests
+     */
+    public long getReplayCount() {
+        return replayCount.get();
+    }
+
+    /**
+     * Returns the number of requests accepted without being recorded because the slice of their
+     * timestamp was full. A growing count means the expected number of requests is too low.
+     *
+     * @return the number of requests not protected against replay
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    private enum AddResult {
+        ADDED, PRESENT, FULL
+    }
+
+    /**
+     * The fingerprints of the requests whose timestamp falls in one slice of the window.
+     */
+    private static final class Slice {
+        private final long epoch;
+        private final AtomicIntegerArray fingerprints;
+
+        private Slice(final long epoch, final int capacity) {
+            this.epoch = epoch;
+            this.fingerprints = new AtomicIntegerArray(capacity);
+        }
+
+        private AddResult add(final long hash) {
+            int fingerprint = (int) (hash >>> 32);
+            if (fingerprint == 0) {
+                // 0 marks an empty slot
+                fingerprint = 1;
+            }
+            final int mask = fingerprints.length() - 1;
+            int index = (int) hash & mask;
+            // Insertions stop at the same probe as lookups, so a full probe sequence is complete
+            for (int probe = 0; probe < MAXIMUM_PROBES; probe++) {
+                int current = fingerprints.get(index);
+                if (current == fingerprint) {
+                    return AddResult.PRESENT;
+                }
+                if (current == 0) {
+                    if (fingerprints.compareAndSet(index, 0, fingerprint)) {
+                        return AddResult.ADDED;
+                    }
+                    // Another request took the slot, check whether it was a copy of this one
+                    continue;
+                }
+                index = (index + 1) & mask;
+            }
+            return AddResult.FULL;
+        }
+    }
+
+    public static final class Builder {
+        private long toleranceMillis = DEFAULT_TOLERANCE_MILLIS;
+        private int slicesPerTolerance = DEFAULT_SLICES_PER_TOLERANCE;
+        private long expectedRequestsPerHour = DEFAULT_EXPECTED_REQUESTS_PER_HOUR;
+        private SpeechletResponseCache responseCache;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets how far in the past or future the timestamp of a request may be, 150 seconds by
+         * default.
+         *
+         * @param tolerance
+         *            the timestamp tolerance
+         * @param unit
+         *            the unit of the timestamp tolerance
+         * @return this builder
+         */
+        public Builder withTolerance(final long tolerance, final TimeUnit unit) {
+            this.toleranceMillis = unit.toMillis(tolerance);
+            return this;
+        }
+
+        /**
+         * Sets the number of slices the tolerance is divided into, 5 by default. The ring holds
+         * twice that number plus two slices.
+         *
+         * @param slicesPerTolerance
+         *            the number of slices per tolerance
+         * @return this builder
+         */
+        public Builder withSlicesPerTolerance(final int slicesPerTolerance) {
+            this.slicesPerTolerance = slicesPerTolerance;
+            return this;
+        }
+
+        /**
+         * Sets the number of requests per hour the verifier is sized for, 1,000,000 by default.
+         *
+         * @param expectedRequestsPerHour
+         *            the expected number of requests per hour
+         * @return this builder
+         */
+        public Builder withExpectedRequestsPerHour(final long expectedRequestsPerHour) {
+            this.expectedRequestsPerHour = expectedRequestsPerHour;
+            return this;
+        }
+
+        /**
+         * Sets the response cache of the handler using this verifier. Requests already received
+         * are let through if the cache holds their response, so that they are answered from it.
+         * Not set by default, in which case every request already received is rejected.
+         *
+         * @param responseCache
+         *            the response cache of the handler, or {@code null}
+         * @return this builder
+         */
+        public Builder withResponseCache(final SpeechletResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        public ReplayProtectionSpeechletRequestVerifier build() {
+            Validate.isTrue(toleranceMillis >= 0, "A negative tolerance is not supported");
+            Validate.isTrue(slicesPerTolerance > 0, "Slices per tolerance must be positive");
+            Validate.isTrue(expectedRequestsPerHour > 0,
+                    "Expected requests per hour must be positive");
+            return new ReplayProtectionSpeechletRequestVerifier(this);
+        }
+    }
+}
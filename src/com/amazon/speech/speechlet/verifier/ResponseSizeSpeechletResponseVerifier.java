@@ -18,6 +18,7 @@ import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazon.speech.json.SerializedSpeechletResponseEnvelope;
 import com.amazon.speech.json.SpeechletResponseEnvelope;
 import com.amazon.speech.speechlet.Session;
 
@@ -25,16 +26,27 @@ import com.amazon.speech.speechlet.Session;
  * A {@link SpeechletResponseVerifier} to verify the size of the complete response returned in
  * {@link SpeechletResponseEnvelope}. In the current implementation, the
  * {@link #verify(SpeechletResponseEnvelope, Session)} method logs a warning if the response size in
- * bytes exceeds {@value #MAX_RESPONSE_SIZE}.
+ * bytes exceeds {@value #MAX_RESPONSE_SIZE}. When the response has already been serialized,
+ * {@link #verify(SerializedSpeechletResponseEnvelope, Session)} reads its size instead of
+ * serializing it again.
  * <p>
  * Note: This verifier currently does not not enforce response checks and always returns true. The
  * primary purpose of this verifier is to log a warning in the app developer's runtime.
  */
-public class ResponseSizeSpeechletResponseVerifier implements SpeechletResponseVerifier {
+public class ResponseSizeSpeechletResponseVerifier implements
+        SerializedSpeechletResponseVerifier, AdvisorySpeechletResponseVerifier {
+    /**
+     * Warning reported when the response exceeds {@value #MAX_RESPONSE_SIZE} bytes.
+     */
+    public static final String RESPONSE_SIZE_EXCEEDED = "ResponseSizeExceeded";
+
     private static final Logger log = LoggerFactory
             .getLogger(ResponseSizeSpeechletResponseVerifier.class);
 
     private static final int MAX_RESPONSE_SIZE = 24 * 1024; // 24 KB
+    private static final String RESPONSE_SIZE_WARNING =
+            "Speechlet response with size of {} bytes exceeds the maximum allowed size of {} "
+                    + "bytes and will be rejected by the Alexa service";
 
     @Override
     public boolean verify(SpeechletResponseEnvelope responseEnvelope, Session session) {
@@ -50,12 +62,39 @@ public class ResponseSizeSpeechletResponseVerifier implements SpeechletResponseV
             return false;
         }
 
-        int responseSize = jsonBytes.length;
+        return verifyResponseSize(jsonBytes.length);
+    }
+
+    @Override
+    public boolean verify(SerializedSpeechletResponseEnvelope serializedResponseEnvelope,
+            Session session) {
+        if (serializedResponseEnvelope == null) {
+            return false;
+        }
+
+        return verifyResponseSize(serializedResponseEnvelope.getSize());
+    }
+
+    @Override
+    public void check(SpeechletResponseEnvelope responseEnvelope, int responseSize,
+            Session session, SpeechletResponseWarnings warnings) {
         if (responseSize > MAX_RESPONSE_SIZE) {
-            log.warn("Speechlet response with size of {} bytes exceeds the maximum allowed "
-                    + "size of {} bytes and will be rejected by the Alexa service", responseSize,
+            warnings.add(RESPONSE_SIZE_EXCEEDED, RESPONSE_SIZE_WARNING, responseSize,
                     MAX_RESPONSE_SIZE);
         }
+    }
+
+    /**
+     * Logs a warning if the response size exceeds {@value #MAX_RESPONSE_SIZE} bytes.
+     *
+     * @param responseSize
+     *            the size of the serialized response in bytes
+     * @return always true, as response checks are not enforced
+     */
+    private boolean verifyResponseSize(int responseSize) {
+        if (responseSize > MAX_RESPONSE_SIZE) {
+            log.warn(RESPONSE_SIZE_WARNING, responseSize, MAX_RESPONSE_SIZE);
+        }
 
         // We are currently not enforcing response checks. Always return true.
         return true;
@@ -0,0 +1,86 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.verifier;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Counts the warnings reported by {@link AdvisorySpeechletResponseVerifier}s, by warning. The
+ * first occurrence of each warning is logged, the following ones are only counted.
+ */
+public final class SpeechletResponseWarnings {
+    private static final Logger log = LoggerFactory.getLogger(SpeechletResponseWarnings.class);
+
+    private final ConcurrentMap<String, AtomicLong> counts =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Counts an occurrence of the provided warning.
+     *
+     * @param warning
+     *            the warning, one of the warning constants of the verifier reporting it
+     * @param format
+     *            the message describing the occurrence, in the format of the logger, only
+     *            formatted if it is the first occurrence of the warning
+     * @param arguments
+     *            the arguments of the message
+     */
+    public void add(final String warning, final String format, final Object... arguments) {
+        AtomicLong count = counts.get(warning);
+        if (count == null) {
+            AtomicLong previous = counts.putIfAbsent(warning, count = new AtomicLong());
+            if (previous != null) {
+                count = previous;
+            } else {
+                log.warn("{}. Further occurrences of {} are counted without being logged.",
+                        MessageFormatter.arrayFormat(format, arguments).getMessage(), warning);
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of occurrences of the provided warning.
+     *
+     * @param warning
+     *            the warning
+     * @return the number of occurrences
+     */
+    public long getCount(final String warning) {
+        AtomicLong count = counts.get(warning);
+        return (count != null) ? count.get() : 0L;
+    }
+
+    /**
+     * Returns the number of occurrences of each warning reported so far.
+     *
+     * @return a snapshot of the counts, sorted by warning
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> snapshot = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : counts.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks that the attributes of a session received with a request read the same as if they were
+ * decoded eagerly, can be read as specific types, and are sent back unchanged when not read.
+ */
+public class LazySessionAttributesTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String ATTRIBUTES = "{\"count\":3,\"name\":\"value\",\"flag\":true,"
+            + "\"item\":{\"name\":\"first\",\"count\":1},\"items\":[{\"name\":\"first\","
+            + "\"count\":1},{\"name\":\"second\",\"count\":2}],\"empty\":null}";
+
+    @Test
+    public void attributesReadAsIfDecodedEagerly() throws Exception {
+        Session session = receive(ATTRIBUTES);
+        Map<String, Object> expected =
+                OBJECT_MAPPER.readValue(ATTRIBUTES, new TypeReference<Map<String, Object>>() {});
+
+        assertEquals(expected.keySet(), session.getAttributes().keySet());
+        for (String name : expected.keySet()) {
+            assertEquals(name, expected.get(name), session.getAttribute(name));
+        }
+        assertEquals(expected, receive(ATTRIBUTES).getAttributes());
+    }
+
+    @Test
+    public void attributeIsDecodedIntoTheRequestedType() throws Exception {
+        Session session = receive(ATTRIBUTES);
+
+        Item item = session.getAttribute("item", Item.class);
+        assertEquals("first", item.name);
+        assertEquals(1, item.count);
+        assertSame(item, session.getAttribute("item", Item.class));
+
+        List<Item> items = session.getAttribute("items", new TypeReference<List<Item>>() {});
+        assertEquals(2, items.size());
+        assertEquals("second", items.get(1).name);
+        assertNull(session.getAttribute("missing", Item.class));
+    }
+
+    @Test
+    public void attributeDecodedUntypedIsConverted() throws Exception {
+        Session session = receive(ATTRIBUTES);
+
+        assertTrue(session.getAttribute("item") instanceof Map);
+        Item item = session.getAttribute("item", Item.class);
+        assertEquals("first", item.name);
+        assertSame(item, session.getAttribute("item"));
+    }
+
+    @Test
+    public void changesToTypedAttributeAreSentBack() throws Exception {
+        Session session = receive(ATTRIBUTES);
+
+        session.getAttribute("item", Item.class).count = 5;
+        Map<String, Object> sent = send(session);
+        assertEquals(5, ((Map<?, ?>) sent.get("item")).get("count"));
+    }
+
+    @Test
+    public void unreadAttributesAreSentBackUnchanged() throws Exception {
+        Session session = receive(ATTRIBUTES);
+        session.getAttribute("count");
+        session.setAttribute("added", Arrays.asList(1, 2));
+
+        String expected = ATTRIBUTES.substring(0, ATTRIBUTES.length() - 1) + ",\"added\":[1,2]}";
+        assertEquals(expected, OBJECT_MAPPER.writeValueAsString(session.getAttributes()));
+    }
+
+    @Test
+    public void settingOrRemovingAttributeDoesNotDecodeItsValue() throws Exception {
+        Session session = receive("{}");
+        byte[] invalid = "{\"name\":".getBytes(StandardCharsets.UTF_8);
+        session.setEncodedAttribute("replaced", invalid);
+        session.setEncodedAttribute("removed", invalid);
+        session.setEncodedAttribute("put", invalid);
+
+        session.setAttribute("replaced", 1);
+        session.removeAttribute("removed");
+        assertEquals(1, session.getAttribute("replaced"));
+        assertFalse(session.getAttributes().containsKey("removed"));
+
+        // The map has to return the value it replaces, so it decodes it
+        try {
+            session.getAttributes().put("put", 1);
+            fail("Invalid attribute decoded");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void encodedAttributeIsDecodedWhenRead() throws Exception {
+        Session session = receive("{}");
+        session.setEncodedAttribute("item",
+                "{\"name\":\"restored\",\"count\":4}".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(session.isEncodedAttribute("item"));
+        assertEquals("{\"item\":{\"name\":\"restored\",\"count\":4}}",
+                OBJECT_MAPPER.writeValueAsString(session.getAttributes()));
+        assertEquals(4, session.getAttribute("item", Item.class).count);
+        assertFalse(session.isEncodedAttribute("item"));
+    }
+
+    private static Session receive(final String attributes) throws IOException {
+        return OBJECT_MAPPER.readValue("{\"sessionId\":\"session\",\"attributes\":" + attributes
+                + "}", Session.class);
+    }
+
+    private static Map<String, Object> send(final Session session) throws IOException {
+        return OBJECT_MAPPER.readValue(
+                OBJECT_MAPPER.writeValueAsBytes(session.getAttributes()),
+                new TypeReference<Map<String, Object>>() {});
+    }
+
+    /**
+     * A typed attribute.
+     */
+    public static final class Item {
+        public String name;
+        public int count;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks that {@link SessionAttributeCodec} packs only the attributes it makes smaller, that
+ * packed attributes read back as they were set, and that unpacking is bounded.
+ */
+public class SessionAttributeCodecTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int THRESHOLD = 128;
+
+    private final SessionAttributeCodec codec =
+            SessionAttributeCodec.builder().withThreshold(THRESHOLD).build();
+
+    @Test
+    public void largeAttributeRoundTrips() throws Exception {
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add("event " + i);
+        }
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("events", events);
+        attributes.put("count", 100);
+
+        Map<String, Object> encoded = codec.encode(attributes);
+        Object packed = encoded.get("events");
+        assertTrue(packed instanceof String);
+        assertTrue(SessionAttributeCodec.isPacked((String) packed));
+        assertEquals(100, encoded.get("count"));
+        assertSame(events, attributes.get("events"));
+        assertEquals(1, codec.getPackedCount());
+        assertTrue(codec.getSavedBytes() > 0);
+
+        Session session = receive(OBJECT_MAPPER.writeValueAsString(encoded));
+        assertEquals(events, session.getAttribute("events"));
+        assertEquals(events, receive(OBJECT_MAPPER.writeValueAsString(encoded)).getAttribute(
+                "events", new TypeReference<List<String>>() {}));
+        assertEquals(100, session.getAttribute("count"));
+    }
+
+    @Test
+    public void smallOrIncompressibleAttributesAreSentAsTheyAre() throws Exception {
+        byte[] random = new byte[THRESHOLD * 2];
+        new Random(1).nextBytes(random);
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("small", Arrays.asList(1, 2, 3));
+        attributes.put("incompressible", Base64.encodeBase64String(random));
+        attributes.put("flag", true);
+
+        assertSame(attributes, codec.encode(attributes));
+        assertEquals(0, codec.getPackedCount());
+    }
+
+    @Test
+    public void unreadPackedAttributeIsSentBackAsReceived() throws Exception {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("text", repeat("The quick brown fox. ", 50));
+        String json = OBJECT_MAPPER.writeValueAsString(codec.encode(attributes));
+
+        Session session = receive(json);
+        assertEquals(json, OBJECT_MAPPER.writeValueAsString(session.getAttributes()));
+        // Already packed, so not packed again
+        assertEquals(json,
+                OBJECT_MAPPER.writeValueAsString(codec.encode(session.getAttributes())));
+        assertEquals(1, codec.getPackedCount());
+    }
+
+    @Test
+    public void unpackingIsBounded() throws Exception {
+        // Two megabytes of JSON compress to a few kilobytes
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("bomb", repeat("a", 2 * 1024 * 1024));
+        String packed = (String) codec.encode(attributes).get("bomb");
+        assertTrue(packed.length() < 16 * 1024);
+
+        try {
+            SessionAttributeCodec.unpack(packed);
+            fail("Unpacked more than the maximum size");
+        } catch (IOException ex) {
+            // expected
+        }
+        // Read as the string received instead
+        Map<String, Object> received = new LinkedHashMap<>();
+        received.put("bomb", packed);
+        assertEquals(packed, receive(OBJECT_MAPPER.writeValueAsString(received)).getAttribute(
+                "bomb"));
+    }
+
+    @Test
+    public void invalidPackedAttributeReadsAsAString() throws Exception {
+        String invalid = SessionAttributeCodec.PACKED_PREFIX + "not packed";
+        Session session = receive("{\"value\":\"" + invalid + "\"}");
+
+        assertEquals(invalid, session.getAttribute("value"));
+        assertEquals(invalid, codec.encode(session.getAttributes()).get("value"));
+        assertEquals(0, codec.getPackedCount());
+    }
+
+    private static Session receive(final String attributes) throws IOException {
+        return OBJECT_MAPPER.readValue("{\"sessionId\":\"session\",\"attributes\":" + attributes
+                + "}", Session.class);
+    }
+
+    private static String repeat(final String text, final int count) {
+        StringBuilder builder = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks that {@link SpeechletConcurrencyLimiter} admits requests up to its limit, raises the
+ * limit while it is put to use by fast requests, lowers it after slow or failed ones, and that
+ * requests over the limit are answered without invoking the speechlet.
+ */
+public class SpeechletConcurrencyLimiterTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final long FAST_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    @Test
+    public void requestsOverTheLimitAreRejected() {
+        SpeechletConcurrencyLimiter limiter =
+                SpeechletConcurrencyLimiter.builder().withInitialLimit(2).build();
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlightCount());
+
+        limiter.release(FAST_NANOS, true);
+        assertTrue(limiter.tryAcquire());
+        assertEquals(3, limiter.getAdmittedCount());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void limitIncreasesWhileFastRequestsUseIt() {
+        SpeechletConcurrencyLimiter limiter = SpeechletConcurrencyLimiter
+                .builder()
+                .withInitialLimit(2)
+                .withMaximumLimit(4)
+                .build();
+
+        // Each fast request at full use raises the limit by one over a limit's worth of them
+        fillAndRelease(limiter, 2);
+        assertEquals(2, limiter.getLimit());
+        fillAndRelease(limiter, 2);
+        assertEquals(3, limiter.getLimit());
+        for (int i = 0; i < 10; i++) {
+            fillAndRelease(limiter, limiter.getLimit());
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void limitDoesNotIncreaseWhileMostlyIdle() {
+        SpeechletConcurrencyLimiter limiter =
+                SpeechletConcurrencyLimiter.builder().withInitialLimit(10).build();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(FAST_NANOS, true);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void slowOrFailedRequestsLowerTheLimit() throws Exception {
+        SpeechletConcurrencyLimiter limiter = SpeechletConcurrencyLimiter
+                .builder()
+                .withInitialLimit(16)
+                .withMinimumLimit(3)
+                .withLatencyThreshold(1, TimeUnit.MILLISECONDS)
+                .withBackoffRatio(0.5)
+                .build();
+        long slowNanos = TimeUnit.MILLISECONDS.toNanos(2);
+
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        Thread.sleep(10);
+        limiter.release(slowNanos, true);
+        assertEquals(8, limiter.getLimit());
+
+        // Started before the limit was lowered, so admitted under the previous limit
+        limiter.release(TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS), false);
+        assertEquals(8, limiter.getLimit());
+
+        limiter.tryAcquire();
+        Thread.sleep(10);
+        limiter.release(FAST_NANOS, false);
+        assertEquals(4, limiter.getLimit());
+
+        limiter.tryAcquire();
+        Thread.sleep(10);
+        limiter.release(slowNanos, true);
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlightCount());
+    }
+
+    @Test
+    public void rejectedRequestIsAnsweredWithoutTheSpeechlet() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.deferred();
+        SpeechletConcurrencyLimiter limiter =
+                SpeechletConcurrencyLimiter.builder().withInitialLimit(1).build();
+        SpeechletRequestHandler handler =
+                new SpeechletRequestHandler(
+                        Collections.<SpeechletRequestEnvelopeVerifier>emptyList());
+        handler.setConcurrencyLimiter(limiter);
+
+        SpeechletFuture<byte[]> admitted =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        SpeechletFuture<byte[]> rejected =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r2"));
+        assertTrue(rejected.isDone());
+        JsonNode response =
+                OBJECT_MAPPER.readTree(rejected.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).get(
+                        "response");
+        assertFalse(response.get("shouldEndSession").asBoolean());
+        assertEquals(1, speechlet.getInvocationCount());
+        assertEquals(1, limiter.getRejectedCount());
+
+        speechlet.takeResponse().complete(TestSpeechlet.newTellResponse("Hello"));
+        admitted.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(0, limiter.getInFlightCount());
+    }
+
+    /**
+     * Admits as many requests as the limit and completes them fast.
+     */
+    private static void fillAndRelease(final SpeechletConcurrencyLimiter limiter,
+            final int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        for (int i = 0; i < count; i++) {
+            limiter.release(FAST_NANOS, true);
+        }
+    }
+}
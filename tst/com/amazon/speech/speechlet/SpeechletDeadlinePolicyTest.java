@@ -0,0 +1,136 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks the deadlines given by {@link SpeechletDeadlinePolicy}, and that a handler answers with
+ * the fallback response, keeping the session and its attributes, when a request expired before it
+ * was received or the speechlet failed after its deadline.
+ */
+public class SpeechletDeadlinePolicyTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final String FALLBACK_TEXT = "Sorry, that took too long. Please try again.";
+
+    @Test
+    public void deadlineIsTheTimestampPlusTheBudget() {
+        SpeechletDeadlinePolicy policy = SpeechletDeadlinePolicy
+                .builder()
+                .withBudget(5, TimeUnit.SECONDS)
+                .withClockSkew(1, TimeUnit.SECONDS)
+                .build();
+        long now = System.currentTimeMillis();
+
+        assertRemainingMillis(3000, policy, new Date(now - 3000));
+        // Within the clock skew, or in the future, the request gets the whole budget
+        assertRemainingMillis(5000, policy, new Date(now - 500));
+        assertRemainingMillis(5000, policy, new Date(now + 60000));
+        assertTrue(policy.newDeadline(newRequest(new Date(now - 6000))).isExpired());
+    }
+
+    @Test
+    public void expiredRequestIsAnsweredWithoutTheSpeechlet() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.immediate();
+        SpeechletDeadlinePolicy policy = SpeechletDeadlinePolicy.builder().build();
+        SpeechletRequestHandler handler = newHandler(policy);
+
+        JsonNode responseEnvelope =
+                OBJECT_MAPPER.readTree(handler.handleSpeechletCall(speechlet, TestSpeechlet
+                        .launchRequest("r1", new Date(System.currentTimeMillis() - 60000),
+                                "{\"count\":1}")));
+        assertFallback(responseEnvelope);
+        assertEquals(1, responseEnvelope.get("sessionAttributes").get("count").asInt());
+        assertEquals(0, speechlet.getInvocationCount());
+        assertEquals(1, policy.getExpiredOnArrivalCount());
+    }
+
+    @Test
+    public void failureAfterTheDeadlineIsAnsweredWithTheFallback() throws Exception {
+        // Timestamps have a precision of one second, which the clock skew makes up for
+        TestSpeechlet speechlet = TestSpeechlet.deferred();
+        SpeechletDeadlinePolicy policy = SpeechletDeadlinePolicy
+                .builder()
+                .withBudget(500, TimeUnit.MILLISECONDS)
+                .withClockSkew(1, TimeUnit.SECONDS)
+                .build();
+        SpeechletRequestHandler handler = newHandler(policy);
+
+        SpeechletFuture<byte[]> response =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        Thread.sleep(600);
+        speechlet.takeResponse().completeExceptionally(new SpeechletException("Timed out"));
+        assertFallback(OBJECT_MAPPER.readTree(response.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+        assertEquals(1, policy.getExpiredOnFailureCount());
+    }
+
+    @Test
+    public void failureBeforeTheDeadlineIsAnError() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.deferred();
+        SpeechletDeadlinePolicy policy = SpeechletDeadlinePolicy.builder().build();
+        SpeechletRequestHandler handler = newHandler(policy);
+
+        SpeechletFuture<byte[]> response =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        speechlet.takeResponse().completeExceptionally(new SpeechletException("Failed"));
+        try {
+            response.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Failure answered with the fallback");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof SpeechletException);
+        }
+        assertEquals(0, policy.getExpiredOnFailureCount());
+    }
+
+    private static SpeechletRequestHandler newHandler(final SpeechletDeadlinePolicy policy) {
+        SpeechletRequestHandler handler =
+                new SpeechletRequestHandler(
+                        Collections.<SpeechletRequestEnvelopeVerifier>emptyList());
+        handler.setDeadlinePolicy(policy);
+        return handler;
+    }
+
+    private static LaunchRequest newRequest(final Date timestamp) {
+        return LaunchRequest.builder().withRequestId("r1").withTimestamp(timestamp).build();
+    }
+
+    private static void assertRemainingMillis(final long expectedMillis,
+            final SpeechletDeadlinePolicy policy, final Date timestamp) {
+        long remainingMillis = policy.newDeadline(newRequest(timestamp)).getRemainingMillis();
+        assertTrue(String.valueOf(remainingMillis),
+                remainingMillis > expectedMillis - 500 && remainingMillis <= expectedMillis);
+    }
+
+    private static void assertFallback(final JsonNode responseEnvelope) {
+        JsonNode response = responseEnvelope.get("response");
+        assertEquals(FALLBACK_TEXT, response.get("outputSpeech").get("text").asText());
+        assertFalse(response.get("shouldEndSession").asBoolean());
+    }
+}
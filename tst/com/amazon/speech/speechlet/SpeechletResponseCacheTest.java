@@ -0,0 +1,160 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
+
+/**
+ * Drives a {@link SpeechletRequestHandler} with a {@link SpeechletResponseCache}, checking that
+ * retries are answered without invoking the speechlet again, that retries of a request still in
+ * flight wait for its response, and that failed or stuck requests are handled again.
+ */
+public class SpeechletResponseCacheTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void retryIsAnsweredWithTheCachedResponse() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.immediate();
+        SpeechletResponseCache cache = SpeechletResponseCache.builder().build();
+        SpeechletRequestHandler handler = newHandler(cache);
+
+        byte[] first = handler.handleSpeechletCall(speechlet, TestSpeechlet.launchRequest("r1"));
+        byte[] retry = handler.handleSpeechletCall(speechlet, TestSpeechlet.launchRequest("r1"));
+        assertArrayEquals(first, retry);
+        assertEquals(1, speechlet.getInvocationCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        handler.handleSpeechletCall(speechlet, TestSpeechlet.launchRequest("r2"));
+        assertEquals(2, speechlet.getInvocationCount());
+    }
+
+    @Test
+    public void retryOfInFlightRequestWaitsForItsResponse() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.deferred();
+        SpeechletResponseCache cache =
+                SpeechletResponseCache.builder().withInFlightCoalescing(true).build();
+        SpeechletRequestHandler handler = newHandler(cache);
+
+        SpeechletFuture<byte[]> first =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        SpeechletFuture<byte[]> retry =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        assertFalse(retry.isDone());
+        assertEquals(1, cache.getCoalescedCount());
+
+        speechlet.takeResponse().complete(TestSpeechlet.newTellResponse("Hello"));
+        assertArrayEquals(first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                retry.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, speechlet.getInvocationCount());
+        assertTrue(cache.contains("r1"));
+    }
+
+    @Test
+    public void failedRequestIsSharedWithItsRetriesAndHandledAgain() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.deferred();
+        SpeechletResponseCache cache =
+                SpeechletResponseCache.builder().withInFlightCoalescing(true).build();
+        SpeechletRequestHandler handler = newHandler(cache);
+
+        SpeechletFuture<byte[]> first =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        SpeechletFuture<byte[]> retry =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        speechlet.takeResponse().completeExceptionally(new SpeechletException("Failed"));
+        expectFailure(first, SpeechletException.class);
+        expectFailure(retry, SpeechletException.class);
+        assertFalse(cache.contains("r1"));
+
+        SpeechletFuture<byte[]> next =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        assertEquals(2, speechlet.getInvocationCount());
+        speechlet.takeResponse().complete(TestSpeechlet.newTellResponse("Hello"));
+        next.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(cache.contains("r1"));
+    }
+
+    @Test
+    public void stuckRequestIsHandledAgainAfterTheInFlightTimeout() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.deferred();
+        SpeechletResponseCache cache = SpeechletResponseCache
+                .builder()
+                .withInFlightCoalescing(true)
+                .withInFlightTimeout(200, TimeUnit.MILLISECONDS)
+                .build();
+        SpeechletRequestHandler handler = newHandler(cache);
+
+        handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        SpeechletFuture<byte[]> retry =
+                handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        long start = System.nanoTime();
+        try {
+            retry.get();
+            fail("Waited for a response that never came");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof SpeechletException);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS));
+        assertFalse(cache.contains("r1"));
+
+        handler.handleSpeechletCallAsync(speechlet, TestSpeechlet.launchRequest("r1"));
+        assertEquals(2, speechlet.getInvocationCount());
+    }
+
+    @Test
+    public void oldestResponseIsEvicted() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.immediate();
+        SpeechletResponseCache cache = SpeechletResponseCache.builder().withMaximumSize(2).build();
+        SpeechletRequestHandler handler = newHandler(cache);
+
+        for (String requestId : new String[] {"r1", "r2", "r3"}) {
+            handler.handleSpeechletCall(speechlet, TestSpeechlet.launchRequest(requestId));
+        }
+        assertFalse(cache.contains("r1"));
+        assertTrue(cache.contains("r2"));
+        assertTrue(cache.contains("r3"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    private static SpeechletRequestHandler newHandler(final SpeechletResponseCache cache) {
+        SpeechletRequestHandler handler =
+                new SpeechletRequestHandler(
+                        Collections.<SpeechletRequestEnvelopeVerifier>emptyList());
+        handler.setResponseCache(cache);
+        return handler;
+    }
+
+    private static void expectFailure(final SpeechletFuture<byte[]> result,
+            final Class<? extends Throwable> failureType) throws Exception {
+        try {
+            result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Request succeeded");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause().toString(), failureType.isInstance(ex.getCause()));
+        }
+    }
+}
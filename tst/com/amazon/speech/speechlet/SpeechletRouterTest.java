@@ -0,0 +1,142 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
+
+/**
+ * Checks that a {@link SpeechletRouter} dispatches each request to the speechlet of its
+ * application ID, rejects requests without a route, and limits the concurrent requests of each
+ * route independently.
+ */
+public class SpeechletRouterTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void requestIsDispatchedToTheSpeechletOfItsApplicationId() throws Exception {
+        TestSpeechlet first = TestSpeechlet.immediate();
+        TestSpeechlet second = TestSpeechlet.immediate();
+        SpeechletRouter router = SpeechletRouter
+                .builder()
+                .withRoute("first", first)
+                .withRoute("second", second)
+                .build();
+        SpeechletRequestHandler handler =
+                new SpeechletRequestHandler(
+                        Collections.<SpeechletRequestEnvelopeVerifier>emptyList());
+
+        handler.handleSpeechletCall(router, launchRequest("r1", "first"));
+        handler.handleSpeechletCall(router, launchRequest("r2", "second"));
+        handler.handleSpeechletCall(router, launchRequest("r3", "second"));
+        assertEquals(1, first.getInvocationCount());
+        assertEquals(2, second.getInvocationCount());
+        assertEquals("second", second.getLastSession().getApplication().getApplicationId());
+    }
+
+    @Test
+    public void requestWithoutARouteIsRejected() throws Exception {
+        TestSpeechlet speechlet = TestSpeechlet.immediate();
+        SpeechletRouter router = SpeechletRouter.builder().withRoute("first", speechlet).build();
+        SpeechletRequestHandler handler =
+                new SpeechletRequestHandler(
+                        Collections.<SpeechletRequestEnvelopeVerifier>emptyList());
+
+        try {
+            handler.handleSpeechletCall(router, launchRequest("r1", "unknown"));
+            fail("Request without a route dispatched");
+        } catch (SpeechletRequestHandlerException ex) {
+            // expected
+        }
+        assertEquals(0, speechlet.getInvocationCount());
+        assertEquals(-1, router.getActiveRequestCount("unknown"));
+    }
+
+    @Test
+    public void concurrentRequestsAreLimitedPerRoute() throws Exception {
+        TestSpeechlet limited = TestSpeechlet.deferred();
+        TestSpeechlet other = TestSpeechlet.deferred();
+        SpeechletRouter router = SpeechletRouter
+                .builder()
+                .withRoute("limited", limited, 1)
+                .withRoute("other", other)
+                .build();
+
+        SpeechletFuture<SpeechletResponseEnvelope> admitted = dispatch(router, "limited");
+        SpeechletFuture<SpeechletResponseEnvelope> rejected = dispatch(router, "limited");
+        expectFailure(rejected);
+        assertEquals(1, router.getActiveRequestCount("limited"));
+        assertEquals(1, router.getRejectedRequestCount("limited"));
+
+        // Other routes are not held up by the limited one
+        dispatch(router, "other");
+        dispatch(router, "other");
+        assertEquals(2, router.getActiveRequestCount("other"));
+        assertEquals(0, router.getRejectedRequestCount("other"));
+
+        // A failed request returns its permit too
+        limited.takeResponse().completeExceptionally(new SpeechletException("Failed"));
+        expectFailure(admitted);
+        assertEquals(0, router.getActiveRequestCount("limited"));
+        dispatch(router, "limited");
+        limited.takeResponse().complete(TestSpeechlet.newTellResponse("Hello"));
+        assertEquals(0, router.getActiveRequestCount("limited"));
+        assertEquals(2, limited.getInvocationCount());
+    }
+
+    private static SpeechletFuture<SpeechletResponseEnvelope> dispatch(
+            final SpeechletRouter router, final String applicationId) {
+        Session session = Session
+                .builder()
+                .withSessionId("session")
+                .withApplication(new Application(applicationId))
+                .build();
+        SpeechletRequestEnvelope<LaunchRequest> requestEnvelope = SpeechletRequestEnvelope
+                .<LaunchRequest>builder()
+                .withSession(session)
+                .withRequest(LaunchRequest.builder().withRequestId("r1").build())
+                .build();
+        return router.dispatchSpeechletCallAsync(requestEnvelope, session);
+    }
+
+    private static void expectFailure(final SpeechletFuture<SpeechletResponseEnvelope> result)
+            throws Exception {
+        try {
+            result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Request succeeded");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause().toString(), ex.getCause() instanceof SpeechletException);
+        }
+    }
+
+    private static byte[] launchRequest(final String requestId, final String applicationId) {
+        return new String(TestSpeechlet.launchRequest(requestId, new Date(), "{}"),
+                StandardCharsets.UTF_8).replace("\"applicationId\":\"application\"",
+                "\"applicationId\":\"" + applicationId + "\"").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+
+/**
+ * An {@link AsyncSpeechletV2} answering launch requests either at once or once the test completes
+ * their response, along with the requests sent to it.
+ */
+final class TestSpeechlet implements AsyncSpeechletV2 {
+    private final boolean deferred;
+    private final AtomicInteger invocationCount = new AtomicInteger();
+    private final BlockingQueue<SpeechletFuture<SpeechletResponse>> pendingResponses =
+            new LinkedBlockingQueue<>();
+    private volatile Session lastSession;
+
+    private TestSpeechlet(final boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    /**
+     * Returns a speechlet answering each launch request at once.
+     */
+    static TestSpeechlet immediate() {
+        return new TestSpeechlet(false);
+    }
+
+    /**
+     * Returns a speechlet answering each launch request once the test takes its response with
+     * {@link #takeResponse()} and completes it.
+     */
+    static TestSpeechlet deferred() {
+        return new TestSpeechlet(true);
+    }
+
+    @Override
+    public SpeechletFuture<Void> onSessionStarted(
+            final SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+        return SpeechletFuture.completed(null);
+    }
+
+    @Override
+    public SpeechletFuture<SpeechletResponse> onLaunch(
+            final SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+        invocationCount.incrementAndGet();
+        lastSession = requestEnvelope.getSession();
+        if (!deferred) {
+            return SpeechletFuture.completed(newTellResponse("Hello "
+                    + requestEnvelope.getRequest().getRequestId()));
+        }
+        SpeechletFuture<SpeechletResponse> response = new SpeechletFuture<>();
+        pendingResponses.add(response);
+        return response;
+    }
+
+    @Override
+    public SpeechletFuture<SpeechletResponse> onIntent(
+            final SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+        return SpeechletFuture.failed(new SpeechletException("Unexpected intent"));
+    }
+
+    @Override
+    public SpeechletFuture<Void> onSessionEnded(
+            final SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+        return SpeechletFuture.completed(null);
+    }
+
+    /**
+     * Returns the number of launch requests the speechlet received.
+     */
+    int getInvocationCount() {
+        return invocationCount.get();
+    }
+
+    /**
+     * Returns the session of the last launch request the speechlet received.
+     */
+    Session getLastSession() {
+        return lastSession;
+    }
+
+    /**
+     * Returns the response of the oldest launch request not taken yet, for the test to complete.
+     */
+    SpeechletFuture<SpeechletResponse> takeResponse() throws InterruptedException {
+        return pendingResponses.take();
+    }
+
+    static SpeechletResponse newTellResponse(final String text) {
+        PlainTextOutputSpeech outputSpeech = new PlainTextOutputSpeech();
+        outputSpeech.setText(text);
+        return SpeechletResponse.newTellResponse(outputSpeech);
+    }
+
+    /**
+     * Returns a launch request with the provided ID, sent now in a session without attributes.
+     */
+    static byte[] launchRequest(final String requestId) {
+        return launchRequest(requestId, new Date(), "{}");
+    }
+
+    /**
+     * Returns a launch request with the provided ID and timestamp, in a session with the provided
+     * attributes.
+     *
+     * @param requestId
+     *            the ID of the request
+     * @param timestamp
+     *            the timestamp of the request
+     * @param attributes
+     *            the JSON object holding the session attributes
+     * @return the serialized request
+     */
+    static byte[] launchRequest(final String requestId, final Date timestamp,
+            final String attributes) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return ("{\"version\":\"1.0\",\"session\":{\"new\":false,\"sessionId\":\"session\","
+                + "\"application\":{\"applicationId\":\"application\"},\"attributes\":"
+                + attributes + ",\"user\":{\"userId\":\"user\"}},\"request\":{\"type\":"
+                + "\"LaunchRequest\",\"requestId\":\"" + requestId + "\",\"timestamp\":\""
+                + format.format(timestamp) + "\"}}").getBytes(StandardCharsets.UTF_8);
+    }
+}
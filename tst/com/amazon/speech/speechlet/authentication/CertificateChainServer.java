@@ -0,0 +1,392 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.authentication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.amazon.speech.speechlet.authentication.TestCertificateAuthority.IssuedCertificate;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ * A local HTTPS server standing in for {@code s3.amazonaws.com}, so that
+ * {@link SpeechletRequestSignatureVerifier#retrieveAndVerifyCertificateChain(String)} can retrieve
+ * certificate chains without network access.
+ * <p>
+ * While open, HTTPS connections to {@code s3.amazonaws.com} are tunnelled to the server through a
+ * local proxy, and the default trust store of the JVM is replaced with one trusting only the
+ * provided certificate authority, which also issues the certificate of the server.
+ */
+final class CertificateChainServer implements Closeable {
+    static final String HOST_NAME = "s3.amazonaws.com";
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+    private static final String TRUST_STORE_PROPERTY = "javax.net.ssl.trustStore";
+    private static final String TRUST_STORE_TYPE_PROPERTY = "javax.net.ssl.trustStoreType";
+    private static final String TRUST_STORE_PASSWORD_PROPERTY = "javax.net.ssl.trustStorePassword";
+
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger totalRequestCount = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final HttpsServer server;
+    private final ServerSocket proxySocket;
+    private final File trustStoreFile;
+    private final ProxySelector previousProxySelector;
+    private final SSLSocketFactory previousSocketFactory;
+    private final String[] previousTrustStoreProperties;
+
+    /**
+     * Starts the server and routes HTTPS connections to {@code s3.amazonaws.com} to it.
+     *
+     * @param certificateAuthority
+     *            the authority trusted while the server is open
+     * @throws GeneralSecurityException
+     *             if the certificates or TLS contexts cannot be set up
+     * @throws IOException
+     *             if the server cannot be started
+     */
+    CertificateChainServer(final TestCertificateAuthority certificateAuthority)
+            throws GeneralSecurityException, IOException {
+        IssuedCertificate serverCertificate = certificateAuthority.issue(HOST_NAME, HOST_NAME);
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("server", serverCertificate.getKeyPair().getPrivate(), PASSWORD,
+                new Certificate[] {
+                        serverCertificate.getCertificate(), certificateAuthority.getCaCertificate()
+                });
+        KeyManagerFactory keyManagerFactory =
+                KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD);
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", certificateAuthority.getCaCertificate());
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trustStore);
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, trustManagerFactory.getTrustManagers(), null);
+
+        server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(serverContext));
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        server.start();
+
+        proxySocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptTunnels();
+            }
+        });
+
+        // Both the connection and the certificate chain check of the verifier use the defaults
+        trustStoreFile = File.createTempFile("certificate-chain-server", ".jks");
+        try (OutputStream out = new FileOutputStream(trustStoreFile)) {
+            trustStore.store(out, PASSWORD);
+        }
+        previousTrustStoreProperties = new String[] {
+                System.getProperty(TRUST_STORE_PROPERTY),
+                System.getProperty(TRUST_STORE_TYPE_PROPERTY),
+                System.getProperty(TRUST_STORE_PASSWORD_PROPERTY)
+        };
+        System.setProperty(TRUST_STORE_PROPERTY, trustStoreFile.getAbsolutePath());
+        System.setProperty(TRUST_STORE_TYPE_PROPERTY, "JKS");
+        System.setProperty(TRUST_STORE_PASSWORD_PROPERTY, new String(PASSWORD));
+        previousSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        HttpsURLConnection.setDefaultSSLSocketFactory(clientContext.getSocketFactory());
+        previousProxySelector = ProxySelector.getDefault();
+        ProxySelector.setDefault(new TunnellingProxySelector(proxySocket.getLocalSocketAddress()));
+    }
+
+    /**
+     * Serves a body at a path, replacing what was served there before.
+     *
+     * @param path
+     *            the path, starting with a slash
+     * @param body
+     *            the response body
+     */
+    void serve(final String path, final byte[] body) {
+        responses.put(path, new Response(200, body, null));
+    }
+
+    /**
+     * Serves a body at a path once the provided latch is released.
+     *
+     * @param path
+     *            the path, starting with a slash
+     * @param body
+     *            the response body
+     * @param release
+     *            the latch every request waits for before being answered
+     */
+    void serveAfter(final String path, final byte[] body, final CountDownLatch release) {
+        responses.put(path, new Response(200, body, release));
+    }
+
+    /**
+     * Answers requests for a path with an error status code.
+     *
+     * @param path
+     *            the path, starting with a slash
+     * @param statusCode
+     *            the HTTP status code
+     */
+    void fail(final String path, final int statusCode) {
+        responses.put(path, new Response(statusCode, new byte[0], null));
+    }
+
+    /**
+     * Returns the number of requests received for a path.
+     *
+     * @param path
+     *            the path, starting with a slash
+     * @return the number of requests
+     */
+    int getRequestCount(final String path) {
+        AtomicInteger count = requestCounts.get(path);
+        return (count != null) ? count.get() : 0;
+    }
+
+    /**
+     * Returns the number of requests received for any path.
+     *
+     * @return the number of requests
+     */
+    int getTotalRequestCount() {
+        return totalRequestCount.get();
+    }
+
+    /**
+     * Returns the certificate chain URL of a path.
+     *
+     * @param path
+     *            the path, starting with a slash
+     * @return the URL
+     */
+    static String url(final String path) {
+        return "https://" + HOST_NAME + path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ProxySelector.setDefault(previousProxySelector);
+        HttpsURLConnection.setDefaultSSLSocketFactory(previousSocketFactory);
+        restoreProperty(TRUST_STORE_PROPERTY, previousTrustStoreProperties[0]);
+        restoreProperty(TRUST_STORE_TYPE_PROPERTY, previousTrustStoreProperties[1]);
+        restoreProperty(TRUST_STORE_PASSWORD_PROPERTY, previousTrustStoreProperties[2]);
+        server.stop(0);
+        proxySocket.close();
+        executor.shutdownNow();
+        trustStoreFile.delete();
+    }
+
+    private static void restoreProperty(final String name, final String value) {
+        if (value != null) {
+            System.setProperty(name, value);
+        } else {
+            System.clearProperty(name);
+        }
+    }
+
+    private void respond(final HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        totalRequestCount.incrementAndGet();
+        AtomicInteger count = new AtomicInteger();
+        AtomicInteger existingCount = requestCounts.putIfAbsent(path, count);
+        ((existingCount != null) ? existingCount : count).incrementAndGet();
+
+        Response response = responses.get(path);
+        if (response == null) {
+            response = new Response(404, new byte[0], null);
+        }
+        if (response.release != null) {
+            try {
+                response.release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        exchange.sendResponseHeaders(response.statusCode, (response.body.length > 0)
+                ? response.body.length : -1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response.body);
+        }
+    }
+
+    /**
+     * Answers {@code CONNECT} requests by relaying bytes between the client and the HTTPS server.
+     */
+    private void acceptTunnels() {
+        while (!proxySocket.isClosed()) {
+            final Socket client;
+            try {
+                client = proxySocket.accept();
+            } catch (IOException ex) {
+                return;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try (Socket upstream = new Socket(InetAddress.getLoopbackAddress(), server
+                            .getAddress()
+                            .getPort())) {
+                        readConnectRequest(client.getInputStream());
+                        client.getOutputStream().write(
+                                "HTTP/1.1 200 Connection established\r\n\r\n"
+                                        .getBytes(StandardCharsets.US_ASCII));
+                        relay(upstream.getInputStream(), client);
+                        copy(client.getInputStream(), upstream.getOutputStream());
+                    } catch (IOException ex) {
+                        // The client or the server closed the tunnel
+                    } finally {
+                        try {
+                            client.close();
+                        } catch (IOException ex) {
+                            // Already closed
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private static void readConnectRequest(final InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            header.write(b);
+            if (header.toString("US-ASCII").endsWith("\r\n\r\n")) {
+                return;
+            }
+        }
+        throw new IOException("Incomplete CONNECT request");
+    }
+
+    /**
+     * Copies what the server sends to the client, closing the client connection once the server
+     * closed its side.
+     */
+    private void relay(final InputStream in, final Socket client) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    copy(in, client.getOutputStream());
+                } catch (IOException ex) {
+                    // The client or the server closed the tunnel
+                } finally {
+                    try {
+                        client.close();
+                    } catch (IOException ex) {
+                        // Already closed
+                    }
+                }
+            }
+        });
+    }
+
+    private static void copy(final InputStream in, final OutputStream out) throws IOException {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            out.flush();
+        }
+    }
+
+    private static final class Response {
+        private final int statusCode;
+        private final byte[] body;
+        private final CountDownLatch release;
+
+        private Response(final int statusCode, final byte[] body, final CountDownLatch release) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.release = release;
+        }
+    }
+
+    /**
+     * Sends connections to {@code s3.amazonaws.com} through the tunnelling proxy, and others
+     * directly.
+     */
+    private static final class TunnellingProxySelector extends ProxySelector {
+        private final Proxy proxy;
+
+        private TunnellingProxySelector(final SocketAddress proxyAddress) {
+            proxy = new Proxy(Proxy.Type.HTTP, proxyAddress);
+        }
+
+        @Override
+        public List<Proxy> select(final URI uri) {
+            if (HOST_NAME.equalsIgnoreCase(uri.getHost())) {
+                return Collections.singletonList(proxy);
+            }
+            return Collections.singletonList(Proxy.NO_PROXY);
+        }
+
+        @Override
+        public void connectFailed(final URI uri, final SocketAddress address,
+                final IOException ex) {
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazon.speech.speechlet.authentication.TestCertificateAuthority.IssuedCertificate;
+
+/**
+ * Drives {@link SigningCertificateCache} with its default loader,
+ * {@link SpeechletRequestSignatureVerifier#retrieveAndVerifyCertificateChain(String)}, against
+ * certificate chains served over HTTPS by a {@link CertificateChainServer}.
+ */
+public class SigningCertificateCacheTest {
+    private static final long NEGATIVE_CACHE_DURATION_MILLIS = 200;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static TestCertificateAuthority certificateAuthority;
+    private static CertificateChainServer server;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        certificateAuthority = new TestCertificateAuthority("Signing Certificate Cache Test CA");
+        server = new CertificateChainServer(certificateAuthority);
+    }
+
+    @AfterClass
+    public static void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void retrievesAndVerifiesCertificateChain() throws Exception {
+        X509Certificate signingCertificate = serveSigningCertificate("/echo.api/valid.pem");
+        SigningCertificateCache cache = newCache();
+
+        assertEquals(signingCertificate,
+                cache.getCertificate(CertificateChainServer.url("/echo.api/valid.pem")));
+        assertEquals(signingCertificate,
+                cache.getCertificate(CertificateChainServer.url("/echo.api/valid.pem")));
+        assertEquals(1, server.getRequestCount("/echo.api/valid.pem"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(0, cache.getLoadFailureCount());
+    }
+
+    @Test
+    public void rejectsUrlsOutsideTheCertificateBucketWithoutConnecting() throws Exception {
+        serveSigningCertificate("/echo.api/url-checks.pem");
+        SigningCertificateCache cache = newCache();
+        int requestCount = server.getTotalRequestCount();
+
+        expectCertificateException(cache, "http://s3.amazonaws.com/echo.api/url-checks.pem");
+        expectCertificateException(cache, "https://s3.amazonaws.com:8443/echo.api/url-checks.pem");
+        expectCertificateException(cache, "https://example.com/echo.api/url-checks.pem");
+        expectCertificateException(cache, "https://s3.amazonaws.com/other/url-checks.pem");
+        expectCertificateException(cache,
+                "https://s3.amazonaws.com/echo.api/../other/url-checks.pem");
+        expectCertificateException(cache, "https://s3.amazonaws.com/echo.api/url checks.pem");
+        assertEquals(requestCount, server.getTotalRequestCount());
+    }
+
+    @Test
+    public void rejectsChainNotIssuedByTrustedAuthority() throws Exception {
+        TestCertificateAuthority otherAuthority = new TestCertificateAuthority("Untrusted CA");
+        server.serve("/echo.api/untrusted.pem", TestCertificateAuthority.toPem(otherAuthority
+                .issueSigningCertificate()
+                .getCertificate(), otherAuthority.getCaCertificate()));
+
+        expectCertificateException(newCache(),
+                CertificateChainServer.url("/echo.api/untrusted.pem"));
+        assertEquals(1, server.getRequestCount("/echo.api/untrusted.pem"));
+    }
+
+    @Test
+    public void rejectsCertificateWithoutEchoApiSubjectAlternativeName() throws Exception {
+        server.serve("/echo.api/other-name.pem", TestCertificateAuthority.toPem(
+                certificateAuthority.issue("echo-api.example.com", "echo-api.example.com")
+                        .getCertificate(), certificateAuthority.getCaCertificate()));
+        server.serve("/echo.api/no-name.pem", TestCertificateAuthority.toPem(certificateAuthority
+                .issue("echo-api.amazon.com")
+                .getCertificate(), certificateAuthority.getCaCertificate()));
+        SigningCertificateCache cache = newCache();
+
+        expectCertificateException(cache, CertificateChainServer.url("/echo.api/other-name.pem"));
+        expectCertificateException(cache, CertificateChainServer.url("/echo.api/no-name.pem"));
+    }
+
+    @Test
+    public void concurrentMissesShareOneRetrieval() throws Exception {
+        final int threads = 8;
+        CountDownLatch release = new CountDownLatch(1);
+        IssuedCertificate signingCertificate = certificateAuthority.issueSigningCertificate();
+        server.serveAfter("/echo.api/single-flight.pem", TestCertificateAuthority.toPem(
+                signingCertificate.getCertificate(), certificateAuthority.getCaCertificate()),
+                release);
+        final SigningCertificateCache cache = newCache();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<X509Certificate>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<X509Certificate>() {
+                    @Override
+                    public X509Certificate call() throws CertificateException {
+                        return cache.getCertificate(CertificateChainServer
+                                .url("/echo.api/single-flight.pem"));
+                    }
+                }));
+            }
+
+            // Every thread but the loading one found the in-flight retrieval
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (cache.getHitCount() < threads - 1) {
+                assertTrue("Threads did not join the retrieval", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<X509Certificate> result : results) {
+                assertEquals(signingCertificate.getCertificate(),
+                        result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(1, server.getRequestCount("/echo.api/single-flight.pem"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(threads - 1, cache.getHitCount());
+        assertEquals(1, cache.getLoadCount());
+    }
+
+    @Test
+    public void failedRetrievalIsRememberedForTheNegativeCacheDuration() throws Exception {
+        server.fail("/echo.api/negative.pem", 404);
+        SigningCertificateCache cache = newCache();
+        String url = CertificateChainServer.url("/echo.api/negative.pem");
+
+        expectCertificateException(cache, url);
+        expectCertificateException(cache, url);
+        assertEquals(1, server.getRequestCount("/echo.api/negative.pem"));
+        assertEquals(1, cache.getLoadFailureCount());
+        assertEquals(1, cache.getNegativeHitCount());
+
+        // Retried once the negative cache duration elapsed
+        X509Certificate signingCertificate = serveSigningCertificate("/echo.api/negative.pem");
+        Thread.sleep(NEGATIVE_CACHE_DURATION_MILLIS + 100);
+        assertEquals(signingCertificate, cache.getCertificate(url));
+        assertEquals(2, server.getRequestCount("/echo.api/negative.pem"));
+        assertEquals(1, cache.getNegativeHitCount());
+    }
+
+    @Test
+    public void failedRetrievalsDoNotEvictCachedCertificates() throws Exception {
+        SigningCertificateCache cache = SigningCertificateCache
+                .builder()
+                .withMaximumSize(1)
+                .withNegativeCacheDuration(NEGATIVE_CACHE_DURATION_MILLIS, TimeUnit.MILLISECONDS)
+                .build();
+        String url = CertificateChainServer.url("/echo.api/kept.pem");
+        X509Certificate signingCertificate = serveSigningCertificate("/echo.api/kept.pem");
+        assertEquals(signingCertificate, cache.getCertificate(url));
+
+        for (int i = 0; i < 3; i++) {
+            server.fail("/echo.api/missing-" + i + ".pem", 404);
+            expectCertificateException(cache,
+                    CertificateChainServer.url("/echo.api/missing-" + i + ".pem"));
+        }
+        assertEquals(signingCertificate, cache.getCertificate(url));
+        assertEquals(1, server.getRequestCount("/echo.api/kept.pem"));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void certificateInRefreshWindowIsRetrievedAgain() throws Exception {
+        // Test certificates are valid for a day, so they are always within a two day window
+        SigningCertificateCache cache = SigningCertificateCache
+                .builder()
+                .withRefreshBeforeExpiry(2, TimeUnit.DAYS)
+                .withNegativeCacheDuration(NEGATIVE_CACHE_DURATION_MILLIS, TimeUnit.MILLISECONDS)
+                .build();
+        String url = CertificateChainServer.url("/echo.api/refresh.pem");
+        X509Certificate first = serveSigningCertificate("/echo.api/refresh.pem");
+
+        // Not refreshed right after being retrieved
+        assertEquals(first, cache.getCertificate(url));
+        assertEquals(first, cache.getCertificate(url));
+        assertEquals(1, server.getRequestCount("/echo.api/refresh.pem"));
+
+        // The refreshing request still gets the cached certificate, later ones the new one
+        X509Certificate second = serveSigningCertificate("/echo.api/refresh.pem");
+        Thread.sleep(NEGATIVE_CACHE_DURATION_MILLIS + 100);
+        assertEquals(first, cache.getCertificate(url));
+        assertEquals(2, server.getRequestCount("/echo.api/refresh.pem"));
+        assertEquals(second, cache.getCertificate(url));
+
+        // A failed refresh keeps the cached certificate and is not retried right away
+        server.fail("/echo.api/refresh.pem", 500);
+        Thread.sleep(NEGATIVE_CACHE_DURATION_MILLIS + 100);
+        assertEquals(second, cache.getCertificate(url));
+        assertEquals(second, cache.getCertificate(url));
+        assertEquals(3, server.getRequestCount("/echo.api/refresh.pem"));
+        assertEquals(1, cache.getLoadFailureCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    private static SigningCertificateCache newCache() {
+        return SigningCertificateCache
+                .builder()
+                .withNegativeCacheDuration(NEGATIVE_CACHE_DURATION_MILLIS, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private static X509Certificate serveSigningCertificate(final String path) throws Exception {
+        X509Certificate signingCertificate =
+                certificateAuthority.issueSigningCertificate().getCertificate();
+        server.serve(path, TestCertificateAuthority.toPem(signingCertificate,
+                certificateAuthority.getCaCertificate()));
+        return signingCertificate;
+    }
+
+    private static void expectCertificateException(final SigningCertificateCache cache,
+            final String url) {
+        try {
+            cache.getCertificate(url);
+            fail("Certificate chain accepted from " + url);
+        } catch (CertificateException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.authentication;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.speech.speechlet.authentication.TestCertificateAuthority.IssuedCertificate;
+
+/**
+ * Checks that {@link SpeechletRequestSignatureVerifier} accepts requests signed the way the Alexa
+ * service does and rejects altered ones, including when its per-thread {@code Signature} engine is
+ * reused across keys and after failures.
+ */
+public class SpeechletRequestSignatureVerifierTest {
+    private static final String FIRST_URL = "https://s3.amazonaws.com/echo.api/first.pem";
+    private static final String SECOND_URL = "https://s3.amazonaws.com/echo.api/second.pem";
+    private static final byte[] REQUEST = ("{\"version\":\"1.0\",\"request\":{\"type\":"
+            + "\"LaunchRequest\",\"requestId\":\"amzn1.echo-api.request.0\"}}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static IssuedCertificate firstSigningCertificate;
+    private static IssuedCertificate secondSigningCertificate;
+
+    private SigningCertificateCache previousCertificateCache;
+
+    @Before
+    public void installCertificates() throws Exception {
+        if (firstSigningCertificate == null) {
+            TestCertificateAuthority certificateAuthority =
+                    new TestCertificateAuthority("Signature Verifier Test CA");
+            firstSigningCertificate = certificateAuthority.issueSigningCertificate();
+            secondSigningCertificate = certificateAuthority.issueSigningCertificate();
+        }
+
+        final Map<String, X509Certificate> certificates = new HashMap<>();
+        certificates.put(FIRST_URL, firstSigningCertificate.getCertificate());
+        certificates.put(SECOND_URL, secondSigningCertificate.getCertificate());
+        previousCertificateCache = SpeechletRequestSignatureVerifier.getCertificateCache();
+        SpeechletRequestSignatureVerifier.setCertificateCache(SigningCertificateCache
+                .builder()
+                .withLoader(new SigningCertificateLoader() {
+                    @Override
+                    public X509Certificate load(final String signingCertificateChainUrl)
+                            throws CertificateException {
+                        X509Certificate certificate = certificates.get(signingCertificateChainUrl);
+                        if (certificate == null) {
+                            throw new CertificateException("Unknown URL "
+                                    + signingCertificateChainUrl);
+                        }
+                        return certificate;
+                    }
+                })
+                .build());
+    }
+
+    @After
+    public void restoreCertificateCache() {
+        SpeechletRequestSignatureVerifier.setCertificateCache(previousCertificateCache);
+    }
+
+    @Test
+    public void acceptsSignedRequest() throws Exception {
+        expectValid(REQUEST, firstSigningCertificate.sign(REQUEST), FIRST_URL);
+    }
+
+    @Test
+    public void rejectsTamperedBody() throws Exception {
+        String signature = firstSigningCertificate.sign(REQUEST);
+        for (int i = 0; i < REQUEST.length; i += 7) {
+            byte[] tamperedRequest = REQUEST.clone();
+            tamperedRequest[i] ^= 1;
+            expectInvalid(tamperedRequest, signature, FIRST_URL);
+        }
+        byte[] appendedRequest = new byte[REQUEST.length + 1];
+        System.arraycopy(REQUEST, 0, appendedRequest, 0, REQUEST.length);
+        appendedRequest[REQUEST.length] = ' ';
+        expectInvalid(appendedRequest, signature, FIRST_URL);
+        expectInvalid(new byte[0], signature, FIRST_URL);
+
+        // the reused engine must be in a clean state after the failures above
+        expectValid(REQUEST, signature, FIRST_URL);
+    }
+
+    @Test
+    public void rejectsTamperedOrMalformedSignature() throws Exception {
+        String signature = firstSigningCertificate.sign(REQUEST);
+        // the character before the "==" padding has unused low bits, so changing it may not
+        // change the decoded signature
+        for (int i = 0; i < signature.length() - 3; i += 11) {
+            char[] tamperedSignature = signature.toCharArray();
+            tamperedSignature[i] = (tamperedSignature[i] == 'A') ? 'B' : 'A';
+            expectInvalid(REQUEST, new String(tamperedSignature), FIRST_URL);
+
+            char[] malformedSignature = signature.toCharArray();
+            malformedSignature[i] = '*';
+            expectInvalid(REQUEST, new String(malformedSignature), FIRST_URL);
+        }
+        expectInvalid(REQUEST, signature.substring(0, signature.length() / 2), FIRST_URL);
+        expectInvalid(REQUEST, signature.substring(1), FIRST_URL);
+        expectInvalid(REQUEST, signature.replace("=", "") + "QUJD", FIRST_URL);
+        expectInvalid(REQUEST, "", FIRST_URL);
+        expectInvalid(REQUEST, "A", FIRST_URL);
+        expectInvalid(REQUEST, firstSigningCertificate.sign(new byte[] {
+            '{', '}'
+        }), FIRST_URL);
+        expectInvalid(REQUEST, signature.replace('A', '\u00c0'), FIRST_URL);
+
+        expectValid(REQUEST, signature, FIRST_URL);
+    }
+
+    @Test
+    public void acceptsUrlSafeAlphabetWhitespaceAndMissingPadding() throws Exception {
+        String signature = firstSigningCertificate.sign(REQUEST);
+        expectValid(REQUEST, signature.replace('+', '-').replace('/', '_'), FIRST_URL);
+        expectValid(REQUEST, signature.replace("=", ""), FIRST_URL);
+        // anything after the padding is ignored
+        expectValid(REQUEST, signature + "QUJD", FIRST_URL);
+        expectValid(REQUEST, new String(Base64.encodeBase64Chunked(Base64.decodeBase64(signature)),
+                StandardCharsets.US_ASCII), FIRST_URL);
+        expectValid(REQUEST, " \t" + signature.substring(0, 100) + "\n"
+                + signature.substring(100) + " ", FIRST_URL);
+    }
+
+    @Test
+    public void switchesKeysOnOneThread() throws Exception {
+        String firstSignature = firstSigningCertificate.sign(REQUEST);
+        String secondSignature = secondSigningCertificate.sign(REQUEST);
+        for (int i = 0; i < 3; i++) {
+            expectValid(REQUEST, firstSignature, FIRST_URL);
+            expectValid(REQUEST, firstSignature, FIRST_URL);
+            expectValid(REQUEST, secondSignature, SECOND_URL);
+            expectInvalid(REQUEST, firstSignature, SECOND_URL);
+            expectInvalid(REQUEST, secondSignature, FIRST_URL);
+        }
+
+        // a check that is never completed does not leave its engine to the next one
+        SpeechletRequestSignatureCheck abandonedCheck =
+                SpeechletRequestSignatureVerifier.startRequestSignatureCheck(firstSignature,
+                        FIRST_URL);
+        abandonedCheck.update(REQUEST, 0, 10);
+        expectValid(REQUEST, firstSignature, FIRST_URL);
+
+        // a body added in several parts
+        SpeechletRequestSignatureCheck check =
+                SpeechletRequestSignatureVerifier.startRequestSignatureCheck(secondSignature,
+                        SECOND_URL);
+        check.update(REQUEST, 0, 10);
+        check.update(REQUEST, 10, REQUEST.length - 10);
+        check.verify();
+        expectValid(REQUEST, secondSignature, SECOND_URL);
+    }
+
+    @Test
+    public void decodesLikeCommonsCodec() {
+        Random random = new Random(42);
+        for (int length = 0; length < 80; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            String encoded = Base64.encodeBase64String(bytes);
+
+            assertArrayEquals(encoded, bytes, SpeechletRequestSignatureVerifier
+                    .decodeBase64(encoded));
+            assertArrayEquals(encoded, bytes, SpeechletRequestSignatureVerifier
+                    .decodeBase64(encoded.replace("=", "")));
+            assertArrayEquals(encoded, bytes, SpeechletRequestSignatureVerifier
+                    .decodeBase64(Base64.encodeBase64URLSafeString(bytes)));
+            assertArrayEquals(encoded, bytes, SpeechletRequestSignatureVerifier
+                    .decodeBase64(new String(Base64.encodeBase64Chunked(bytes),
+                            StandardCharsets.US_ASCII)));
+        }
+    }
+
+    @Test
+    public void decodesPaddingAndWhitespaceEdgeCases() {
+        assertArrayEquals(new byte[0], SpeechletRequestSignatureVerifier.decodeBase64(""));
+        assertArrayEquals(new byte[0], SpeechletRequestSignatureVerifier.decodeBase64(" \r\n\t"));
+        assertArrayEquals(new byte[0], SpeechletRequestSignatureVerifier.decodeBase64("===="));
+        assertArrayEquals(bytes("A"), SpeechletRequestSignatureVerifier.decodeBase64("QQ"));
+        assertArrayEquals(bytes("A"), SpeechletRequestSignatureVerifier.decodeBase64("QQ="));
+        assertArrayEquals(bytes("A"), SpeechletRequestSignatureVerifier.decodeBase64("Q Q = ="));
+        assertArrayEquals(bytes("AB"), SpeechletRequestSignatureVerifier.decodeBase64("QUI="));
+        assertArrayEquals(bytes("ABC"), SpeechletRequestSignatureVerifier.decodeBase64("QU\nJD"));
+
+        // decoding stops at the first padding character
+        assertArrayEquals(bytes("A"), SpeechletRequestSignatureVerifier.decodeBase64("QQ==QUJD"));
+        assertArrayEquals(bytes("A"), SpeechletRequestSignatureVerifier.decodeBase64("QQ=*"));
+
+        // a single character left over cannot encode a byte
+        assertNull(SpeechletRequestSignatureVerifier.decodeBase64("Q"));
+        assertNull(SpeechletRequestSignatureVerifier.decodeBase64("QUJDR"));
+        assertNull(SpeechletRequestSignatureVerifier.decodeBase64("QUJDR==="));
+
+        // characters outside both alphabets
+        assertNull(SpeechletRequestSignatureVerifier.decodeBase64("QU*D"));
+        assertNull(SpeechletRequestSignatureVerifier.decodeBase64("QU.D"));
+        assertNull(SpeechletRequestSignatureVerifier.decodeBase64("QU\u00c9D"));
+        assertNull(SpeechletRequestSignatureVerifier.decodeBase64("QU\u0100D"));
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void expectValid(final byte[] request, final String signature,
+            final String url) {
+        SpeechletRequestSignatureVerifier.checkRequestSignature(request, signature, url);
+    }
+
+    private static void expectInvalid(final byte[] request, final String signature,
+            final String url) {
+        try {
+            SpeechletRequestSignatureVerifier.checkRequestSignature(request, signature, url);
+            fail("Accepted signature " + signature + " for " + url);
+        } catch (SecurityException ex) {
+            // expected
+        }
+    }
+}
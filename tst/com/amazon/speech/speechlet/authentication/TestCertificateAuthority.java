@@ -0,0 +1,207 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.authentication;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Base64;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import com.amazon.speech.Sdk;
+
+/**
+ * A throwaway certificate authority generated in memory, issuing certificates valid for a day.
+ */
+final class TestCertificateAuthority {
+    private static final String CERTIFICATE_SIGNATURE_ALGORITHM = "SHA256withRSA";
+    private static final int KEY_SIZE = 2048;
+    private static final AtomicLong SERIAL_NUMBERS = new AtomicLong();
+
+    private final X500Name name;
+    private final IssuedCertificate caCertificate;
+
+    /**
+     * Generates a new self-signed CA certificate.
+     *
+     * @param commonName
+     *            the common name of the CA
+     * @throws GeneralSecurityException
+     *             if key or certificate generation fails
+     */
+    TestCertificateAuthority(final String commonName) throws GeneralSecurityException {
+        name = new X500Name("CN=" + commonName);
+        KeyPair keyPair = generateKeyPair();
+        X509v3CertificateBuilder builder = newCertificateBuilder(name, keyPair);
+        try {
+            builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        } catch (CertIOException ex) {
+            throw new GeneralSecurityException("Unable to generate the CA certificate", ex);
+        }
+        caCertificate = new IssuedCertificate(keyPair, sign(builder, keyPair));
+    }
+
+    /**
+     * Returns the self-signed CA certificate.
+     *
+     * @return the CA certificate
+     */
+    X509Certificate getCaCertificate() {
+        return caCertificate.getCertificate();
+    }
+
+    /**
+     * Issues a request signing certificate with {@link Sdk#ECHO_API_DOMAIN_NAME} as subject
+     * alternative name.
+     *
+     * @return the signing certificate and its key pair
+     * @throws GeneralSecurityException
+     *             if key or certificate generation fails
+     */
+    IssuedCertificate issueSigningCertificate() throws GeneralSecurityException {
+        return issue(Sdk.ECHO_API_DOMAIN_NAME, Sdk.ECHO_API_DOMAIN_NAME);
+    }
+
+    /**
+     * Issues a certificate for the provided names.
+     *
+     * @param commonName
+     *            the common name of the subject
+     * @param dnsNames
+     *            the DNS subject alternative names, none to leave the extension out
+     * @return the certificate and its key pair
+     * @throws GeneralSecurityException
+     *             if key or certificate generation fails
+     */
+    IssuedCertificate issue(final String commonName, final String... dnsNames)
+            throws GeneralSecurityException {
+        KeyPair keyPair = generateKeyPair();
+        X509v3CertificateBuilder builder =
+                newCertificateBuilder(new X500Name("CN=" + commonName), keyPair);
+        if (dnsNames.length > 0) {
+            GeneralName[] generalNames = new GeneralName[dnsNames.length];
+            for (int i = 0; i < dnsNames.length; i++) {
+                generalNames[i] = new GeneralName(GeneralName.dNSName, dnsNames[i]);
+            }
+            try {
+                builder.addExtension(Extension.subjectAlternativeName, false, new GeneralNames(
+                        generalNames));
+            } catch (CertIOException ex) {
+                throw new GeneralSecurityException("Unable to generate the certificate", ex);
+            }
+        }
+        return new IssuedCertificate(keyPair, sign(builder, caCertificate.getKeyPair()));
+    }
+
+    /**
+     * Encodes certificates in the PEM format served at certificate chain URLs.
+     *
+     * @param certificates
+     *            the certificates, signing certificate first
+     * @return the PEM encoded chain
+     * @throws GeneralSecurityException
+     *             if a certificate cannot be encoded
+     */
+    static byte[] toPem(final X509Certificate... certificates) throws GeneralSecurityException {
+        StringBuilder pem = new StringBuilder();
+        for (X509Certificate certificate : certificates) {
+            pem.append("-----BEGIN CERTIFICATE-----\n")
+                    .append(Base64.encodeBase64String(certificate.getEncoded()).replaceAll(
+                            "(.{64})", "$1\n"))
+                    .append("\n-----END CERTIFICATE-----\n");
+        }
+        return pem.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private X509v3CertificateBuilder newCertificateBuilder(final X500Name subject,
+            final KeyPair keyPair) {
+        Date notBefore = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+        Date notAfter = new Date(notBefore.getTime() + TimeUnit.DAYS.toMillis(1));
+        return new JcaX509v3CertificateBuilder(name, BigInteger.valueOf(SERIAL_NUMBERS
+                .incrementAndGet()), notBefore, notAfter, subject, keyPair.getPublic());
+    }
+
+    private static KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(Sdk.SIGNATURE_KEY_TYPE);
+        keyPairGenerator.initialize(KEY_SIZE);
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    private static X509Certificate sign(final X509v3CertificateBuilder builder,
+            final KeyPair issuerKeyPair) throws GeneralSecurityException {
+        try {
+            return new JcaX509CertificateConverter().getCertificate(builder
+                    .build(new JcaContentSignerBuilder(CERTIFICATE_SIGNATURE_ALGORITHM)
+                            .build(issuerKeyPair.getPrivate())));
+        } catch (OperatorCreationException ex) {
+            throw new GeneralSecurityException("Unable to sign the certificate", ex);
+        }
+    }
+
+    /**
+     * A certificate issued by a {@code TestCertificateAuthority} and its key pair.
+     */
+    static final class IssuedCertificate {
+        private final KeyPair keyPair;
+        private final X509Certificate certificate;
+
+        private IssuedCertificate(final KeyPair keyPair, final X509Certificate certificate) {
+            this.keyPair = keyPair;
+            this.certificate = certificate;
+        }
+
+        KeyPair getKeyPair() {
+            return keyPair;
+        }
+
+        X509Certificate getCertificate() {
+            return certificate;
+        }
+
+        /**
+         * Signs a serialized request the way the Alexa service does.
+         *
+         * @param serializedSpeechletRequest
+         *            the request bytes
+         * @return the Base64 encoded value of the {@link Sdk#SIGNATURE_REQUEST_HEADER} header
+         * @throws GeneralSecurityException
+         *             if signing fails
+         */
+        String sign(final byte[] serializedSpeechletRequest) throws GeneralSecurityException {
+            Signature signature = Signature.getInstance(Sdk.SIGNATURE_ALGORITHM);
+            signature.initSign(keyPair.getPrivate());
+            signature.update(serializedSpeechletRequest);
+            return Base64.encodeBase64String(signature.sign());
+        }
+    }
+}
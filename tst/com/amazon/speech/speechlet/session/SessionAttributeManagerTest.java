@@ -0,0 +1,185 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.Session;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs sessions through a {@link SessionAttributeManager} the way the handler does, restoring the
+ * attributes of each request and saving those of its response, and checks what is stored, what is
+ * sent back and what is written to the store.
+ */
+public class SessionAttributeManagerTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int INLINE_THRESHOLD = 64;
+
+    private InMemorySessionAttributeStore store;
+    private int saveCount;
+    private SessionAttributeManager manager;
+    private List<Integer> largeValue;
+
+    @Before
+    public void createManager() {
+        store = InMemorySessionAttributeStore.builder().build();
+        manager = SessionAttributeManager
+                .builder()
+                .withStore(new SessionAttributeStore() {
+                    @Override
+                    public Map<String, byte[]> load(final String sessionId) {
+                        return store.load(sessionId);
+                    }
+
+                    @Override
+                    public void save(final String sessionId,
+                            final Map<String, byte[]> changedAttributes) {
+                        saveCount++;
+                        store.save(sessionId, changedAttributes);
+                    }
+
+                    @Override
+                    public void remove(final String sessionId) {
+                        store.remove(sessionId);
+                    }
+                })
+                .withInlineThreshold(INLINE_THRESHOLD)
+                .build();
+        largeValue = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            largeValue.add(i);
+        }
+    }
+
+    @Test
+    public void largeAttributesAreStoredAndRestored() throws Exception {
+        Session session = receive("{}");
+        assertNull(manager.restore(session));
+        session.setAttribute("small", 1);
+        session.setAttribute("large", largeValue);
+        String attributes = send(session, null, false);
+        assertEquals("{\"small\":1,\"" + SessionAttributeManager.HANDLE_ATTRIBUTE + "\":1}",
+                attributes);
+        assertEquals(1, saveCount);
+
+        session = receive(attributes);
+        Map<String, byte[]> storedAttributes = manager.restore(session);
+        assertEquals(1, storedAttributes.size());
+        assertEquals(1, session.getAttribute("small"));
+        assertEquals(largeValue,
+                session.getAttribute("large", new TypeReference<List<Integer>>() {}));
+        assertFalse(session.getAttributes().containsKey(SessionAttributeManager.HANDLE_ATTRIBUTE));
+    }
+
+    @Test
+    public void onlyChangedAttributesAreWrittenAgain() throws Exception {
+        Session session = receive("{}");
+        session.setAttribute("large", largeValue);
+        String attributes = send(session, manager.restore(session), false);
+
+        // Neither read nor set, so left encoded and not written
+        session = receive(attributes);
+        Map<String, byte[]> storedAttributes = manager.restore(session);
+        assertTrue(session.isEncodedAttribute("large"));
+        attributes = send(session, storedAttributes, false);
+        assertEquals(1, saveCount);
+
+        // Read without being changed
+        session = receive(attributes);
+        storedAttributes = manager.restore(session);
+        session.getAttribute("large");
+        attributes = send(session, storedAttributes, false);
+        assertEquals(1, saveCount);
+
+        // Changed
+        session = receive(attributes);
+        storedAttributes = manager.restore(session);
+        List<Integer> changedValue = session.getAttribute("large",
+                new TypeReference<List<Integer>>() {});
+        changedValue.add(50);
+        attributes = send(session, storedAttributes, false);
+        assertEquals(2, saveCount);
+
+        session = receive(attributes);
+        manager.restore(session);
+        assertEquals(changedValue,
+                session.getAttribute("large", new TypeReference<List<Integer>>() {}));
+    }
+
+    @Test
+    public void removedAttributeIsRemovedFromTheStore() throws Exception {
+        Session session = receive("{}");
+        session.setAttribute("large", largeValue);
+        session.setAttribute("other", largeValue);
+        String attributes = send(session, manager.restore(session), false);
+        assertEquals(2, store.load("session").size());
+
+        session = receive(attributes);
+        Map<String, byte[]> storedAttributes = manager.restore(session);
+        session.removeAttribute("large");
+        attributes = send(session, storedAttributes, false);
+        assertEquals("{\"" + SessionAttributeManager.HANDLE_ATTRIBUTE + "\":1}", attributes);
+        assertEquals(1, store.load("session").size());
+        assertTrue(store.load("session").containsKey("other"));
+    }
+
+    @Test
+    public void storedAttributesAreRemovedWhenTheSessionEnds() throws Exception {
+        Session session = receive("{}");
+        session.setAttribute("large", largeValue);
+        String attributes = send(session, manager.restore(session), false);
+
+        session = receive(attributes);
+        send(session, manager.restore(session), true);
+        assertTrue(store.load("session").isEmpty());
+    }
+
+    @Test
+    public void smallAttributesNeverReachTheStore() throws Exception {
+        Session session = receive("{\"count\":1,\"name\":\"value\"}");
+        assertNull(manager.restore(session));
+        session.setAttribute("count", 2);
+        assertEquals("{\"count\":2,\"name\":\"value\"}", send(session, null, false));
+        assertEquals(0, saveCount);
+        assertEquals(0, store.size());
+    }
+
+    private static Session receive(final String attributes) throws IOException {
+        return OBJECT_MAPPER.readValue("{\"sessionId\":\"session\",\"attributes\":" + attributes
+                + "}", Session.class);
+    }
+
+    private String send(final Session session, final Map<String, byte[]> storedAttributes,
+            final boolean sessionEnded) throws IOException {
+        SpeechletResponseEnvelope responseEnvelope = new SpeechletResponseEnvelope();
+        responseEnvelope.setSessionAttributes(session.getAttributes());
+        manager.save(session, storedAttributes, responseEnvelope, sessionEnded);
+        return OBJECT_MAPPER.writeValueAsString(responseEnvelope.getSessionAttributes());
+    }
+}
@@ -0,0 +1,248 @@
+/*
+    Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+    Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file
+    except in compliance with the License. A copy of the License is located at
+
+        http://aws.amazon.com/apache2.0/
+
+    or in the "license" file accompanying this file. This file is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+    the specific language governing permissions and limitations under the License.
+ */
+
+
+package com.amazon.speech.speechlet.verifier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.SessionEndedRequest;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.SpeechletResponseCache;
+import com.amazon.speech.speechlet.SpeechletV2;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+
+/**
+ * Checks that {@link ReplayProtectionSpeechletRequestVerifier} accepts each request once, whatever
+ * slice of the tolerance window its timestamp falls in, and lets retries through only when their
+ * response is cached.
+ */
+public class ReplayProtectionSpeechletRequestVerifierTest {
+    private static final long SLICE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void replayedRequestIsRejected() {
+        ReplayProtectionSpeechletRequestVerifier verifier =
+                ReplayProtectionSpeechletRequestVerifier.builder().build();
+        Date timestamp = new Date();
+
+        assertTrue(verifier.verify(newEnvelope("r1", timestamp)));
+        assertFalse(verifier.verify(newEnvelope("r1", timestamp)));
+        assertTrue(verifier.verify(newEnvelope("r2", timestamp)));
+        assertEquals(1, verifier.getReplayCount());
+    }
+
+    @Test
+    public void replayIsDetectedInEverySliceOfTheWindow() {
+        // 150 seconds of tolerance in 5 slices of 30 seconds, so timestamps 30 seconds apart
+        // fall in distinct slices from 120 seconds in the past to 120 seconds in the future
+        ReplayProtectionSpeechletRequestVerifier verifier =
+                ReplayProtectionSpeechletRequestVerifier.builder().build();
+        long now = System.currentTimeMillis();
+        List<Date> timestamps = new ArrayList<>();
+        for (int slice = -4; slice <= 4; slice++) {
+            timestamps.add(new Date(now + slice * SLICE_MILLIS));
+        }
+
+        for (Date timestamp : timestamps) {
+            assertTrue(verifier.verify(newEnvelope("r" + timestamp.getTime(), timestamp)));
+        }
+        for (Date timestamp : timestamps) {
+            assertFalse(verifier.verify(newEnvelope("r" + timestamp.getTime(), timestamp)));
+        }
+        assertEquals(timestamps.size(), verifier.getReplayCount());
+    }
+
+    @Test
+    public void sameIdWithAnotherTimestampIsNotAReplay() {
+        ReplayProtectionSpeechletRequestVerifier verifier =
+                ReplayProtectionSpeechletRequestVerifier.builder().build();
+        long now = System.currentTimeMillis();
+
+        assertTrue(verifier.verify(newEnvelope("r1", new Date(now))));
+        assertTrue(verifier.verify(newEnvelope("r1", new Date(now - SLICE_MILLIS))));
+        assertEquals(0, verifier.getReplayCount());
+    }
+
+    @Test
+    public void requestOutsideTheToleranceIsRejected() {
+        ReplayProtectionSpeechletRequestVerifier verifier =
+                ReplayProtectionSpeechletRequestVerifier.builder().build();
+
+        assertFalse(verifier.verify(newEnvelope("r1", new Date(System.currentTimeMillis()
+                - TimeUnit.SECONDS.toMillis(151)))));
+        assertEquals(0, verifier.getReplayCount());
+    }
+
+    @Test
+    public void concurrentCopiesOfARequestAreAcceptedOnce() throws Exception {
+        final ReplayProtectionSpeechletRequestVerifier verifier =
+                ReplayProtectionSpeechletRequestVerifier.builder().build();
+        final SpeechletRequestEnvelope<LaunchRequest> requestEnvelope =
+                newEnvelope("r1", new Date());
+        int copies = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(copies);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < copies; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        start.await();
+                        return verifier.verify(requestEnvelope);
+                    }
+                }));
+            }
+            start.countDown();
+            int accepted = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    accepted++;
+                }
+            }
+            assertEquals(1, accepted);
+            assertEquals(copies - 1, verifier.getReplayCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void fullSliceAcceptsRequestsWithoutRecordingThem() {
+        // Sized for one request per hour, each slice holds the minimum of 64 requests
+        ReplayProtectionSpeechletRequestVerifier verifier =
+                ReplayProtectionSpeechletRequestVerifier
+                        .builder()
+                        .withExpectedRequestsPerHour(1)
+                        .build();
+        Date timestamp = new Date();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(verifier.verify(newEnvelope("r" + i, timestamp)));
+        }
+        assertEquals(36, verifier.getOverflowCount());
+        assertFalse(verifier.verify(newEnvelope("r0", timestamp)));
+    }
+
+    @Test
+    public void retryWithCachedResponseIsLetThrough() throws Exception {
+        SpeechletResponseCache cache = SpeechletResponseCache.builder().build();
+        SpeechletRequestHandler handler =
+                new SpeechletRequestHandler(
+                        Collections.<SpeechletRequestEnvelopeVerifier>singletonList(
+                                ReplayProtectionSpeechletRequestVerifier
+                                        .builder()
+                                        .withResponseCache(cache)
+                                        .build()));
+        handler.setResponseCache(cache);
+        byte[] request = serializeLaunchRequest("r1", new Date());
+
+        byte[] response = handler.handleSpeechletCall(new HelloSpeechlet(), request);
+        assertArrayEquals(response, handler.handleSpeechletCall(new HelloSpeechlet(), request));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void retryWithoutResponseCacheIsRejected() throws Exception {
+        SpeechletRequestHandler handler =
+                new SpeechletRequestHandler(
+                        Collections.<SpeechletRequestEnvelopeVerifier>singletonList(
+                                ReplayProtectionSpeechletRequestVerifier.builder().build()));
+        handler.setResponseCache(SpeechletResponseCache.builder().build());
+        byte[] request = serializeLaunchRequest("r1", new Date());
+
+        handler.handleSpeechletCall(new HelloSpeechlet(), request);
+        try {
+            handler.handleSpeechletCall(new HelloSpeechlet(), request);
+            fail("Replayed request accepted");
+        } catch (SpeechletRequestHandlerException ex) {
+            // expected
+        }
+    }
+
+    private static SpeechletRequestEnvelope<LaunchRequest> newEnvelope(final String requestId,
+            final Date timestamp) {
+        return SpeechletRequestEnvelope
+                .<LaunchRequest>builder()
+                .withRequest(LaunchRequest
+                        .builder()
+                        .withRequestId(requestId)
+                        .withTimestamp(timestamp)
+                        .build())
+                .build();
+    }
+
+    private static byte[] serializeLaunchRequest(final String requestId, final Date timestamp) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return ("{\"version\":\"1.0\",\"session\":{\"new\":false,\"sessionId\":\"session\","
+                + "\"application\":{\"applicationId\":\"application\"},"
+                + "\"user\":{\"userId\":\"user\"}},\"request\":{\"type\":\"LaunchRequest\","
+                + "\"requestId\":\"" + requestId + "\",\"timestamp\":\""
+                + format.format(timestamp) + "\"}}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class HelloSpeechlet implements SpeechletV2 {
+        @Override
+        public void onSessionStarted(
+                final SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
+        }
+
+        @Override
+        public SpeechletResponse onLaunch(
+                final SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
+            PlainTextOutputSpeech outputSpeech = new PlainTextOutputSpeech();
+            outputSpeech.setText("Hello");
+            return SpeechletResponse.newTellResponse(outputSpeech);
+        }
+
+        @Override
+        public SpeechletResponse onIntent(
+                final SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+            return null;
+        }
+
+        @Override
+        public void onSessionEnded(
+                final SpeechletRequestEnvelope<SessionEndedRequest> requestEnvelope) {
+        }
+    }
+}